@@ -0,0 +1,57 @@
+package familytree.benchmarks;
+
+import familytree.FamilyMember;
+import familytree.FamilyTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Добавление width детей одному родителю в древе (широкая семья).
+ * Родитель и дети создаются заново перед каждым вызовом, поэтому измеряется
+ * только addChild вместе с обновлением индексов и сводных данных древа
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddChildBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int width;
+
+    private FamilyMember parent;
+    private FamilyMember[] children;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        FamilyTree tree = new FamilyTree();
+        parent = TreeShapes.member(0);
+        tree.setRoot(parent);
+        children = new FamilyMember[width];
+        for (int i = 0; i < width; i++) {
+            children[i] = TreeShapes.member(i + 1);
+        }
+    }
+
+    @Benchmark
+    public FamilyMember addChildren() {
+        for (FamilyMember child : children) {
+            parent.addChild(child);
+        }
+        return parent;
+    }
+}
@@ -0,0 +1,59 @@
+package familytree.benchmarks;
+
+import familytree.ColumnarMemberStore;
+import familytree.FamilyTree;
+import familytree.SyntheticTreeGenerator;
+import familytree.TreeAnalytics;
+import familytree.TreeStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Статистика всего древа по графу объектов FamilyMember и по столбцовому
+ * хранилищу ColumnarMemberStore на одном и том же синтетическом древе
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private FamilyTree tree;
+    private ColumnarMemberStore store;
+
+    @Setup
+    public void setUp() {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(SEED);
+        generator.setSize(size);
+        tree = generator.generate();
+        store = ColumnarMemberStore.of(tree);
+    }
+
+    @Benchmark
+    public TreeStatistics objects() {
+        return TreeAnalytics.compute(tree);
+    }
+
+    @Benchmark
+    public TreeStatistics columns() {
+        return TreeAnalytics.compute(store);
+    }
+}
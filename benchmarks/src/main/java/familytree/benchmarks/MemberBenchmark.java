@@ -0,0 +1,65 @@
+package familytree.benchmarks;
+
+import familytree.Address;
+import familytree.FamilyMember;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание члена семьи и адреса и проверка имени в setFirstName
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemberBenchmark {
+
+    private Address address;
+    private FamilyMember member;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        address = new Address("12", "Ленина", "Москва", "101000");
+        member = TreeShapes.member(0);
+    }
+
+    @Benchmark
+    public FamilyMember construct() {
+        return new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, address, "Описание");
+    }
+
+    @Benchmark
+    public Address constructAddress() {
+        return new Address("12", "Ленина", "Москва", "101000");
+    }
+
+    @Benchmark
+    public String setFirstNameValid() {
+        member.setFirstName(TreeShapes.FIRST_NAMES[next++ & 7]);
+        return member.getFirstName();
+    }
+
+    @Benchmark
+    public Object setFirstNameInvalid() {
+        try {
+            member.setFirstName("Иван" + (next++ & 7));
+            return member;
+        }
+        catch (IllegalArgumentException ex) {
+            return ex;
+        }
+    }
+}
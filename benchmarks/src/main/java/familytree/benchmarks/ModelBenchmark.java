@@ -0,0 +1,81 @@
+package familytree.benchmarks;
+
+import familytree.FamilyTree;
+import familytree.FamilyTreeModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение модели FamilyTreeModel, которую показывает TreeGUI: раскрытие
+ * на глубину по умолчанию, как при открытии древа, и обход всех узлов
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelBenchmark {
+
+    @Param({"ЦЕПОЧКА", "ВЕЕР", "СБАЛАНСИРОВАННОЕ"})
+    public TreeShapes.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private FamilyTree tree;
+
+    @Setup
+    public void setUp() {
+        tree = TreeShapes.build(shape, size);
+    }
+
+    @Benchmark
+    public int expandDefaultDepth() {
+        return walk(FamilyTreeModel.DEFAULT_EXPANSION_DEPTH);
+    }
+
+    @Benchmark
+    public int walkAll() {
+        return walk(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Строит модель и обходит её узлы не глубже depth уровней
+     * @return число посещённых узлов
+     */
+    private int walk(int depth) {
+        FamilyTreeModel model = new FamilyTreeModel(tree);
+        ArrayDeque<Object> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> levels = new ArrayDeque<>();
+        nodes.push(model.getRoot());
+        levels.push(0);
+        int visited = 0;
+        while (!nodes.isEmpty()) {
+            Object node = nodes.pop();
+            int level = levels.pop();
+            visited++;
+            if (level < depth) {
+                int count = model.getChildCount(node);
+                for (int i = 0; i < count; i++) {
+                    nodes.push(model.getChild(node, i));
+                    levels.push(level + 1);
+                }
+            }
+        }
+        model.dispose();
+        return visited;
+    }
+}
@@ -0,0 +1,77 @@
+package familytree.benchmarks;
+
+import familytree.FamilyTree;
+import familytree.FamilyTreeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сохранение древа в файл .ft и его открытие тем же кодеком, что использует
+ * TreeGUI при сохранении и открытии файла
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistenceBenchmark {
+
+    @Param({"ЦЕПОЧКА", "ВЕЕР", "СБАЛАНСИРОВАННОЕ"})
+    public TreeShapes.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private FamilyTree tree;
+    private File saved;
+    private File target;
+
+    @Setup
+    public void setUp() throws IOException {
+        tree = TreeShapes.build(shape, size);
+        saved = Files.createTempFile("benchmark", ".ft").toFile();
+        target = Files.createTempFile("benchmark", ".ft").toFile();
+        try (FileOutputStream out = new FileOutputStream(saved)) {
+            FamilyTreeCodec.write(tree, out);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        saved.delete();
+        target.delete();
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            FamilyTreeCodec.write(tree, out);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public FamilyTree open() throws IOException {
+        try (FileInputStream in = new FileInputStream(saved)) {
+            return FamilyTreeCodec.read(in);
+        }
+    }
+}
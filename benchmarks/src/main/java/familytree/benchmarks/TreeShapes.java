@@ -0,0 +1,88 @@
+package familytree.benchmarks;
+
+import familytree.Address;
+import familytree.FamilyMember;
+import familytree.FamilyTree;
+
+import java.util.ArrayDeque;
+
+/**
+ * Построение деревьев заданной формы и размера для бенчмарков
+ */
+public final class TreeShapes {
+
+    /**
+     * Форма древа
+     */
+    public enum Shape {
+        /**
+         * каждый член семьи - единственный ребёнок предыдущего
+         */
+        ЦЕПОЧКА,
+        /**
+         * все члены семьи - дети корня
+         */
+        ВЕЕР,
+        /**
+         * у каждого члена семьи по два ребёнка, уровень за уровнем
+         */
+        СБАЛАНСИРОВАННОЕ,
+    }
+
+    static final String[] FIRST_NAMES = {"Иван", "Мария", "Пётр", "Анна", "Сергей", "Ольга", "Николай", "Елена"};
+    static final String[] LAST_NAMES = {"Петров", "Иванов", "Сидоров", "Смирнов", "Кузнецов"};
+    static final String[] SUBURBS = {"Москва", "Тула", "Тверь", "Калуга"};
+
+    private TreeShapes() {
+    }
+
+    /**
+     * Создаёт члена семьи с именем, полом и адресом, зависящими от номера
+     */
+    public static FamilyMember member(int i) {
+        FamilyMember.Gender gender = i % 2 == 0 ? FamilyMember.Gender.МУЖСКОЙ : FamilyMember.Gender.ЖЕНСКИЙ;
+        Address address = new Address(Integer.toString(i % 200 + 1), "Ленина", SUBURBS[i % SUBURBS.length], "101000");
+        return new FamilyMember(FIRST_NAMES[i % FIRST_NAMES.length], LAST_NAMES[i % LAST_NAMES.length], gender,
+                address, "Член семьи номер " + i);
+    }
+
+    /**
+     * Строит древо из size членов семьи заданной формы
+     */
+    public static FamilyTree build(Shape shape, int size) {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember root = member(0);
+        tree.setRoot(root);
+        switch (shape) {
+            case ЦЕПОЧКА: {
+                FamilyMember current = root;
+                for (int i = 1; i < size; i++) {
+                    FamilyMember child = member(i);
+                    current.addChild(child);
+                    current = child;
+                }
+                break;
+            }
+            case ВЕЕР:
+                for (int i = 1; i < size; i++) {
+                    root.addChild(member(i));
+                }
+                break;
+            case СБАЛАНСИРОВАННОЕ: {
+                ArrayDeque<FamilyMember> parents = new ArrayDeque<>();
+                parents.add(root);
+                for (int i = 1; i < size; i++) {
+                    FamilyMember parent = parents.peek();
+                    FamilyMember child = member(i);
+                    parent.addChild(child);
+                    parents.add(child);
+                    if (parent.numChildren() == 2) {
+                        parents.poll();
+                    }
+                }
+                break;
+            }
+        }
+        return tree;
+    }
+}
@@ -1,6 +0,0 @@
-public class Assignment2 {
-
-    public static void main(String[] args) {
-        TreeGUI treeGUI = new TreeGUI();
-    }
-}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package familytree;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+
+public class Address implements Serializable {
+    private static final long serialVersionUID = 257808975287388335L;
+
+    @Override
+    public String toString() {
+        return streetNumber + " " + streetName + ", " + suburb + ", " + postCode;
+    }
+
+    public Address(String streetNumber, String streetName, String Suburb, String postCode) {
+        this.setStreetNumber(streetNumber);
+        this.setStreetName(streetName);
+        this.setSuburb(Suburb);
+        this.setPostCode(postCode);
+    }
+
+    private Address() {
+    }
+
+    /**
+     * Создаёт адрес из значений, которые уже проверены вызывающим кодом,
+     * без проверки в сеттерах
+     */
+    static Address trusted(String streetNumber, String streetName, String suburb, String postCode) {
+        Address address = new Address();
+        address.streetNumber = streetNumber;
+        address.streetName = streetName;
+        address.suburb = suburb;
+        address.postCode = postCode;
+        return address;
+    }
+
+    private String streetNumber;
+    private String streetName;
+    private String suburb;
+    private String postCode;
+
+    private transient FamilyTree tree;
+
+    /**
+     * Поля адреса, об изменении которых сообщается слушателям древа
+     */
+    public enum Field {
+        НОМЕР_ДОМА,
+        УЛИЦА,
+        НАСЕЛЁННЫЙ_ПУНКТ,
+        ИНДЕКС,
+    }
+
+    /**
+     * Привязывает адрес к древу его жильцов. Вызывается только из FamilyMember
+     */
+    void attach(FamilyTree tree) {
+        if (this.tree == tree) {
+            return;
+        }
+        this.tree = tree;
+        this.streetNumber = intern(this.streetNumber);
+        this.streetName = intern(this.streetName);
+        this.suburb = intern(this.suburb);
+        this.postCode = intern(this.postCode);
+    }
+
+    /**
+     * вернуть канонический экземпляр строки из словаря древа
+     */
+    private String intern(String value) {
+        return this.tree != null ? this.tree.getStringDictionary().intern(value) : value;
+    }
+
+    /**
+     * Сообщает древу об изменении поля, если значение действительно изменилось
+     */
+    private void fireChanged(Field field, String oldValue, String newValue) {
+        if (this.tree != null && !Objects.equals(oldValue, newValue)) {
+            this.tree.addressChanged(this, field, oldValue);
+        }
+    }
+
+    public String getStreetNumber() { // вернуть the streetNumber
+        return streetNumber;
+    }
+
+    public final void setStreetNumber(String streetNumber) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            if (FieldValidator.isStreetNumber(streetNumber)) {
+                String old = this.streetNumber;
+                this.streetNumber = intern(streetNumber.trim());
+                fireChanged(Field.НОМЕР_ДОМА, old, this.streetNumber);
+            }
+            else {
+                throw new IllegalArgumentException(FieldValidator.INVALID_STREET_NUMBER);
+            }
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public String getStreetName() {
+        return streetName;
+    }
+
+    public final void setStreetName(String streetName) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            if (FieldValidator.isAddressPart(streetName)) {
+                String old = this.streetName;
+                this.streetName = intern(streetName.trim());
+                fireChanged(Field.УЛИЦА, old, this.streetName);
+            }
+            else {
+                throw new IllegalArgumentException(FieldValidator.INVALID_STREET_NAME);
+            }
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public String getSuburb() {
+        return suburb;
+    }
+
+    public final void setSuburb(String suburb) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            if (FieldValidator.isAddressPart(suburb)) {
+                String old = this.suburb;
+                this.suburb = intern(suburb.trim());
+                fireChanged(Field.НАСЕЛЁННЫЙ_ПУНКТ, old, this.suburb);
+            }
+            else {
+                throw new IllegalArgumentException(FieldValidator.INVALID_SUBURB);
+            }
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public String getPostCode() {
+        return postCode;
+    }
+
+    public final void setPostCode(String postCode) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            if (FieldValidator.isAddressPart(postCode)) {
+                String old = this.postCode;
+                this.postCode = intern(postCode.trim());
+                fireChanged(Field.ИНДЕКС, old, this.postCode);
+            }
+            else {
+                throw new IllegalArgumentException(FieldValidator.INVALID_POST_CODE);
+            }
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,243 @@
+package familytree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Индекс адресов членов семьи древа. Одинаковые адреса членов семьи древа
+ * заменяются одним каноническим экземпляром Address, поэтому одно домохозяйство
+ * хранится одним объектом, а его жильцы находятся по этому объекту без обхода
+ * древа. Адреса дополнительно сгруппированы по населённому пункту (без учёта
+ * регистра, как имена в NameIndex) и по почтовому индексу.
+ * <p>
+ * Индекс обновляется самим древом при добавлении членов семьи, смене адреса
+ * через setAddress и правке полей адреса его сеттерами. Сеттер меняет адрес
+ * сразу всех его жильцов; если после правки адрес совпал с другим адресом
+ * древа, оба экземпляра остаются в индексе как разные домохозяйства до тех
+ * пор, пока жильцы одного из них не получат новый адрес через setAddress.
+ */
+public class AddressIndex {
+
+    private final HashMap<Key, Address> canonical = new HashMap<>();
+    private final IdentityHashMap<Address, ArrayList<FamilyMember>> residents = new IdentityHashMap<>();
+    private final HashMap<String, LinkedHashSet<Address>> suburbs = new HashMap<>();
+    private final HashMap<String, LinkedHashSet<Address>> postCodes = new HashMap<>();
+
+    /**
+     * Значение адреса, по которому ищется его канонический экземпляр
+     */
+    private static final class Key {
+        private final String streetNumber;
+        private final String streetName;
+        private final String suburb;
+        private final String postCode;
+
+        Key(String streetNumber, String streetName, String suburb, String postCode) {
+            this.streetNumber = streetNumber;
+            this.streetName = streetName;
+            this.suburb = suburb;
+            this.postCode = postCode;
+        }
+
+        static Key of(Address address) {
+            return new Key(address.getStreetNumber(), address.getStreetName(), address.getSuburb(), address.getPostCode());
+        }
+
+        /**
+         * вернуть ключ адреса, каким он был до изменения поля field
+         */
+        static Key before(Address address, Address.Field field, String oldValue) {
+            switch (field) {
+                case НОМЕР_ДОМА:
+                    return new Key(oldValue, address.getStreetName(), address.getSuburb(), address.getPostCode());
+                case УЛИЦА:
+                    return new Key(address.getStreetNumber(), oldValue, address.getSuburb(), address.getPostCode());
+                case НАСЕЛЁННЫЙ_ПУНКТ:
+                    return new Key(address.getStreetNumber(), address.getStreetName(), oldValue, address.getPostCode());
+                default:
+                    return new Key(address.getStreetNumber(), address.getStreetName(), address.getSuburb(), oldValue);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(streetNumber, key.streetNumber) && Objects.equals(streetName, key.streetName)
+                    && Objects.equals(suburb, key.suburb) && Objects.equals(postCode, key.postCode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(streetNumber, streetName, suburb, postCode);
+        }
+    }
+
+    /**
+     * Приводит почтовый индекс к виду, в котором он хранится в индексе
+     */
+    private static String normalizePostCode(String postCode) {
+        return postCode.trim();
+    }
+
+    /**
+     * вернуть членов семьи, проживающих по указанному адресу
+     */
+    public List<FamilyMember> getResidents(Address address) {
+        ArrayList<FamilyMember> list = residents.get(address);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * вернуть число различных адресов (домохозяйств) в древе
+     */
+    public int getAddressCount() {
+        return residents.size();
+    }
+
+    /**
+     * вернуть адреса (домохозяйства) в указанном населённом пункте в порядке их появления в древе
+     */
+    public List<Address> findAddressesBySuburb(String suburb) {
+        return lookup(suburbs, NameIndex.normalize(suburb));
+    }
+
+    /**
+     * вернуть адреса (домохозяйства) с указанным почтовым индексом в порядке их появления в древе
+     */
+    public List<Address> findAddressesByPostCode(String postCode) {
+        return lookup(postCodes, normalizePostCode(postCode));
+    }
+
+    /**
+     * вернуть членов семьи, проживающих в указанном населённом пункте, сгруппированных по адресам
+     */
+    public List<FamilyMember> findResidentsBySuburb(String suburb) {
+        return residentsOf(findAddressesBySuburb(suburb));
+    }
+
+    /**
+     * вернуть членов семьи с указанным почтовым индексом, сгруппированных по адресам
+     */
+    public List<FamilyMember> findResidentsByPostCode(String postCode) {
+        return residentsOf(findAddressesByPostCode(postCode));
+    }
+
+    private List<FamilyMember> residentsOf(List<Address> addresses) {
+        ArrayList<FamilyMember> result = new ArrayList<>();
+        for (Address address : addresses) {
+            result.addAll(residents.get(address));
+        }
+        return result;
+    }
+
+    private static List<Address> lookup(HashMap<String, LinkedHashSet<Address>> map, String key) {
+        LinkedHashSet<Address> set = map.get(key);
+        if (set == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(set);
+    }
+
+    /**
+     * вернуть адрес древа, равный address по всем полям, или сам address,
+     * если такого адреса в древе ещё нет
+     */
+    Address canonical(Address address) {
+        if (address == null) {
+            return null;
+        }
+        Address existing = canonical.get(Key.of(address));
+        return existing != null ? existing : address;
+    }
+
+    void add(FamilyMember member) {
+        addResident(member.getAddress(), member);
+    }
+
+    /**
+     * Переносит члена семьи от прежнего адреса к новому
+     */
+    void moved(FamilyMember member, Address oldAddress) {
+        removeResident(oldAddress, member);
+        addResident(member.getAddress(), member);
+    }
+
+    /**
+     * Переносит адрес, изменённый сеттером, к записям его новых значений
+     */
+    void changed(Address address, Address.Field field, String oldValue) {
+        if (!residents.containsKey(address)) {
+            return;
+        }
+        Key oldKey = Key.before(address, field, oldValue);
+        if (canonical.get(oldKey) == address) {
+            canonical.remove(oldKey);
+        }
+        canonical.putIfAbsent(Key.of(address), address);
+        if (field == Address.Field.НАСЕЛЁННЫЙ_ПУНКТ) {
+            remove(suburbs, NameIndex.normalize(oldValue), address);
+            put(suburbs, NameIndex.normalize(address.getSuburb()), address);
+        }
+        else if (field == Address.Field.ИНДЕКС) {
+            remove(postCodes, normalizePostCode(oldValue), address);
+            put(postCodes, normalizePostCode(address.getPostCode()), address);
+        }
+    }
+
+    private void addResident(Address address, FamilyMember member) {
+        if (address == null) {
+            return;
+        }
+        ArrayList<FamilyMember> list = residents.get(address);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            residents.put(address, list);
+            canonical.putIfAbsent(Key.of(address), address);
+            put(suburbs, NameIndex.normalize(address.getSuburb()), address);
+            put(postCodes, normalizePostCode(address.getPostCode()), address);
+        }
+        list.add(member);
+    }
+
+    private void removeResident(Address address, FamilyMember member) {
+        ArrayList<FamilyMember> list = address == null ? null : residents.get(address);
+        if (list == null) {
+            return;
+        }
+        list.remove(member);
+        if (list.isEmpty()) {
+            residents.remove(address);
+            Key key = Key.of(address);
+            if (canonical.get(key) == address) {
+                canonical.remove(key);
+            }
+            remove(suburbs, NameIndex.normalize(address.getSuburb()), address);
+            remove(postCodes, normalizePostCode(address.getPostCode()), address);
+        }
+    }
+
+    private static void put(HashMap<String, LinkedHashSet<Address>> map, String key, Address address) {
+        map.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(address);
+    }
+
+    private static void remove(HashMap<String, LinkedHashSet<Address>> map, String key, Address address) {
+        LinkedHashSet<Address> set = map.get(key);
+        if (set != null) {
+            set.remove(address);
+            if (set.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package familytree;
+
+public class Assignment2 {
+
+    /**
+     * Без параметров запускает графический интерфейс, с параметрами выполняет
+     * команду пакетного режима FamilyTreeCli и завершается, не загружая AWT
+     */
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(FamilyTreeCli.run(args, System.out, System.err));
+        }
+        TreeGUI treeGUI = new TreeGUI();
+    }
+}
@@ -0,0 +1,483 @@
+package familytree;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений генеалогического древа, хранящийся рядом с файлом древа (*.ftj).
+ * Журнал слушает изменения древа и записывает каждое из них компактной записью
+ * в память. При сохранении накопленные записи дописываются в конец журнала одним
+ * пакетом с контрольной суммой, поэтому стоимость сохранения зависит от размера правки,
+ * а не от размера древа. Когда журнал становится слишком большим относительно
+ * основного файла, древо сохраняется целиком, а журнал удаляется (уплотнение).
+ * При открытии файла записи журнала применяются поверх прочитанного снимка.
+ * Журнал записывает каждого добавленного члена семьи и каждую добавленную связь,
+ * и при воспроизведении связи восстанавливаются теми же методами, что и при правке.
+ * Член семьи, добавленный вместе с уже связанными с ним новыми родственниками
+ * (целой веткой), так не восстанавливается, поэтому тогда требуется полное сохранение.
+ * Журнал привязан к основному файлу по его размеру и времени изменения;
+ * журнал от другой версии основного файла игнорируется.
+ */
+public class ChangeJournal implements FamilyTreeListener {
+
+    public static final String EXTENSION = ".ftj";
+
+    private static final int MAGIC = 0x46544A4E; // "FTJN"
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+    private static final int OP_MEMBER = 1;
+    private static final int OP_FIELD = 2;
+    private static final int OP_ADDRESS = 3;
+    private static final int OP_ADDRESS_FIELD = 4;
+    private static final int OP_RELATIVE = 5;
+    private static final int OP_ROOT = 6;
+
+    private final FamilyTree tree;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(pending);
+    private int pendingEntries;
+    private boolean snapshotRequired;
+
+    /**
+     * Создаёт журнал и подписывает его на изменения древа
+     * @param tree древо, изменения которого нужно записывать
+     */
+    public ChangeJournal(FamilyTree tree) {
+        this.tree = tree;
+        tree.addFamilyTreeListener(this);
+    }
+
+    /**
+     * вернуть файл журнала для указанного файла древа
+     */
+    public static File journalFile(File base) {
+        String name = base.getName();
+        if (name.endsWith(".ft")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        return new File(base.getAbsoluteFile().getParentFile(), name + EXTENSION);
+    }
+
+    public boolean hasPendingChanges() {
+        return pendingEntries > 0 || snapshotRequired;
+    }
+
+    /**
+     * Отказывается от накопленных записей, например после полного сохранения древа
+     */
+    public void clear() {
+        pending.reset();
+        pendingEntries = 0;
+        snapshotRequired = false;
+    }
+
+    /**
+     * Требует, чтобы следующее сохранение записало древо целиком
+     * (например, если основной файл в старом формате)
+     */
+    public void requireSnapshot() {
+        snapshotRequired = true;
+    }
+
+    /**
+     * Проверяет, нужно ли вместо дописывания журнала сохранить древо целиком
+     * @param base основной файл древа
+     */
+    public boolean needsCompaction(File base) throws IOException {
+        if (snapshotRequired || !base.exists()) {
+            return true;
+        }
+        File journal = journalFile(base);
+        long size = pending.size();
+        if (journal.exists()) {
+            if (!matchesBase(journal, base)) {
+                return true;
+            }
+            size += journal.length();
+        }
+        return size > Math.max(COMPACT_MIN_BYTES, base.length() / 2);
+    }
+
+    /**
+     * Дописывает накопленные изменения в журнал основного файла
+     * @param base основной файл древа
+     */
+    public void commit(File base) throws IOException {
+        if (pendingEntries == 0) {
+            return;
+        }
+        File journal = journalFile(base);
+        boolean append = journal.exists() && matchesBase(journal, base);
+        byte[] batch = pending.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(batch);
+
+        try (FileOutputStream fos = new FileOutputStream(journal, append)) {
+            DataOutputStream data = new DataOutputStream(fos);
+            if (!append) {
+                data.writeInt(MAGIC);
+                data.writeLong(base.length());
+                data.writeLong(base.lastModified());
+            }
+            data.writeInt(batch.length);
+            data.write(batch);
+            data.writeInt((int) crc.getValue());
+            data.flush();
+            fos.getFD().sync();
+        }
+        clear();
+    }
+
+    /**
+     * Удаляет журнал основного файла, например после его полной перезаписи
+     * @param base основной файл древа
+     */
+    public static void discard(File base) throws IOException {
+        File journal = journalFile(base);
+        if (journal.exists() && !journal.delete()) {
+            throw new IOException("Не удалось удалить журнал " + journal.getPath());
+        }
+    }
+
+    /**
+     * Применяет к древу записи журнала основного файла. Повреждённый или
+     * недописанный пакет и все пакеты после него отбрасываются. Запись, которую
+     * не принимают методы членов семьи (недопустимое значение, несуществующий
+     * член семьи), неизвестная или не соответствующая древу запись останавливает
+     * воспроизведение так же; уже применённые записи остаются в древе
+     * @param tree древо, только что прочитанное из основного файла
+     * @param base основной файл древа
+     * @return true, если журнала нет или он применён целиком; иначе следующее
+     *         сохранение должно записать древо целиком, см. requireSnapshot
+     */
+    public static boolean replay(FamilyTree tree, File base) throws IOException {
+        File journal = journalFile(base);
+        if (!journal.exists() || !matchesBase(journal, base)) {
+            return true;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            in.skipBytes(4 + 8 + 8);
+            while (true) {
+                int first = in.read();
+                if (first < 0) {
+                    // журнал кончился ровно на границе пакета
+                    return true;
+                }
+                byte[] batch;
+                try {
+                    int length = (first << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+                    if (length < 0 || length > journal.length()) {
+                        return false;
+                    }
+                    batch = new byte[length];
+                    in.readFully(batch);
+                    CRC32 crc = new CRC32();
+                    crc.update(batch);
+                    if (in.readInt() != (int) crc.getValue()) {
+                        return false;
+                    }
+                }
+                catch (EOFException ex) {
+                    return false;
+                }
+                DataInputStream entries = new DataInputStream(new ByteArrayInputStream(batch));
+                try {
+                    while (entries.available() > 0) {
+                        apply(tree, entries);
+                    }
+                }
+                catch (IllegalArgumentException | IndexOutOfBoundsException | EOFException ex) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private static boolean matchesBase(File journal, File base) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journal))) {
+            return in.readInt() == MAGIC && in.readLong() == base.length() && in.readLong() == base.lastModified();
+        }
+        catch (EOFException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Применяет одну запись журнала через обычные методы членов семьи.
+     * Запись проверяется до изменения древа, насколько это возможно
+     * @throws IllegalArgumentException если запись не подходит к древу, неизвестна или значение недопустимо
+     * @throws IndexOutOfBoundsException если в записи нет такого члена семьи или поля
+     * @throws EOFException если запись обрывается раньше конца пакета
+     */
+    private static void apply(FamilyTree tree, DataInputStream in) throws IOException {
+        int op = in.readUnsignedByte();
+        switch (op) {
+            case OP_MEMBER: {
+                int id = in.readInt();
+                String firstName = readString(in);
+                String lastName = readString(in);
+                String maidenName = readString(in);
+                FamilyMember.Gender gender = FamilyMember.Gender.values()[in.readUnsignedByte()];
+                Address address = readAddress(in);
+                if (id != tree.getMemberCount()) {
+                    throw new IllegalArgumentException("Журнал не соответствует файлу древа");
+                }
+                FamilyMember member = new FamilyMember(firstName, lastName, gender, address, readString(in));
+                member.setMaidenName(maidenName);
+                tree.register(member);
+                return;
+            }
+            case OP_FIELD: {
+                FamilyMember member = tree.getMember(in.readInt());
+                FamilyMember.Field field = FamilyMember.Field.values()[in.readUnsignedByte()];
+                String value = readString(in);
+                switch (field) {
+                    case ИМЯ:
+                        member.setFirstName(value);
+                        return;
+                    case ФАМИЛИЯ:
+                        member.setLastName(value);
+                        return;
+                    case ДЕВИЧЬЯ_ФАМИЛИЯ:
+                        member.setMaidenName(value);
+                        return;
+                    case ПОЛ:
+                        if (value == null) {
+                            throw new IllegalArgumentException("Пол не указан");
+                        }
+                        member.setGender(FamilyMember.Gender.valueOf(value));
+                        return;
+                    case ОПИСАНИЕ:
+                        member.setLifeDescription(value);
+                        return;
+                    default:
+                        throw new IllegalArgumentException("Недопустимое поле в журнале: " + field);
+                }
+            }
+            case OP_ADDRESS:
+                tree.getMember(in.readInt()).setAddress(readAddress(in));
+                return;
+            case OP_ADDRESS_FIELD: {
+                // запись сделана для каждого жильца, а при загрузке древа его адрес мог
+                // оказаться общим и с другими членами семьи, поэтому поле меняется
+                // в копии адреса только у этого жильца
+                FamilyMember member = tree.getMember(in.readInt());
+                Address address = member.getAddress();
+                if (address == null) {
+                    throw new IllegalArgumentException("У члена семьи нет адреса");
+                }
+                Address.Field field = Address.Field.values()[in.readUnsignedByte()];
+                String value = readString(in);
+                String streetNumber = field == Address.Field.НОМЕР_ДОМА ? value : address.getStreetNumber();
+                String streetName = field == Address.Field.УЛИЦА ? value : address.getStreetName();
+                String suburb = field == Address.Field.НАСЕЛЁННЫЙ_ПУНКТ ? value : address.getSuburb();
+                String postCode = field == Address.Field.ИНДЕКС ? value : address.getPostCode();
+                member.setAddress(new Address(streetNumber, streetName, suburb, postCode));
+                return;
+            }
+            case OP_RELATIVE: {
+                FamilyMember member = tree.getMember(in.readInt());
+                FamilyMember.RelativeType type = FamilyMember.RelativeType.values()[in.readUnsignedByte()];
+                member.addRelative(type, tree.getMember(in.readInt()));
+                return;
+            }
+            case OP_ROOT: {
+                int id = in.readInt();
+                tree.setRoot(id < 0 ? null : tree.getMember(id));
+                return;
+            }
+            default:
+                throw new IllegalArgumentException("Неизвестная запись журнала: " + op);
+        }
+    }
+
+    @Override
+    public void memberAdded(FamilyMember member) {
+        if (hasNewRelatives(member)) {
+            // связи внутри добавленной целиком ветки через журнал не воспроизводятся
+            snapshotRequired = true;
+        }
+        try {
+            out.writeByte(OP_MEMBER);
+            out.writeInt(member.getId());
+            writeString(member.getFirstName());
+            writeString(member.getLastName());
+            writeString(member.getMaidenName());
+            out.writeByte(member.getGender().ordinal());
+            writeAddress(member.getAddress());
+            writeString(member.getLifeDescription());
+            pendingEntries++;
+        }
+        catch (IOException ex) {
+            snapshotRequired = true;
+        }
+    }
+
+    @Override
+    public void memberChanged(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+        try {
+            if (field == FamilyMember.Field.АДРЕС) {
+                out.writeByte(OP_ADDRESS);
+                out.writeInt(member.getId());
+                writeAddress(member.getAddress());
+            }
+            else {
+                out.writeByte(OP_FIELD);
+                out.writeInt(member.getId());
+                out.writeByte(field.ordinal());
+                switch (field) {
+                    case ИМЯ:
+                        writeString(member.getFirstName());
+                        break;
+                    case ФАМИЛИЯ:
+                        writeString(member.getLastName());
+                        break;
+                    case ДЕВИЧЬЯ_ФАМИЛИЯ:
+                        writeString(member.getMaidenName());
+                        break;
+                    case ПОЛ:
+                        writeString(member.getGender().name());
+                        break;
+                    default:
+                        writeString(member.getLifeDescription());
+                        break;
+                }
+            }
+            pendingEntries++;
+        }
+        catch (IOException ex) {
+            snapshotRequired = true;
+        }
+    }
+
+    @Override
+    public void addressChanged(Address address, Address.Field field, String oldValue) {
+        String value;
+        switch (field) {
+            case НОМЕР_ДОМА:
+                value = address.getStreetNumber();
+                break;
+            case УЛИЦА:
+                value = address.getStreetName();
+                break;
+            case НАСЕЛЁННЫЙ_ПУНКТ:
+                value = address.getSuburb();
+                break;
+            default:
+                value = address.getPostCode();
+                break;
+        }
+        try {
+            for (FamilyMember member : tree.getResidents(address)) {
+                out.writeByte(OP_ADDRESS_FIELD);
+                out.writeInt(member.getId());
+                out.writeByte(field.ordinal());
+                writeString(value);
+                pendingEntries++;
+            }
+        }
+        catch (IOException ex) {
+            snapshotRequired = true;
+        }
+    }
+
+    /**
+     * Проверяет, связан ли только что добавленный член семьи с родственниками,
+     * которых ещё нет в древе. Связи с членами древа появляются только через
+     * addRelative, который добавляет нового члена семьи сразу, и журнал их
+     * записывает; связи с ещё не добавленными родственниками записаны не будут
+     */
+    private boolean hasNewRelatives(FamilyMember member) {
+        if (isNew(member.getFather()) || isNew(member.getMother()) || isNew(member.getSpouse())) {
+            return true;
+        }
+        for (FamilyMember child : member.getChildren()) {
+            if (isNew(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isNew(FamilyMember relative) {
+        return relative != null && relative.getTree() != tree;
+    }
+
+    @Override
+    public void relativeAdded(FamilyMember member, FamilyMember.RelativeType type, FamilyMember relative) {
+        try {
+            out.writeByte(OP_RELATIVE);
+            out.writeInt(member.getId());
+            out.writeByte(type.ordinal());
+            out.writeInt(relative.getId());
+            pendingEntries++;
+        }
+        catch (IOException ex) {
+            snapshotRequired = true;
+        }
+    }
+
+    @Override
+    public void rootChanged(FamilyMember root) {
+        try {
+            out.writeByte(OP_ROOT);
+            out.writeInt(root == null ? -1 : root.getId());
+            pendingEntries++;
+        }
+        catch (IOException ex) {
+            snapshotRequired = true;
+        }
+    }
+
+    private void writeAddress(Address address) throws IOException {
+        if (address == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        writeString(address.getStreetNumber());
+        writeString(address.getStreetName());
+        writeString(address.getSuburb());
+        writeString(address.getPostCode());
+    }
+
+    private static Address readAddress(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new Address(readString(in), readString(in), readString(in), readString(in));
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new EOFException("Строка длиннее записи журнала");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
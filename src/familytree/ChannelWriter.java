@@ -0,0 +1,134 @@
+package familytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись текста в UTF-8 прямо в канал через буферы постоянного размера.
+ * Символы копируются в массив символов, который при заполнении кодируется
+ * в байтовый буфер, а тот записывается в канал, поэтому текст не собирается
+ * в промежуточные строки и расход памяти не зависит от объёма вывода.
+ * Канал должен быть блокирующим. Экземпляр не потокобезопасен.
+ */
+final class ChannelWriter {
+
+    private static final int CHAR_BUFFER_SIZE = 8192;
+    private static final int BYTE_BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final char[] chars = new char[CHAR_BUFFER_SIZE];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+    private int length;
+
+    ChannelWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    ChannelWriter write(char c) throws IOException {
+        if (length == chars.length) {
+            encode(false);
+        }
+        chars[length++] = c;
+        return this;
+    }
+
+    ChannelWriter write(String s) throws IOException {
+        return write(s, 0, s.length());
+    }
+
+    /**
+     * Записывает часть строки с from до to (не включая)
+     */
+    ChannelWriter write(String s, int from, int to) throws IOException {
+        while (from < to) {
+            if (length == chars.length) {
+                encode(false);
+            }
+            int n = Math.min(chars.length - length, to - from);
+            s.getChars(from, from + n, chars, length);
+            length += n;
+            from += n;
+        }
+        return this;
+    }
+
+    /**
+     * Записывает десятичное представление числа без создания строки
+     */
+    ChannelWriter write(int value) throws IOException {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                return write(Integer.toString(value));
+            }
+            write('-');
+            value = -value;
+        }
+        if (chars.length - length < 10) {
+            encode(false);
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    ChannelWriter newLine() throws IOException {
+        return write('\n');
+    }
+
+    /**
+     * Кодирует и записывает в канал весь накопленный текст. Канал не закрывается
+     */
+    void finish() throws IOException {
+        encode(true);
+        while (encoder.flush(bytes).isOverflow()) {
+            drain();
+        }
+        drain();
+        encoder.reset();
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        charBuffer.limit(length).position(0);
+        while (true) {
+            CoderResult result = encoder.encode(charBuffer, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            }
+            else if (result.isUnderflow()) {
+                break;
+            }
+            else {
+                result.throwException();
+            }
+        }
+        // незакодированный остаток (половина суррогатной пары) переносится в начало
+        int rest = charBuffer.remaining();
+        System.arraycopy(chars, charBuffer.position(), chars, 0, rest);
+        length = rest;
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
@@ -0,0 +1,65 @@
+package familytree;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Список детей члена семьи в порядке добавления. Наряду со списком хранит
+ * множество детей, поэтому проверка contains выполняется за O(1), а не перебором.
+ * Снаружи список доступен только для чтения; добавлять детей может только FamilyMember.
+ */
+public final class ChildList extends AbstractList<FamilyMember> implements RandomAccess {
+
+    private final ArrayList<FamilyMember> order;
+    private final Set<FamilyMember> members;
+
+    ChildList() {
+        this(0);
+    }
+
+    ChildList(int capacity) {
+        this.order = new ArrayList<>(capacity);
+        this.members = Collections.newSetFromMap(new IdentityHashMap<>(Math.max(capacity, 2)));
+    }
+
+    @Override
+    public FamilyMember get(int index) {
+        return order.get(index);
+    }
+
+    @Override
+    public int size() {
+        return order.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return members.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return members.contains(o) ? order.indexOf(o) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return members.contains(o) ? order.lastIndexOf(o) : -1;
+    }
+
+    /**
+     * Добавляет ребёнка в конец списка, если его там ещё нет
+     * @return true, если ребёнок добавлен
+     */
+    boolean append(FamilyMember child) {
+        if (!members.add(child)) {
+            return false;
+        }
+        order.add(child);
+        return true;
+    }
+}
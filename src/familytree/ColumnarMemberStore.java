@@ -0,0 +1,418 @@
+package familytree;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Неизменяемое хранилище членов семьи по столбцам - альтернатива графу объектов
+ * FamilyMember для анализа больших древ. Член семьи задаётся идентификатором,
+ * а его поля лежат в массивах примитивов:
+ * о имена, фамилии и девичьи фамилии - коды словаря имён
+ * о адрес - код в таблице различных адресов, каждая часть которых - код словаря мест
+ * о описание - код словаря описаний
+ * о пол - байт
+ * о отец, мать и супруг - идентификаторы, MemberRecord.NONE если их нет
+ * о дети - в формате CSR: дети члена семьи id лежат в общем массиве
+ * с позиции childStart[id] до childStart[id + 1]
+ * Поэтому обход всего древа - линейный проход по нескольким массивам без
+ * разыменования объектов, а на члена семьи приходится около 45 байт.
+ *
+ * Хранилище строится по снимку древа или читается прямо из файла .ft без
+ * построения объектов. Методы доступа повторяют методы FamilyMember и MemberRecord.
+ */
+public final class ColumnarMemberStore {
+
+    private static final int PROGRESS_STEP = 4096;
+    private static final int NONE = MemberRecord.NONE;
+
+    private final int count;
+    private final int rootId;
+
+    private final String[] names;
+    private final String[] places;
+    private final String[] descriptions;
+
+    private final int[] firstName;
+    private final int[] lastName;
+    private final int[] maidenName;
+    private final int[] description;
+    private final byte[] gender;
+    private final int[] address;
+    /**
+     * По четыре кода словаря мест на адрес: номер дома, улица, населённый пункт, индекс
+     */
+    private final int[] addressParts;
+
+    private final int[] father;
+    private final int[] mother;
+    private final int[] spouse;
+    private final int[] childStart;
+    private final int[] children;
+
+    private ColumnarMemberStore(Builder builder, int rootId) {
+        this.count = builder.count;
+        this.rootId = rootId;
+        this.names = builder.names.toArray();
+        this.places = builder.places.toArray();
+        this.descriptions = builder.descriptions.toArray();
+        this.firstName = builder.firstName;
+        this.lastName = builder.lastName;
+        this.maidenName = builder.maidenName;
+        this.description = builder.description;
+        this.gender = builder.gender;
+        this.address = builder.address;
+        this.addressParts = Arrays.copyOf(builder.addressParts, builder.addressCount * 4);
+        this.father = builder.father;
+        this.mother = builder.mother;
+        this.spouse = builder.spouse;
+        this.childStart = builder.childStart;
+        this.children = Arrays.copyOf(builder.children, builder.childStart[count]);
+    }
+
+    /**
+     * Строит хранилище по согласованному снимку древа
+     */
+    public static ColumnarMemberStore of(FamilyTree tree) {
+        FamilyTree.Snapshot snapshot = tree.snapshot();
+        Builder builder = new Builder(snapshot.getMemberCount());
+        for (MemberRecord record : snapshot.getRecords()) {
+            builder.add(record);
+        }
+        return new ColumnarMemberStore(builder, snapshot.getRootId());
+    }
+
+    /**
+     * Читает хранилище из файла древа. Файлы двоичного формата читаются по записям
+     * без построения членов семьи; файлы старого формата читаются целиком
+     */
+    public static ColumnarMemberStore read(File file, TaskProgress progress) throws IOException {
+        int version;
+        try (FileInputStream in = new FileInputStream(file)) {
+            version = FamilyTreeCodec.readVersion(in);
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (version == 0) {
+                return of(FamilyTreeCodec.read(in, progress));
+            }
+            return read(in, progress);
+        }
+    }
+
+    /**
+     * Читает хранилище из потока в двоичном формате FamilyTreeCodec
+     * @param in поток с начала файла, не закрывается
+     * @param progress получатель хода чтения; при отмене бросается InterruptedIOException
+     */
+    public static ColumnarMemberStore read(InputStream in, TaskProgress progress) throws IOException {
+        FamilyTreeCodec.RecordReader reader = FamilyTreeCodec.openReader(in);
+        int count = reader.getCount();
+        Builder builder = new Builder(count);
+        for (int i = 0; i < count; i++) {
+            if (i % PROGRESS_STEP == 0) {
+                FamilyTreeCodec.report(progress, i, count);
+            }
+            builder.add(reader.read());
+        }
+        return new ColumnarMemberStore(builder, reader.getRootId());
+    }
+
+    public int getMemberCount() {
+        return count;
+    }
+
+    /**
+     * вернуть идентификатор корня или MemberRecord.NONE
+     */
+    public int getRootId() {
+        return rootId;
+    }
+
+    public String getFirstName(int id) {
+        return string(names, firstName[id]);
+    }
+
+    public String getLastName(int id) {
+        return string(names, lastName[id]);
+    }
+
+    public String getMaidenName(int id) {
+        return string(names, maidenName[id]);
+    }
+
+    public FamilyMember.Gender getGender(int id) {
+        return FamilyMember.Gender.values()[gender[id]];
+    }
+
+    public String getLifeDescription(int id) {
+        return string(descriptions, description[id]);
+    }
+
+    public boolean hasAddress(int id) {
+        return address[id] != NONE;
+    }
+
+    public String getStreetNumber(int id) {
+        return addressPart(id, 0);
+    }
+
+    public String getStreetName(int id) {
+        return addressPart(id, 1);
+    }
+
+    public String getSuburb(int id) {
+        return addressPart(id, 2);
+    }
+
+    public String getPostCode(int id) {
+        return addressPart(id, 3);
+    }
+
+    public int getFatherId(int id) {
+        return father[id];
+    }
+
+    public int getMotherId(int id) {
+        return mother[id];
+    }
+
+    public int getSpouseId(int id) {
+        return spouse[id];
+    }
+
+    public int numChildren(int id) {
+        return childStart[id + 1] - childStart[id];
+    }
+
+    public int getChildId(int id, int index) {
+        if (index < 0 || index >= numChildren(id)) {
+            throw new IndexOutOfBoundsException("Ребёнок " + index + " из " + numChildren(id));
+        }
+        return children[childStart[id] + index];
+    }
+
+    public boolean has(int id, FamilyMember.Attribute type) {
+        switch (type) {
+            case ОТЕЦ:
+                return father[id] != NONE;
+            case ДЕТИ:
+                return childStart[id + 1] != childStart[id];
+            case МАТЬ:
+                return mother[id] != NONE;
+            case СУПРУГ:
+                return spouse[id] != NONE;
+            case ДЕВИЧЬЯ_ФАМИЛИЯ:
+                return maidenName[id] != NONE && !names[maidenName[id]].isEmpty();
+            case РОДИТЕЛИ:
+                return father[id] != NONE || mother[id] != NONE;
+        }
+        return false;
+    }
+
+    /**
+     * вернуть запись о члене семьи, например для записи через FamilyTreeCodec.RecordWriter
+     */
+    public MemberRecord getRecord(int id) {
+        int[] childIds = Arrays.copyOfRange(children, childStart[id], childStart[id + 1]);
+        return new MemberRecord(id, getFirstName(id), getLastName(id), getMaidenName(id), getGender(id),
+                getStreetNumber(id), getStreetName(id), getSuburb(id), getPostCode(id), getLifeDescription(id),
+                father[id], mother[id], spouse[id], childIds);
+    }
+
+    /**
+     * вернуть код фамилии в словаре имён или MemberRecord.NONE
+     */
+    int getLastNameCode(int id) {
+        return lastName[id];
+    }
+
+    /**
+     * вернуть код населённого пункта в словаре мест или MemberRecord.NONE
+     */
+    int getSuburbCode(int id) {
+        return address[id] == NONE ? NONE : addressParts[address[id] * 4 + 2];
+    }
+
+    /**
+     * вернуть число различных имён и фамилий
+     */
+    int getNameCount() {
+        return names.length;
+    }
+
+    /**
+     * вернуть число различных частей адресов
+     */
+    int getPlaceCount() {
+        return places.length;
+    }
+
+    String getName(int code) {
+        return string(names, code);
+    }
+
+    String getPlace(int code) {
+        return string(places, code);
+    }
+
+    private String addressPart(int id, int part) {
+        return address[id] == NONE ? null : places[addressParts[address[id] * 4 + part]];
+    }
+
+    private static String string(String[] dictionary, int code) {
+        return code == NONE ? null : dictionary[code];
+    }
+
+    /**
+     * Словарь, выдающий строкам коды по порядку появления
+     */
+    private static final class Dictionary {
+        private final HashMap<String, Integer> codes = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        int code(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        String[] toArray() {
+            return values.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Заполняет столбцы по записям, поступающим в порядке идентификаторов.
+     * Одинаковые адреса находятся по хеш-таблице с открытой адресацией над
+     * кодами их частей, без создания объектов-ключей
+     */
+    private static final class Builder {
+        private final int count;
+        private int added;
+
+        private final Dictionary names = new Dictionary();
+        private final Dictionary places = new Dictionary();
+        private final Dictionary descriptions = new Dictionary();
+
+        private final int[] firstName;
+        private final int[] lastName;
+        private final int[] maidenName;
+        private final int[] description;
+        private final byte[] gender;
+        private final int[] address;
+        private int[] addressParts = new int[64];
+        private int addressCount;
+        // номер адреса + 1 или 0 для пустой ячейки
+        private int[] addressSlots = new int[64];
+
+        private final int[] father;
+        private final int[] mother;
+        private final int[] spouse;
+        private final int[] childStart;
+        private int[] children;
+
+        Builder(int count) {
+            this.count = count;
+            this.firstName = new int[count];
+            this.lastName = new int[count];
+            this.maidenName = new int[count];
+            this.description = new int[count];
+            this.gender = new byte[count];
+            this.address = new int[count];
+            this.father = new int[count];
+            this.mother = new int[count];
+            this.spouse = new int[count];
+            this.childStart = new int[count + 1];
+            this.children = new int[Math.max(16, count)];
+        }
+
+        void add(MemberRecord record) {
+            int id = added++;
+            if (record.getId() != id) {
+                throw new IllegalArgumentException("Ожидалась запись " + id + ", получена " + record.getId());
+            }
+            firstName[id] = names.code(record.getFirstName());
+            lastName[id] = names.code(record.getLastName());
+            maidenName[id] = names.code(record.getMaidenName());
+            description[id] = descriptions.code(record.getLifeDescription());
+            gender[id] = (byte) record.getGender().ordinal();
+            address[id] = record.hasAddress() ? addressCode(record) : NONE;
+            father[id] = record.getFatherId();
+            mother[id] = record.getMotherId();
+            spouse[id] = record.getSpouseId();
+
+            int start = childStart[id];
+            int end = start + record.numChildren();
+            if (end > children.length) {
+                children = Arrays.copyOf(children, Math.max(end, children.length + (children.length >> 1)));
+            }
+            for (int i = 0; i < record.numChildren(); i++) {
+                children[start + i] = record.getChildId(i);
+            }
+            childStart[id + 1] = end;
+        }
+
+        private int addressCode(MemberRecord record) {
+            int number = places.code(record.getStreetNumber());
+            int street = places.code(record.getStreetName());
+            int suburb = places.code(record.getSuburb());
+            int postCode = places.code(record.getPostCode());
+            int hash = ((number * 31 + street) * 31 + suburb) * 31 + postCode;
+            int mask = addressSlots.length - 1;
+            int slot = mix(hash) & mask;
+            while (addressSlots[slot] != 0) {
+                int at = (addressSlots[slot] - 1) * 4;
+                if (addressParts[at] == number && addressParts[at + 1] == street
+                        && addressParts[at + 2] == suburb && addressParts[at + 3] == postCode) {
+                    return addressSlots[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int code = addressCount++;
+            if (code * 4 + 4 > addressParts.length) {
+                addressParts = Arrays.copyOf(addressParts, addressParts.length * 2);
+            }
+            addressParts[code * 4] = number;
+            addressParts[code * 4 + 1] = street;
+            addressParts[code * 4 + 2] = suburb;
+            addressParts[code * 4 + 3] = postCode;
+            addressSlots[slot] = code + 1;
+            if (addressCount * 2 > addressSlots.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        private void rehash() {
+            addressSlots = new int[addressSlots.length * 2];
+            int mask = addressSlots.length - 1;
+            for (int code = 0; code < addressCount; code++) {
+                int at = code * 4;
+                int hash = ((addressParts[at] * 31 + addressParts[at + 1]) * 31 + addressParts[at + 2]) * 31
+                        + addressParts[at + 3];
+                int slot = mix(hash) & mask;
+                while (addressSlots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                addressSlots[slot] = code + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
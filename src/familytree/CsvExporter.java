@@ -0,0 +1,140 @@
+package familytree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Экспорт генеалогического древа в CSV (RFC 4180, UTF-8) двумя таблицами:
+ * члены семьи вместе с их адресами и родственные связи. Члены семьи обходятся
+ * один раз по реестру древа, строки сразу пишутся в канал через ChannelWriter,
+ * поэтому расход памяти не зависит от размера древа. Каждая таблица пишется
+ * под блокировкой чтения древа.
+ */
+public final class CsvExporter {
+
+    private static final int PROGRESS_STEP = 4096;
+    private static final String LINE_END = "\r\n";
+
+    private CsvExporter() {
+    }
+
+    /**
+     * вернуть файл родственных связей рядом с файлом членов семьи: «древо.csv» - «древо-relations.csv»
+     */
+    public static File relationsFile(File members) {
+        String path = members.getPath();
+        if (path.endsWith(".csv")) {
+            path = path.substring(0, path.length() - ".csv".length());
+        }
+        return new File(path + "-relations.csv");
+    }
+
+    /**
+     * Записывает таблицу членов семьи: идентификатор, имена, пол, адрес и описание
+     * @param channel блокирующий канал, не закрывается
+     * @param progress получатель хода записи; при отмене бросается InterruptedIOException
+     */
+    public static void writeMembers(FamilyTree tree, WritableByteChannel channel, TaskProgress progress)
+            throws IOException {
+        Lock lock = tree.readLock();
+        lock.lock();
+        try {
+            ChannelWriter out = new ChannelWriter(channel);
+            out.write("id,first_name,last_name,maiden_name,gender,street_number,street_name,suburb,post_code,life_description");
+            out.write(LINE_END);
+            int count = tree.getMemberCount();
+            for (int id = 0; id < count; id++) {
+                if (id % PROGRESS_STEP == 0) {
+                    FamilyTreeCodec.report(progress, id, count);
+                }
+                FamilyMember member = tree.getMember(id);
+                out.write(id).write(',');
+                writeField(out, member.getFirstName()).write(',');
+                writeField(out, member.getLastName()).write(',');
+                writeField(out, member.getMaidenName()).write(',');
+                writeField(out, member.getGender().name()).write(',');
+                Address address = member.getAddress();
+                if (address != null) {
+                    writeField(out, address.getStreetNumber()).write(',');
+                    writeField(out, address.getStreetName()).write(',');
+                    writeField(out, address.getSuburb()).write(',');
+                    writeField(out, address.getPostCode()).write(',');
+                }
+                else {
+                    out.write(",,,,");
+                }
+                writeField(out, member.getLifeDescription()).write(LINE_END);
+            }
+            out.finish();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает таблицу связей: для каждого члена семьи его отца, мать и супруга
+     * в виде строк member_id, relative_id, relation (ОТЕЦ, МАТЬ, СУПРУГ).
+     * Дети в таблицу не входят, так как они следуют из ссылок на родителей
+     * @param channel блокирующий канал, не закрывается
+     * @param progress получатель хода записи; при отмене бросается InterruptedIOException
+     */
+    public static void writeRelationships(FamilyTree tree, WritableByteChannel channel, TaskProgress progress)
+            throws IOException {
+        Lock lock = tree.readLock();
+        lock.lock();
+        try {
+            ChannelWriter out = new ChannelWriter(channel);
+            out.write("member_id,relative_id,relation").write(LINE_END);
+            int count = tree.getMemberCount();
+            for (int id = 0; id < count; id++) {
+                if (id % PROGRESS_STEP == 0) {
+                    FamilyTreeCodec.report(progress, id, count);
+                }
+                FamilyMember member = tree.getMember(id);
+                writeRelation(out, id, member.getFather(), FamilyMember.RelativeType.ОТЕЦ);
+                writeRelation(out, id, member.getMother(), FamilyMember.RelativeType.МАТЬ);
+                writeRelation(out, id, member.getSpouse(), FamilyMember.RelativeType.СУПРУГ);
+            }
+            out.finish();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeRelation(ChannelWriter out, int id, FamilyMember relative, FamilyMember.RelativeType type)
+            throws IOException {
+        if (relative != null) {
+            out.write(id).write(',').write(relative.getId()).write(',').write(type.name()).write(LINE_END);
+        }
+    }
+
+    /**
+     * Записывает значение поля, заключая его в кавычки, если оно содержит
+     * запятую, кавычку или перевод строки; null записывается пустым полем
+     */
+    private static ChannelWriter writeField(ChannelWriter out, String value) throws IOException {
+        if (value == null) {
+            return out;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return out.write(value);
+        }
+        out.write('"');
+        int from = 0;
+        int at;
+        while ((at = value.indexOf('"', from)) >= 0) {
+            out.write(value, from, at + 1).write('"');
+            from = at + 1;
+        }
+        return out.write(value, from, value.length()).write('"');
+    }
+}
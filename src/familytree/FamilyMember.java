@@ -0,0 +1,658 @@
+package familytree;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+
+
+public class FamilyMember implements Serializable {
+    private static final long serialVersionUID = -1229178622973571571L;
+
+    /**
+     * Поля в сериализованном виде старого формата, где дети хранились в ArrayList
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("firstName", String.class),
+            new ObjectStreamField("lastName", String.class),
+            new ObjectStreamField("maidenName", String.class),
+            new ObjectStreamField("gender", Gender.class),
+            new ObjectStreamField("address", Address.class),
+            new ObjectStreamField("lifeDescription", String.class),
+            new ObjectStreamField("nameRegex", String.class),
+            new ObjectStreamField("mother", FamilyMember.class),
+            new ObjectStreamField("father", FamilyMember.class),
+            new ObjectStreamField("spouse", FamilyMember.class),
+            new ObjectStreamField("children", ArrayList.class),
+    };
+
+    @Override
+    public String toString() {
+        String s = null;
+        if (this.gender == Gender.МУЖСКОЙ) {
+            s = "♂ ";
+        }
+        else if (this.gender == Gender.ЖЕНСКИЙ) {
+            s = "♀ ";
+        }
+        s += this.getFirstName() + " " + this.getLastName();
+        if (this.has(Attribute.ДЕВИЧЬЯ_ФАМИЛИЯ)) {
+            s += " (" + this.getMaidenName() + ")";
+        }
+        return s;
+    }
+
+    /**
+     * Допустимые имена и фамилии. Поле было у каждого экземпляра и поэтому
+     * осталось в сериализованной форме старого формата; сами имена проверяет
+     * FieldValidator
+     */
+    private static final String NAME_REGEX = "^[\\p{L} .'-]+$";
+
+    public FamilyMember(String firstName, String lastName, Gender gender, Address address, String lifeDescription) {
+        this.setFirstName(firstName);
+        this.setLastName(lastName);
+        this.maidenName = "";
+        this.setGender(gender);
+        this.setAddress(address);
+        this.setLifeDescription(lifeDescription);
+
+        this.mother = null;
+        this.father = null;
+        this.spouse = null;
+        this.children = new ChildList();
+    }
+
+    private FamilyMember() {
+    }
+
+    /**
+     * Создаёт члена семьи из значений, которые уже проверены вызывающим кодом,
+     * без проверки в сеттерах. Используется при массовом импорте, где значения
+     * проверяются пакетами; родственники и список детей затем обязательно
+     * задаются через restoreRelatives
+     * @param gender пол или null, если он будет указан позже через setGender
+     */
+    static FamilyMember trusted(String firstName, String lastName, String maidenName, Gender gender,
+                                Address address, String lifeDescription) {
+        FamilyMember member = new FamilyMember();
+        member.firstName = firstName;
+        member.lastName = lastName;
+        member.maidenName = maidenName;
+        member.gender = gender;
+        member.address = address;
+        member.lifeDescription = lifeDescription;
+        return member;
+    }
+
+    private String firstName;
+    private String lastName;
+    private String maidenName;
+    private Gender gender;
+    private Address address;
+    private String lifeDescription;
+
+    private FamilyMember mother;
+    private FamilyMember father;
+    private FamilyMember spouse;
+    private ChildList children;
+
+    private transient FamilyTree tree;
+    private transient int id = -1;
+
+    private transient int descendantCount;
+    private transient int maleDescendants;
+    private transient int femaleDescendants;
+    private transient int generationsBelow;
+    // список детей из файла старого формата, ещё не перенесённый в children
+    private transient ArrayList<?> legacyChildren;
+
+    public enum Attribute {
+        ОТЕЦ,
+        МАТЬ,
+        ДЕТИ,
+        СУПРУГ,
+        ДЕВИЧЬЯ_ФАМИЛИЯ,
+        РОДИТЕЛИ,
+    }
+
+    public enum RelativeType {
+        ОТЕЦ,
+        МАТЬ,
+        РЕБЁНОК,
+        СУПРУГ,
+    }
+
+    public enum Gender {
+        МУЖСКОЙ,
+        ЖЕНСКИЙ,
+    }
+
+    /**
+     * Поля члена семьи, об изменении которых сообщается слушателям древа
+     */
+    public enum Field {
+        ИМЯ,
+        ФАМИЛИЯ,
+        ДЕВИЧЬЯ_ФАМИЛИЯ,
+        ПОЛ,
+        АДРЕС,
+        ОПИСАНИЕ,
+    }
+
+    /**
+     * вернуть идентификатор члена семьи в древе или -1, если он ещё не добавлен в древо
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * вернуть древо, которому принадлежит член семьи, или null
+     */
+    public FamilyTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Привязывает члена семьи к древу. Вызывается только из FamilyTree
+     */
+    void attach(FamilyTree tree, int id) {
+        this.tree = tree;
+        this.id = id;
+        this.firstName = intern(this.firstName);
+        this.lastName = intern(this.lastName);
+        this.maidenName = intern(this.maidenName);
+        if (this.address != null) {
+            this.address = tree.getAddressIndex().canonical(this.address);
+            this.address.attach(tree);
+        }
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public final void setFirstName(String firstName) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            if (FieldValidator.isName(firstName)) {
+                String old = this.firstName;
+                this.firstName = intern(firstName.trim());
+                fireChanged(Field.ИМЯ, old, this.firstName);
+            }
+            else {
+                throw new IllegalArgumentException(FieldValidator.INVALID_FIRST_NAME);
+            }
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public final void setLastName(String lastName) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            if (FieldValidator.isName(lastName)) {
+                String old = this.lastName;
+                this.lastName = intern(lastName.trim());
+                fireChanged(Field.ФАМИЛИЯ, old, this.lastName);
+            }
+            else {
+                throw new IllegalArgumentException(FieldValidator.INVALID_LAST_NAME);
+            }
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public String getMaidenName() {
+        return maidenName;
+    }
+
+    public void setMaidenName(String maidenName) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            String old = this.maidenName;
+            if (FieldValidator.isName(maidenName)) {
+                if (this.gender == Gender.ЖЕНСКИЙ) {
+                    this.maidenName = intern(maidenName.trim());
+                }
+                else {
+                    throw new IllegalArgumentException(FieldValidator.MAIDEN_NAME_NOT_FEMALE);
+                }
+
+            }
+            else if (maidenName.isEmpty()) {
+                this.maidenName = "";
+            }
+            else {
+                throw new IllegalArgumentException(FieldValidator.INVALID_MAIDEN_NAME);
+            }
+            fireChanged(Field.ДЕВИЧЬЯ_ФАМИЛИЯ, old, this.maidenName);
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public Gender getGender() {
+        return gender;
+    }
+
+    public final void setGender(Gender gender) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            Gender old = this.gender;
+            this.gender = gender;
+            if (old != null && old != gender) {
+                SubtreeAggregates.genderChanged(this, old);
+            }
+            fireChanged(Field.ПОЛ, old, gender);
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public Address getAddress() {
+        return address;
+    }
+
+    public final void setAddress(Address address) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            Address old = this.address;
+            if (address != null && this.tree != null) {
+                // одинаковые адреса древа разделяют один экземпляр
+                this.address = this.tree.getAddressIndex().canonical(address);
+                this.address.attach(this.tree);
+            }
+            else {
+                this.address = address;
+            }
+            if (old != this.address) {
+                fireChanged(Field.АДРЕС, old, this.address);
+            }
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    public String getLifeDescription() {
+        return lifeDescription;
+    }
+
+    public final void setLifeDescription(String lifeDescription) {
+        Lock lock = FamilyTree.lockWrite(this.tree);
+        try {
+            String old = this.lifeDescription;
+            this.lifeDescription = lifeDescription;
+            fireChanged(Field.ОПИСАНИЕ, old, lifeDescription);
+        }
+        finally {
+            FamilyTree.unlock(lock);
+        }
+    }
+
+    /**
+     * Сообщает древу об изменении поля, если значение действительно изменилось
+     */
+    private void fireChanged(Field field, Object oldValue, Object newValue) {
+        if (this.tree != null && !Objects.equals(oldValue, newValue)) {
+            this.tree.memberChanged(this, field, oldValue);
+        }
+    }
+
+    /**
+     * вернуть канонический экземпляр строки из словаря древа
+     */
+    private String intern(String value) {
+        return this.tree != null ? this.tree.getStringDictionary().intern(value) : value;
+    }
+
+    /**
+     * вернуть древо, под блокировкой записи которого связывается этот член семьи
+     * с родственником: его собственное или, если он ещё не в древе, древо родственника
+     */
+    private FamilyTree owner(FamilyMember relative) {
+        return this.tree != null || relative == null ? this.tree : relative.tree;
+    }
+
+    /**
+     * Сообщает древу о новом родственнике. Если этот член семьи ещё не в древе,
+     * используется древо родственника
+     */
+    private void fireRelativeAdded(RelativeType type, FamilyMember relative) {
+        FamilyTree owner = owner(relative);
+        if (owner != null) {
+            owner.relativeAdded(this, type, relative);
+        }
+    }
+
+    public void addChild(FamilyMember child) {
+        FamilyTree.write(owner(child), () -> {
+            linkChild(child);
+            fireRelativeAdded(RelativeType.РЕБЁНОК, child);
+        });
+    }
+
+    private void linkChild(FamilyMember child) {
+
+        if (this.gender == Gender.МУЖСКОЙ) {
+            if (!child.has(Attribute.ОТЕЦ)) {
+                child.linkFather(this);
+            }
+            if (this.has(Attribute.СУПРУГ)) {
+                if (!child.has(Attribute.МАТЬ)) {
+                    child.linkMother(this.getSpouse());
+                }
+            }
+        }
+        else if (this.gender == Gender.ЖЕНСКИЙ) {
+            if (!child.has(Attribute.МАТЬ)) {
+                child.linkMother(this);
+            }
+            if (this.has(Attribute.СУПРУГ)) {
+                if (!child.has(Attribute.ОТЕЦ)) {
+                    child.linkFather(this.getSpouse());
+                }
+            }
+        }
+        this.children.append(child);
+    }
+
+    public int numChildren() {
+        return this.getChildren().size();
+    }
+
+    public FamilyMember getMother() {
+        return mother;
+    }
+
+    public void setMother(FamilyMember mother) {
+        FamilyTree.write(owner(mother), () -> {
+            linkMother(mother);
+            fireRelativeAdded(RelativeType.МАТЬ, mother);
+        });
+    }
+
+    private void linkMother(FamilyMember mother) {
+        if (!this.has(Attribute.МАТЬ)) {
+            if (mother.getGender() == Gender.ЖЕНСКИЙ) {
+                checkNotDescendant(mother);
+                mother.children.append(this);
+                this.mother = mother;
+                SubtreeAggregates.linked(mother, this, this.father);
+
+
+            }
+            else {
+                throw new IllegalArgumentException("Мать может быть только женского пола");
+            }
+
+        }
+        else {
+            throw new IllegalArgumentException("Мать уже добавлена");
+        }
+
+    }
+
+    public FamilyMember getFather() {
+        return father;
+    }
+
+    public void setFather(FamilyMember father) {
+        FamilyTree.write(owner(father), () -> {
+            linkFather(father);
+            fireRelativeAdded(RelativeType.ОТЕЦ, father);
+        });
+    }
+
+    private void linkFather(FamilyMember father) {
+        if (!this.has(Attribute.ОТЕЦ)) {
+            if (father.getGender() == Gender.МУЖСКОЙ) {
+                checkNotDescendant(father);
+                father.children.append(this);
+                this.father = father;
+                SubtreeAggregates.linked(father, this, this.mother);
+
+            }
+            else {
+                throw new IllegalArgumentException("Отец может быть только мужчиной");
+            }
+
+        }
+        else {
+            throw new IllegalArgumentException("Отец уже добавлен");
+        }
+
+    }
+
+    private void checkNotDescendant(FamilyMember parent) {
+        if (parent == this || SubtreeAggregates.isAncestor(this, parent)) {
+            throw new IllegalArgumentException("Потомок не может быть родителем своего предка");
+        }
+    }
+
+    public FamilyMember getSpouse() {
+        return spouse;
+    }
+
+    public void setSpouse(FamilyMember spouse) {
+        FamilyTree.write(owner(spouse), () -> {
+            linkSpouse(spouse);
+            fireRelativeAdded(RelativeType.СУПРУГ, spouse);
+        });
+    }
+
+    private void linkSpouse(FamilyMember spouse) {
+        if (!this.has(Attribute.СУПРУГ)) {
+            if (spouse.has(Attribute.СУПРУГ) && spouse.getSpouse() != this) {
+                // иначе связь стала бы односторонней
+                throw new IllegalArgumentException("Супруг уже существует");
+            }
+            if (spouse.getGender() != this.getGender()) {
+                this.spouse = spouse;
+                if (!this.getSpouse().has(Attribute.СУПРУГ)) {
+                    spouse.linkSpouse(this);
+                }
+                adoptChildren(spouse);
+
+            }
+            else {
+                throw new IllegalArgumentException("Супруг может быть только противоположного пола");
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Супруг уже существует");
+        }
+    }
+
+    /**
+     * Делает этого члена семьи вторым родителем тех детей супруга,
+     * у которых такой родитель ещё не указан
+     */
+    private void adoptChildren(FamilyMember spouse) {
+        for (FamilyMember child : spouse.children) {
+            if (this.gender == Gender.МУЖСКОЙ && !child.has(Attribute.ОТЕЦ)) {
+                child.linkFather(this);
+            }
+            else if (this.gender == Gender.ЖЕНСКИЙ && !child.has(Attribute.МАТЬ)) {
+                child.linkMother(this);
+            }
+        }
+    }
+
+    /**
+     * вернуть число всех потомков
+     */
+    public int getDescendantCount() {
+        return descendantCount;
+    }
+
+    /**
+     * вернуть число потомков указанного пола
+     */
+    public int getDescendantCount(Gender gender) {
+        return gender == Gender.МУЖСКОЙ ? maleDescendants : femaleDescendants;
+    }
+
+    /**
+     * вернуть число поколений потомков ниже этого члена семьи (0, если детей нет)
+     */
+    public int getGenerationsBelow() {
+        return generationsBelow;
+    }
+
+    void addDescendants(int total, int male, int female) {
+        this.descendantCount += total;
+        this.maleDescendants += male;
+        this.femaleDescendants += female;
+    }
+
+    void setGenerationsBelow(int generationsBelow) {
+        this.generationsBelow = generationsBelow;
+    }
+
+    void resetAggregates() {
+        this.descendantCount = 0;
+        this.maleDescendants = 0;
+        this.femaleDescendants = 0;
+        this.generationsBelow = 0;
+    }
+
+    /**
+     * вернуть детей в порядке добавления (только для чтения)
+     */
+    public List<FamilyMember> getChildren() {
+        return children;
+    }
+
+    /**
+     * Восстанавливает родственные связи без проверок и побочных эффектов.
+     * Используется только при чтении уже проверенных данных из файла.
+     */
+    void restoreRelatives(FamilyMember father, FamilyMember mother, FamilyMember spouse, ChildList children) {
+        this.father = father;
+        this.mother = mother;
+        this.spouse = spouse;
+        this.children = children;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("firstName", firstName);
+        fields.put("lastName", lastName);
+        fields.put("maidenName", maidenName);
+        fields.put("gender", gender);
+        fields.put("address", address);
+        fields.put("lifeDescription", lifeDescription);
+        fields.put("nameRegex", NAME_REGEX);
+        fields.put("mother", mother);
+        fields.put("father", father);
+        fields.put("spouse", spouse);
+        fields.put("children", new ArrayList<>(children));
+        out.writeFields();
+    }
+
+    /**
+     * Читает члена семьи старого формата. Список детей в потоке может быть ещё
+     * не дочитан (на него ссылаются сами дети), поэтому он переносится в ChildList
+     * только после чтения всего графа, см. restoreLegacyChildren. В старом формате
+     * супруги делили один список детей; теперь каждый получает свою копию
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.firstName = (String) fields.get("firstName", null);
+        this.lastName = (String) fields.get("lastName", null);
+        this.maidenName = (String) fields.get("maidenName", "");
+        this.gender = (Gender) fields.get("gender", null);
+        this.address = (Address) fields.get("address", null);
+        this.lifeDescription = (String) fields.get("lifeDescription", null);
+        this.mother = (FamilyMember) fields.get("mother", null);
+        this.father = (FamilyMember) fields.get("father", null);
+        this.spouse = (FamilyMember) fields.get("spouse", null);
+        this.id = -1;
+        ArrayList<?> list = (ArrayList<?>) fields.get("children", null);
+        this.children = new ChildList();
+        this.legacyChildren = list != null ? list : new ArrayList<>();
+    }
+
+    /**
+     * Переносит списки детей, прочитанные из файла старого формата, в ChildList
+     * у всех членов семьи, связанных с start. Вызывается один раз после чтения
+     * всего графа; обход идёт с явным стеком, поэтому глубина родословной
+     * не ограничена стеком потока
+     */
+    static void restoreLegacyChildren(FamilyMember start) {
+        ArrayDeque<FamilyMember> stack = new ArrayDeque<>();
+        ArrayDeque<ArrayList<?>> lists = new ArrayDeque<>();
+        visitLegacy(stack, lists, start);
+        while (!stack.isEmpty()) {
+            FamilyMember member = stack.pop();
+            for (Object child : lists.pop()) {
+                member.children.append((FamilyMember) child);
+                visitLegacy(stack, lists, (FamilyMember) child);
+            }
+            visitLegacy(stack, lists, member.father);
+            visitLegacy(stack, lists, member.mother);
+            visitLegacy(stack, lists, member.spouse);
+        }
+    }
+
+    private static void visitLegacy(ArrayDeque<FamilyMember> stack, ArrayDeque<ArrayList<?>> lists, FamilyMember member) {
+        if (member != null && member.legacyChildren != null) {
+            stack.push(member);
+            lists.push(member.legacyChildren);
+            member.legacyChildren = null;
+        }
+    }
+
+    public boolean has(FamilyMember.Attribute type) {
+        switch (type) {
+            case ОТЕЦ:
+                return this.getFather() != null;
+            case ДЕТИ:
+                return !this.getChildren().isEmpty();
+            case МАТЬ:
+                return this.getMother() != null;
+            case СУПРУГ:
+                return this.getSpouse() != null;
+            case ДЕВИЧЬЯ_ФАМИЛИЯ:
+                return !this.getMaidenName().isEmpty();
+            case РОДИТЕЛИ:
+                return this.has(Attribute.ОТЕЦ) || this.has(Attribute.МАТЬ);
+        }
+        return false;
+    }
+
+    public void addRelative(FamilyMember.RelativeType type, FamilyMember member) {
+        switch (type) {
+            case ОТЕЦ:
+                this.setFather(member);
+                return;
+            case РЕБЁНОК:
+                this.addChild(member);
+                return;
+            case МАТЬ:
+                this.setMother(member);
+                return;
+            case СУПРУГ:
+                this.setSpouse(member);
+                return;
+        }
+    }
+}
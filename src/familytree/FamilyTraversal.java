@@ -0,0 +1,181 @@
+package familytree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Обход родственных связей в ширину с явной очередью и множеством посещённых.
+ * Глубина родословной ограничена только памятью, а не размером стека потока,
+ * а члены семьи, достижимые несколькими путями (общие дети супругов, браки
+ * между родственниками), посещаются один раз.
+ */
+public final class FamilyTraversal {
+
+    /**
+     * Связи, по которым идёт обход
+     */
+    public enum Link {
+        ОТЕЦ,
+        МАТЬ,
+        СУПРУГ,
+        ДЕТИ,
+    }
+
+    public static final Set<Link> ANCESTORS = Collections.unmodifiableSet(EnumSet.of(Link.ОТЕЦ, Link.МАТЬ));
+    public static final Set<Link> DESCENDANTS = Collections.unmodifiableSet(EnumSet.of(Link.ДЕТИ));
+    public static final Set<Link> ALL = Collections.unmodifiableSet(EnumSet.allOf(Link.class));
+
+    /**
+     * Наибольшая длина цепочки по одному родителю для членов семьи вне древа,
+     * после которой ancestors переходит к обходу с множеством посещённых
+     */
+    static final int CHAIN_LIMIT = 1 << 20;
+
+    /**
+     * Получает каждого посещённого члена семьи
+     */
+    public interface Visitor {
+        /**
+         * @param member посещённый член семьи
+         * @param distance число шагов от ближайшего начального члена семьи
+         * @return true, если нужно идти дальше по связям этого члена семьи
+         */
+        boolean visit(FamilyMember member, int distance);
+    }
+
+    private FamilyTraversal() {
+    }
+
+    public static void breadthFirst(FamilyMember start, Set<Link> links, Visitor visitor) {
+        breadthFirst(Collections.singleton(start), links, visitor);
+    }
+
+    /**
+     * Обходит членов семьи, начиная с указанных, в порядке удаления от них
+     */
+    public static void breadthFirst(Collection<FamilyMember> start, Set<Link> links, Visitor visitor) {
+        Set<FamilyMember> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<FamilyMember> queue = new ArrayDeque<>();
+        ArrayDeque<Integer> distances = new ArrayDeque<>();
+        for (FamilyMember member : start) {
+            if (member != null && visited.add(member)) {
+                queue.add(member);
+                distances.add(0);
+            }
+        }
+        while (!queue.isEmpty()) {
+            FamilyMember member = queue.poll();
+            int distance = distances.poll();
+            if (!visitor.visit(member, distance)) {
+                continue;
+            }
+            if (links.contains(Link.ОТЕЦ)) {
+                offer(queue, distances, visited, member.getFather(), distance + 1);
+            }
+            if (links.contains(Link.МАТЬ)) {
+                offer(queue, distances, visited, member.getMother(), distance + 1);
+            }
+            if (links.contains(Link.СУПРУГ)) {
+                offer(queue, distances, visited, member.getSpouse(), distance + 1);
+            }
+            if (links.contains(Link.ДЕТИ)) {
+                for (FamilyMember child : member.getChildren()) {
+                    offer(queue, distances, visited, child, distance + 1);
+                }
+            }
+        }
+    }
+
+    private static void offer(ArrayDeque<FamilyMember> queue, ArrayDeque<Integer> distances, Set<FamilyMember> visited,
+                              FamilyMember member, int distance) {
+        if (member != null && visited.add(member)) {
+            queue.add(member);
+            distances.add(distance);
+        }
+    }
+
+    /**
+     * Обходит члена семьи и всех его предков, каждого один раз. Пока у членов семьи
+     * известен только один родитель, обход идёт по цепочке без множества посещённых,
+     * поэтому длинные линии по одному родителю проходятся за линейное время
+     * без лишней памяти. Цепочка без повторов не длиннее числа членов древа
+     * (или CHAIN_LIMIT вне древа); если она оказалась длиннее, связи родителей
+     * замкнуты в цикл, и обход продолжается с множеством посещённых, чтобы
+     * завершиться. Члены цикла, пройденные по цепочке, при этом посещаются ещё раз
+     * @param visitor получает предков; расстояние - число поколений от start
+     */
+    public static void ancestors(FamilyMember start, Visitor visitor) {
+        FamilyTree tree = start.getTree();
+        int limit = tree != null ? tree.getMemberCount() : CHAIN_LIMIT;
+        FamilyMember member = start;
+        int distance = 0;
+        while (member != null) {
+            if (distance >= limit) {
+                int base = distance;
+                breadthFirst(member, ANCESTORS, (ancestor, d) -> visitor.visit(ancestor, base + d));
+                return;
+            }
+            if (!visitor.visit(member, distance)) {
+                return;
+            }
+            FamilyMember father = member.getFather();
+            FamilyMember mother = member.getMother();
+            if (father != null && mother != null) {
+                // дальше линии могут сойтись, нужен обход с множеством посещённых
+                int base = distance;
+                breadthFirst(Arrays.asList(father, mother), ANCESTORS,
+                        (ancestor, d) -> visitor.visit(ancestor, base + 1 + d));
+                return;
+            }
+            member = father != null ? father : mother;
+            distance++;
+        }
+    }
+
+    /**
+     * вернуть всех достижимых членов семьи, включая начальных
+     */
+    public static Set<FamilyMember> collect(Collection<FamilyMember> start, Set<Link> links) {
+        Set<FamilyMember> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        breadthFirst(start, links, (member, distance) -> result.add(member));
+        return result;
+    }
+
+    /**
+     * вернуть достижимых членов семьи не дальше maxDistance шагов с расстоянием до каждого
+     */
+    public static Map<FamilyMember, Integer> distances(FamilyMember start, Set<Link> links, int maxDistance) {
+        IdentityHashMap<FamilyMember, Integer> result = new IdentityHashMap<>();
+        breadthFirst(start, links, (member, distance) -> {
+            result.put(member, distance);
+            return distance < maxDistance;
+        });
+        return result;
+    }
+
+    /**
+     * Проверяет, достижим ли target из start хотя бы за один шаг
+     */
+    public static boolean reaches(FamilyMember start, Set<Link> links, FamilyMember target) {
+        boolean[] found = new boolean[1];
+        Visitor visitor = (member, distance) -> {
+            if (distance > 0 && member == target) {
+                found[0] = true;
+            }
+            return !found[0];
+        };
+        if (links.equals(ANCESTORS)) {
+            ancestors(start, visitor);
+        }
+        else {
+            breadthFirst(start, links, visitor);
+        }
+        return found[0];
+    }
+}
@@ -0,0 +1,382 @@
+package familytree;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Генеалогическое древо. Помимо корня хранит реестр всех своих членов семьи:
+ * каждый член семьи при добавлении в древо получает постоянный идентификатор,
+ * равный его позиции в реестре. Изменения членов семьи и их адресов
+ * передаются зарегистрированным слушателям FamilyTreeListener.
+ * Для поиска по именам древо ведёт индекс NameIndex, для поиска по адресам
+ * индекс AddressIndex, через который одинаковые адреса членов семьи хранятся
+ * одним экземпляром Address, а повторяющиеся имена и части адресов хранит
+ * одним экземпляром через словарь StringDictionary.
+ * <p>
+ * Все изменения древа, его членов семьи и их адресов выполняются под блокировкой
+ * записи древа, поэтому древо в каждый момент меняет только один поток, а обе
+ * стороны связи (супруги, родитель и ребёнок) становятся видны одновременно.
+ * Слушатели вызываются под той же блокировкой. Методы чтения сами ничего не
+ * блокируют: поток, который не меняет древо, читает его под readLock() или через
+ * read(), либо работает со снимком snapshot(), который можно обходить без
+ * блокировки, пока пользователь продолжает правку.
+ */
+public class FamilyTree implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    public FamilyTree() {
+        this.root = null;
+        init();
+    }
+
+    private FamilyMember root;
+
+    private transient ArrayList<FamilyMember> members;
+    private transient AddressIndex addresses;
+    private transient CopyOnWriteArrayList<FamilyTreeListener> listeners;
+    private transient NameIndex names;
+    private transient StringDictionary strings;
+    private transient ReentrantReadWriteLock lock;
+
+    private void init() {
+        this.lock = new ReentrantReadWriteLock();
+        this.members = new ArrayList<>();
+        this.addresses = new AddressIndex();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.names = new NameIndex();
+        this.strings = new StringDictionary();
+    }
+
+    /**
+     * Восстанавливает реестр после чтения файла старого формата. Реестр строится
+     * после того, как члены семьи восстановят свои списки детей
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        if (this.root != null) {
+            in.registerValidation(() -> {
+                FamilyMember.restoreLegacyChildren(this.root);
+                attach(this.root);
+                int cyclic = FamilyTreeCodec.findCycle(snapshot().getRecords());
+                if (cyclic != MemberRecord.NONE) {
+                    throw new InvalidObjectException("Файл повреждён: член семьи #" + cyclic + " указан предком самого себя");
+                }
+                SubtreeAggregates.recompute(this.members);
+            }, 0);
+        }
+    }
+
+    public void setRoot(FamilyMember newRoot) {
+        write(this, () -> {
+            this.root = newRoot;
+            if (newRoot != null) {
+                attach(newRoot);
+            }
+            for (FamilyTreeListener listener : listeners) {
+                listener.rootChanged(newRoot);
+            }
+        });
+    }
+
+    /**
+     * вернуть блокировку чтения: пока она взята, древо и его члены семьи не меняются
+     */
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * вернуть блокировку записи, под которой выполняются все изменения древа
+     */
+    public Lock writeLock() {
+        return lock.writeLock();
+    }
+
+    /**
+     * Выполняет запрос к древу под блокировкой чтения
+     * @return результат запроса
+     */
+    public <T> T read(Supplier<T> query) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return query.get();
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Выполняет изменение под блокировкой записи древа. Члены семьи и адреса,
+     * ещё не добавленные в древо (tree равно null), принадлежат создавшему их
+     * потоку и меняются без блокировки
+     */
+    static void write(FamilyTree tree, Runnable change) {
+        if (tree == null) {
+            change.run();
+            return;
+        }
+        Lock writeLock = tree.lock.writeLock();
+        writeLock.lock();
+        try {
+            change.run();
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Берёт блокировку записи древа для правки поля. В отличие от write не создаёт
+     * лямбду, поэтому сеттеры полей не выделяют память на каждый вызов.
+     * Блокировка освобождается через unlock в блоке finally
+     * @return взятая блокировка или null, если tree равно null
+     */
+    static Lock lockWrite(FamilyTree tree) {
+        if (tree == null) {
+            return null;
+        }
+        Lock writeLock = tree.lock.writeLock();
+        writeLock.lock();
+        return writeLock;
+    }
+
+    /**
+     * Освобождает блокировку, взятую lockWrite
+     */
+    static void unlock(Lock lock) {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Делает согласованный снимок всех членов семьи древа
+     */
+    public Snapshot snapshot() {
+        return read(() -> {
+            MemberRecord[] records = new MemberRecord[members.size()];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = MemberRecord.of(members.get(i));
+            }
+            return new Snapshot(records, root == null ? MemberRecord.NONE : root.getId());
+        });
+    }
+
+    public boolean hasRoot() {
+        return this.root != null;
+    }
+
+    public FamilyMember getRoot() {
+        return this.root;
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    /**
+     * вернуть члена семьи по идентификатору
+     * @param id идентификатор, выданный древом
+     */
+    public FamilyMember getMember(int id) {
+        return members.get(id);
+    }
+
+    /**
+     * вернуть всех членов семьи древа в порядке идентификаторов (только для чтения).
+     * Список меняется вместе с древом; другие потоки обходят его под readLock()
+     */
+    public List<FamilyMember> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    /**
+     * вернуть членов семьи, проживающих по указанному адресу
+     * @param address адрес одного из членов семьи древа
+     */
+    public List<FamilyMember> getResidents(Address address) {
+        return addresses.getResidents(address);
+    }
+
+    /**
+     * вернуть индекс имён членов семьи древа
+     */
+    public NameIndex getNameIndex() {
+        return names;
+    }
+
+    /**
+     * вернуть индекс адресов членов семьи древа
+     */
+    public AddressIndex getAddressIndex() {
+        return addresses;
+    }
+
+    /**
+     * вернуть словарь строк древа
+     */
+    public StringDictionary getStringDictionary() {
+        return strings;
+    }
+
+    public List<FamilyMember> findByFirstName(String firstName) {
+        return names.findByFirstName(firstName);
+    }
+
+    public List<FamilyMember> findByLastName(String lastName) {
+        return names.findByLastName(lastName);
+    }
+
+    public List<FamilyMember> findByMaidenName(String maidenName) {
+        return names.findByMaidenName(maidenName);
+    }
+
+    /**
+     * вернуть членов семьи, проживающих в указанном населённом пункте, сгруппированных по адресам
+     */
+    public List<FamilyMember> findBySuburb(String suburb) {
+        return addresses.findResidentsBySuburb(suburb);
+    }
+
+    /**
+     * вернуть членов семьи с указанным почтовым индексом, сгруппированных по адресам
+     */
+    public List<FamilyMember> findByPostCode(String postCode) {
+        return addresses.findResidentsByPostCode(postCode);
+    }
+
+    /**
+     * вернуть членов семьи, имя или фамилия которых начинается с prefix
+     * @param limit наибольшее число результатов
+     */
+    public List<FamilyMember> findByNamePrefix(String prefix, int limit) {
+        return names.findByPrefix(prefix, limit);
+    }
+
+    /**
+     * Подписывает слушателя на изменения древа. Подписка не требует блокировки
+     * древа: список слушателей копируется при изменении, поэтому её можно менять
+     * из любого потока, пока другой поток меняет древо и оповещает слушателей
+     */
+    public void addFamilyTreeListener(FamilyTreeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeFamilyTreeListener(FamilyTreeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Добавляет члена семьи в реестр древа, если он ещё не добавлен.
+     * Родственники при этом не добавляются
+     */
+    void register(FamilyMember member) {
+        if (member.getTree() == this) {
+            return;
+        }
+        member.attach(this, members.size());
+        members.add(member);
+        addresses.add(member);
+        names.add(member);
+        for (FamilyTreeListener listener : listeners) {
+            listener.memberAdded(member);
+        }
+    }
+
+    /**
+     * Добавляет в реестр члена семьи и всех достижимых от него родственников.
+     * Обход не идёт дальше уже добавленных членов семьи, так как их родственники
+     * были добавлены вместе с ними. По той же причине уже добавленный член семьи
+     * не обходится вовсе: иначе каждое добавление ребёнка перебирало бы всех его
+     * братьев и сестёр
+     */
+    void attach(FamilyMember start) {
+        if (start.getTree() == this) {
+            return;
+        }
+        FamilyTraversal.breadthFirst(start, FamilyTraversal.ALL, (member, distance) -> {
+            if (member.getTree() == this) {
+                return false;
+            }
+            register(member);
+            return true;
+        });
+    }
+
+    void memberChanged(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+        if (field == FamilyMember.Field.АДРЕС) {
+            addresses.moved(member, (Address) oldValue);
+        }
+        names.changed(member, field, oldValue);
+        for (FamilyTreeListener listener : listeners) {
+            listener.memberChanged(member, field, oldValue);
+        }
+    }
+
+    void relativeAdded(FamilyMember member, FamilyMember.RelativeType type, FamilyMember relative) {
+        attach(member);
+        attach(relative);
+        for (FamilyTreeListener listener : listeners) {
+            listener.relativeAdded(member, type, relative);
+        }
+    }
+
+    void addressChanged(Address address, Address.Field field, String oldValue) {
+        addresses.changed(address, field, oldValue);
+        for (FamilyTreeListener listener : listeners) {
+            listener.addressChanged(address, field, oldValue);
+        }
+    }
+
+    /**
+     * Неизменяемый снимок древа: записи всех членов семьи в порядке идентификаторов
+     * и идентификатор корня на момент вызова snapshot()
+     */
+    public static final class Snapshot {
+        private final MemberRecord[] records;
+        private final int rootId;
+
+        private Snapshot(MemberRecord[] records, int rootId) {
+            this.records = records;
+            this.rootId = rootId;
+        }
+
+        public int getMemberCount() {
+            return records.length;
+        }
+
+        /**
+         * вернуть идентификатор корня или MemberRecord.NONE
+         */
+        public int getRootId() {
+            return rootId;
+        }
+
+        /**
+         * вернуть запись о члене семьи по идентификатору
+         */
+        public MemberRecord getRecord(int id) {
+            return records[id];
+        }
+
+        /**
+         * вернуть все записи в порядке идентификаторов
+         */
+        public List<MemberRecord> getRecords() {
+            return Collections.unmodifiableList(Arrays.asList(records));
+        }
+    }
+}
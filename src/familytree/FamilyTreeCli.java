@@ -0,0 +1,422 @@
+package familytree;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Пакетный режим без графического интерфейса: команды над файлами древ для
+ * серверов и заданий по расписанию. Классы AWT и Swing не загружаются, а
+ * команды принимают сразу много файлов, чтобы обрабатывать их за один запуск JVM.
+ * Ошибка в одном файле сообщается в поток ошибок и не прерывает обработку остальных.
+ */
+public final class FamilyTreeCli {
+
+    /**
+     * Код завершения: все файлы обработаны
+     */
+    public static final int OK = 0;
+
+    /**
+     * Код завершения: хотя бы один файл не обработан или не прошёл проверку
+     */
+    public static final int FAILED = 1;
+
+    /**
+     * Код завершения: неверные параметры командной строки
+     */
+    public static final int USAGE = 2;
+
+    /**
+     * Сколько предупреждений импорта GEDCOM выводить для одного файла
+     */
+    private static final int SHOWN_WARNINGS = 20;
+
+    private static final String USAGE_TEXT = String.join(System.lineSeparator(),
+            "Использование: <команда> [параметры]",
+            "  convert <вход> <выход>          преобразовать древо; формат определяется расширением:",
+            "                                  вход .ft или .ged, выход .ft, .ged или .csv",
+            "  upgrade <файл.ft>...            перезаписать файлы в текущем формате вместе с журналом изменений",
+            "  merge <выход> <вход>...         объединить древа в один файл; корнем станет корень первого",
+            "  validate <файл>...              проверить родственные связи и поля",
+            "  stats <файл>...                 вывести статистику древа",
+            "  reindex <файл.ft>...            перестроить полнотекстовый индекс",
+            "  generate <файл.ft> <размер> [зерно]  создать синтетическое древо",
+            "  serve <файл> [порт]             отвечать на запросы к древу по HTTP на локальном адресе, порт "
+                    + FamilyTreeServer.DEFAULT_PORT + " по умолчанию",
+            "Без параметров запускается графический интерфейс.");
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private FamilyTreeCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Выполняет команду
+     * @param args команда и её параметры
+     * @return код завершения OK, FAILED или USAGE
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 0) {
+            err.println(USAGE_TEXT);
+            return USAGE;
+        }
+        FamilyTreeCli cli = new FamilyTreeCli(out, err);
+        File[] files = new File[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            files[i - 1] = new File(args[i]);
+        }
+        switch (args[0]) {
+            case "convert":
+                if (files.length != 2) {
+                    return cli.usage();
+                }
+                return cli.apply(files[0], file -> cli.convert(file, files[1]));
+            case "upgrade":
+                return cli.forEach(files, cli::upgrade);
+            case "merge":
+                if (files.length < 2) {
+                    return cli.usage();
+                }
+                return cli.apply(files[0], file -> cli.merge(file, Arrays.copyOfRange(files, 1, files.length)));
+            case "validate":
+                return cli.forEach(files, cli::validate);
+            case "stats":
+                return cli.forEach(files, cli::stats);
+            case "reindex":
+                return cli.forEach(files, cli::reindex);
+            case "generate":
+                return cli.generate(Arrays.copyOfRange(args, 1, args.length));
+            case "serve":
+                return cli.serve(Arrays.copyOfRange(args, 1, args.length));
+            case "help":
+            case "-h":
+            case "--help":
+                out.println(USAGE_TEXT);
+                return OK;
+            default:
+                err.println("Неизвестная команда: " + args[0]);
+                return cli.usage();
+        }
+    }
+
+    /**
+     * Действие над одним файлом
+     */
+    private interface FileTask {
+        /**
+         * @return false, если файл не прошёл проверку
+         */
+        boolean apply(File file) throws IOException;
+    }
+
+    private int usage() {
+        err.println(USAGE_TEXT);
+        return USAGE;
+    }
+
+    private int forEach(File[] files, FileTask task) {
+        if (files.length == 0) {
+            return usage();
+        }
+        int result = OK;
+        for (File file : files) {
+            if (apply(file, task) != OK) {
+                result = FAILED;
+            }
+        }
+        return result;
+    }
+
+    private int apply(File file, FileTask task) {
+        try {
+            return task.apply(file) ? OK : FAILED;
+        }
+        catch (IOException | RuntimeException ex) {
+            String message = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+            err.println(file + ": " + message);
+            return FAILED;
+        }
+    }
+
+    private boolean convert(File input, File output) throws IOException {
+        FamilyTree tree = load(input);
+        save(tree, output);
+        out.println(input + " -> " + output + ": членов семьи: " + tree.getMemberCount());
+        return true;
+    }
+
+    private boolean upgrade(File file) throws IOException {
+        int version;
+        try (FileInputStream in = new FileInputStream(file)) {
+            version = FamilyTreeCodec.readVersion(in);
+        }
+        FamilyTree tree = load(file);
+        save(tree, file);
+        out.println(file + ": версия " + version + " -> " + FamilyTreeCodec.VERSION
+                + ", членов семьи: " + tree.getMemberCount());
+        return true;
+    }
+
+    /**
+     * Объединяет древа: члены семьи всех файлов переносятся в одно древо в порядке
+     * файлов, поэтому их идентификаторы сдвигаются на размер предыдущих древ.
+     * Члены семьи из следующих файлов не связаны с корнем и доступны через поиск и экспорт
+     */
+    private boolean merge(File output, File[] inputs) throws IOException {
+        FamilyTree merged = new FamilyTree();
+        for (File input : inputs) {
+            FamilyTree source = load(input);
+            for (FamilyMember member : source.getMembers()) {
+                merged.register(member);
+            }
+            if (!merged.hasRoot() && source.hasRoot()) {
+                merged.setRoot(source.getRoot());
+            }
+        }
+        save(merged, output);
+        out.println(output + ": объединено файлов: " + inputs.length + ", членов семьи: " + merged.getMemberCount());
+        return true;
+    }
+
+    private boolean validate(File file) throws IOException {
+        FamilyTree tree;
+        try {
+            tree = load(file);
+        }
+        catch (FieldValidator.InvalidFieldsException ex) {
+            for (FieldValidator.Problem problem : ex.getProblems()) {
+                out.println(file + ": " + problem);
+            }
+            return false;
+        }
+        List<String> problems = validate(tree);
+        if (problems.isEmpty()) {
+            out.println(file + ": ошибок нет, членов семьи: " + tree.getMemberCount());
+            return true;
+        }
+        for (String problem : problems) {
+            out.println(file + ": " + problem);
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет родственные связи и поля, которые сеттеры FamilyMember не дали бы
+     * задать, но которые могли попасть в файл при импорте или повреждении
+     * @return описания нарушений; пустой список, если их нет
+     */
+    static List<String> validate(FamilyTree tree) {
+        List<String> problems = new ArrayList<>();
+        if (!tree.hasRoot() && tree.getMemberCount() > 0) {
+            problems.add("у древа нет корня");
+        }
+        for (FamilyMember member : tree.getMembers()) {
+            String name = "#" + member.getId() + " " + member;
+            FamilyMember father = member.getFather();
+            FamilyMember mother = member.getMother();
+            FamilyMember spouse = member.getSpouse();
+            if (father != null && (father.getGender() != FamilyMember.Gender.МУЖСКОЙ || !father.getChildren().contains(member))) {
+                problems.add(name + ": неверная ссылка на отца");
+            }
+            if (mother != null && (mother.getGender() != FamilyMember.Gender.ЖЕНСКИЙ || !mother.getChildren().contains(member))) {
+                problems.add(name + ": неверная ссылка на мать");
+            }
+            if (spouse != null && (spouse.getSpouse() != member || spouse.getGender() == member.getGender())) {
+                problems.add(name + ": неверная ссылка на супруга");
+            }
+            for (FamilyMember child : member.getChildren()) {
+                if (child.getFather() != member && child.getMother() != member) {
+                    problems.add(name + ": ребёнок " + child + " не ссылается на родителя");
+                }
+            }
+            if (member.getAddress() == null) {
+                problems.add(name + ": не указан адрес");
+            }
+            if (member.has(FamilyMember.Attribute.ДЕВИЧЬЯ_ФАМИЛИЯ) && member.getGender() != FamilyMember.Gender.ЖЕНСКИЙ) {
+                problems.add(name + ": девичья фамилия у мужчины");
+            }
+            if (member.getTree() != tree) {
+                problems.add(name + ": принадлежит другому древу");
+            }
+        }
+        for (FieldValidator.Problem problem : FieldValidator.validate(tree.snapshot().getRecords())) {
+            problems.add(problem.toString());
+        }
+        return problems;
+    }
+
+    /**
+     * Файл .ft без журнала изменений читается в столбцовое хранилище без построения
+     * членов семьи, что позволяет считать статистику очень больших древ
+     */
+    private boolean stats(File file) throws IOException {
+        if (extension(file).equals(".ft") && !ChangeJournal.journalFile(file).exists()) {
+            out.println(file + ": " + TreeAnalytics.compute(ColumnarMemberStore.read(file, TaskProgress.NONE)));
+            return true;
+        }
+        FamilyTree tree = load(file);
+        out.println(file + ": " + TreeAnalytics.compute(tree));
+        return true;
+    }
+
+    private boolean reindex(File file) throws IOException {
+        FamilyTree tree = load(file);
+        FullTextIndex index = new FullTextIndex(tree);
+        index.save(file);
+        index.dispose();
+        out.println(file + ": индекс перестроен, членов семьи: " + tree.getMemberCount());
+        return true;
+    }
+
+    private int generate(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            return usage();
+        }
+        File file = new File(args[0]);
+        SyntheticTreeGenerator generator;
+        try {
+            generator = new SyntheticTreeGenerator(args.length == 3 ? Long.parseLong(args[2]) : 0);
+            generator.setSize(Integer.parseInt(args[1]));
+        }
+        catch (NumberFormatException ex) {
+            err.println("Ожидается число: " + ex.getMessage());
+            return usage();
+        }
+        catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            return usage();
+        }
+        return apply(file, target -> {
+            checkExtension(target, ".ft");
+            int count;
+            try (FileOutputStream stream = new FileOutputStream(target)) {
+                count = generator.write(stream, TaskProgress.NONE);
+            }
+            ChangeJournal.discard(target);
+            FullTextIndex.indexFile(target).delete();
+            out.println(target + ": членов семьи: " + count);
+            return true;
+        });
+    }
+
+    /**
+     * Запускает HTTP-сервер и ждёт завершения процесса
+     */
+    private int serve(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            return usage();
+        }
+        int port;
+        try {
+            port = args.length == 2 ? Integer.parseInt(args[1]) : FamilyTreeServer.DEFAULT_PORT;
+        }
+        catch (NumberFormatException ex) {
+            err.println("Ожидается число: " + ex.getMessage());
+            return usage();
+        }
+        File file = new File(args[0]);
+        FamilyTreeServer[] server = new FamilyTreeServer[1];
+        int result = apply(file, source -> {
+            FamilyTree tree = load(source);
+            server[0] = new FamilyTreeServer(tree, FullTextIndex.open(tree, source), port);
+            server[0].start();
+            out.println(source + ": сервер запущен на http://localhost:" + server[0].getPort() + "/");
+            return true;
+        });
+        if (result != OK) {
+            return result;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server[0]::stop));
+        try {
+            Thread.currentThread().join();
+        }
+        catch (InterruptedException ex) {
+            server[0].stop();
+        }
+        return OK;
+    }
+
+    /**
+     * Читает древо из файла .ft вместе с его журналом изменений или импортирует файл .ged
+     */
+    private FamilyTree load(File file) throws IOException {
+        if (extension(file).equals(".ged")) {
+            GedcomImporter.Result imported = GedcomImporter.read(file, TaskProgress.NONE);
+            List<String> warnings = imported.getWarnings();
+            for (int i = 0; i < Math.min(SHOWN_WARNINGS, warnings.size()); i++) {
+                err.println(file + ": " + warnings.get(i));
+            }
+            if (imported.getWarningCount() > SHOWN_WARNINGS) {
+                err.println(file + ": ... всего предупреждений: " + imported.getWarningCount());
+            }
+            return imported.getTree();
+        }
+        FamilyTree tree;
+        try (FileInputStream in = new FileInputStream(file)) {
+            tree = FamilyTreeCodec.read(in);
+        }
+        if (!ChangeJournal.replay(tree, file)) {
+            err.println(file + ": журнал изменений повреждён, применена только его начальная часть");
+        }
+        return tree;
+    }
+
+    /**
+     * Записывает древо в формате, определяемом расширением файла. После записи
+     * файла .ft его журнал удаляется, а устаревший индекс - тоже: он будет построен
+     * командой reindex или при открытии файла в окне программы
+     */
+    private static void save(FamilyTree tree, File file) throws IOException {
+        switch (extension(file)) {
+            case ".ft":
+                FamilyTreeCodec.save(tree, file, TaskProgress.NONE);
+                ChangeJournal.discard(file);
+                FullTextIndex.indexFile(file).delete();
+                break;
+            case ".ged":
+                try (FileChannel channel = open(file)) {
+                    GedcomExporter.write(tree, channel);
+                }
+                break;
+            case ".csv":
+                try (FileChannel channel = open(file)) {
+                    CsvExporter.writeMembers(tree, channel, TaskProgress.NONE);
+                }
+                try (FileChannel channel = open(CsvExporter.relationsFile(file))) {
+                    CsvExporter.writeRelationships(tree, channel, TaskProgress.NONE);
+                }
+                break;
+            default:
+                throw new IOException("Неизвестный формат файла, ожидается .ft, .ged или .csv");
+        }
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    private static String extension(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot).toLowerCase(Locale.ROOT);
+    }
+
+    private static void checkExtension(File file, String extension) throws IOException {
+        if (!extension(file).equals(extension)) {
+            throw new IOException("Ожидается файл " + extension);
+        }
+    }
+}
@@ -0,0 +1,813 @@
+package familytree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Двоичный формат файлов генеалогического древа (*.ft).
+ * Вместо сериализации Java члены семьи записываются по своим идентификаторам в древе,
+ * родственные связи записываются как ссылки на идентификаторы, а все строки
+ * попадают в общую таблицу строк и записываются только один раз.
+ * Структура файла:
+ * о заголовок - сигнатура FTBN и номер версии
+ * о количество членов семьи
+ * о записи членов семьи в порядке идентификаторов
+ * о идентификатор корневого члена
+ * о (версия 2) индекс смещений строк и записей и завершающий блок из
+ * смещений обоих индексов, идентификатора корня и сигнатуры, по которому файл можно открыть через MappedFamilyTreeFile
+ * Числа записываются в формате varint. Ссылка на строку 0 означает null,
+ * ссылка k+1 - k-ю строку таблицы; если k равно текущему размеру таблицы,
+ * то сразу за ссылкой следует сама строка в UTF-8 и она добавляется в таблицу.
+ * Файлы старого формата (сериализация Java) по-прежнему читаются для миграции.
+ */
+public final class FamilyTreeCodec {
+
+    public static final int MAGIC = 0x4654424E; // "FTBN"
+    public static final int VERSION = 2;
+
+    /**
+     * Размер стека потока, читающего файлы старого формата
+     */
+    static final long LEGACY_STACK_SIZE = 1L << 30;
+
+    /**
+     * Через сколько записей сообщать о ходе операции и проверять её отмену
+     */
+    private static final int PROGRESS_STEP = 4096;
+
+    static final int TRAILER_SIZE = 8 + 8 + 4 + 4;
+
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+    private static final int NO_ADDRESS = 0;
+    private static final int HAS_ADDRESS = 1;
+
+    private FamilyTreeCodec() {
+    }
+
+    /**
+     * Записывает генеалогическое древо в поток в двоичном формате. Записывается
+     * согласованный снимок древа, сделанный в начале записи
+     * @param tree древо для записи
+     * @param out поток для записи, не закрывается
+     */
+    public static void write(FamilyTree tree, OutputStream out) throws IOException {
+        write(tree, out, TaskProgress.NONE);
+    }
+
+    /**
+     * Записывает генеалогическое древо в поток в двоичном формате. Записывается
+     * согласованный снимок древа, сделанный в начале записи
+     * @param tree древо для записи
+     * @param out поток для записи, не закрывается
+     * @param progress получатель хода записи; при отмене бросается InterruptedIOException
+     */
+    public static void write(FamilyTree tree, OutputStream out, TaskProgress progress) throws IOException {
+        // снимок берётся под блокировкой чтения, а кодирование идёт уже без неё,
+        // поэтому древо можно продолжать править во время сохранения
+        FamilyTree.Snapshot snapshot = tree.snapshot();
+        int count = snapshot.getMemberCount();
+        RecordWriter writer = openWriter(out, count);
+        for (int i = 0; i < count; i++) {
+            if (i % PROGRESS_STEP == 0) {
+                report(progress, i, count);
+            }
+            writer.write(snapshot.getRecord(i));
+        }
+        writer.finish(snapshot.getRootId());
+    }
+
+    /**
+     * Сохраняет древо в файл. Данные пишутся во временный файл рядом с ним,
+     * который затем заменяет прежний, поэтому ошибка или отмена не портят прежний файл
+     * @param progress получатель хода записи; при отмене бросается InterruptedIOException
+     */
+    public static void save(FamilyTree tree, File file, TaskProgress progress) throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            write(tree, out, progress);
+        }
+        catch (IOException | RuntimeException ex) {
+            temp.delete();
+            throw ex;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Начинает потоковую запись древа по отдельным записям членов семьи, без
+     * построения самого древа в памяти. Записи передаются в порядке идентификаторов
+     * от 0 до count - 1, после чего вызывается RecordWriter.finish
+     * @param out поток для записи, не закрывается
+     * @param count количество членов семьи в древе
+     */
+    public static RecordWriter openWriter(OutputStream out, int count) throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Количество членов семьи не может быть отрицательным");
+        }
+        Writer writer = new Writer(out, count);
+        writer.out.writeInt(MAGIC);
+        writer.out.writeByte(VERSION);
+        writer.writeVarInt(count);
+        return new RecordWriter(writer, count);
+    }
+
+    /**
+     * Читает генеалогическое древо из потока. Поддерживает как двоичный формат,
+     * так и файлы, сохранённые сериализацией Java в прежних версиях программы.
+     * @param in поток для чтения, не закрывается
+     * @return прочитанное древо
+     */
+    public static FamilyTree read(InputStream in) throws IOException {
+        return read(in, TaskProgress.NONE);
+    }
+
+    /**
+     * Читает генеалогическое древо из потока. Поддерживает как двоичный формат,
+     * так и файлы, сохранённые сериализацией Java в прежних версиях программы.
+     * @param in поток для чтения, не закрывается
+     * @param progress получатель хода чтения; при отмене бросается InterruptedIOException
+     * @return прочитанное древо
+     */
+    public static FamilyTree read(InputStream in, TaskProgress progress) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(4);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first < 0 || second < 0) {
+            throw new EOFException("Пустой файл");
+        }
+        if (((first << 8) | second) == SERIALIZATION_MAGIC) {
+            return readLegacy(buffered);
+        }
+
+        StreamInput input = new StreamInput(new DataInputStream(buffered));
+        readHeader(input);
+
+        RecordReader reader = new RecordReader(input);
+        MemberRecord[] records = new MemberRecord[reader.getCount()];
+        for (int i = 0; i < records.length; i++) {
+            if (i % PROGRESS_STEP == 0) {
+                report(progress, i, records.length);
+            }
+            records[i] = reader.read();
+        }
+        checkLinks(records);
+        int cyclic = findCycle(Arrays.asList(records));
+        if (cyclic != MemberRecord.NONE) {
+            throw corrupted(cyclic, "член семьи указан предком самого себя");
+        }
+        // все недопустимые поля файла сообщаются сразу, а не первым исключением сеттера
+        FieldValidator.check(Arrays.asList(records));
+        return build(records, reader.getRootId());
+    }
+
+    /**
+     * Начинает потоковое чтение файла по отдельным записям членов семьи, без
+     * построения самого древа в памяти. Файлы старого формата так не читаются
+     * @param in поток с начала файла, не закрывается
+     */
+    public static RecordReader openReader(InputStream in) throws IOException {
+        StreamInput input = new StreamInput(new DataInputStream(new BufferedInputStream(in)));
+        readHeader(input);
+        return new RecordReader(input);
+    }
+
+    /**
+     * Проверяет, что связи записей взаимны: ребёнок указывает родителем того,
+     * в чьём списке детей он записан, родитель записывает ребёнка в свой список,
+     * а супруг указывает супругом в ответ. Идентификаторы уже проверены RecordReader
+     * @throws IOException с идентификатором первой записи, нарушающей взаимность
+     */
+    static void checkLinks(MemberRecord[] records) throws IOException {
+        long childEntries = 0;
+        long parentLinks = 0;
+        for (MemberRecord record : records) {
+            int id = record.getId();
+            childEntries += record.numChildren();
+            parentLinks += (record.getFatherId() != MemberRecord.NONE ? 1 : 0) + (record.getMotherId() != MemberRecord.NONE ? 1 : 0);
+            for (int i = 0; i < record.numChildren(); i++) {
+                MemberRecord child = records[record.getChildId(i)];
+                if (child.getFatherId() != id && child.getMotherId() != id) {
+                    throw corrupted(id, "ребёнок #" + child.getId() + " не указывает его родителем");
+                }
+            }
+            if (record.getFatherId() != MemberRecord.NONE && !hasChild(records[record.getFatherId()], id)) {
+                throw corrupted(id, "отец #" + record.getFatherId() + " не записал его ребёнком");
+            }
+            if (record.getMotherId() != MemberRecord.NONE && !hasChild(records[record.getMotherId()], id)) {
+                throw corrupted(id, "мать #" + record.getMotherId() + " не записала его ребёнком");
+            }
+            if (record.getSpouseId() != MemberRecord.NONE && records[record.getSpouseId()].getSpouseId() != id) {
+                throw corrupted(id, "супруг #" + record.getSpouseId() + " не указывает его супругом");
+            }
+        }
+        if (childEntries != parentLinks) {
+            // каждая ссылка на родителя найдена в его списке, значит, лишние записи - повторы детей
+            throw new IOException("Файл повреждён: ребёнок записан в список детей дважды");
+        }
+    }
+
+    /**
+     * Ищет цикл в линиях родителей, как GedcomImporter при импорте: записи снимаются,
+     * начиная с тех, кого никто не указал родителем, а после своих детей снимаются
+     * родители. Связи записей должны быть взаимны, см. checkLinks
+     * @param records записи в порядке идентификаторов
+     * @return идентификатор члена семьи, указанного предком самого себя,
+     *         или MemberRecord.NONE, если циклов нет
+     */
+    static int findCycle(List<MemberRecord> records) {
+        int count = records.size();
+        int[] pending = new int[count];
+        for (MemberRecord record : records) {
+            pending[record.getId()] = record.numChildren();
+        }
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            if (pending[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            MemberRecord record = records.get(queue[head]);
+            tail = release(record.getFatherId(), pending, queue, tail);
+            tail = release(record.getMotherId(), pending, queue, tail);
+        }
+        if (tail == count) {
+            return MemberRecord.NONE;
+        }
+        // у оставшихся есть оставшийся ребёнок; спускаясь по таким детям, приходим на сам цикл
+        int id = 0;
+        while (pending[id] == 0) {
+            id++;
+        }
+        for (int step = 0; step < count; step++) {
+            MemberRecord record = records.get(id);
+            for (int i = 0; i < record.numChildren(); i++) {
+                if (pending[record.getChildId(i)] > 0) {
+                    id = record.getChildId(i);
+                    break;
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Отмечает, что ребёнок родителя снят, и ставит родителя в очередь, когда сняты все его дети
+     * вернуть новую длину очереди
+     */
+    private static int release(int parent, int[] pending, int[] queue, int tail) {
+        if (parent != MemberRecord.NONE && --pending[parent] == 0) {
+            queue[tail++] = parent;
+        }
+        return tail;
+    }
+
+    private static boolean hasChild(MemberRecord parent, int id) {
+        for (int i = 0; i < parent.numChildren(); i++) {
+            if (parent.getChildId(i) == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static IOException corrupted(int id, String problem) {
+        return new IOException("Файл повреждён: запись #" + id + ": " + problem);
+    }
+
+    /**
+     * Строит древо по записям членов семьи; идентификаторы в древе совпадают
+     * с идентификаторами записей
+     * @param records записи в порядке идентификаторов
+     * @param root идентификатор корня или MemberRecord.NONE
+     */
+    static FamilyTree build(MemberRecord[] records, int root) {
+        int count = records.length;
+        FamilyMember[] members = new FamilyMember[count];
+        for (int i = 0; i < count; i++) {
+            members[i] = toMember(records[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            MemberRecord record = records[i];
+            ChildList children = new ChildList(record.numChildren());
+            for (int j = 0; j < record.numChildren(); j++) {
+                children.append(members[record.getChildId(j)]);
+            }
+            members[i].restoreRelatives(member(members, record.getFatherId()), member(members, record.getMotherId()),
+                    member(members, record.getSpouseId()), children);
+        }
+        SubtreeAggregates.recompute(Arrays.asList(members));
+
+        FamilyTree tree = new FamilyTree();
+        // регистрируем в порядке файла, чтобы идентификаторы в древе совпали с идентификаторами записей
+        for (FamilyMember member : members) {
+            tree.register(member);
+        }
+        tree.setRoot(member(members, root));
+        return tree;
+    }
+
+    /**
+     * Сообщает о ходе операции и бросает InterruptedIOException, если она отменена
+     */
+    static void report(TaskProgress progress, long done, long total) throws InterruptedIOException {
+        if (progress.isCancelled()) {
+            throw new InterruptedIOException("Операция отменена");
+        }
+        progress.progress(done, total);
+    }
+
+    /**
+     * Определяет версию формата файла без чтения данных
+     * @param in поток с начала файла, не закрывается
+     * @return версия двоичного формата или 0 для файлов, сохранённых сериализацией Java
+     */
+    public static int readVersion(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int magic = data.readInt();
+        if ((magic >>> 16) == SERIALIZATION_MAGIC) {
+            return 0;
+        }
+        if (magic != MAGIC) {
+            throw new IOException("Неизвестный формат файла");
+        }
+        return data.readUnsignedByte();
+    }
+
+    /**
+     * Проверяет сигнатуру и версию файла
+     * @return версия файла
+     */
+    static int readHeader(RecordInput input) throws IOException {
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            magic = (magic << 8) | input.readUnsignedByte();
+        }
+        if (magic != MAGIC) {
+            throw new IOException("Неизвестный формат файла");
+        }
+        int version = input.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Неподдерживаемая версия файла: " + version);
+        }
+        return version;
+    }
+
+    /**
+     * Создаёт члена семьи по записи без родственных связей. Поля записей файла
+     * уже проверены FieldValidator.check, а записи истории взяты у членов семьи,
+     * поэтому значения не проверяются сеттерами ещё раз, а только очищаются
+     * от пробелов по краям, как это делают сеттеры
+     */
+    static FamilyMember toMember(MemberRecord record) {
+        Address address = null;
+        if (record.hasAddress()) {
+            address = Address.trusted(record.getStreetNumber().trim(), record.getStreetName().trim(),
+                    record.getSuburb().trim(), record.getPostCode().trim());
+        }
+        String maidenName = record.getMaidenName();
+        return FamilyMember.trusted(record.getFirstName().trim(), record.getLastName().trim(),
+                maidenName == null ? "" : maidenName.trim(), record.getGender(), address, record.getLifeDescription());
+    }
+
+    /**
+     * Читает файл старого формата, сохранённый сериализацией Java. Сериализация
+     * рекурсивно проходит по ссылкам на родственников, поэтому длинные родословные
+     * читаются в отдельном потоке с большим стеком
+     */
+    private static FamilyTree readLegacy(InputStream in) throws IOException {
+        Object[] result = new Object[1];
+        Thread reader = new Thread(null, () -> {
+            try {
+                ObjectInputStream objectIn = new LegacyObjectInputStream(in);
+                result[0] = (FamilyTree) objectIn.readObject();
+            }
+            catch (ClassNotFoundException | ClassCastException ex) {
+                result[0] = new IOException("Файл не содержит генеалогического древа", ex);
+            }
+            catch (Exception | StackOverflowError ex) {
+                result[0] = ex;
+            }
+        }, "legacy-reader", LEGACY_STACK_SIZE);
+        reader.start();
+        try {
+            reader.join();
+        }
+        catch (InterruptedException ex) {
+            reader.interrupt();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Операция отменена");
+        }
+        if (result[0] instanceof IOException) {
+            throw (IOException) result[0];
+        }
+        if (result[0] instanceof StackOverflowError) {
+            throw new IOException("Родословная слишком длинная для файла старого формата", (Throwable) result[0]);
+        }
+        if (result[0] instanceof Throwable) {
+            throw new IOException("Файл не может быть прочитан", (Throwable) result[0]);
+        }
+        return (FamilyTree) result[0];
+    }
+
+    /**
+     * Поток чтения файлов старого формата. Классы в них записаны без пакета,
+     * поэтому их имена отображаются на классы пакета familytree
+     */
+    private static final class LegacyObjectInputStream extends ObjectInputStream {
+        private static final Map<String, Class<?>> CLASSES = Map.of(
+                "FamilyTree", FamilyTree.class,
+                "FamilyMember", FamilyMember.class,
+                "FamilyMember$Gender", FamilyMember.Gender.class,
+                "Address", Address.class);
+
+        LegacyObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+            Class<?> type = CLASSES.get(descriptor.getName());
+            return type != null ? type : super.resolveClass(descriptor);
+        }
+    }
+
+    private static FamilyMember member(FamilyMember[] members, int id) {
+        return id < 0 ? null : members[id];
+    }
+
+    /**
+     * Запись чисел varint, строк через общую таблицу строк и индекса смещений
+     */
+    private static final class Writer {
+        private final CountingOutputStream counter;
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> strings = new HashMap<>();
+        private long[] stringOffsets = new long[64];
+        private long[] recordOffsets;
+        private int records;
+
+        /**
+         * @param count ожидаемое число записей, под которое сразу выделяется индекс смещений
+         */
+        Writer(OutputStream out, int count) {
+            this.counter = new CountingOutputStream(new BufferedOutputStream(out));
+            this.out = new DataOutputStream(counter);
+            this.recordOffsets = new long[Math.max(count, 1)];
+        }
+
+        void beginRecord() {
+            if (records == recordOffsets.length) {
+                recordOffsets = Arrays.copyOf(recordOffsets, records * 2);
+            }
+            recordOffsets[records++] = counter.count;
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            index = strings.size();
+            strings.put(value, index);
+            writeVarInt(index + 1);
+            if (index == stringOffsets.length) {
+                stringOffsets = Arrays.copyOf(stringOffsets, index * 2);
+            }
+            stringOffsets[index] = counter.count;
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Записывает индексы смещений и завершающий блок
+         * @param root идентификатор корня или MemberRecord.NONE
+         */
+        void finish(int root) throws IOException {
+            long stringIndex = counter.count;
+            out.writeInt(strings.size());
+            for (int i = 0; i < strings.size(); i++) {
+                out.writeLong(stringOffsets[i]);
+            }
+            long recordIndex = counter.count;
+            out.writeInt(records);
+            for (int i = 0; i < records; i++) {
+                out.writeLong(recordOffsets[i]);
+            }
+            out.writeLong(stringIndex);
+            out.writeLong(recordIndex);
+            out.writeInt(root);
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+    }
+
+    /**
+     * Потоковая запись древа, открытая через openWriter
+     */
+    public static final class RecordWriter {
+        private final Writer writer;
+        private final int count;
+        private int written;
+
+        private RecordWriter(Writer writer, int count) {
+            this.writer = writer;
+            this.count = count;
+        }
+
+        /**
+         * Записывает следующую запись; её идентификатор должен быть равен числу уже записанных
+         */
+        public void write(MemberRecord record) throws IOException {
+            if (written == count) {
+                throw new IllegalStateException("Все записи уже записаны");
+            }
+            if (record.getId() != written) {
+                throw new IllegalArgumentException("Ожидалась запись " + written + ", получена " + record.getId());
+            }
+            writer.beginRecord();
+            writer.writeString(record.getFirstName());
+            writer.writeString(record.getLastName());
+            writer.writeString(record.getMaidenName());
+            writer.out.writeByte(record.getGender().ordinal());
+            if (!record.hasAddress()) {
+                writer.out.writeByte(NO_ADDRESS);
+            }
+            else {
+                writer.out.writeByte(HAS_ADDRESS);
+                writer.writeString(record.getStreetNumber());
+                writer.writeString(record.getStreetName());
+                writer.writeString(record.getSuburb());
+                writer.writeString(record.getPostCode());
+            }
+            writer.writeString(record.getLifeDescription());
+            writer.writeVarInt(record.getFatherId() + 1);
+            writer.writeVarInt(record.getMotherId() + 1);
+            writer.writeVarInt(record.getSpouseId() + 1);
+            writer.writeVarInt(record.numChildren());
+            for (int j = 0; j < record.numChildren(); j++) {
+                writer.writeVarInt(record.getChildId(j));
+            }
+            written++;
+        }
+
+        /**
+         * вернуть число уже записанных записей
+         */
+        public int getWritten() {
+            return written;
+        }
+
+        /**
+         * Завершает файл ссылкой на корень и индексами смещений
+         * @param rootId идентификатор корня или MemberRecord.NONE
+         */
+        public void finish(int rootId) throws IOException {
+            if (written != count) {
+                throw new IllegalStateException("Записано " + written + " записей из " + count);
+            }
+            if (rootId < MemberRecord.NONE || rootId >= count) {
+                throw new IllegalArgumentException("Недопустимый идентификатор корня: " + rootId);
+            }
+            writer.writeVarInt(rootId + 1);
+            writer.finish(rootId);
+        }
+    }
+
+    /**
+     * Последовательное чтение записей файла, открытого через openReader.
+     * Записи читаются в порядке идентификаторов, корень известен после последней
+     */
+    public static final class RecordReader {
+        private final RecordInput input;
+        private final int count;
+        private int read;
+        private int rootId;
+
+        private RecordReader(RecordInput input) throws IOException {
+            this.input = input;
+            this.count = input.readVarInt();
+            if (count == 0) {
+                rootId = input.readVarInt() - 1;
+            }
+        }
+
+        /**
+         * вернуть количество членов семьи в файле
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * вернуть число уже прочитанных записей
+         */
+        public int getRead() {
+            return read;
+        }
+
+        /**
+         * Читает следующую запись. Идентификаторы родственников и корня проверяются
+         * на попадание в число записей файла
+         * @throws IOException если файл повреждён или не дочитан
+         */
+        public MemberRecord read() throws IOException {
+            if (read == count) {
+                throw new IllegalStateException("Все записи уже прочитаны");
+            }
+            MemberRecord record = input.readRecord(read++);
+            checkId(record, record.getFatherId(), "отец");
+            checkId(record, record.getMotherId(), "мать");
+            checkId(record, record.getSpouseId(), "супруг");
+            for (int i = 0; i < record.numChildren(); i++) {
+                checkId(record, record.getChildId(i), "ребёнок");
+            }
+            if (read == count) {
+                rootId = input.readVarInt() - 1;
+                if (rootId < MemberRecord.NONE || rootId >= count) {
+                    throw new IOException("Файл повреждён: корень #" + rootId + " вне диапазона записей");
+                }
+            }
+            return record;
+        }
+
+        private void checkId(MemberRecord record, int id, String relative) throws IOException {
+            if (id < MemberRecord.NONE || id >= count) {
+                throw corrupted(record.getId(), relative + " #" + id + " вне диапазона записей");
+            }
+            if (id == record.getId()) {
+                throw corrupted(record.getId(), relative + " - сама эта запись");
+            }
+        }
+
+        /**
+         * вернуть идентификатор корня или MemberRecord.NONE; доступен после чтения всех записей
+         */
+        public int getRootId() {
+            if (read != count) {
+                throw new IllegalStateException("Прочитано " + read + " записей из " + count);
+            }
+            return rootId;
+        }
+    }
+
+    /**
+     * Поток, подсчитывающий количество записанных байт
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Источник данных для чтения записей: поток или отображённый в память файл
+     */
+    abstract static class RecordInput {
+
+        abstract int readUnsignedByte() throws IOException;
+
+        abstract String readString() throws IOException;
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Повреждённое число в файле");
+        }
+
+        /**
+         * Читает одну запись члена семьи с текущей позиции
+         * @param id идентификатор записи
+         */
+        MemberRecord readRecord(int id) throws IOException {
+            String firstName = readString();
+            String lastName = readString();
+            String maidenName = readString();
+            FamilyMember.Gender[] genders = FamilyMember.Gender.values();
+            int gender = readUnsignedByte();
+            if (gender >= genders.length) {
+                throw new IOException("Недопустимый пол в записи " + id);
+            }
+            String streetNumber = null;
+            String streetName = null;
+            String suburb = null;
+            String postCode = null;
+            if (readUnsignedByte() == HAS_ADDRESS) {
+                streetNumber = readString();
+                streetName = readString();
+                suburb = readString();
+                postCode = readString();
+            }
+            String lifeDescription = readString();
+            int father = readVarInt() - 1;
+            int mother = readVarInt() - 1;
+            int spouse = readVarInt() - 1;
+            int[] children = new int[readVarInt()];
+            for (int j = 0; j < children.length; j++) {
+                children[j] = readVarInt();
+            }
+            return new MemberRecord(id, firstName, lastName, maidenName, genders[gender],
+                    streetNumber, streetName, suburb, postCode, lifeDescription, father, mother, spouse, children);
+        }
+    }
+
+    /**
+     * Последовательное чтение из потока с накоплением таблицы строк
+     */
+    private static final class StreamInput extends RecordInput {
+        private final DataInputStream in;
+        private final ArrayList<String> strings = new ArrayList<>();
+
+        StreamInput(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        int readUnsignedByte() throws IOException {
+            return in.readUnsignedByte();
+        }
+
+        @Override
+        String readString() throws IOException {
+            int ref = readVarInt();
+            if (ref == 0) {
+                return null;
+            }
+            int index = ref - 1;
+            if (index < strings.size()) {
+                return strings.get(index);
+            }
+            if (index != strings.size()) {
+                throw new IOException("Повреждённая таблица строк");
+            }
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package familytree;
+
+/**
+ * Слушатель изменений генеалогического древа.
+ * События приходят после того, как изменение уже применено к членам семьи.
+ * Все методы имеют пустую реализацию по умолчанию.
+ */
+public interface FamilyTreeListener {
+
+    /**
+     * Член семьи впервые добавлен в древо и получил идентификатор
+     * @param member добавленный член семьи
+     */
+    default void memberAdded(FamilyMember member) {
+    }
+
+    /**
+     * Изменилось поле члена семьи
+     * @param member изменённый член семьи
+     * @param field изменённое поле
+     * @param oldValue прежнее значение поля
+     */
+    default void memberChanged(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+    }
+
+    /**
+     * Члену семьи добавлен родственник
+     * @param member член семьи, которому добавили родственника
+     * @param type тип родственника
+     * @param relative добавленный родственник
+     */
+    default void relativeAdded(FamilyMember member, FamilyMember.RelativeType type, FamilyMember relative) {
+    }
+
+    /**
+     * Изменилось поле адреса, принадлежащего члену семьи древа
+     * @param address изменённый адрес
+     * @param field изменённое поле
+     * @param oldValue прежнее значение поля
+     */
+    default void addressChanged(Address address, Address.Field field, String oldValue) {
+    }
+
+    /**
+     * Изменился корень древа
+     * @param root новый корень, может быть null
+     */
+    default void rootChanged(FamilyMember root) {
+    }
+}
@@ -0,0 +1,457 @@
+package familytree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import javax.swing.JTree;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * Модель jTree, построенная прямо поверх членов семьи генеалогического древа.
+ * Дочерние узлы вычисляются из getChildren(), getSpouse() и родителей только тогда,
+ * когда jTree впервые запрашивает их (обычно при раскрытии узла), и затем кэшируются.
+ * Поэтому построение модели стоит одинаково для семьи из 10 и из миллиона человек.
+ * Структура дерева:
+ * о невидимый корень «Главный»
+ * о корневой член семьи древа или надпись об отсутствии данных
+ * о у каждого члена семьи группы «Родители» (только у корня), «Супруг» и «Дети»
+ * о супруги и родители показываются листьями, дети раскрываются дальше
+ * Модель слушает изменения древа и обновляет только уже построенные узлы затронутых
+ * членов семьи, посылая jTree точечные события вставки и изменения узлов.
+ * Поэтому после правки не нужно перестраивать дерево, и раскрытые узлы сохраняются.
+ * Изменения древа должны происходить в потоке обработки событий Swing.
+ * Когда модель больше не нужна, следует вызвать dispose().
+ */
+public class FamilyTreeModel implements TreeModel, FamilyTreeListener {
+
+    /**
+     * Глубина (в уровнях jTree под корневым членом семьи), до которой дерево раскрывается при показе
+     */
+    public static final int DEFAULT_EXPANSION_DEPTH = 4;
+
+    private final FamilyTree familyTree;
+    private final Node main;
+    private final EventListenerList listeners = new EventListenerList();
+    private final IdentityHashMap<FamilyMember, ArrayList<Node>> built = new IdentityHashMap<>();
+
+    /**
+     * Вид узла дерева
+     */
+    public enum Kind {
+        ГЛАВНЫЙ,
+        НЕТ_ДАННЫХ,
+        ЧЛЕН_СЕМЬИ,
+        РОДИТЕЛИ,
+        СУПРУГ,
+        ДЕТИ,
+    }
+
+    /**
+     * Узел дерева: член семьи или группа родственников члена семьи.
+     * Дочерние узлы вычисляются при первом обращении
+     */
+    public static final class Node {
+        private final Kind kind;
+        private final FamilyMember member;
+        private final Node parent;
+        private final boolean expandable;
+        private List<Node> children;
+
+        private Node(Kind kind, FamilyMember member, Node parent, boolean expandable) {
+            this.kind = kind;
+            this.member = member;
+            this.parent = parent;
+            this.expandable = expandable;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * вернуть члена семьи узла; для групп - члена семьи, которому принадлежит группа
+         */
+        public FamilyMember getMember() {
+            return member;
+        }
+
+        /**
+         * вернуть true, если узел показывает самого члена семьи, а не группу или надпись
+         */
+        public boolean isMember() {
+            return kind == Kind.ЧЛЕН_СЕМЬИ;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case ГЛАВНЫЙ:
+                    return "Главный";
+                case НЕТ_ДАННЫХ:
+                    return "Данные дерева не найдены.";
+                case РОДИТЕЛИ:
+                    return "Родители";
+                case СУПРУГ:
+                    return "Супруг";
+                case ДЕТИ:
+                    return "Дети";
+                default:
+                    return member.toString();
+            }
+        }
+    }
+
+    /**
+     * Создаёт модель для генеалогического древа
+     * @param familyTree генеалогическое древо для отображения
+     */
+    public FamilyTreeModel(FamilyTree familyTree) {
+        this.familyTree = familyTree;
+        this.main = new Node(Kind.ГЛАВНЫЙ, null, null, true);
+        familyTree.addFamilyTreeListener(this);
+    }
+
+    /**
+     * Отписывает модель от изменений древа
+     */
+    public void dispose() {
+        familyTree.removeFamilyTreeListener(this);
+    }
+
+    public FamilyTree getFamilyTree() {
+        return familyTree;
+    }
+
+    @Override
+    public Object getRoot() {
+        return main;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        return children((Node) parent).get(index);
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        return children((Node) parent).size();
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return children((Node) node).isEmpty();
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (parent == null || child == null) {
+            return -1;
+        }
+        return children((Node) parent).indexOf(child);
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // дерево только для просмотра
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener listener) {
+        listeners.add(TreeModelListener.class, listener);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener listener) {
+        listeners.remove(TreeModelListener.class, listener);
+    }
+
+    /**
+     * вернуть дочерние узлы, вычисляя их при первом обращении
+     */
+    private List<Node> children(Node node) {
+        if (node.children == null) {
+            node.children = computeChildren(node);
+            for (Node child : node.children) {
+                index(child);
+            }
+        }
+        return node.children;
+    }
+
+    private void index(Node node) {
+        if (node.member != null) {
+            built.computeIfAbsent(node.member, m -> new ArrayList<>(2)).add(node);
+        }
+    }
+
+    /**
+     * Убирает из индекса узел и все его уже построенные потомки
+     */
+    private void unindex(Node node) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            if (current.member != null) {
+                ArrayList<Node> nodes = built.get(current.member);
+                if (nodes != null) {
+                    nodes.remove(current);
+                    if (nodes.isEmpty()) {
+                        built.remove(current.member);
+                    }
+                }
+            }
+            if (current.children != null) {
+                for (Node child : current.children) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    private List<Node> computeChildren(Node node) {
+        if (!node.expandable) {
+            return Collections.emptyList();
+        }
+        FamilyMember member = node.member;
+        List<Node> list = new ArrayList<>(3);
+        switch (node.kind) {
+            case ГЛАВНЫЙ:
+                if (familyTree.hasRoot()) {
+                    list.add(new Node(Kind.ЧЛЕН_СЕМЬИ, familyTree.getRoot(), node, true));
+                }
+                else {
+                    list.add(new Node(Kind.НЕТ_ДАННЫХ, null, node, false));
+                }
+                break;
+            case ЧЛЕН_СЕМЬИ:
+                if (member.has(FamilyMember.Attribute.РОДИТЕЛИ) && member == familyTree.getRoot()) {
+                    list.add(new Node(Kind.РОДИТЕЛИ, member, node, true));
+                }
+                if (member.has(FamilyMember.Attribute.СУПРУГ)) {
+                    list.add(new Node(Kind.СУПРУГ, member, node, true));
+                }
+                if (member.has(FamilyMember.Attribute.ДЕТИ)) {
+                    list.add(new Node(Kind.ДЕТИ, member, node, true));
+                }
+                break;
+            case РОДИТЕЛИ:
+                if (member.has(FamilyMember.Attribute.ОТЕЦ)) {
+                    list.add(new Node(Kind.ЧЛЕН_СЕМЬИ, member.getFather(), node, false));
+                }
+                if (member.has(FamilyMember.Attribute.МАТЬ)) {
+                    list.add(new Node(Kind.ЧЛЕН_СЕМЬИ, member.getMother(), node, false));
+                }
+                break;
+            case СУПРУГ:
+                list.add(new Node(Kind.ЧЛЕН_СЕМЬИ, member.getSpouse(), node, false));
+                break;
+            case ДЕТИ:
+                list = new ArrayList<>(member.numChildren());
+                for (FamilyMember child : member.getChildren()) {
+                    list.add(new Node(Kind.ЧЛЕН_СЕМЬИ, child, node, true));
+                }
+                break;
+            default:
+                break;
+        }
+        return list;
+    }
+
+    /**
+     * вернуть путь от корня модели до узла
+     */
+    public TreePath pathTo(Node node) {
+        ArrayList<Object> path = new ArrayList<>();
+        for (Node n = node; n != null; n = n.parent) {
+            path.add(n);
+        }
+        Collections.reverse(path);
+        return new TreePath(path.toArray());
+    }
+
+    /**
+     * Находит в этой модели путь, соответствующий пути из другой модели того же древа,
+     * сопоставляя узлы по виду и члену семьи
+     * @param path путь из прежней модели
+     * @return соответствующий путь или null, если такого узла больше нет
+     */
+    public TreePath translatePath(TreePath path) {
+        if (path == null) {
+            return null;
+        }
+        Node current = main;
+        for (int i = 1; i < path.getPathCount(); i++) {
+            Object component = path.getPathComponent(i);
+            if (!(component instanceof Node)) {
+                return null;
+            }
+            Node wanted = (Node) component;
+            Node found = null;
+            for (Node child : children(current)) {
+                if (child.kind == wanted.kind && child.member == wanted.member) {
+                    found = child;
+                    break;
+                }
+            }
+            if (found == null) {
+                return null;
+            }
+            current = found;
+        }
+        return pathTo(current);
+    }
+
+    /**
+     * Раскрывает дерево на заданное количество уровней под корневым членом семьи.
+     * Обходятся только раскрываемые узлы, поэтому стоимость не зависит от размера древа
+     * @param tree jTree, показывающий эту модель
+     * @param depth количество уровней
+     */
+    public void expandToDepth(JTree tree, int depth) {
+        ArrayList<Node> level = new ArrayList<>(children(main));
+        for (int d = 0; d <= depth && !level.isEmpty(); d++) {
+            ArrayList<Node> next = new ArrayList<>();
+            for (Node node : level) {
+                if (!isLeaf(node)) {
+                    tree.expandPath(pathTo(node));
+                    if (d < depth) {
+                        next.addAll(children(node));
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    @Override
+    public void memberChanged(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+        ArrayList<Node> nodes = built.get(member);
+        if (nodes == null) {
+            return;
+        }
+        for (Node node : new ArrayList<>(nodes)) {
+            if (node.isMember()) {
+                fireNodeChanged(node);
+            }
+        }
+    }
+
+    @Override
+    public void relativeAdded(FamilyMember member, FamilyMember.RelativeType type, FamilyMember relative) {
+        // связь может изменить списки детей и супругов у обоих участников и их ближайших родственников
+        FamilyMember[] affected = {
+                member, relative,
+                member.getSpouse(), relative.getSpouse(),
+                member.getFather(), member.getMother(),
+                relative.getFather(), relative.getMother(),
+                // у корня могли появиться родители, если его родителю добавили супруга
+                familyTree.getRoot(),
+        };
+        IdentityHashMap<FamilyMember, Boolean> done = new IdentityHashMap<>();
+        for (FamilyMember m : affected) {
+            if (m != null && done.put(m, Boolean.TRUE) == null) {
+                refresh(m);
+            }
+        }
+    }
+
+    @Override
+    public void rootChanged(FamilyMember root) {
+        if (main.children != null) {
+            for (Node child : main.children) {
+                unindex(child);
+            }
+            main.children = null;
+        }
+        fireTreeStructureChanged(main);
+    }
+
+    /**
+     * Сверяет уже построенные узлы члена семьи с его текущими родственниками
+     */
+    private void refresh(FamilyMember member) {
+        ArrayList<Node> nodes = built.get(member);
+        if (nodes == null) {
+            return;
+        }
+        for (Node node : new ArrayList<>(nodes)) {
+            if (node.children != null) {
+                reconcile(node);
+            }
+        }
+    }
+
+    /**
+     * Приводит кэшированные дочерние узлы к актуальному состоянию. Если прежние узлы
+     * сохранились в том же порядке, новые вставляются с событием treeNodesInserted,
+     * иначе поддерево узла перестраивается с событием treeStructureChanged
+     */
+    private void reconcile(Node node) {
+        List<Node> current = node.children;
+        List<Node> expected = computeChildren(node);
+        ArrayList<Node> merged = new ArrayList<>(expected.size());
+        int[] inserted = new int[expected.size()];
+        int insertedCount = 0;
+        int next = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            Node wanted = expected.get(i);
+            if (next < current.size() && current.get(next).kind == wanted.kind && current.get(next).member == wanted.member) {
+                merged.add(current.get(next++));
+            }
+            else {
+                merged.add(wanted);
+                inserted[insertedCount++] = i;
+            }
+        }
+        if (next < current.size()) {
+            for (Node child : current) {
+                unindex(child);
+            }
+            node.children = null;
+            fireTreeStructureChanged(node);
+            return;
+        }
+        if (insertedCount == 0) {
+            return;
+        }
+        node.children = merged;
+        int[] indices = new int[insertedCount];
+        Object[] children = new Object[insertedCount];
+        for (int i = 0; i < insertedCount; i++) {
+            indices[i] = inserted[i];
+            children[i] = merged.get(inserted[i]);
+            index(merged.get(inserted[i]));
+        }
+        TreeModelEvent event = new TreeModelEvent(this, pathTo(node), indices, children);
+        for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+            listener.treeNodesInserted(event);
+        }
+    }
+
+    private void fireNodeChanged(Node node) {
+        Node parent = node.parent;
+        int index = parent.children.indexOf(node);
+        TreeModelEvent event = new TreeModelEvent(this, pathTo(parent), new int[]{index}, new Object[]{node});
+        for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+            listener.treeNodesChanged(event);
+        }
+    }
+
+    private void fireTreeStructureChanged(Node node) {
+        TreeModelEvent event = new TreeModelEvent(this, pathTo(node));
+        for (TreeModelListener listener : listeners.getListeners(TreeModelListener.class)) {
+            listener.treeStructureChanged(event);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package familytree;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенный HTTP-сервер только для чтения, отвечающий на запросы к загруженному
+ * древу в формате JSON. Слушает только локальный адрес. Запросы:
+ * о GET /tree - число членов семьи и идентификатор корня
+ * о GET /members/{id} - член семьи со ссылками на родственников
+ * о GET /members/{id}/children - дети
+ * о GET /members/{id}/ancestors?depth=n - предки с номером поколения, не дальше depth поколений
+ * о GET /search?q=запрос&limit=n - полнотекстовый поиск по описаниям и адресам
+ * о GET /search?name=начало&limit=n - поиск по началу имени, фамилии или девичьей фамилии
+ * о GET /search?suburb=пункт&limit=n - жители населённого пункта, по адресам
+ * о GET /search?postcode=индекс&limit=n - жители с почтовым индексом, по адресам
+ * Каждый запрос выполняется в отдельном виртуальном потоке, если JVM их поддерживает.
+ * Ответ строится под блокировкой чтения древа, поэтому древо можно править,
+ * пока сервер работает. Готовые ответы хранятся в кэше LRU, который очищается
+ * при любом изменении древа.
+ */
+public class FamilyTreeServer implements FamilyTreeListener {
+
+    public static final int DEFAULT_PORT = 8765;
+
+    /**
+     * Наибольшее число ответов в кэше
+     */
+    public static final int CACHE_SIZE = 4096;
+
+    /**
+     * Наибольшее число результатов поиска в одном ответе
+     */
+    public static final int MAX_SEARCH_RESULTS = 1000;
+
+    private static final int DEFAULT_SEARCH_RESULTS = 20;
+    private static final int BACKLOG = 4096;
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    static {
+        // заголовки и тело ответа пишутся в сокет отдельно, и без TCP_NODELAY алгоритм
+        // Нейгла вместе с отложенным подтверждением задерживает каждый ответ на 40 мс.
+        // Свойство читается при первом создании HttpServer, поэтому задаётся заранее
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final FamilyTree tree;
+    private final FullTextIndex index;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ResponseCache cache = new ResponseCache(CACHE_SIZE);
+
+    /**
+     * Создаёт сервер и подписывается на изменения древа; запросы принимаются после start
+     * @param tree древо для запросов
+     * @param index полнотекстовый индекс этого древа
+     * @param port порт на локальном адресе или 0 для любого свободного
+     */
+    public FamilyTreeServer(FamilyTree tree, FullTextIndex index, int port) throws IOException {
+        this.tree = tree;
+        this.index = index;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.executor = newExecutor();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        tree.addFamilyTreeListener(this);
+    }
+
+    /**
+     * Исполнитель запросов: виртуальный поток на каждый запрос на Java 21 и новее.
+     * Сборка нацелена на Java 17, поэтому фабрика ищется через отражение, а без
+     * виртуальных потоков используется пул обычных потоков по числу процессоров:
+     * запросы к древу в памяти не блокируются, и больше потоков не ускорит ответы
+     */
+    static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException ex) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory threads = task -> {
+                Thread thread = new Thread(task, "family-tree-http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2, threads);
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Останавливает сервер, дожидаясь завершения начатых запросов, и отписывается от древа
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        tree.removeFamilyTreeListener(this);
+    }
+
+    /**
+     * вернуть порт, на котором сервер принимает запросы
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Response response;
+            if (!exchange.getRequestMethod().equals("GET")) {
+                response = Response.error(405, "Поддерживается только GET");
+            }
+            else {
+                URI uri = exchange.getRequestURI();
+                String key = uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+                long version = cache.version();
+                response = cache.get(key);
+                if (response == null) {
+                    Map<String, String> query = parseQuery(uri.getRawQuery());
+                    response = tree.read(() -> respond(uri.getRawPath(), query));
+                    cache.put(key, response, version);
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body);
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Строит ответ на запрос
+     * @param path путь запроса без декодирования
+     * @param query параметры запроса
+     */
+    Response respond(String path, Map<String, String> query) {
+        String[] parts = path.split("/");
+        // путь начинается с «/», поэтому parts[0] пустая строка
+        if (parts.length == 2 && parts[1].equals("tree")) {
+            StringBuilder json = new StringBuilder("{\"memberCount\":").append(tree.getMemberCount())
+                    .append(",\"rootId\":");
+            appendId(json, tree.hasRoot() ? tree.getRoot() : null);
+            return Response.ok(json.append('}'));
+        }
+        if (parts.length == 2 && parts[1].equals("search")) {
+            return search(query);
+        }
+        if ((parts.length == 3 || parts.length == 4) && parts[1].equals("members")) {
+            FamilyMember member = member(parts[2]);
+            if (member == null) {
+                return Response.error(404, "Член семьи не найден: " + parts[2]);
+            }
+            if (parts.length == 3) {
+                StringBuilder json = new StringBuilder();
+                appendMember(json, member);
+                return Response.ok(json);
+            }
+            if (parts[3].equals("children")) {
+                return Response.ok(appendSummaries(new StringBuilder(), member.getChildren()));
+            }
+            if (parts[3].equals("ancestors")) {
+                return ancestors(member, query);
+            }
+        }
+        return Response.error(404, "Неизвестный запрос: " + path);
+    }
+
+    private FamilyMember member(String id) {
+        int value;
+        try {
+            value = Integer.parseInt(id);
+        }
+        catch (NumberFormatException ex) {
+            return null;
+        }
+        return value >= 0 && value < tree.getMemberCount() ? tree.getMember(value) : null;
+    }
+
+    private Response ancestors(FamilyMember member, Map<String, String> query) {
+        int depth;
+        try {
+            depth = intParameter(query, "depth", Integer.MAX_VALUE);
+        }
+        catch (IllegalArgumentException ex) {
+            return Response.error(400, ex.getMessage());
+        }
+        StringBuilder json = new StringBuilder("[");
+        FamilyTraversal.ancestors(member, (ancestor, generation) -> {
+            if (generation > 0) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append("{\"generation\":").append(generation).append(',');
+                appendSummaryFields(json, ancestor);
+                json.append('}');
+            }
+            return generation < depth;
+        });
+        return Response.ok(json.append(']'));
+    }
+
+    private Response search(Map<String, String> query) {
+        String text = query.get("q");
+        String name = query.get("name");
+        String suburb = query.get("suburb");
+        String postCode = query.get("postcode");
+        if ((text == null || text.isBlank()) && (name == null || name.isBlank())
+                && (suburb == null || suburb.isBlank()) && (postCode == null || postCode.isBlank())) {
+            return Response.error(400, "Не указан параметр q, name, suburb или postcode");
+        }
+        int limit;
+        try {
+            limit = Math.min(intParameter(query, "limit", DEFAULT_SEARCH_RESULTS), MAX_SEARCH_RESULTS);
+        }
+        catch (IllegalArgumentException ex) {
+            return Response.error(400, ex.getMessage());
+        }
+        if (suburb != null && !suburb.isBlank()) {
+            return Response.ok(appendSummaries(new StringBuilder(), first(tree.findBySuburb(suburb), limit)));
+        }
+        if (postCode != null && !postCode.isBlank()) {
+            return Response.ok(appendSummaries(new StringBuilder(), first(tree.findByPostCode(postCode), limit)));
+        }
+        if (text == null || text.isBlank()) {
+            return Response.ok(appendSummaries(new StringBuilder(), tree.findByNamePrefix(name, limit)));
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (FullTextIndex.Hit hit : index.search(text, limit)) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"score\":").append(hit.getScore()).append(',');
+            appendSummaryFields(json, hit.getMember());
+            json.append('}');
+        }
+        return Response.ok(json.append(']'));
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= 0) {
+                return result;
+            }
+        }
+        catch (NumberFormatException ex) {
+            // сообщается ниже
+        }
+        throw new IllegalArgumentException("Параметр " + name + " должен быть неотрицательным целым числом");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void appendMember(StringBuilder json, FamilyMember member) {
+        json.append('{');
+        appendSummaryFields(json, member);
+        json.append(",\"lifeDescription\":");
+        appendString(json, member.getLifeDescription());
+        Address address = member.getAddress();
+        json.append(",\"address\":");
+        if (address == null) {
+            json.append("null");
+        }
+        else {
+            json.append("{\"streetNumber\":");
+            appendString(json, address.getStreetNumber());
+            json.append(",\"streetName\":");
+            appendString(json, address.getStreetName());
+            json.append(",\"suburb\":");
+            appendString(json, address.getSuburb());
+            json.append(",\"postCode\":");
+            appendString(json, address.getPostCode());
+            json.append('}');
+        }
+        json.append(",\"fatherId\":");
+        appendId(json, member.getFather());
+        json.append(",\"motherId\":");
+        appendId(json, member.getMother());
+        json.append(",\"spouseId\":");
+        appendId(json, member.getSpouse());
+        json.append(",\"childIds\":[");
+        List<FamilyMember> children = member.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(children.get(i).getId());
+        }
+        json.append("]}");
+    }
+
+    private static List<FamilyMember> first(List<FamilyMember> members, int limit) {
+        return members.size() > limit ? members.subList(0, limit) : members;
+    }
+
+    private static StringBuilder appendSummaries(StringBuilder json, List<FamilyMember> members) {
+        json.append('[');
+        for (int i = 0; i < members.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('{');
+            appendSummaryFields(json, members.get(i));
+            json.append('}');
+        }
+        return json.append(']');
+    }
+
+    private static void appendSummaryFields(StringBuilder json, FamilyMember member) {
+        json.append("\"id\":").append(member.getId()).append(",\"firstName\":");
+        appendString(json, member.getFirstName());
+        json.append(",\"lastName\":");
+        appendString(json, member.getLastName());
+        json.append(",\"maidenName\":");
+        appendString(json, member.getMaidenName());
+        json.append(",\"gender\":");
+        appendString(json, member.getGender() != null ? member.getGender().name() : null);
+    }
+
+    private static void appendId(StringBuilder json, FamilyMember member) {
+        if (member == null) {
+            json.append("null");
+        }
+        else {
+            json.append(member.getId());
+        }
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    @Override
+    public void memberAdded(FamilyMember member) {
+        cache.invalidate();
+    }
+
+    @Override
+    public void memberChanged(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+        cache.invalidate();
+    }
+
+    @Override
+    public void relativeAdded(FamilyMember member, FamilyMember.RelativeType type, FamilyMember relative) {
+        cache.invalidate();
+    }
+
+    @Override
+    public void addressChanged(Address address, Address.Field field, String oldValue) {
+        cache.invalidate();
+    }
+
+    @Override
+    public void rootChanged(FamilyMember root) {
+        cache.invalidate();
+    }
+
+    /**
+     * Готовый ответ: код состояния и тело в UTF-8
+     */
+    static final class Response {
+        final int status;
+        final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response ok(CharSequence json) {
+            return new Response(200, json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response error(int status, String message) {
+            StringBuilder json = new StringBuilder("{\"error\":");
+            appendString(json, message);
+            return new Response(status, json.append('}').toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Кэш ответов LRU с номером версии древа. Ответ, построенный до изменения
+     * древа, не попадает в кэш, даже если его построение закончилось после очистки
+     */
+    private static final class ResponseCache {
+        private final LinkedHashMap<String, Response> responses;
+        private long version;
+
+        ResponseCache(int capacity) {
+            this.responses = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized Response get(String key) {
+            return responses.get(key);
+        }
+
+        synchronized void put(String key, Response response, long builtAt) {
+            if (builtAt == version) {
+                responses.put(key, response);
+            }
+        }
+
+        synchronized void invalidate() {
+            version++;
+            responses.clear();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package familytree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Проверка имён, фамилий и частей адреса. Сеттеры FamilyMember и Address
+ * проверяют одно значение и бросают IllegalArgumentException, а validate
+ * проверяет за один проход весь набор записей (например, прочитанный из файла)
+ * и возвращает все найденные нарушения сразу.
+ * <p>
+ * Значения проверяются посимвольно, без регулярных выражений и без выделения
+ * памяти. Правила совпадают с прежними выражениями сеттеров: имя состоит из
+ * букв, пробелов, точек, апострофов и дефисов ("^[\\p{L} .'-]+$"), часть адреса из
+ * символов "^[a-zA-Zа-яА-ЯёЁ0-9'/№#-_ ]+$" (где #-_ означает диапазон символов
+ * от '#' до '_'), номер дома, кроме того, содержит цифру. Пробельные символы
+ * по краям значения не учитываются, как и в сеттерах, которые их отбрасывают.
+ */
+public final class FieldValidator {
+
+    static final String INVALID_FIRST_NAME = "Недопустимое имя";
+    static final String INVALID_LAST_NAME = "Недопустимая фамилия";
+    static final String INVALID_MAIDEN_NAME = "Недопустимая девичья фамилия";
+    static final String MAIDEN_NAME_NOT_FEMALE = "Девичьи фамилии только для женщин";
+    static final String INVALID_STREET_NUMBER = "Недопустимый номер дома.";
+    static final String INVALID_STREET_NAME = "Недопустимое название улицы.";
+    static final String INVALID_SUBURB = "Недопустимое название населённого пункта.";
+    static final String INVALID_POST_CODE = "Почтовый индекс должен быть положительным числовым значением и содержать более 4 цифр";
+
+    private FieldValidator() {
+    }
+
+    /**
+     * Нарушение, найденное при проверке записи члена семьи
+     */
+    public static final class Problem {
+        private final int id;
+        private final String message;
+        private final String value;
+
+        Problem(int id, String message, String value) {
+            this.id = id;
+            this.message = message;
+            this.value = value;
+        }
+
+        /**
+         * вернуть идентификатор записи с нарушением
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * вернуть описание нарушения, то же, что в исключении сеттера
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * вернуть недопустимое значение
+         */
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + id + ": " + message + " \"" + value + "\"";
+        }
+    }
+
+    /**
+     * Исключение чтения набора записей, в полях которых найдены нарушения.
+     * Сообщение перечисляет первые из них, getProblems() возвращает все
+     */
+    public static final class InvalidFieldsException extends IOException {
+        private static final long serialVersionUID = 1;
+        private static final int MAX_LISTED = 5;
+
+        private final transient List<Problem> problems;
+
+        InvalidFieldsException(List<Problem> problems) {
+            super(message(problems));
+            this.problems = Collections.unmodifiableList(problems);
+        }
+
+        private static String message(List<Problem> problems) {
+            StringBuilder sb = new StringBuilder("Недопустимые значения полей: ").append(problems.size());
+            for (int i = 0; i < Math.min(problems.size(), MAX_LISTED); i++) {
+                sb.append(i == 0 ? ": " : "; ").append(problems.get(i));
+            }
+            if (problems.size() > MAX_LISTED) {
+                sb.append("; ...");
+            }
+            return sb.toString();
+        }
+
+        /**
+         * вернуть все найденные нарушения
+         */
+        public List<Problem> getProblems() {
+            return problems;
+        }
+    }
+
+    /**
+     * Проверяет имя, фамилию или девичью фамилию
+     */
+    public static boolean isName(String value) {
+        if (value == null) {
+            return false;
+        }
+        int end = trimmedEnd(value);
+        int i = trimmedStart(value, end);
+        if (i == end) {
+            return false;
+        }
+        while (i < end) {
+            int c = value.codePointAt(i);
+            if (c != ' ' && c != '.' && c != '\'' && c != '-' && !Character.isLetter(c)) {
+                return false;
+            }
+            i += Character.charCount(c);
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет улицу, населённый пункт или почтовый индекс
+     */
+    public static boolean isAddressPart(String value) {
+        if (value == null) {
+            return false;
+        }
+        int end = trimmedEnd(value);
+        int start = trimmedStart(value, end);
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!isAddressCharacter(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет номер дома: часть адреса, в которой есть хотя бы одна цифра
+     */
+    public static boolean isStreetNumber(String value) {
+        return isAddressPart(value) && hasDigit(value);
+    }
+
+    /**
+     * вернуть true, если в значении есть цифра от 0 до 9
+     */
+    public static boolean hasDigit(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAddressCharacter(char c) {
+        // диапазон '#'..'_' включает цифры, латинские заглавные буквы, апостроф и '/'
+        return (c >= '#' && c <= '_') || (c >= 'a' && c <= 'z') || (c >= 'А' && c <= 'я')
+                || c == ' ' || c == 'ё' || c == 'Ё' || c == '№';
+    }
+
+    private static int trimmedEnd(String value) {
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int trimmedStart(String value, int end) {
+        int start = 0;
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Проверяет поля всех записей за один проход
+     * @return все нарушения в порядке записей; пустой список, если их нет
+     */
+    public static List<Problem> validate(Iterable<MemberRecord> records) {
+        ArrayList<Problem> problems = new ArrayList<>();
+        for (MemberRecord record : records) {
+            validate(record, problems);
+        }
+        return problems;
+    }
+
+    /**
+     * Проверяет поля всех записей и бросает InvalidFieldsException со всеми
+     * нарушениями, если они есть
+     */
+    static void check(Iterable<MemberRecord> records) throws InvalidFieldsException {
+        List<Problem> problems = validate(records);
+        if (!problems.isEmpty()) {
+            throw new InvalidFieldsException(problems);
+        }
+    }
+
+    private static void validate(MemberRecord record, List<Problem> problems) {
+        int id = record.getId();
+        if (!isName(record.getFirstName())) {
+            problems.add(new Problem(id, INVALID_FIRST_NAME, record.getFirstName()));
+        }
+        if (!isName(record.getLastName())) {
+            problems.add(new Problem(id, INVALID_LAST_NAME, record.getLastName()));
+        }
+        String maidenName = record.getMaidenName();
+        if (maidenName != null && !maidenName.isEmpty()) {
+            if (!isName(maidenName)) {
+                problems.add(new Problem(id, INVALID_MAIDEN_NAME, maidenName));
+            }
+            else if (record.getGender() != FamilyMember.Gender.ЖЕНСКИЙ) {
+                problems.add(new Problem(id, MAIDEN_NAME_NOT_FEMALE, maidenName));
+            }
+        }
+        if (record.hasAddress()) {
+            if (!isStreetNumber(record.getStreetNumber())) {
+                problems.add(new Problem(id, INVALID_STREET_NUMBER, record.getStreetNumber()));
+            }
+            if (!isAddressPart(record.getStreetName())) {
+                problems.add(new Problem(id, INVALID_STREET_NAME, record.getStreetName()));
+            }
+            if (!isAddressPart(record.getSuburb())) {
+                problems.add(new Problem(id, INVALID_SUBURB, record.getSuburb()));
+            }
+            if (!isAddressPart(record.getPostCode())) {
+                problems.add(new Problem(id, INVALID_POST_CODE, record.getPostCode()));
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package familytree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Полнотекстовый индекс по описаниям жизни и адресам членов семьи.
+ * Текст разбивается на слова из букв и цифр (кириллица, латиница и любые другие
+ * алфавиты Unicode), слова приводятся к нижнему регистру, «ё» приравнивается к «е».
+ * Для каждого слова хранятся члены семьи и позиции слова в их тексте, поэтому
+ * поддерживается поиск фраз. Индекс слушает изменения древа и обновляет записи
+ * только тех членов семьи, чьё описание или адрес изменились.
+ *
+ * Запрос состоит из слов и фраз в кавычках, которые должны встречаться все сразу.
+ * Слова, соединённые OR (или ИЛИ), достаточно найти хотя бы одно, слово с минусом
+ * исключает члена семьи из результата. Результаты упорядочены по tf-idf.
+ *
+ * Индекс можно сохранить рядом с файлом древа (*.fti). Сохранённый индекс привязан
+ * к размеру и времени изменения файла древа и его журнала; если они не совпадают,
+ * индекс строится заново.
+ */
+public class FullTextIndex implements FamilyTreeListener {
+
+    public static final String EXTENSION = ".fti";
+
+    private static final int MAGIC = 0x46544958; // "FTIX"
+    private static final int VERSION = 1;
+
+    /**
+     * Найденный член семьи и его оценка соответствия запросу
+     */
+    public static final class Hit {
+        private final FamilyMember member;
+        private final double score;
+
+        private Hit(FamilyMember member, double score) {
+            this.member = member;
+            this.score = score;
+        }
+
+        public FamilyMember getMember() {
+            return member;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return member.toString();
+        }
+    }
+
+    private final FamilyTree tree;
+    private final HashMap<String, HashMap<Integer, int[]>> postings = new HashMap<>();
+    private final ArrayList<String[]> docTerms = new ArrayList<>();
+
+    /**
+     * Строит индекс по всем членам семьи древа и подписывает его на изменения древа
+     */
+    public FullTextIndex(FamilyTree tree) {
+        this(tree, true);
+        tree.addFamilyTreeListener(this);
+    }
+
+    private FullTextIndex(FamilyTree tree, boolean build) {
+        this.tree = tree;
+        if (build) {
+            for (FamilyMember member : tree.getMembers()) {
+                index(member);
+            }
+        }
+    }
+
+    /**
+     * Отписывает индекс от изменений древа
+     */
+    public void dispose() {
+        tree.removeFamilyTreeListener(this);
+    }
+
+    /**
+     * вернуть файл индекса для указанного файла древа
+     */
+    public static File indexFile(File base) {
+        String name = base.getName();
+        if (name.endsWith(".ft")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        return new File(base.getAbsoluteFile().getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Разбивает текст на нормализованные слова
+     */
+    public static List<String> tokenize(String text) {
+        ArrayList<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            }
+            else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT).replace('ё', 'е'));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Ищет членов семьи по запросу
+     * @param query слова, фразы в кавычках, OR и исключения с минусом
+     * @param limit наибольшее число результатов
+     * @return найденные члены семьи по убыванию оценки
+     */
+    public List<Hit> search(String query, int limit) {
+        ArrayList<List<ArrayList<String>>> groups = new ArrayList<>();
+        ArrayList<ArrayList<String>> excluded = new ArrayList<>();
+        parse(query, groups, excluded);
+        if (groups.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        HashMap<Integer, Double> scores = null;
+        for (List<ArrayList<String>> group : groups) {
+            HashMap<Integer, Double> groupScores = new HashMap<>();
+            for (ArrayList<String> clause : group) {
+                Map<Integer, Integer> matches = match(clause);
+                if (matches.isEmpty()) {
+                    continue;
+                }
+                double idf = Math.log(1 + (double) tree.getMemberCount() / matches.size());
+                for (Map.Entry<Integer, Integer> entry : matches.entrySet()) {
+                    double tf = 1 + Math.log(entry.getValue());
+                    groupScores.merge(entry.getKey(), tf * idf * clause.size(), Double::sum);
+                }
+            }
+            if (scores == null) {
+                scores = groupScores;
+            }
+            else {
+                HashMap<Integer, Double> both = new HashMap<>();
+                for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                    Double other = groupScores.get(entry.getKey());
+                    if (other != null) {
+                        both.put(entry.getKey(), entry.getValue() + other);
+                    }
+                }
+                scores = both;
+            }
+            if (scores.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+        for (ArrayList<String> clause : excluded) {
+            scores.keySet().removeAll(match(clause).keySet());
+        }
+
+        ArrayList<Hit> hits = new ArrayList<>(scores.size());
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            hits.add(new Hit(tree.getMember(entry.getKey()), entry.getValue()));
+        }
+        hits.sort((a, b) -> a.score != b.score
+                ? Double.compare(b.score, a.score)
+                : Integer.compare(a.member.getId(), b.member.getId()));
+        if (hits.size() > limit) {
+            return new ArrayList<>(hits.subList(0, limit));
+        }
+        return hits;
+    }
+
+    /**
+     * Разбирает запрос на группы условий (внутри группы условия соединены OR,
+     * группы между собой AND) и исключающие условия. Условие — последовательность слов
+     */
+    private static void parse(String query, List<List<ArrayList<String>>> groups, List<ArrayList<String>> excluded) {
+        boolean or = false;
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            boolean negate = false;
+            if (c == '-') {
+                negate = true;
+                i++;
+            }
+            int end;
+            String text;
+            if (i < query.length() && query.charAt(i) == '"') {
+                end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = query.length();
+                }
+                text = query.substring(i + 1, end);
+                end++;
+            }
+            else {
+                end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                text = query.substring(i, end);
+                if (!negate && (text.equals("OR") || text.equals("ИЛИ"))) {
+                    or = !groups.isEmpty();
+                    i = end;
+                    continue;
+                }
+            }
+            i = end;
+
+            ArrayList<String> clause = new ArrayList<>(tokenize(text));
+            if (clause.isEmpty()) {
+                continue;
+            }
+            if (negate) {
+                excluded.add(clause);
+            }
+            else if (or) {
+                groups.get(groups.size() - 1).add(clause);
+            }
+            else {
+                ArrayList<ArrayList<String>> group = new ArrayList<>(1);
+                group.add(clause);
+                groups.add(group);
+            }
+            or = false;
+        }
+    }
+
+    /**
+     * вернуть число вхождений последовательности слов для каждого члена семьи, где она есть
+     */
+    private Map<Integer, Integer> match(List<String> phrase) {
+        HashMap<Integer, int[]> first = postings.get(phrase.get(0));
+        HashMap<Integer, Integer> result = new HashMap<>();
+        if (first == null) {
+            return result;
+        }
+        for (Map.Entry<Integer, int[]> entry : first.entrySet()) {
+            int doc = entry.getKey();
+            int count = 0;
+            for (int position : entry.getValue()) {
+                if (followedBy(doc, phrase, position)) {
+                    count++;
+                }
+            }
+            if (count > 0) {
+                result.put(doc, count);
+            }
+        }
+        return result;
+    }
+
+    private boolean followedBy(int doc, List<String> phrase, int position) {
+        for (int k = 1; k < phrase.size(); k++) {
+            HashMap<Integer, int[]> docs = postings.get(phrase.get(k));
+            int[] positions = docs == null ? null : docs.get(doc);
+            if (positions == null || Arrays.binarySearch(positions, position + k) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void memberAdded(FamilyMember member) {
+        index(member);
+    }
+
+    @Override
+    public void memberChanged(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+        if (field == FamilyMember.Field.ОПИСАНИЕ || field == FamilyMember.Field.АДРЕС) {
+            index(member);
+        }
+    }
+
+    @Override
+    public void addressChanged(Address address, Address.Field field, String oldValue) {
+        for (FamilyMember member : tree.getResidents(address)) {
+            index(member);
+        }
+    }
+
+    /**
+     * Заменяет записи индекса для члена семьи записями по его текущему тексту
+     */
+    private void index(FamilyMember member) {
+        int id = member.getId();
+        while (docTerms.size() <= id) {
+            docTerms.add(null);
+        }
+        unindex(id);
+
+        HashMap<String, ArrayList<Integer>> positions = new HashMap<>();
+        int position = add(positions, member.getLifeDescription(), 0);
+        Address address = member.getAddress();
+        if (address != null) {
+            // пропуск позиции не даёт фразе склеиться из соседних полей
+            position = add(positions, address.getStreetNumber(), position + 1);
+            position = add(positions, address.getStreetName(), position + 1);
+            position = add(positions, address.getSuburb(), position + 1);
+            add(positions, address.getPostCode(), position + 1);
+        }
+
+        String[] terms = new String[positions.size()];
+        int t = 0;
+        for (Map.Entry<String, ArrayList<Integer>> entry : positions.entrySet()) {
+            ArrayList<Integer> list = entry.getValue();
+            int[] array = new int[list.size()];
+            for (int k = 0; k < array.length; k++) {
+                array[k] = list.get(k);
+            }
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(id, array);
+            terms[t++] = entry.getKey();
+        }
+        docTerms.set(id, terms);
+    }
+
+    private static int add(HashMap<String, ArrayList<Integer>> positions, String text, int position) {
+        for (String token : tokenize(text)) {
+            positions.computeIfAbsent(token, k -> new ArrayList<>(1)).add(position++);
+        }
+        return position;
+    }
+
+    private void unindex(int id) {
+        String[] terms = docTerms.get(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            HashMap<Integer, int[]> docs = postings.get(term);
+            docs.remove(id);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+        docTerms.set(id, null);
+    }
+
+    /**
+     * Сохраняет индекс рядом с файлом древа. Вызывается после сохранения
+     * файла древа и журнала, так как индекс привязывается к их текущему состоянию
+     * @param base основной файл древа
+     */
+    public void save(File base) throws IOException {
+        File file = indexFile(base);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeStamp(out, base);
+            out.writeInt(tree.getMemberCount());
+            out.writeInt(postings.size());
+            for (Map.Entry<String, HashMap<Integer, int[]>> term : postings.entrySet()) {
+                byte[] bytes = term.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeInt(term.getValue().size());
+                for (Map.Entry<Integer, int[]> doc : term.getValue().entrySet()) {
+                    out.writeInt(doc.getKey());
+                    int[] positions = doc.getValue();
+                    out.writeInt(positions.length);
+                    for (int position : positions) {
+                        out.writeInt(position);
+                    }
+                }
+            }
+        }
+        catch (IOException ex) {
+            temp.delete();
+            throw ex;
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Загружает сохранённый индекс древа или строит его заново, если сохранённый
+     * индекс отсутствует, повреждён или относится к другой версии файла
+     * @param tree древо, прочитанное из base вместе с его журналом
+     * @param base основной файл древа
+     */
+    public static FullTextIndex open(FamilyTree tree, File base) {
+        File file = indexFile(base);
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                FullTextIndex index = read(tree, base, in, file.length());
+                if (index != null) {
+                    tree.addFamilyTreeListener(index);
+                    return index;
+                }
+            }
+            catch (IOException | RuntimeException ex) {
+                // индекс лишь ускоряет открытие, поэтому повреждённый просто строится заново
+            }
+        }
+        return new FullTextIndex(tree);
+    }
+
+    private static FullTextIndex read(FamilyTree tree, File base, DataInputStream in, long length) throws IOException {
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION || !readStamp(in, base)
+                || in.readInt() != tree.getMemberCount()) {
+            return null;
+        }
+        FullTextIndex index = new FullTextIndex(tree, false);
+        HashMap<Integer, ArrayList<String>> terms = new HashMap<>();
+        int termCount = in.readInt();
+        for (int t = 0; t < termCount; t++) {
+            int size = in.readInt();
+            if (size < 0 || size > length) {
+                throw new IOException("Повреждён индекс");
+            }
+            byte[] bytes = new byte[size];
+            in.readFully(bytes);
+            String term = new String(bytes, StandardCharsets.UTF_8);
+            int docCount = in.readInt();
+            HashMap<Integer, int[]> docs = new HashMap<>();
+            for (int d = 0; d < docCount; d++) {
+                int id = in.readInt();
+                int count = in.readInt();
+                if (id < 0 || id >= tree.getMemberCount() || count < 0 || count > length) {
+                    throw new IOException("Повреждён индекс");
+                }
+                int[] positions = new int[count];
+                for (int k = 0; k < count; k++) {
+                    positions[k] = in.readInt();
+                }
+                docs.put(id, positions);
+                terms.computeIfAbsent(id, k -> new ArrayList<>()).add(term);
+            }
+            index.postings.put(term, docs);
+        }
+        for (int id = 0; id < tree.getMemberCount(); id++) {
+            ArrayList<String> list = terms.get(id);
+            index.docTerms.add(list == null ? new String[0] : list.toArray(new String[0]));
+        }
+        return index;
+    }
+
+    private static void writeStamp(DataOutputStream out, File base) throws IOException {
+        File journal = ChangeJournal.journalFile(base);
+        out.writeLong(base.length());
+        out.writeLong(base.lastModified());
+        out.writeLong(journal.exists() ? journal.length() : -1);
+        out.writeLong(journal.exists() ? journal.lastModified() : -1);
+    }
+
+    private static boolean readStamp(DataInputStream in, File base) throws IOException {
+        File journal = ChangeJournal.journalFile(base);
+        return in.readLong() == base.length()
+                & in.readLong() == base.lastModified()
+                & in.readLong() == (journal.exists() ? journal.length() : -1)
+                & in.readLong() == (journal.exists() ? journal.lastModified() : -1);
+    }
+}
@@ -0,0 +1,290 @@
+package familytree;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Экспорт генеалогического древа в GEDCOM 5.5.1 (UTF-8).
+ *
+ * Члены семьи обходятся один раз по реестру древа, и каждая запись сразу пишется
+ * в канал через ChannelWriter, поэтому расход памяти не зависит от размера древа.
+ * Чтобы не хранить таблицу семей, идентификатор записи FAM составляется из
+ * идентификаторов родителей (@F12_34@, отсутствующий родитель обозначается N),
+ * и ссылки FAMC/FAMS вычисляются по самим родственным связям. Запись семьи пишет
+ * отец, а если отца нет - мать.
+ *
+ * Корень древа записывается первым, так как GedcomImporter делает корнем первую
+ * запись INDI. Девичья фамилия записывается вторым именем с TYPE birth.
+ */
+public final class GedcomExporter {
+
+    /**
+     * Наибольшая длина значения в одной строке; длинные строки переносятся через CONC
+     */
+    static final int MAX_VALUE_LENGTH = 200;
+
+    private static final int PROGRESS_STEP = 4096;
+    private static final String NO_VALUE = "-";
+
+    private GedcomExporter() {
+    }
+
+    public static void write(FamilyTree tree, WritableByteChannel channel) throws IOException {
+        write(tree, channel, TaskProgress.NONE);
+    }
+
+    /**
+     * Записывает древо в канал. Запись идёт под блокировкой чтения древа
+     * @param channel блокирующий канал, не закрывается
+     * @param progress получатель хода записи; при отмене бросается InterruptedIOException
+     */
+    public static void write(FamilyTree tree, WritableByteChannel channel, TaskProgress progress) throws IOException {
+        Lock lock = tree.readLock();
+        lock.lock();
+        try {
+            ChannelWriter out = new ChannelWriter(channel);
+            out.write("0 HEAD\n1 SOUR FamilyTree\n1 GEDC\n2 VERS 5.5.1\n2 FORM LINEAGE-LINKED\n1 CHAR UTF-8\n");
+            int count = tree.getMemberCount();
+            ArrayList<FamilyMember> partners = new ArrayList<>();
+            if (tree.hasRoot()) {
+                writeMember(out, tree.getRoot(), partners);
+            }
+            for (int id = 0; id < count; id++) {
+                if (id % PROGRESS_STEP == 0) {
+                    FamilyTreeCodec.report(progress, id, count);
+                }
+                FamilyMember member = tree.getMember(id);
+                if (member != tree.getRoot()) {
+                    writeMember(out, member, partners);
+                }
+            }
+            out.write("0 TRLR\n");
+            out.finish();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static void writeMember(ChannelWriter out, FamilyMember member, ArrayList<FamilyMember> partners)
+            throws IOException {
+        out.write("0 ");
+        individual(out, member).write(" INDI\n");
+        if (member.has(FamilyMember.Attribute.ДЕВИЧЬЯ_ФАМИЛИЯ)) {
+            writeName(out, member.getFirstName(), member.getLastName());
+            out.write("2 TYPE married\n");
+            writeName(out, member.getFirstName(), member.getMaidenName());
+            out.write("2 TYPE birth\n");
+        }
+        else {
+            writeName(out, member.getFirstName(), member.getLastName());
+        }
+        out.write(member.getGender() == FamilyMember.Gender.МУЖСКОЙ ? "1 SEX M\n" : "1 SEX F\n");
+        writeAddress(out, member.getAddress());
+        String description = member.getLifeDescription();
+        if (description != null && !description.isEmpty()) {
+            writeText(out, "1 NOTE ", description);
+        }
+        if (member.has(FamilyMember.Attribute.РОДИТЕЛИ)) {
+            out.write("1 FAMC ");
+            family(out, member.getFather(), member.getMother()).newLine();
+        }
+
+        partners(member, partners);
+        for (FamilyMember partner : partners) {
+            out.write("1 FAMS ");
+            if (member.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+                family(out, member, partner).newLine();
+            }
+            else {
+                family(out, partner, member).newLine();
+            }
+        }
+        for (FamilyMember partner : partners) {
+            if (member.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+                writeFamily(out, member, partner);
+            }
+            else if (partner == null) {
+                writeFamily(out, null, member);
+            }
+        }
+    }
+
+    /**
+     * Собирает вторых родителей детей члена семьи и его супруга, каждого один раз;
+     * null означает детей без второго родителя
+     */
+    private static void partners(FamilyMember member, List<FamilyMember> partners) {
+        partners.clear();
+        if (member.getSpouse() != null) {
+            partners.add(member.getSpouse());
+        }
+        boolean male = member.getGender() == FamilyMember.Gender.МУЖСКОЙ;
+        for (FamilyMember child : member.getChildren()) {
+            if ((male ? child.getFather() : child.getMother()) != member) {
+                continue;
+            }
+            FamilyMember partner = male ? child.getMother() : child.getFather();
+            if (!containsIdentity(partners, partner)) {
+                partners.add(partner);
+            }
+        }
+    }
+
+    private static boolean containsIdentity(List<FamilyMember> list, FamilyMember member) {
+        for (FamilyMember element : list) {
+            if (element == member) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeFamily(ChannelWriter out, FamilyMember husband, FamilyMember wife) throws IOException {
+        out.write("0 ");
+        family(out, husband, wife).write(" FAM\n");
+        if (husband != null) {
+            out.write("1 HUSB ");
+            individual(out, husband).newLine();
+        }
+        if (wife != null) {
+            out.write("1 WIFE ");
+            individual(out, wife).newLine();
+        }
+        FamilyMember parent = husband != null ? husband : wife;
+        for (FamilyMember child : parent.getChildren()) {
+            if (child.getFather() == husband && child.getMother() == wife) {
+                out.write("1 CHIL ");
+                individual(out, child).newLine();
+            }
+        }
+    }
+
+    private static void writeName(ChannelWriter out, String firstName, String lastName) throws IOException {
+        out.write("1 NAME ");
+        writeValue(out, firstName);
+        out.write(" /");
+        writeValue(out, lastName);
+        out.write("/\n");
+    }
+
+    /**
+     * Записывает адрес; значения-заполнители "-" и номер "0" пропускаются
+     */
+    private static void writeAddress(ChannelWriter out, Address address) throws IOException {
+        if (address == null) {
+            return;
+        }
+        boolean hasNumber = !address.getStreetNumber().equals("0");
+        boolean hasStreet = !address.getStreetName().equals(NO_VALUE);
+        boolean hasSuburb = !address.getSuburb().equals(NO_VALUE);
+        boolean hasPostCode = !address.getPostCode().equals(NO_VALUE);
+        if (!hasNumber && !hasStreet && !hasSuburb && !hasPostCode) {
+            return;
+        }
+        out.write("1 RESI\n2 ADDR");
+        if (hasNumber || hasStreet) {
+            out.write(' ');
+            writeStreet(out, address, hasNumber, hasStreet);
+        }
+        out.newLine();
+        if (hasNumber || hasStreet) {
+            out.write("3 ADR1 ");
+            writeStreet(out, address, hasNumber, hasStreet);
+            out.newLine();
+        }
+        if (hasSuburb) {
+            out.write("3 CITY ");
+            writeValue(out, address.getSuburb());
+            out.newLine();
+        }
+        if (hasPostCode) {
+            out.write("3 POST ");
+            writeValue(out, address.getPostCode());
+            out.newLine();
+        }
+    }
+
+    private static void writeStreet(ChannelWriter out, Address address, boolean hasNumber, boolean hasStreet)
+            throws IOException {
+        if (hasNumber) {
+            writeValue(out, address.getStreetNumber());
+        }
+        if (hasNumber && hasStreet) {
+            out.write(' ');
+        }
+        if (hasStreet && hasNumber) {
+            out.write(address.getStreetName());
+        }
+        else if (hasStreet) {
+            writeValue(out, address.getStreetName());
+        }
+    }
+
+    /**
+     * Записывает многострочный текст: строки через CONT, длинные строки частями через CONC
+     */
+    private static void writeText(ChannelWriter out, String prefix, String text) throws IOException {
+        out.write(prefix);
+        int start = 0;
+        int length = text.length();
+        boolean first = true;
+        while (start <= length) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            if (!first) {
+                out.write("2 CONT ");
+            }
+            first = false;
+            int from = start;
+            if (from < lineEnd && text.charAt(from) == '@') {
+                out.write('@');
+            }
+            while (lineEnd - from > MAX_VALUE_LENGTH) {
+                int to = from + MAX_VALUE_LENGTH;
+                if (Character.isHighSurrogate(text.charAt(to - 1))) {
+                    to--;
+                }
+                out.write(text, from, to).write("\n2 CONC ");
+                from = to;
+            }
+            out.write(text, from, lineEnd).newLine();
+            start = end + 1;
+        }
+    }
+
+    private static void writeValue(ChannelWriter out, String value) throws IOException {
+        if (value.startsWith("@")) {
+            out.write('@');
+        }
+        out.write(value);
+    }
+
+    private static ChannelWriter individual(ChannelWriter out, FamilyMember member) throws IOException {
+        return out.write("@I").write(member.getId()).write('@');
+    }
+
+    private static ChannelWriter family(ChannelWriter out, FamilyMember father, FamilyMember mother) throws IOException {
+        out.write("@F");
+        if (father != null) {
+            out.write(father.getId());
+        }
+        else {
+            out.write('N');
+        }
+        out.write('_');
+        if (mother != null) {
+            out.write(mother.getId());
+        }
+        else {
+            out.write('N');
+        }
+        return out.write('@');
+    }
+}
@@ -0,0 +1,858 @@
+package familytree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Потоковый импорт файлов GEDCOM 5.5 и 7.0.
+ *
+ * Файл читается за один проход построчно. В памяти остаются только созданные члены
+ * семьи, таблица идентификаторов записей (@I1@ и т.п.) и компактный массив ссылок
+ * из записей семей FAM, но не текст файла, поэтому его размер может намного
+ * превышать нужную для древа память.
+ *
+ * Записи INDI превращаются в членов семьи пакетами: значения пакета проверяются
+ * FieldValidator (теми же правилами, что в сеттерах FamilyMember и Address),
+ * недопустимые символы удаляются с предупреждением, после чего члены семьи
+ * создаются без повторной проверки. У записи INDI без RESI адрес не указан (null),
+ * как у члена семьи, созданного без адреса. Записи FAM могут ссылаться на записи,
+ * которые идут в файле позже, поэтому родственные связи устанавливаются после
+ * чтения всего файла.
+ *
+ * Поддерживаются кодировки UTF-8, UTF-16 (UNICODE), ANSI (windows-1252) и ASCII;
+ * ANSEL читается как ISO-8859-1, поэтому диакритика в таких файлах теряется.
+ * У члена семьи может быть только один супруг, поэтому из нескольких браков
+ * учитывается первый. Корнем древа становится первая импортированная запись INDI.
+ */
+public final class GedcomImporter {
+
+    /**
+     * Сколько записей INDI проверяется и создаётся за один раз
+     */
+    static final int BATCH_SIZE = 1024;
+
+    /**
+     * Сколько предупреждений сохраняется в результате; остальные только считаются
+     */
+    static final int MAX_WARNINGS = 1000;
+
+    private static final int PROGRESS_STEP = 4096;
+    private static final int MAX_LEVEL = 99;
+    private static final int NONE = -1;
+
+    private static final String UNKNOWN_NAME = "Неизвестно";
+    private static final String NO_VALUE = "-";
+    private static final String NO_NUMBER = "0";
+
+    private static final Pattern NAME_CHARACTER = Pattern.compile("[^\\p{L} .'-]");
+    private static final Pattern ADDRESS_CHARACTER = Pattern.compile("[^a-zA-Zа-яА-ЯёЁ0-9'/№#-_ ]");
+
+    /**
+     * Результат импорта: древо и предупреждения о пропущенных или исправленных данных
+     */
+    public static final class Result {
+        private final FamilyTree tree;
+        private final List<String> warnings;
+        private final int warningCount;
+
+        Result(FamilyTree tree, List<String> warnings, int warningCount) {
+            this.tree = tree;
+            this.warnings = Collections.unmodifiableList(warnings);
+            this.warningCount = warningCount;
+        }
+
+        public FamilyTree getTree() {
+            return tree;
+        }
+
+        /**
+         * вернуть первые MAX_WARNINGS предупреждений (только для чтения)
+         */
+        public List<String> getWarnings() {
+            return warnings;
+        }
+
+        /**
+         * вернуть общее число предупреждений
+         */
+        public int getWarningCount() {
+            return warningCount;
+        }
+    }
+
+    private GedcomImporter() {
+    }
+
+    /**
+     * Импортирует файл GEDCOM
+     * @param file файл для чтения
+     * @param progress получатель хода импорта; при отмене бросается InterruptedIOException
+     */
+    public static Result read(File file, TaskProgress progress) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return read(in, file.length(), progress);
+        }
+    }
+
+    /**
+     * Импортирует GEDCOM из потока
+     * @param in поток для чтения, не закрывается
+     * @param size размер данных в байтах для индикации хода или 0, если он неизвестен
+     * @param progress получатель хода импорта; при отмене бросается InterruptedIOException
+     */
+    public static Result read(InputStream in, long size, TaskProgress progress) throws IOException {
+        CountingInputStream counter = new CountingInputStream(in);
+        BufferedInputStream buffered = new BufferedInputStream(counter, 1 << 16);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(buffered, detectCharset(buffered)), 1 << 16);
+        Importer importer = new Importer(counter, size, progress);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            importer.line(line);
+        }
+        return importer.finish();
+    }
+
+    /**
+     * Определяет кодировку по метке порядка байтов или по строке CHAR заголовка
+     */
+    private static Charset detectCharset(BufferedInputStream in) throws IOException {
+        byte[] head = new byte[4096];
+        in.mark(head.length);
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        in.reset();
+        if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            in.skip(3);
+            return StandardCharsets.UTF_8;
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+            in.skip(2);
+            return StandardCharsets.UTF_16BE;
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+            in.skip(2);
+            return StandardCharsets.UTF_16LE;
+        }
+        String header = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+        for (String line : header.split("\r\n|\r|\n")) {
+            String[] parts = line.trim().split(" +", 3);
+            if (parts.length == 3 && parts[0].equals("1") && parts[1].equals("CHAR")) {
+                String name = parts[2].trim().toUpperCase();
+                if (name.equals("ANSI")) {
+                    return Charset.forName("windows-1252");
+                }
+                if (name.equals("ASCII")) {
+                    return StandardCharsets.US_ASCII;
+                }
+                if (name.equals("ANSEL")) {
+                    return StandardCharsets.ISO_8859_1;
+                }
+                break;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Данные одной записи INDI до проверки
+     */
+    private static final class Individual {
+        int slot;
+        String xref;
+        int names;
+        String givenName;
+        String surname;
+        String nameType;
+        String otherSurname;
+        String otherNameType;
+        String marriedSurname;
+        FamilyMember.Gender gender;
+        StringBuilder description = new StringBuilder();
+        int eventStart = NONE;
+        StringBuilder addressText;
+        String street;
+        String city;
+        String postCode;
+    }
+
+    /**
+     * Состояние импорта одного файла
+     */
+    private static final class Importer {
+        private final CountingInputStream counter;
+        private final long size;
+        private final TaskProgress progress;
+
+        private final HashMap<String, Integer> slots = new HashMap<>();
+        private final ArrayList<FamilyMember> members = new ArrayList<>();
+        private final ArrayList<String> xrefs = new ArrayList<>();
+        // номера записей INDI в порядке файла; в этом порядке члены семьи получают идентификаторы
+        private int[] order = new int[1024];
+        private int orderLength;
+        private final BitSet defined = new BitSet();
+
+        // записи FAM подряд: муж, жена, число детей, дети
+        private int[] families = new int[1024];
+        private int familiesLength;
+        private int familyStart = NONE;
+
+        private final ArrayList<Individual> batch = new ArrayList<>(BATCH_SIZE);
+        // одинаковые имена и части адресов хранятся одной строкой
+        private final StringDictionary strings = new StringDictionary();
+
+        private final ArrayList<String> warnings = new ArrayList<>();
+        private int warningCount;
+        private long records;
+
+        // текущая запись и путь тегов до текущей строки
+        private final String[] path = new String[MAX_LEVEL + 1];
+        private Individual individual;
+        private StringBuilder text;
+        private int textLevel;
+
+        Importer(CountingInputStream counter, long size, TaskProgress progress) {
+            this.counter = counter;
+            this.size = size;
+            this.progress = progress;
+        }
+
+        void line(String line) throws IOException {
+            int length = line.length();
+            int i = 0;
+            while (i < length && (line.charAt(i) == ' ' || line.charAt(i) == '\t' || line.charAt(i) == '\uFEFF')) {
+                i++;
+            }
+            int level = 0;
+            int digits = 0;
+            while (i < length && Character.isDigit(line.charAt(i)) && digits < 3) {
+                level = level * 10 + (line.charAt(i) - '0');
+                i++;
+                digits++;
+            }
+            if (digits == 0 || level > MAX_LEVEL || i >= length || line.charAt(i) != ' ') {
+                if (!line.trim().isEmpty()) {
+                    warn("Пропущена строка: " + line);
+                }
+                return;
+            }
+            i++;
+            String xref = null;
+            if (i < length && line.charAt(i) == '@') {
+                int end = line.indexOf('@', i + 1);
+                if (end < 0) {
+                    warn("Пропущена строка: " + line);
+                    return;
+                }
+                xref = line.substring(i, end + 1);
+                i = end + 1;
+                while (i < length && line.charAt(i) == ' ') {
+                    i++;
+                }
+            }
+            int tagEnd = line.indexOf(' ', i);
+            String tag = tagEnd < 0 ? line.substring(i) : line.substring(i, tagEnd);
+            String value = tagEnd < 0 ? "" : line.substring(tagEnd + 1);
+            if (value.startsWith("@@")) {
+                value = value.substring(1);
+            }
+
+            if (level == 0) {
+                endRecord();
+                startRecord(xref, tag);
+            }
+            else if (path[level - 1] == null) {
+                return;
+            }
+            path[level] = tag;
+            if (level < MAX_LEVEL) {
+                path[level + 1] = null;
+            }
+            if (level > 0) {
+                if (tag.equals("CONT") || tag.equals("CONC")) {
+                    if (text != null && level == textLevel + 1) {
+                        if (tag.equals("CONT")) {
+                            text.append('\n');
+                        }
+                        text.append(value);
+                    }
+                    return;
+                }
+                text = null;
+                if (individual != null) {
+                    individualLine(level, tag, value);
+                }
+                else if (familyStart != NONE) {
+                    familyLine(level, tag, value);
+                }
+            }
+        }
+
+        private void startRecord(String xref, String tag) throws IOException {
+            if (++records % PROGRESS_STEP == 0) {
+                if (progress.isCancelled()) {
+                    throw new InterruptedIOException("Операция отменена");
+                }
+                progress.progress(Math.min(counter.count, size), size);
+            }
+            if (tag.equals("INDI") && xref != null) {
+                if (defined.get(slot(xref))) {
+                    warn(xref + ": повторная запись INDI пропущена");
+                    return;
+                }
+                defined.set(slot(xref));
+                individual = new Individual();
+                individual.xref = xref;
+                individual.slot = slot(xref);
+                if (orderLength == order.length) {
+                    order = Arrays.copyOf(order, order.length * 2);
+                }
+                order[orderLength++] = individual.slot;
+            }
+            else if (tag.equals("FAM")) {
+                familyStart = familiesLength;
+                ensureFamilies(3);
+                families[familiesLength++] = NONE;
+                families[familiesLength++] = NONE;
+                families[familiesLength++] = 0;
+            }
+        }
+
+        private void endRecord() {
+            if (individual != null) {
+                endEvent(individual);
+                batch.add(individual);
+                individual = null;
+                if (batch.size() == BATCH_SIZE) {
+                    flushBatch();
+                }
+            }
+            familyStart = NONE;
+            text = null;
+            Arrays.fill(path, null);
+        }
+
+        private void individualLine(int level, String tag, String value) {
+            Individual current = individual;
+            if (level == 1) {
+                endEvent(current);
+                switch (tag) {
+                    case "NAME":
+                        current.names++;
+                        if (current.names == 1) {
+                            parseName(current, value);
+                        }
+                        else if (current.names == 2) {
+                            current.otherSurname = surnameOf(value);
+                        }
+                        return;
+                    case "SEX":
+                        current.gender = value.trim().startsWith("M") ? FamilyMember.Gender.МУЖСКОЙ
+                                : value.trim().startsWith("F") ? FamilyMember.Gender.ЖЕНСКИЙ : null;
+                        return;
+                    case "NOTE":
+                        if (!value.startsWith("@")) {
+                            startText(current.description, level, value);
+                        }
+                        return;
+                    case "ADDR":
+                        startAddress(current, level, value);
+                        return;
+                    case "BIRT":
+                        startEvent(current, "Рождение");
+                        return;
+                    case "DEAT":
+                        startEvent(current, "Смерть");
+                        return;
+                    case "_MARNM":
+                        current.marriedSurname = value.replace("/", "").trim();
+                        return;
+                    default:
+                        return;
+                }
+            }
+            String parent = path[level - 1];
+            if (parent.equals("ADDR") && current.addressText != null) {
+                switch (tag) {
+                    case "ADR1":
+                        current.street = value.trim();
+                        return;
+                    case "CITY":
+                        current.city = value.trim();
+                        return;
+                    case "POST":
+                        current.postCode = value.trim();
+                        return;
+                    default:
+                        return;
+                }
+            }
+            if (level == 2 && path[1].equals("NAME")) {
+                switch (tag) {
+                    case "GIVN":
+                        if (current.names == 1) {
+                            current.givenName = value.trim();
+                        }
+                        return;
+                    case "SURN":
+                        if (current.names == 1) {
+                            current.surname = value.trim();
+                        }
+                        else if (current.names == 2) {
+                            current.otherSurname = value.trim();
+                        }
+                        return;
+                    case "TYPE":
+                        if (current.names == 1) {
+                            current.nameType = value.trim();
+                        }
+                        else if (current.names == 2) {
+                            current.otherNameType = value.trim();
+                        }
+                        return;
+                    case "_MARNM":
+                        current.marriedSurname = value.replace("/", "").trim();
+                        return;
+                    default:
+                        return;
+                }
+            }
+            if (level == 2 && path[1].equals("RESI") && tag.equals("ADDR")) {
+                startAddress(current, level, value);
+                return;
+            }
+            if (level == 2 && current.eventStart != NONE && (tag.equals("DATE") || tag.equals("PLAC"))) {
+                StringBuilder description = current.description;
+                description.append(description.charAt(description.length() - 1) == ':' ? " " : ", ").append(value.trim());
+            }
+        }
+
+        private void parseName(Individual current, String value) {
+            int slash = value.indexOf('/');
+            current.givenName = (slash < 0 ? value : value.substring(0, slash)).trim();
+            current.surname = surnameOf(value);
+        }
+
+        /**
+         * вернуть фамилию из значения NAME вида "Имя /Фамилия/" или null
+         */
+        private static String surnameOf(String value) {
+            int slash = value.indexOf('/');
+            if (slash < 0) {
+                return null;
+            }
+            int end = value.indexOf('/', slash + 1);
+            return (end < 0 ? value.substring(slash + 1) : value.substring(slash + 1, end)).trim();
+        }
+
+        private void startText(StringBuilder target, int level, String value) {
+            if (target.length() > 0) {
+                target.append('\n');
+            }
+            target.append(value);
+            text = target;
+            textLevel = level;
+        }
+
+        private void startAddress(Individual current, int level, String value) {
+            if (current.addressText != null) {
+                return;
+            }
+            current.addressText = new StringBuilder(value);
+            text = current.addressText;
+            textLevel = level;
+        }
+
+        private void startEvent(Individual current, String name) {
+            StringBuilder description = current.description;
+            current.eventStart = description.length();
+            if (description.length() > 0) {
+                description.append('\n');
+            }
+            description.append(name).append(':');
+        }
+
+        /**
+         * Завершает строку события; событие без даты и места не попадает в описание
+         */
+        private void endEvent(Individual current) {
+            StringBuilder description = current.description;
+            if (current.eventStart != NONE && description.charAt(description.length() - 1) == ':') {
+                description.setLength(current.eventStart);
+            }
+            current.eventStart = NONE;
+        }
+
+        private void familyLine(int level, String tag, String value) {
+            if (level != 1) {
+                return;
+            }
+            switch (tag) {
+                case "HUSB":
+                    families[familyStart] = reference(value);
+                    return;
+                case "WIFE":
+                    families[familyStart + 1] = reference(value);
+                    return;
+                case "CHIL":
+                    int child = reference(value);
+                    if (child != NONE) {
+                        ensureFamilies(1);
+                        families[familiesLength++] = child;
+                        families[familyStart + 2]++;
+                    }
+                    return;
+                default:
+            }
+        }
+
+        private int reference(String value) {
+            String xref = value.trim();
+            if (!xref.startsWith("@") || !xref.endsWith("@") || xref.length() < 3 || xref.equals("@VOID@")) {
+                return NONE;
+            }
+            return slot(xref);
+        }
+
+        private int slot(String xref) {
+            Integer slot = slots.get(xref);
+            if (slot == null) {
+                slot = members.size();
+                slots.put(xref, slot);
+                members.add(null);
+                xrefs.add(xref);
+            }
+            return slot;
+        }
+
+        private void ensureFamilies(int extra) {
+            if (familiesLength + extra > families.length) {
+                families = Arrays.copyOf(families, Math.max(families.length * 2, familiesLength + extra));
+            }
+        }
+
+        /**
+         * Проверяет значения накопленных записей INDI и создаёт по ним членов семьи
+         */
+        private void flushBatch() {
+            for (Individual current : batch) {
+                String firstName = checkName(current, current.givenName, "имя");
+                String lastName = checkName(current, current.surname, "фамилия");
+                String maidenName = "";
+                // второе имя считается именем в браке, если его TYPE не говорит об обратном
+                String birth = current.surname;
+                String married = current.otherSurname;
+                boolean typed = isType(current.nameType, "MARRIED") || isType(current.otherNameType, "BIRTH")
+                        || isType(current.otherNameType, "MAIDEN");
+                if (typed) {
+                    birth = current.otherSurname;
+                    married = current.surname;
+                }
+                if (current.marriedSurname != null) {
+                    married = current.marriedSurname;
+                }
+                // совпадающие фамилии без TYPE - одно имя, записанное дважды, а с TYPE -
+                // девичья фамилия, оставленная в браке, как её пишет GedcomExporter
+                if (current.gender == FamilyMember.Gender.ЖЕНСКИЙ && birth != null && !birth.isEmpty()
+                        && married != null && !married.isEmpty() && (typed || !married.equals(birth))) {
+                    lastName = checkName(current, married, "фамилия в браке");
+                    maidenName = checkName(current, birth, "девичья фамилия");
+                }
+                // без RESI адрес не указан: общий заполнитель сделал бы всех таких членов семьи одним домохозяйством
+                Address residence = current.addressText == null ? null : toAddress(current);
+                members.set(current.slot, FamilyMember.trusted(share(firstName), share(lastName), share(maidenName),
+                        current.gender, residence, current.description.toString()));
+            }
+            batch.clear();
+        }
+
+        private static boolean isType(String type, String expected) {
+            return type != null && type.equalsIgnoreCase(expected);
+        }
+
+        private String checkName(Individual current, String value, String what) {
+            if (FieldValidator.isName(value)) {
+                return value.trim();
+            }
+            String cleaned = value == null ? "" : NAME_CHARACTER.matcher(value).replaceAll("").trim();
+            if (cleaned.isEmpty()) {
+                cleaned = UNKNOWN_NAME;
+            }
+            if (value != null && !value.isEmpty()) {
+                warn(current.xref + ": недопустимое значение (" + what + ") \"" + value + "\" заменено на \"" + cleaned + "\"");
+            }
+            return cleaned;
+        }
+
+        /**
+         * Разбирает ADDR: улица из ADR1 или первой строки адреса, номер дома - часть
+         * улицы с цифрами, населённый пункт из CITY или второй строки
+         */
+        private Address toAddress(Individual current) {
+            String[] lines = current.addressText.toString().split("\n");
+            String street = current.street != null ? current.street : lines[0].trim();
+            String city = current.city != null ? current.city : lines.length > 1 ? lines[1].trim() : "";
+            String number = "";
+            StringBuilder streetName = new StringBuilder();
+            for (String token : street.split("[ ,]+")) {
+                if (number.isEmpty() && FieldValidator.hasDigit(token)) {
+                    number = token;
+                }
+                else if (!token.isEmpty()) {
+                    if (streetName.length() > 0) {
+                        streetName.append(' ');
+                    }
+                    streetName.append(token);
+                }
+            }
+            return Address.trusted(share(checkAddress(current, number, NO_NUMBER)),
+                    share(checkAddress(current, streetName.toString(), NO_VALUE)),
+                    share(checkAddress(current, city, NO_VALUE)), share(checkAddress(current, current.postCode, NO_VALUE)));
+        }
+
+        private String share(String value) {
+            return strings.intern(value);
+        }
+
+        private String checkAddress(Individual current, String value, String missing) {
+            if (value == null || value.isEmpty()) {
+                return missing;
+            }
+            if (FieldValidator.isAddressPart(value)) {
+                return value.trim();
+            }
+            String cleaned = ADDRESS_CHARACTER.matcher(value).replaceAll("").trim();
+            if (cleaned.isEmpty() || (missing == NO_NUMBER && !FieldValidator.hasDigit(cleaned))) {
+                cleaned = missing;
+            }
+            warn(current.xref + ": недопустимое значение адреса \"" + value + "\" заменено на \"" + cleaned + "\"");
+            return cleaned;
+        }
+
+        Result finish() throws IOException {
+            endRecord();
+            flushBatch();
+            if (progress.isCancelled()) {
+                throw new InterruptedIOException("Операция отменена");
+            }
+            for (int i = 0; i < members.size(); i++) {
+                if (members.get(i) == null) {
+                    warn(xrefs.get(i) + ": ссылка на отсутствующую запись INDI");
+                }
+            }
+            inferGenders();
+            link();
+            checkAcyclic();
+
+            ArrayList<FamilyMember> imported = new ArrayList<>(orderLength);
+            for (int i = 0; i < orderLength; i++) {
+                FamilyMember member = members.get(order[i]);
+                if (member != null) {
+                    imported.add(member);
+                }
+            }
+            SubtreeAggregates.recompute(imported);
+            FamilyTree tree = new FamilyTree();
+            for (FamilyMember member : imported) {
+                tree.register(member);
+            }
+            // первая запись INDI могла быть пропущена, например без пола
+            if (!imported.isEmpty()) {
+                tree.setRoot(imported.get(0));
+            }
+            return new Result(tree, warnings, warningCount);
+        }
+
+        /**
+         * Указывает пол тем, у кого он не задан, по роли в семье; остальные не импортируются
+         */
+        private void inferGenders() {
+            for (int f = 0; f < familiesLength; f += 3 + families[f + 2]) {
+                infer(families[f], FamilyMember.Gender.МУЖСКОЙ);
+                infer(families[f + 1], FamilyMember.Gender.ЖЕНСКИЙ);
+            }
+            for (int i = 0; i < members.size(); i++) {
+                FamilyMember member = members.get(i);
+                if (member != null && member.getGender() == null) {
+                    warn(xrefs.get(i) + ": не указан пол, запись пропущена");
+                    members.set(i, null);
+                }
+            }
+        }
+
+        private void infer(int slot, FamilyMember.Gender gender) {
+            FamilyMember member = slot == NONE ? null : members.get(slot);
+            if (member != null && member.getGender() == null) {
+                member.setGender(gender);
+            }
+        }
+
+        /**
+         * Устанавливает родственные связи по записям FAM без проверок сеттеров
+         */
+        private void link() {
+            int count = members.size();
+            FamilyMember[] fathers = new FamilyMember[count];
+            FamilyMember[] mothers = new FamilyMember[count];
+            FamilyMember[] spouses = new FamilyMember[count];
+            ChildList[] children = new ChildList[count];
+            for (int f = 0; f < familiesLength; f += 3 + families[f + 2]) {
+                int husbandSlot = families[f];
+                int wifeSlot = families[f + 1];
+                FamilyMember husband = parent(husbandSlot, FamilyMember.Gender.МУЖСКОЙ);
+                FamilyMember wife = parent(wifeSlot, FamilyMember.Gender.ЖЕНСКИЙ);
+                if (husband != null && wife != null) {
+                    if (spouses[husbandSlot] == null && spouses[wifeSlot] == null) {
+                        spouses[husbandSlot] = wife;
+                        spouses[wifeSlot] = husband;
+                    }
+                    else if (spouses[husbandSlot] != wife) {
+                        warn(xrefs.get(husbandSlot) + " и " + xrefs.get(wifeSlot) + ": повторный брак не импортирован");
+                    }
+                }
+                for (int c = 0; c < families[f + 2]; c++) {
+                    int childSlot = families[f + 3 + c];
+                    FamilyMember child = members.get(childSlot);
+                    if (child == null) {
+                        continue;
+                    }
+                    if (husband != null) {
+                        addParent(fathers, children, childSlot, husbandSlot, "отец");
+                    }
+                    if (wife != null) {
+                        addParent(mothers, children, childSlot, wifeSlot, "мать");
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                FamilyMember member = members.get(i);
+                if (member != null) {
+                    member.restoreRelatives(fathers[i], mothers[i], spouses[i],
+                            children[i] == null ? new ChildList() : children[i]);
+                }
+            }
+            families = null;
+        }
+
+        private FamilyMember parent(int slot, FamilyMember.Gender gender) {
+            FamilyMember member = slot == NONE ? null : members.get(slot);
+            if (member != null && member.getGender() != gender) {
+                warn(xrefs.get(slot) + ": пол не соответствует роли в семье, связи не импортированы");
+                return null;
+            }
+            return member;
+        }
+
+        private void addParent(FamilyMember[] parents, ChildList[] children, int childSlot, int parentSlot, String what) {
+            FamilyMember parent = members.get(parentSlot);
+            if (parents[childSlot] == null && childSlot != parentSlot) {
+                parents[childSlot] = parent;
+                if (children[parentSlot] == null) {
+                    children[parentSlot] = new ChildList();
+                }
+                children[parentSlot].append(members.get(childSlot));
+            }
+            else if (parents[childSlot] != parent) {
+                warn(xrefs.get(childSlot) + ": второй родитель (" + what + ") не импортирован");
+            }
+        }
+
+        /**
+         * Проверяет, что никто не является собственным предком: члены семьи
+         * обрабатываются после своих родителей, и все должны быть обработаны
+         */
+        private void checkAcyclic() throws IOException {
+            IdentityHashMap<FamilyMember, Integer> index = new IdentityHashMap<>();
+            int count = members.size();
+            int[] pending = new int[count];
+            int[] queue = new int[count];
+            int tail = 0;
+            int present = 0;
+            for (int i = 0; i < count; i++) {
+                FamilyMember member = members.get(i);
+                if (member == null) {
+                    continue;
+                }
+                index.put(member, i);
+                present++;
+                pending[i] = (member.getFather() != null ? 1 : 0) + (member.getMother() != null ? 1 : 0);
+                if (pending[i] == 0) {
+                    queue[tail++] = i;
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                for (FamilyMember child : members.get(queue[head]).getChildren()) {
+                    int c = index.get(child);
+                    if (--pending[c] == 0) {
+                        queue[tail++] = c;
+                    }
+                }
+            }
+            if (tail != present) {
+                throw new IOException("Файл GEDCOM содержит цикл: член семьи указан предком самого себя");
+            }
+        }
+
+        private void warn(String message) {
+            warningCount++;
+            if (warnings.size() < MAX_WARNINGS) {
+                warnings.add(message);
+            }
+        }
+    }
+
+    /**
+     * Поток, считающий прочитанные байты для индикации хода
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package familytree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Определяет степень родства между двумя членами семьи древа и называет её по-русски
+ * («двоюродный брат», «внучатая племянница», «тёща» и т.п.).
+ *
+ * Для каждого члена семьи выбирается основной родитель (тот, кто указан первым,
+ * при построении по готовому древу - отец), и по основным родителям строятся таблицы
+ * предков на 2^k поколений вверх (двоичный подъём). По ним общий предок на основной
+ * линии находится за O(log n). Так как у человека два родителя, ближайший общий
+ * предок может лежать и вне основной линии, поэтому затем выполняется поиск предков
+ * обоих людей в ширину, ограниченный глубиной уже найденного общего предка.
+ *
+ * Движок слушает изменения древа и достраивает таблицы только для новых членов
+ * семьи и потомков тех, у кого появился основной родитель.
+ */
+public class KinshipEngine implements FamilyTreeListener {
+
+    /**
+     * Наибольшая глубина поиска общего предка, если на основной линии его нет
+     */
+    public static final int MAX_GENERATIONS = 32;
+
+    private static final int NONE = -1;
+
+    /**
+     * Родство члена семьи relative по отношению к члену семьи person
+     */
+    public static final class Relationship {
+        private final FamilyMember commonAncestor;
+        private final int generationsUp;
+        private final int generationsDown;
+        private final String name;
+
+        private Relationship(FamilyMember commonAncestor, int generationsUp, int generationsDown, String name) {
+            this.commonAncestor = commonAncestor;
+            this.generationsUp = generationsUp;
+            this.generationsDown = generationsDown;
+            this.name = name;
+        }
+
+        /**
+         * вернуть ближайшего общего предка или null, если родство только через брак
+         */
+        public FamilyMember getCommonAncestor() {
+            return commonAncestor;
+        }
+
+        /**
+         * вернуть число поколений от первого человека до общего предка
+         */
+        public int getGenerationsUp() {
+            return generationsUp;
+        }
+
+        /**
+         * вернуть число поколений от общего предка до второго человека
+         */
+        public int getGenerationsDown() {
+            return generationsDown;
+        }
+
+        public boolean isBlood() {
+            return commonAncestor != null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final FamilyTree tree;
+    private int[] primary = new int[0];
+    private int[] depth = new int[0];
+    private int[][] up = new int[1][0];
+    private int size;
+
+    /**
+     * Строит таблицы по всем членам семьи древа и подписывает движок на изменения древа
+     */
+    public KinshipEngine(FamilyTree tree) {
+        this.tree = tree;
+        build();
+        tree.addFamilyTreeListener(this);
+    }
+
+    /**
+     * Отписывает движок от изменений древа
+     */
+    public void dispose() {
+        tree.removeFamilyTreeListener(this);
+    }
+
+    /**
+     * Определяет, кем relative приходится person
+     * @return родство или null, если они не родственники
+     */
+    public Relationship relate(FamilyMember person, FamilyMember relative) {
+        check(person);
+        check(relative);
+        if (person == relative) {
+            return new Relationship(person, 0, 0, "это тот же человек");
+        }
+        Relationship blood = bloodRelationship(person, relative);
+        if (blood != null) {
+            return blood;
+        }
+        String inLaw = inLawName(person, relative);
+        return inLaw == null ? null : new Relationship(null, 0, 0, inLaw);
+    }
+
+    /**
+     * вернуть название родства relative по отношению к person или «не родственники»
+     */
+    public String describe(FamilyMember person, FamilyMember relative) {
+        Relationship relationship = relate(person, relative);
+        return relationship == null ? "не родственники" : relationship.getName();
+    }
+
+    /**
+     * Находит ближайшего общего предка на линии основных родителей
+     * @return общий предок или null
+     */
+    public FamilyMember primaryCommonAncestor(FamilyMember a, FamilyMember b) {
+        check(a);
+        check(b);
+        int lca = primaryLca(a.getId(), b.getId());
+        return lca == NONE ? null : tree.getMember(lca);
+    }
+
+    /**
+     * Проверяет, является ли ancestor предком member на линии основных родителей, за O(log n)
+     */
+    public boolean isPrimaryAncestor(FamilyMember ancestor, FamilyMember member) {
+        check(ancestor);
+        check(member);
+        int a = ancestor.getId();
+        int m = member.getId();
+        return depth[m] > depth[a] && lift(m, depth[m] - depth[a]) == a;
+    }
+
+    private void check(FamilyMember member) {
+        if (member.getTree() != tree) {
+            throw new IllegalArgumentException("Член семьи не принадлежит древу");
+        }
+    }
+
+    private Relationship bloodRelationship(FamilyMember person, FamilyMember relative) {
+        int bound = MAX_GENERATIONS;
+        int lca = primaryLca(person.getId(), relative.getId());
+        if (lca != NONE) {
+            // более близкий общий предок не может быть дальше найденного ни от одного из двоих;
+            // MAX_GENERATIONS здесь не действует, иначе далёкий общий предок не был бы найден
+            bound = depth[person.getId()] + depth[relative.getId()] - 2 * depth[lca];
+        }
+
+        Map<FamilyMember, Integer> personAncestors = FamilyTraversal.distances(person, FamilyTraversal.ANCESTORS, bound);
+        Candidate best = new Candidate();
+        int limit = bound;
+        FamilyTraversal.breadthFirst(relative, FamilyTraversal.ANCESTORS, (member, down) -> {
+            if (best.ancestor != null && down > best.up + best.down) {
+                return false;
+            }
+            Integer up = personAncestors.get(member);
+            if (up != null && (best.ancestor == null || up + down < best.up + best.down)) {
+                best.ancestor = member;
+                best.up = up;
+                best.down = down;
+            }
+            return down < limit;
+        });
+        if (best.ancestor == null) {
+            return null;
+        }
+        return new Relationship(best.ancestor, best.up, best.down, bloodName(person, relative, best.up, best.down));
+    }
+
+    /**
+     * Лучший найденный общий предок при поиске в ширину
+     */
+    private static final class Candidate {
+        private FamilyMember ancestor;
+        private int up;
+        private int down;
+    }
+
+    /**
+     * Называет кровное родство: relative находится на down поколений ниже общего предка,
+     * person - на up поколений ниже него
+     */
+    static String bloodName(FamilyMember person, FamilyMember relative, int up, int down) {
+        boolean male = relative.getGender() == FamilyMember.Gender.МУЖСКОЙ;
+        if (up == 0) {
+            return descendantName(down, male);
+        }
+        if (down == 0) {
+            return ancestorName(up, male);
+        }
+        if (up == 1 && down == 1) {
+            boolean sameFather = person.getFather() != null && person.getFather() == relative.getFather();
+            boolean sameMother = person.getMother() != null && person.getMother() == relative.getMother();
+            String sibling = male ? "брат" : "сестра";
+            // неполнородными считаем, только если вторые родители известны и различны
+            if (sameFather && !sameMother && person.getMother() != null && relative.getMother() != null) {
+                return (male ? "единокровный " : "единокровная ") + sibling;
+            }
+            if (sameMother && !sameFather && person.getFather() != null && relative.getFather() != null) {
+                return (male ? "единоутробный " : "единоутробная ") + sibling;
+            }
+            return sibling;
+        }
+        int degree = Math.min(up, down) - 1;
+        String prefix = degree == 0 ? "" : cousinPrefix(degree, male) + " ";
+        if (up == down) {
+            return prefix + (male ? "брат" : "сестра");
+        }
+        if (down > up) {
+            return prefix + nephewName(down - up, male);
+        }
+        if (up - down == 1) {
+            return prefix + (male ? "дядя" : "тётя");
+        }
+        // брат деда - двоюродный дед, двоюродный брат деда - троюродный дед
+        return cousinPrefix(degree + 1, male) + " " + ancestorName(up - down, male);
+    }
+
+    private static String descendantName(int generations, boolean male) {
+        switch (generations) {
+            case 1:
+                return male ? "сын" : "дочь";
+            case 2:
+                return male ? "внук" : "внучка";
+            default:
+                return great(generations - 2) + (male ? "внук" : "внучка");
+        }
+    }
+
+    private static String ancestorName(int generations, boolean male) {
+        switch (generations) {
+            case 1:
+                return male ? "отец" : "мать";
+            case 2:
+                return male ? "дедушка" : "бабушка";
+            default:
+                return great(generations - 2) + (male ? "дедушка" : "бабушка");
+        }
+    }
+
+    /**
+     * вернуть название потомка брата или сестры: племянник, внучатый племянник, правнучатый...
+     */
+    private static String nephewName(int generations, boolean male) {
+        String nephew = male ? "племянник" : "племянница";
+        if (generations == 1) {
+            return nephew;
+        }
+        if (generations == 2) {
+            return (male ? "внучатый " : "внучатая ") + nephew;
+        }
+        return great(generations - 3) + (male ? "правнучатый " : "правнучатая ") + nephew;
+    }
+
+    private static String cousinPrefix(int degree, boolean male) {
+        String stem;
+        switch (degree) {
+            case 1:
+                stem = "двоюродн";
+                break;
+            case 2:
+                stem = "троюродн";
+                break;
+            case 3:
+                stem = "четвероюродн";
+                break;
+            case 4:
+                stem = "пятиюродн";
+                break;
+            case 5:
+                stem = "шестиюродн";
+                break;
+            default:
+                stem = (degree + 1) + "-юродн";
+                break;
+        }
+        return stem + (male ? "ый" : "ая");
+    }
+
+    private static String great(int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append("пра");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Называет родство через брак или возвращает null
+     */
+    private String inLawName(FamilyMember person, FamilyMember relative) {
+        boolean male = relative.getGender() == FamilyMember.Gender.МУЖСКОЙ;
+        boolean personMale = person.getGender() == FamilyMember.Gender.МУЖСКОЙ;
+        FamilyMember spouse = person.getSpouse();
+        if (spouse == relative) {
+            return male ? "муж" : "жена";
+        }
+        if (spouse != null && (spouse.getFather() == relative || spouse.getMother() == relative)) {
+            if (personMale) {
+                return male ? "тесть" : "тёща";
+            }
+            return male ? "свёкор" : "свекровь";
+        }
+        FamilyMember relativeSpouse = relative.getSpouse();
+        if (relativeSpouse != null && (relativeSpouse.getFather() == person || relativeSpouse.getMother() == person)) {
+            return male ? "зять" : "невестка";
+        }
+        if (spouse != null && siblings(spouse, relative)) {
+            if (personMale) {
+                return male ? "шурин" : "свояченица";
+            }
+            return male ? "деверь" : "золовка";
+        }
+        if (relativeSpouse != null && siblings(person, relativeSpouse)) {
+            return male ? "зять" : "невестка";
+        }
+        if (spouse != null) {
+            Relationship viaSpouse = bloodRelationship(spouse, relative);
+            if (viaSpouse != null) {
+                return viaSpouse.getName() + (personMale ? " жены" : " мужа");
+            }
+        }
+        if (relativeSpouse != null) {
+            Relationship viaSpouse = bloodRelationship(person, relativeSpouse);
+            if (viaSpouse != null) {
+                return (male ? "муж" : "жена") + " родственника (" + viaSpouse.getName() + ")";
+            }
+        }
+        return null;
+    }
+
+    private static boolean siblings(FamilyMember a, FamilyMember b) {
+        return a != b && ((a.getFather() != null && a.getFather() == b.getFather())
+                || (a.getMother() != null && a.getMother() == b.getMother()));
+    }
+
+    private int primaryLca(int a, int b) {
+        if (depth[a] < depth[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        a = lift(a, depth[a] - depth[b]);
+        if (a == b) {
+            return a;
+        }
+        for (int k = up.length - 1; k >= 0; k--) {
+            if (up[k][a] != up[k][b]) {
+                a = up[k][a];
+                b = up[k][b];
+            }
+        }
+        return up[0][a] == a || up[0][a] != up[0][b] ? NONE : up[0][a];
+    }
+
+    private int lift(int v, int generations) {
+        for (int k = 0; generations > 0 && k < up.length; k++, generations >>= 1) {
+            if ((generations & 1) != 0) {
+                v = up[k][v];
+            }
+        }
+        return v;
+    }
+
+    private void build() {
+        size = tree.getMemberCount();
+        primary = new int[Math.max(size, 16)];
+        depth = new int[primary.length];
+        Arrays.fill(primary, NONE);
+        for (int id = 0; id < size; id++) {
+            primary[id] = parentId(tree.getMember(id));
+        }
+
+        // глубина по цепочке основных родителей без рекурсии; цикл разрывается
+        int[] state = new int[size];
+        int maxDepth = 0;
+        int[] stack = new int[16];
+        for (int id = 0; id < size; id++) {
+            int top = 0;
+            int v = id;
+            while (v != NONE && state[v] == 0) {
+                state[v] = 1;
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = v;
+                v = primary[v];
+            }
+            if (v != NONE && state[v] == 1) {
+                primary[v] = NONE;
+                depth[v] = 0;
+                state[v] = 2;
+            }
+            while (top > 0) {
+                int w = stack[--top];
+                depth[w] = primary[w] == NONE ? 0 : depth[primary[w]] + 1;
+                state[w] = 2;
+                maxDepth = Math.max(maxDepth, depth[w]);
+            }
+        }
+
+        up = new int[levelsFor(maxDepth)][primary.length];
+        for (int id = 0; id < size; id++) {
+            up[0][id] = primary[id] == NONE ? id : primary[id];
+        }
+        for (int k = 1; k < up.length; k++) {
+            for (int id = 0; id < size; id++) {
+                up[k][id] = up[k - 1][up[k - 1][id]];
+            }
+        }
+    }
+
+    private static int levelsFor(int maxDepth) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxDepth));
+    }
+
+    private int parentId(FamilyMember member) {
+        FamilyMember parent = member.getFather() != null ? member.getFather() : member.getMother();
+        if (parent == null || parent.getTree() != tree || parent.getId() >= size) {
+            parent = member.getMother();
+        }
+        if (parent == null || parent.getTree() != tree || parent.getId() >= size) {
+            return NONE;
+        }
+        return parent.getId();
+    }
+
+    @Override
+    public void memberAdded(FamilyMember member) {
+        int id = member.getId();
+        if (id >= primary.length) {
+            int capacity = Math.max(id + 1, primary.length * 2);
+            primary = Arrays.copyOf(primary, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            for (int k = 0; k < up.length; k++) {
+                up[k] = Arrays.copyOf(up[k], capacity);
+            }
+        }
+        size = id + 1;
+        primary[id] = NONE;
+        depth[id] = 0;
+        for (int[] level : up) {
+            level[id] = id;
+        }
+        // ветвь добавляется целиком, поэтому родители и дети могли быть добавлены раньше
+        linkPrimary(member);
+        for (FamilyMember child : member.getChildren()) {
+            if (child.getTree() == tree && child.getId() < size) {
+                linkPrimary(child);
+            }
+        }
+    }
+
+    @Override
+    public void relativeAdded(FamilyMember member, FamilyMember.RelativeType type, FamilyMember relative) {
+        linkPrimary(member);
+        linkPrimary(relative);
+        for (FamilyMember child : member.getChildren()) {
+            linkPrimary(child);
+        }
+        for (FamilyMember child : relative.getChildren()) {
+            linkPrimary(child);
+        }
+    }
+
+    /**
+     * Назначает основного родителя члену семьи, у которого его ещё нет,
+     * и пересчитывает таблицы для него и его потомков по основной линии
+     */
+    private void linkPrimary(FamilyMember member) {
+        int id = member.getId();
+        if (member.getTree() != tree || id >= size || primary[id] != NONE) {
+            return;
+        }
+        int parent = parentId(member);
+        if (parent == NONE || parent == id || isPrimaryAncestorId(id, parent)) {
+            return;
+        }
+        primary[id] = parent;
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(id);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            depth[v] = depth[primary[v]] + 1;
+            if (levelsFor(depth[v]) > up.length) {
+                addLevel();
+            }
+            up[0][v] = primary[v];
+            for (int k = 1; k < up.length; k++) {
+                up[k][v] = up[k - 1][up[k - 1][v]];
+            }
+            for (FamilyMember child : tree.getMember(v).getChildren()) {
+                int c = child.getId();
+                if (child.getTree() == tree && c < size && primary[c] == v) {
+                    queue.add(c);
+                }
+            }
+        }
+    }
+
+    private boolean isPrimaryAncestorId(int ancestor, int member) {
+        return depth[member] > depth[ancestor] && lift(member, depth[member] - depth[ancestor]) == ancestor
+                || ancestor == member;
+    }
+
+    private void addLevel() {
+        int[][] levels = Arrays.copyOf(up, up.length + 1);
+        int k = up.length;
+        levels[k] = new int[primary.length];
+        for (int id = 0; id < size; id++) {
+            levels[k][id] = levels[k - 1][levels[k - 1][id]];
+        }
+        up = levels;
+    }
+}
@@ -0,0 +1,283 @@
+package familytree;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Файл генеалогического древа, открытый через отображение в память.
+ * Открытие занимает постоянное время: читается только завершающий блок файла,
+ * а записи членов семьи декодируются по индексу смещений только при обращении к ним.
+ * Недавно прочитанные записи и строки хранятся в ограниченных LRU-кэшах,
+ * поэтому занимаемая память растёт только с количеством просмотренных членов семьи.
+ * Поддерживаются файлы FamilyTreeCodec версии 2 и выше.
+ * <p>
+ * Записи можно читать из нескольких потоков одновременно: общая блокировка
+ * берётся только на время обращения к кэшу, а декодирование идёт без неё.
+ * close() освобождает отображение сразу, не дожидаясь сборки мусора, поэтому
+ * после закрытия getMember бросает IOException.
+ */
+public final class MappedFamilyTreeFile implements Closeable {
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+    private final long stringIndex;
+    private final long recordIndex;
+    private final int stringCount;
+    private final int memberCount;
+    private final int rootId;
+    private final LruCache<MemberRecord> records;
+    private final LruCache<String> strings;
+    /**
+     * Чтение записей берёт блокировку на чтение, закрытие - на запись, чтобы
+     * отображение не освободилось посреди декодирования
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private MappedFamilyTreeFile(RandomAccessFile file, int cacheSize) throws IOException {
+        this.file = file;
+        FileChannel channel = file.getChannel();
+        long size = channel.size();
+        // отображаем файл сегментами по 1 ГБ, так как MappedByteBuffer ограничен 2 ГБ
+        int count = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << SEGMENT_BITS));
+        }
+
+        if (size < FamilyTreeCodec.TRAILER_SIZE || FamilyTreeCodec.readHeader(new MappedInput(0)) < 2) {
+            throw new IOException("Файл не содержит индекса. Пересохраните его в новом формате");
+        }
+        long trailer = size - FamilyTreeCodec.TRAILER_SIZE;
+        if (readInt(trailer + 20) != FamilyTreeCodec.MAGIC) {
+            throw new IOException("Повреждённый завершающий блок файла");
+        }
+        stringIndex = readLong(trailer);
+        recordIndex = readLong(trailer + 8);
+        rootId = readInt(trailer + 16);
+        stringCount = readInt(stringIndex);
+        memberCount = readInt(recordIndex);
+        records = new LruCache<>(cacheSize);
+        strings = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Открывает файл с кэшем записей размера по умолчанию
+     * @param file файл для открытия
+     */
+    public static MappedFamilyTreeFile open(File file) throws IOException {
+        return open(file, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Открывает файл
+     * @param file файл для открытия
+     * @param cacheSize сколько записей и строк держать в памяти
+     */
+    public static MappedFamilyTreeFile open(File file, int cacheSize) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new MappedFamilyTreeFile(raf, cacheSize);
+        }
+        catch (IOException | RuntimeException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    public int getMemberCount() {
+        return memberCount;
+    }
+
+    public boolean hasRoot() {
+        return rootId != MemberRecord.NONE;
+    }
+
+    public int getRootId() {
+        return rootId;
+    }
+
+    /**
+     * Возвращает запись члена семьи, декодируя её из файла при необходимости
+     * @param id идентификатор члена семьи
+     */
+    public MemberRecord getMember(int id) throws IOException {
+        if (id < 0 || id >= memberCount) {
+            throw new IllegalArgumentException("Нет члена семьи с идентификатором " + id);
+        }
+        MemberRecord record;
+        synchronized (records) {
+            record = records.get(id);
+        }
+        if (record != null) {
+            return record;
+        }
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IOException("Файл закрыт");
+            }
+            record = new MappedInput(readLong(recordIndex + 4 + 8L * id)).readRecord(id);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        synchronized (records) {
+            records.put(id, record);
+        }
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (int i = 0; i < segments.length; i++) {
+                unmap(segments[i]);
+                segments[i] = null;
+            }
+            file.close();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Освобождает отображение файла в память. В Java 17 для этого нет открытого
+     * API, поэтому используется Unsafe.invokeCleaner из модуля jdk.unsupported;
+     * если он недоступен, отображение освободит сборщик мусора
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+        }
+        catch (ReflectiveOperationException | RuntimeException ex) {
+            // оставляем отображение сборщику мусора
+        }
+    }
+
+    private int byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK)) & 0xFF;
+    }
+
+    private int readInt(long position) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | byteAt(position + i);
+        }
+        return value;
+    }
+
+    private long readLong(long position) {
+        return ((long) readInt(position) << 32) | (readInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Декодирует строку, определение которой начинается с указанного смещения
+     */
+    private String stringAt(int index, MappedInput input) throws IOException {
+        String value;
+        synchronized (strings) {
+            value = strings.get(index);
+        }
+        if (value == null) {
+            byte[] bytes = new byte[input.readVarInt()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) input.readUnsignedByte();
+            }
+            value = new String(bytes, StandardCharsets.UTF_8);
+            synchronized (strings) {
+                strings.put(index, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Чтение записей с произвольной позиции файла.
+     * Строки разрешаются через индекс смещений строк.
+     */
+    private final class MappedInput extends FamilyTreeCodec.RecordInput {
+        private long position;
+
+        MappedInput(long position) {
+            this.position = position;
+        }
+
+        @Override
+        int readUnsignedByte() {
+            return byteAt(position++);
+        }
+
+        @Override
+        String readString() throws IOException {
+            int ref = readVarInt();
+            if (ref == 0) {
+                return null;
+            }
+            int index = ref - 1;
+            if (index >= stringCount) {
+                throw new IOException("Повреждённая таблица строк");
+            }
+            long offset = readLong(stringIndex + 4 + 8L * index);
+            if (offset == position) {
+                // строка определена прямо в этой записи - пропускаем её байты
+                String value = stringAt(index, new MappedInput(offset));
+                position = skipString(offset);
+                return value;
+            }
+            return stringAt(index, new MappedInput(offset));
+        }
+
+        private long skipString(long offset) throws IOException {
+            MappedInput skip = new MappedInput(offset);
+            int length = skip.readVarInt();
+            return skip.position + length;
+        }
+    }
+
+    /**
+     * Ограниченный кэш с вытеснением давно не использованных элементов
+     */
+    private static final class LruCache<V> extends LinkedHashMap<Integer, V> {
+        private static final long serialVersionUID = 1;
+
+        private final int capacity;
+
+        LruCache(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
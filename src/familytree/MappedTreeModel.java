@@ -0,0 +1,234 @@
+package familytree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.JTree;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * Модель jTree только для просмотра, построенная поверх записей файла, открытого
+ * через MappedFamilyTreeFile. Устроена так же, как FamilyTreeModel, но узлы
+ * хранят идентификаторы записей, а не членов семьи: записи читаются из файла,
+ * только когда jTree раскрывает узел, поэтому модель создаётся за постоянное
+ * время, а память растёт только с числом раскрытых узлов.
+ * Ошибка чтения файла при раскрытии узла бросается как UncheckedIOException.
+ */
+public class MappedTreeModel implements TreeModel {
+
+    private final MappedFamilyTreeFile file;
+    private final Node main;
+
+    /**
+     * Узел дерева: запись члена семьи или группа его родственников.
+     * Дочерние узлы вычисляются при первом обращении
+     */
+    public static final class Node {
+        private final FamilyTreeModel.Kind kind;
+        private final int id;
+        private final Node parent;
+        private final boolean expandable;
+        private final String label;
+        private List<Node> children;
+
+        private Node(FamilyTreeModel.Kind kind, int id, Node parent, boolean expandable, String label) {
+            this.kind = kind;
+            this.id = id;
+            this.parent = parent;
+            this.expandable = expandable;
+            this.label = label;
+        }
+
+        public FamilyTreeModel.Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * вернуть идентификатор записи узла; для групп - записи, которой принадлежит группа
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * вернуть true, если узел показывает саму запись члена семьи, а не группу или надпись
+         */
+        public boolean isMember() {
+            return kind == FamilyTreeModel.Kind.ЧЛЕН_СЕМЬИ;
+        }
+
+        public Node getParent() {
+            return parent;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Создаёт модель для открытого файла. Файл закрывает вызывающий код
+     * @param file файл древа, открытый через отображение в память
+     */
+    public MappedTreeModel(MappedFamilyTreeFile file) {
+        this.file = file;
+        this.main = new Node(FamilyTreeModel.Kind.ГЛАВНЫЙ, MemberRecord.NONE, null, true, "Главный");
+    }
+
+    public MappedFamilyTreeFile getFile() {
+        return file;
+    }
+
+    @Override
+    public Object getRoot() {
+        return main;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        return children((Node) parent).get(index);
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        return children((Node) parent).size();
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return children((Node) node).isEmpty();
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (parent == null || child == null) {
+            return -1;
+        }
+        return children((Node) parent).indexOf(child);
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // дерево только для просмотра
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener listener) {
+        // модель не меняется, поэтому событий не посылает
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener listener) {
+    }
+
+    private List<Node> children(Node node) {
+        if (node.children == null) {
+            try {
+                node.children = computeChildren(node);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return node.children;
+    }
+
+    private List<Node> computeChildren(Node node) throws IOException {
+        if (!node.expandable) {
+            return Collections.emptyList();
+        }
+        List<Node> list = new ArrayList<>(3);
+        switch (node.kind) {
+            case ГЛАВНЫЙ:
+                if (file.hasRoot()) {
+                    list.add(member(file.getRootId(), node, true));
+                }
+                else {
+                    list.add(new Node(FamilyTreeModel.Kind.НЕТ_ДАННЫХ, MemberRecord.NONE, node, false,
+                            "Данные дерева не найдены."));
+                }
+                break;
+            case ЧЛЕН_СЕМЬИ: {
+                MemberRecord record = file.getMember(node.id);
+                boolean hasParents = record.getFatherId() != MemberRecord.NONE || record.getMotherId() != MemberRecord.NONE;
+                if (hasParents && node.id == file.getRootId()) {
+                    list.add(new Node(FamilyTreeModel.Kind.РОДИТЕЛИ, node.id, node, true, "Родители"));
+                }
+                if (record.getSpouseId() != MemberRecord.NONE) {
+                    list.add(new Node(FamilyTreeModel.Kind.СУПРУГ, node.id, node, true, "Супруг"));
+                }
+                if (record.numChildren() > 0) {
+                    list.add(new Node(FamilyTreeModel.Kind.ДЕТИ, node.id, node, true, "Дети"));
+                }
+                break;
+            }
+            case РОДИТЕЛИ: {
+                MemberRecord record = file.getMember(node.id);
+                if (record.getFatherId() != MemberRecord.NONE) {
+                    list.add(member(record.getFatherId(), node, false));
+                }
+                if (record.getMotherId() != MemberRecord.NONE) {
+                    list.add(member(record.getMotherId(), node, false));
+                }
+                break;
+            }
+            case СУПРУГ:
+                list.add(member(file.getMember(node.id).getSpouseId(), node, false));
+                break;
+            case ДЕТИ: {
+                MemberRecord record = file.getMember(node.id);
+                list = new ArrayList<>(record.numChildren());
+                for (int i = 0; i < record.numChildren(); i++) {
+                    list.add(member(record.getChildId(i), node, true));
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        return list;
+    }
+
+    private Node member(int id, Node parent, boolean expandable) throws IOException {
+        return new Node(FamilyTreeModel.Kind.ЧЛЕН_СЕМЬИ, id, parent, expandable, file.getMember(id).toString());
+    }
+
+    /**
+     * вернуть путь от корня модели до узла
+     */
+    public TreePath pathTo(Node node) {
+        ArrayList<Object> path = new ArrayList<>();
+        for (Node n = node; n != null; n = n.parent) {
+            path.add(n);
+        }
+        Collections.reverse(path);
+        return new TreePath(path.toArray());
+    }
+
+    /**
+     * Раскрывает дерево на заданное количество уровней под корневым членом семьи.
+     * Читаются только записи раскрываемых узлов
+     * @param tree jTree, показывающий эту модель
+     * @param depth количество уровней
+     */
+    public void expandToDepth(JTree tree, int depth) {
+        ArrayList<Node> level = new ArrayList<>(children(main));
+        for (int d = 0; d <= depth && !level.isEmpty(); d++) {
+            ArrayList<Node> next = new ArrayList<>();
+            for (Node node : level) {
+                if (!isLeaf(node)) {
+                    tree.expandPath(pathTo(node));
+                    if (d < depth) {
+                        next.addAll(children(node));
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+}
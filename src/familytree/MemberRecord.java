@@ -0,0 +1,152 @@
+package familytree;
+
+import java.util.List;
+
+/**
+ * Неизменяемая запись о члене семьи в том виде, в котором она хранится в файле.
+ * Родственники задаются идентификаторами, -1 означает отсутствие родственника.
+ * Адрес не задан, если getStreetNumber() возвращает null.
+ */
+public final class MemberRecord {
+
+    public static final int NONE = -1;
+
+    private final int id;
+    private final String firstName;
+    private final String lastName;
+    private final String maidenName;
+    private final FamilyMember.Gender gender;
+    private final String streetNumber;
+    private final String streetName;
+    private final String suburb;
+    private final String postCode;
+    private final String lifeDescription;
+    private final int fatherId;
+    private final int motherId;
+    private final int spouseId;
+    private final int[] childIds;
+
+    public MemberRecord(int id, String firstName, String lastName, String maidenName, FamilyMember.Gender gender,
+                        String streetNumber, String streetName, String suburb, String postCode,
+                        String lifeDescription, int fatherId, int motherId, int spouseId, int[] childIds) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.maidenName = maidenName;
+        this.gender = gender;
+        this.streetNumber = streetNumber;
+        this.streetName = streetName;
+        this.suburb = suburb;
+        this.postCode = postCode;
+        this.lifeDescription = lifeDescription;
+        this.fatherId = fatherId;
+        this.motherId = motherId;
+        this.spouseId = spouseId;
+        this.childIds = childIds;
+    }
+
+    /**
+     * Создаёт запись по члену семьи древа. Вызывается под блокировкой чтения древа
+     */
+    static MemberRecord of(FamilyMember member) {
+        Address address = member.getAddress();
+        List<FamilyMember> children = member.getChildren();
+        int[] childIds = new int[children.size()];
+        for (int i = 0; i < childIds.length; i++) {
+            childIds[i] = children.get(i).getId();
+        }
+        return new MemberRecord(member.getId(), member.getFirstName(), member.getLastName(), member.getMaidenName(),
+                member.getGender(),
+                address == null ? null : address.getStreetNumber(),
+                address == null ? null : address.getStreetName(),
+                address == null ? null : address.getSuburb(),
+                address == null ? null : address.getPostCode(),
+                member.getLifeDescription(), id(member.getFather()), id(member.getMother()), id(member.getSpouse()),
+                childIds);
+    }
+
+    private static int id(FamilyMember member) {
+        return member == null ? NONE : member.getId();
+    }
+
+    @Override
+    public String toString() {
+        String s = gender == FamilyMember.Gender.МУЖСКОЙ ? "♂ " : "♀ ";
+        s += firstName + " " + lastName;
+        if (maidenName != null && !maidenName.isEmpty()) {
+            s += " (" + maidenName + ")";
+        }
+        return s;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getMaidenName() {
+        return maidenName;
+    }
+
+    public FamilyMember.Gender getGender() {
+        return gender;
+    }
+
+    public boolean hasAddress() {
+        return streetNumber != null;
+    }
+
+    public String getStreetNumber() {
+        return streetNumber;
+    }
+
+    public String getStreetName() {
+        return streetName;
+    }
+
+    public String getSuburb() {
+        return suburb;
+    }
+
+    public String getPostCode() {
+        return postCode;
+    }
+
+    public String getLifeDescription() {
+        return lifeDescription;
+    }
+
+    public int getFatherId() {
+        return fatherId;
+    }
+
+    public int getMotherId() {
+        return motherId;
+    }
+
+    public int getSpouseId() {
+        return spouseId;
+    }
+
+    public int numChildren() {
+        return childIds.length;
+    }
+
+    public int getChildId(int index) {
+        return childIds[index];
+    }
+
+    /**
+     * вернуть копию идентификаторов детей
+     */
+    public int[] getChildIds() {
+        return childIds.clone();
+    }
+}
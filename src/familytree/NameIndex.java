@@ -0,0 +1,152 @@
+package familytree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Индекс членов семьи древа по имени, фамилии и девичьей фамилии.
+ * Поиск по точному имени выполняется через хеш-таблицы, поиск по началу имени
+ * (для автодополнения) через упорядоченную карту всех имён.
+ * Имена сравниваются без учёта регистра, буква «ё» приравнивается к «е».
+ * Индекс обновляется самим древом при добавлении и переименовании членов семьи.
+ */
+public class NameIndex {
+
+    private final HashMap<String, ArrayList<FamilyMember>> firstNames = new HashMap<>();
+    private final HashMap<String, ArrayList<FamilyMember>> lastNames = new HashMap<>();
+    private final HashMap<String, ArrayList<FamilyMember>> maidenNames = new HashMap<>();
+    private final TreeMap<String, ArrayList<FamilyMember>> prefixes = new TreeMap<>();
+
+    /**
+     * Приводит имя к виду, в котором оно хранится в индексе
+     */
+    public static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    public List<FamilyMember> findByFirstName(String firstName) {
+        return lookup(firstNames, firstName);
+    }
+
+    public List<FamilyMember> findByLastName(String lastName) {
+        return lookup(lastNames, lastName);
+    }
+
+    public List<FamilyMember> findByMaidenName(String maidenName) {
+        return lookup(maidenNames, maidenName);
+    }
+
+    /**
+     * вернуть членов семьи, у которых имя, фамилия или девичья фамилия начинается с prefix,
+     * в алфавитном порядке совпавших имён
+     * @param prefix начало имени
+     * @param limit наибольшее число результатов
+     */
+    public List<FamilyMember> findByPrefix(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        IdentityHashMap<FamilyMember, Boolean> found = new IdentityHashMap<>();
+        ArrayList<FamilyMember> result = new ArrayList<>();
+        for (Map.Entry<String, ArrayList<FamilyMember>> entry : prefixes.tailMap(key, true).entrySet()) {
+            if (!entry.getKey().startsWith(key)) {
+                break;
+            }
+            for (FamilyMember member : entry.getValue()) {
+                if (found.put(member, Boolean.TRUE) == null) {
+                    result.add(member);
+                    if (result.size() == limit) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * вернуть имена из индекса, начинающиеся с prefix (в нормализованном виде)
+     */
+    public List<String> completions(String prefix, int limit) {
+        String key = normalize(prefix);
+        ArrayList<String> result = new ArrayList<>();
+        for (String name : prefixes.tailMap(key, true).keySet()) {
+            if (!name.startsWith(key) || result.size() == limit) {
+                break;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    void add(FamilyMember member) {
+        put(firstNames, member.getFirstName(), member);
+        put(lastNames, member.getLastName(), member);
+        put(maidenNames, member.getMaidenName(), member);
+    }
+
+    /**
+     * Переносит члена семьи из записи старого значения поля в запись нового
+     */
+    void changed(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+        switch (field) {
+            case ИМЯ:
+                remove(firstNames, (String) oldValue, member);
+                put(firstNames, member.getFirstName(), member);
+                break;
+            case ФАМИЛИЯ:
+                remove(lastNames, (String) oldValue, member);
+                put(lastNames, member.getLastName(), member);
+                break;
+            case ДЕВИЧЬЯ_ФАМИЛИЯ:
+                remove(maidenNames, (String) oldValue, member);
+                put(maidenNames, member.getMaidenName(), member);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static List<FamilyMember> lookup(HashMap<String, ArrayList<FamilyMember>> map, String name) {
+        ArrayList<FamilyMember> list = map.get(normalize(name));
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private void put(HashMap<String, ArrayList<FamilyMember>> map, String name, FamilyMember member) {
+        if (name == null || name.trim().isEmpty()) {
+            return;
+        }
+        String key = normalize(name);
+        map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(member);
+        prefixes.computeIfAbsent(key, k -> new ArrayList<>(1)).add(member);
+    }
+
+    private void remove(HashMap<String, ArrayList<FamilyMember>> map, String name, FamilyMember member) {
+        if (name == null || name.trim().isEmpty()) {
+            return;
+        }
+        String key = normalize(name);
+        removeFrom(map, key, member);
+        removeFrom(prefixes, key, member);
+    }
+
+    private static void removeFrom(Map<String, ArrayList<FamilyMember>> map, String key, FamilyMember member) {
+        ArrayList<FamilyMember> list = map.get(key);
+        if (list != null) {
+            list.remove(member);
+            if (list.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package familytree;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Неизменяемый список с индексами 0..size-1, хранящийся в виде дерева с 32
+ * потомками в каждом узле. Замена и добавление элемента копируют только путь
+ * от корня до листа, то есть O(log n) узлов, а остальные узлы разделяются
+ * с прежней версией списка. Поэтому соседние версии почти не занимают
+ * лишней памяти, а сравнение версий пропускает общие поддеревья целиком.
+ */
+final class PersistentVector<E> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, new Object[0]);
+
+    private final int size;
+    /**
+     * Сдвиг индекса для корневого узла; 0, если корень сам является листом
+     */
+    private final int shift;
+    private final Object[] root;
+
+    private PersistentVector(int size, int shift, Object[] root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Строит список из готовых элементов за один проход, без промежуточных версий
+     */
+    static <E> PersistentVector<E> of(List<? extends E> elements) {
+        int size = elements.size();
+        if (size == 0) {
+            return empty();
+        }
+        Object[] level = new Object[(size + MASK) >>> BITS];
+        for (int i = 0; i < level.length; i++) {
+            int from = i << BITS;
+            level[i] = elements.subList(from, Math.min(size, from + WIDTH)).toArray();
+        }
+        int shift = 0;
+        while (level.length > 1) {
+            Object[] parents = new Object[(level.length + MASK) >>> BITS];
+            for (int i = 0; i < parents.length; i++) {
+                int from = i << BITS;
+                parents[i] = Arrays.copyOfRange(level, from, Math.min(level.length, from + WIDTH));
+            }
+            level = parents;
+            shift += BITS;
+        }
+        return new PersistentVector<>(size, shift, (Object[]) level[0]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " вне списка из " + size);
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return (E) node[index & MASK];
+    }
+
+    /**
+     * вернуть новую версию списка, в которой элемент index заменён на value
+     */
+    PersistentVector<E> set(int index, E value) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " вне списка из " + size);
+        }
+        if (get(index) == value) {
+            return this;
+        }
+        return new PersistentVector<>(size, shift, set(root, shift, index, value));
+    }
+
+    private static Object[] set(Object[] node, int level, int index, Object value) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = value;
+        }
+        else {
+            int slot = (index >>> level) & MASK;
+            copy[slot] = set((Object[]) node[slot], level - BITS, index, value);
+        }
+        return copy;
+    }
+
+    /**
+     * вернуть новую версию списка с элементом value в конце
+     */
+    PersistentVector<E> append(E value) {
+        if (size == 0) {
+            return new PersistentVector<>(1, 0, new Object[] {value});
+        }
+        if (size == 1 << (shift + BITS)) {
+            // дерево заполнено: старый корень становится первым потомком нового
+            return new PersistentVector<>(size + 1, shift + BITS, new Object[] {root, path(shift, value)});
+        }
+        return new PersistentVector<>(size + 1, shift, append(root, shift, size, value));
+    }
+
+    private static Object[] append(Object[] node, int level, int index, Object value) {
+        int slot = (index >>> level) & MASK;
+        if (level == 0) {
+            Object[] copy = Arrays.copyOf(node, slot + 1);
+            copy[slot] = value;
+            return copy;
+        }
+        if (slot < node.length) {
+            Object[] copy = node.clone();
+            copy[slot] = append((Object[]) node[slot], level - BITS, index, value);
+            return copy;
+        }
+        Object[] copy = Arrays.copyOf(node, slot + 1);
+        copy[slot] = path(level - BITS, value);
+        return copy;
+    }
+
+    /**
+     * Создаёт новую ветку от узла уровня level до листа с единственным элементом
+     */
+    private static Object[] path(int level, Object value) {
+        Object[] node = new Object[] {value};
+        for (int l = 0; l < level; l += BITS) {
+            node = new Object[] {node};
+        }
+        return node;
+    }
+
+    /**
+     * Сообщает индексы, по которым элементы двух списков различаются (сравниваются
+     * ссылки). Общие поддеревья пропускаются, поэтому время зависит от числа
+     * изменений между версиями, а не от длины списков
+     */
+    static void diff(PersistentVector<?> a, PersistentVector<?> b, IntConsumer changed) {
+        PersistentVector<?> small = a.size <= b.size ? a : b;
+        PersistentVector<?> large = small == a ? b : a;
+        if (small.size > 0) {
+            // индексы короткого списка лежат в первом поддереве длинного на каждом уровне
+            Object[] node = large.root;
+            for (int level = large.shift; level > small.shift; level -= BITS) {
+                node = (Object[]) node[0];
+            }
+            diff(small.root, node, small.shift, 0, small.size, changed);
+        }
+        for (int i = small.size; i < large.size; i++) {
+            changed.accept(i);
+        }
+    }
+
+    private static void diff(Object[] a, Object[] b, int level, int offset, int size, IntConsumer changed) {
+        if (a == b) {
+            return;
+        }
+        for (int slot = 0; slot < WIDTH; slot++) {
+            int index = offset + (slot << level);
+            if (index >= size) {
+                return;
+            }
+            if (level == 0) {
+                if (a[slot] != b[slot]) {
+                    changed.accept(index);
+                }
+            }
+            else {
+                diff((Object[]) a[slot], (Object[]) b[slot], level - BITS, index, size, changed);
+            }
+        }
+    }
+}
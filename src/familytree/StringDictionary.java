@@ -0,0 +1,36 @@
+package familytree;
+
+import java.util.HashMap;
+
+/**
+ * Словарь строк генеалогического древа. Имена, фамилии и части адресов членов
+ * семьи древа заменяются каноническим экземпляром из словаря, поэтому
+ * повторяющиеся значения (сотни фамилий и населённых пунктов на миллионы
+ * членов семьи) хранятся в памяти по одному разу.
+ *
+ * Словарь пополняется при добавлении члена семьи в древо и при изменении его
+ * полей, то есть под блокировкой записи древа. Значения, которые больше никто
+ * не использует, остаются в словаре до следующей загрузки древа.
+ */
+public final class StringDictionary {
+
+    private final HashMap<String, String> values = new HashMap<>();
+
+    /**
+     * вернуть канонический экземпляр строки, равной value, или null для null
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String canonical = values.putIfAbsent(value, value);
+        return canonical != null ? canonical : value;
+    }
+
+    /**
+     * вернуть число различных строк в словаре
+     */
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,331 @@
+package familytree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Поддерживает сводные данные о потомках каждого члена семьи: число потомков,
+ * число мужчин и женщин среди них и число поколений ниже члена семьи.
+ *
+ * Потомки определяются по ссылкам на отца и мать. Когда у ребёнка без потомков
+ * появляется родитель, ребёнок прибавляется ко всем предкам этого родителя, кроме тех,
+ * кто уже был предком ребёнка через второго родителя, поэтому при браках между
+ * родственниками общий потомок не учитывается дважды. Стоимость обновления
+ * пропорциональна числу предков, а не размеру древа.
+ *
+ * Если родитель появляется у ребёнка с потомками (к древу присоединяется ветка),
+ * обходится вся ветка: предкам, у которых раньше не было потомков из ветки,
+ * прибавляется вся ветка, а у предков, уже связанных с ней по другой линии,
+ * данные пересчитываются обходом их потомков. Данные остаются точными и при
+ * браках между родственниками.
+ */
+public final class SubtreeAggregates {
+
+    private SubtreeAggregates() {
+    }
+
+    /**
+     * Учитывает новую связь родитель - ребёнок
+     * @param parent новый родитель
+     * @param child ребёнок
+     * @param otherParent второй родитель ребёнка, если он уже указан, иначе null
+     */
+    static void linked(FamilyMember parent, FamilyMember child, FamilyMember otherParent) {
+        if (child.getDescendantCount() == 0) {
+            linkedLeaf(parent, child, otherParent);
+        }
+        else {
+            linkedBranch(parent, child);
+        }
+        raiseGenerations(parent, child.getGenerationsBelow() + 1);
+    }
+
+    /**
+     * Прибавляет ребёнка без потомков к предкам нового родителя
+     */
+    private static void linkedLeaf(FamilyMember parent, FamilyMember child, FamilyMember otherParent) {
+        Set<FamilyMember> known = otherParent == null
+                ? Collections.emptySet()
+                : ancestors(Collections.singleton(otherParent));
+        int male = child.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ);
+        int female = child.getDescendantCount(FamilyMember.Gender.ЖЕНСКИЙ);
+        if (child.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+            male++;
+        }
+        else if (child.getGender() == FamilyMember.Gender.ЖЕНСКИЙ) {
+            female++;
+        }
+        int total = child.getDescendantCount() + 1;
+        int maleTotal = male;
+        int femaleTotal = female;
+        FamilyTraversal.ancestors(parent, (ancestor, distance) -> {
+            if (!known.contains(ancestor)) {
+                ancestor.addDescendants(total, maleTotal, femaleTotal);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Прибавляет ребёнка со всеми его потомками к предкам нового родителя.
+     * Прежние предки ветки - предки тех, кто входит в неё через другого родителя
+     */
+    private static void linkedBranch(FamilyMember parent, FamilyMember child) {
+        Set<FamilyMember> branch = FamilyTraversal.collect(Collections.singleton(child), FamilyTraversal.DESCENDANTS);
+        ArrayList<FamilyMember> entries = new ArrayList<>();
+        int male = 0;
+        int female = 0;
+        for (FamilyMember member : branch) {
+            if (member.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+                male++;
+            }
+            else if (member.getGender() == FamilyMember.Gender.ЖЕНСКИЙ) {
+                female++;
+            }
+            // новая связь ребёнка с parent прежним предком ветки не считается
+            FamilyMember father = member.getFather();
+            if (father != null && !branch.contains(father) && !(member == child && father == parent)) {
+                entries.add(father);
+            }
+            FamilyMember mother = member.getMother();
+            if (mother != null && !branch.contains(mother) && !(member == child && mother == parent)) {
+                entries.add(mother);
+            }
+        }
+        Set<FamilyMember> known = entries.isEmpty() ? Collections.emptySet() : ancestors(entries);
+        int total = branch.size();
+        int maleTotal = male;
+        int femaleTotal = female;
+        FamilyTraversal.ancestors(parent, (ancestor, distance) -> {
+            if (known.contains(ancestor)) {
+                recount(ancestor);
+            }
+            else {
+                ancestor.addDescendants(total, maleTotal, femaleTotal);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Пересчитывает число потомков члена семьи обходом его потомков
+     */
+    private static void recount(FamilyMember member) {
+        Set<FamilyMember> descendants = FamilyTraversal.collect(Collections.singleton(member), FamilyTraversal.DESCENDANTS);
+        int male = 0;
+        int female = 0;
+        for (FamilyMember descendant : descendants) {
+            if (descendant == member) {
+                continue;
+            }
+            if (descendant.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+                male++;
+            }
+            else if (descendant.getGender() == FamilyMember.Gender.ЖЕНСКИЙ) {
+                female++;
+            }
+        }
+        member.addDescendants(descendants.size() - 1 - member.getDescendantCount(),
+                male - member.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ),
+                female - member.getDescendantCount(FamilyMember.Gender.ЖЕНСКИЙ));
+    }
+
+    /**
+     * Переносит члена семьи между счётчиками мужчин и женщин у всех его предков
+     */
+    static void genderChanged(FamilyMember member, FamilyMember.Gender oldGender) {
+        int male = 0;
+        int female = 0;
+        if (oldGender == FamilyMember.Gender.МУЖСКОЙ) {
+            male--;
+        }
+        else if (oldGender == FamilyMember.Gender.ЖЕНСКИЙ) {
+            female--;
+        }
+        if (member.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+            male++;
+        }
+        else if (member.getGender() == FamilyMember.Gender.ЖЕНСКИЙ) {
+            female++;
+        }
+        ArrayDeque<FamilyMember> parents = new ArrayDeque<>(2);
+        if (member.getFather() != null) {
+            parents.add(member.getFather());
+        }
+        if (member.getMother() != null) {
+            parents.add(member.getMother());
+        }
+        int maleDelta = male;
+        int femaleDelta = female;
+        FamilyTraversal.breadthFirst(parents, FamilyTraversal.ANCESTORS, (ancestor, distance) -> {
+            ancestor.addDescendants(0, maleDelta, femaleDelta);
+            return true;
+        });
+    }
+
+    /**
+     * Пересчитывает данные всех указанных членов семьи заново за один проход от
+     * потомков к предкам: член семьи обрабатывается после всех своих детей и
+     * складывает их данные. Сумма точна, пока каждый потомок достижим только по
+     * одной линии, поэтому у предков, общих для отца и матери какого-нибудь члена
+     * семьи (браки между родственниками), число потомков затем пересчитывается
+     * обходом. Длинная родословная по одному родителю обрабатывается за линейное
+     * время, а не за квадратичное, как при добавлении связей по одной.
+     * Родители, не входящие в members, не учитываются
+     */
+    public static void recompute(Collection<FamilyMember> members) {
+        // число ещё не обработанных детей каждого члена семьи
+        IdentityHashMap<FamilyMember, Integer> pending = new IdentityHashMap<>(members.size() * 2);
+        for (FamilyMember member : members) {
+            member.resetAggregates();
+            pending.put(member, 0);
+        }
+        for (FamilyMember member : members) {
+            FamilyMember father = parentIn(member, member.getFather(), pending);
+            FamilyMember mother = parentIn(member, member.getMother(), pending);
+            if (father != null) {
+                pending.put(father, pending.get(father) + 1);
+            }
+            if (mother != null && mother != father) {
+                pending.put(mother, pending.get(mother) + 1);
+            }
+        }
+
+        ArrayDeque<FamilyMember> ready = new ArrayDeque<>();
+        for (FamilyMember member : members) {
+            if (pending.get(member) == 0) {
+                ready.add(member);
+            }
+        }
+        ArrayList<FamilyMember> bothParents = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            FamilyMember member = ready.poll();
+            addChildren(member, pending);
+            FamilyMember father = parentIn(member, member.getFather(), pending);
+            FamilyMember mother = parentIn(member, member.getMother(), pending);
+            if (father != null && mother != null && father != mother) {
+                bothParents.add(member);
+            }
+            if (father != null && release(father, pending)) {
+                ready.add(father);
+            }
+            if (mother != null && mother != father && release(mother, pending)) {
+                ready.add(mother);
+            }
+        }
+
+        Set<FamilyMember> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FamilyMember member : bothParents) {
+            Set<FamilyMember> fatherLine = Collections.newSetFromMap(new IdentityHashMap<>());
+            FamilyTraversal.ancestors(member.getFather(), (ancestor, distance) -> {
+                if (!pending.containsKey(ancestor)) {
+                    return false;
+                }
+                fatherLine.add(ancestor);
+                return true;
+            });
+            FamilyTraversal.ancestors(member.getMother(), (ancestor, distance) -> {
+                if (!pending.containsKey(ancestor)) {
+                    return false;
+                }
+                if (fatherLine.contains(ancestor)) {
+                    shared.add(ancestor);
+                }
+                return true;
+            });
+        }
+        for (FamilyMember ancestor : shared) {
+            recount(ancestor);
+        }
+    }
+
+    /**
+     * Складывает данные детей члена семьи, уже посчитанные заново
+     */
+    private static void addChildren(FamilyMember member, IdentityHashMap<FamilyMember, Integer> pending) {
+        int total = 0;
+        int male = 0;
+        int female = 0;
+        int generations = 0;
+        for (FamilyMember child : member.getChildren()) {
+            if (!pending.containsKey(child) || (child.getFather() != member && child.getMother() != member)) {
+                continue;
+            }
+            total += child.getDescendantCount() + 1;
+            male += child.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ);
+            female += child.getDescendantCount(FamilyMember.Gender.ЖЕНСКИЙ);
+            if (child.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+                male++;
+            }
+            else if (child.getGender() == FamilyMember.Gender.ЖЕНСКИЙ) {
+                female++;
+            }
+            generations = Math.max(generations, child.getGenerationsBelow() + 1);
+        }
+        member.addDescendants(total, male, female);
+        member.setGenerationsBelow(generations);
+    }
+
+    /**
+     * вернуть родителя, если он входит в пересчитываемых членов семьи, иначе null
+     */
+    private static FamilyMember parentIn(FamilyMember member, FamilyMember parent,
+                                         IdentityHashMap<FamilyMember, Integer> set) {
+        return parent != null && parent != member && set.containsKey(parent) ? parent : null;
+    }
+
+    /**
+     * Отмечает одного ребёнка родителя обработанным
+     * @return true, если у родителя больше не осталось необработанных детей
+     */
+    private static boolean release(FamilyMember parent, IdentityHashMap<FamilyMember, Integer> pending) {
+        int count = pending.get(parent) - 1;
+        pending.put(parent, count);
+        return count == 0;
+    }
+
+    /**
+     * Проверяет, является ли ancestor предком member по ссылкам на родителей
+     */
+    static boolean isAncestor(FamilyMember ancestor, FamilyMember member) {
+        return FamilyTraversal.reaches(member, FamilyTraversal.ANCESTORS, ancestor);
+    }
+
+    /**
+     * вернуть указанных членов семьи вместе со всеми их предками
+     */
+    private static Set<FamilyMember> ancestors(Collection<FamilyMember> start) {
+        return FamilyTraversal.collect(start, FamilyTraversal.ANCESTORS);
+    }
+
+    /**
+     * Поднимает число поколений ниже у члена семьи и дальше у его предков,
+     * пока значение растёт
+     */
+    private static void raiseGenerations(FamilyMember member, int generations) {
+        ArrayDeque<FamilyMember> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> values = new ArrayDeque<>();
+        stack.push(member);
+        values.push(generations);
+        while (!stack.isEmpty()) {
+            FamilyMember current = stack.pop();
+            int value = values.pop();
+            if (value <= current.getGenerationsBelow()) {
+                continue;
+            }
+            current.setGenerationsBelow(value);
+            if (current.getFather() != null) {
+                stack.push(current.getFather());
+                values.push(value + 1);
+            }
+            if (current.getMother() != null) {
+                stack.push(current.getMother());
+                values.push(value + 1);
+            }
+        }
+    }
+}
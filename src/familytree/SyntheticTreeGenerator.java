@@ -0,0 +1,599 @@
+package familytree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор синтетических генеалогических древ для нагрузочного тестирования.
+ * Древо растёт от корня поколение за поколением: каждый кровный родственник
+ * с заданной вероятностью вступает в брак и имеет в среднем fanOut детей
+ * (распределение Пуассона), пока не будет достигнут размер древа или глубина.
+ * Имена, фамилии и населённые пункты выбираются с распределением Ципфа: чем
+ * раньше значение в списке, тем чаще оно встречается. Все значения проверяются
+ * сеттерами FamilyMember и Address при настройке генератора, поэтому каждая
+ * запись удовлетворяет тем же правилам, что и введённая вручную.
+ * Результат однозначно определяется зерном и настройками.
+ * Идентификаторы назначаются в порядке поколений, и в памяти хранятся только
+ * члены семьи, уже получившие идентификатор, но ещё не записанные, - несколько
+ * чисел на каждого, - поэтому write подходит для древ из десятков миллионов человек.
+ */
+public final class SyntheticTreeGenerator {
+
+    /**
+     * Наибольшее среднее число детей в семье
+     */
+    public static final double MAX_FAN_OUT = 20;
+
+    /**
+     * Наибольший размер каждого списка значений
+     */
+    public static final int MAX_VALUES = 1000;
+
+    /**
+     * Наибольший номер дома
+     */
+    static final int MAX_STREET_NUMBER = 200;
+
+    private static final int PROGRESS_STEP = 4096;
+
+    /**
+     * Наибольшее число поколений
+     */
+    public static final int MAX_DEPTH = 1023;
+
+    // поля состояния члена семьи, получившего идентификатор, но ещё не записанного.
+    // У супругов, не являющихся кровными родственниками, родителей в древе нет,
+    // и поля родителей хранят супруга и первого ребёнка
+    private static final int FATHER = 0;
+    private static final int MOTHER = 1;
+    private static final int SPOUSE = FATHER;
+    private static final int FIRST_CHILD = MOTHER;
+    private static final int INFO = 2;
+    private static final int NAMES = 3;
+    private static final int ADDRESS = 4;
+    private static final int STRIDE = 5;
+
+    // биты поля INFO: пол, кровное родство, поколение и число детей
+    private static final int FEMALE = 1;
+    private static final int BLOOD = 2;
+    private static final int DEPTH_SHIFT = 2;
+    private static final int DEPTH_MASK = MAX_DEPTH;
+    private static final int CHILDREN_SHIFT = 12;
+
+    // поле NAMES: фамилия в младших 16 битах, девичья фамилия плюс один в старших
+    private static final int MAIDEN_SHIFT = 16;
+    private static final int SURNAME_MASK = 0xFFFF;
+
+    private static final int NONE = MemberRecord.NONE;
+
+    private final long seed;
+    private int size = 1000;
+    private int maxDepth = 30;
+    private double fanOut = 2.2;
+    private double spouseRate = 0.7;
+    private double moveRate = 0.5;
+    private double skew = 1.0;
+    private String[] maleNames = {"Александр", "Сергей", "Дмитрий", "Андрей", "Алексей", "Иван", "Михаил",
+            "Николай", "Владимир", "Пётр", "Павел", "Евгений", "Юрий", "Виктор", "Фёдор", "Григорий"};
+    private String[] femaleNames = {"Елена", "Ольга", "Наталья", "Татьяна", "Ирина", "Анна", "Мария",
+            "Светлана", "Екатерина", "Людмила", "Галина", "Валентина", "Нина", "Ксения", "Дарья", "Вера"};
+    private String[] lastNames = {"Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров", "Соколов",
+            "Михайлов", "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семёнов", "Егоров",
+            "Павлов", "Козлов", "Степанов", "Николаев", "Орлов", "Андреев", "Макаров", "Никитин", "Захаров",
+            "Зайцев", "Соловьёв", "Борисов", "Яковлев", "Григорьев", "Романов", "Воробьёв", "Сергеев", "Кузьмин",
+            "Фролов", "Александров", "Дмитриев", "Королёв", "Гусев", "Киселёв", "Ильин", "Максимов", "Поляков",
+            "Сорокин", "Виноградов", "Ковалёв", "Белов", "Медведев", "Антонов", "Тарасов", "Жуков", "Баранов",
+            "Филиппов", "Комаров", "Давыдов", "Беляев", "Герасимов", "Богданов", "Осипов", "Сидоров",
+            "Матвеев", "Титов", "Марков", "Миронов", "Крылов", "Куликов", "Карпов", "Власов", "Мельников",
+            "Денисов", "Гаврилов", "Тихонов", "Казаков", "Афанасьев", "Данилов", "Савельев", "Тимофеев",
+            "Фомин", "Чернов", "Абрамов", "Мартынов", "Ефимов", "Федотов", "Щербаков", "Назаров", "Калинин",
+            "Исаев", "Чернышёв", "Быков", "Маслов", "Родионов", "Коновалов", "Лазарев", "Воронин", "Климов",
+            "Филатов", "Пономарёв", "Голубев", "Кудрявцев", "Прохоров", "Наумов", "Потапов", "Журавлёв"};
+    private String[] streets = {"Ленина", "Советская", "Мира", "Садовая", "Школьная", "Молодёжная", "Лесная",
+            "Центральная", "Новая", "Набережная", "Полевая", "Гагарина", "Пушкина", "Заречная", "Садовое кольцо"};
+    private String[] suburbs = {"Москва", "Санкт-Петербург", "Новосибирск", "Екатеринбург", "Казань",
+            "Нижний Новгород", "Челябинск", "Самара", "Омск", "Ростов-на-Дону", "Уфа", "Красноярск", "Воронеж",
+            "Пермь", "Волгоград", "Тула", "Тверь", "Калуга", "Ярославль", "Вологда"};
+
+    /**
+     * @param seed зерно генератора случайных чисел; одинаковое зерно и настройки дают одинаковое древо
+     */
+    public SyntheticTreeGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Задаёт наибольшее число членов семьи. Древо получается меньше, только
+     * если все ветви упираются в ограничение глубины
+     */
+    public void setSize(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Размер древа должен быть положительным");
+        }
+        this.size = size;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Задаёт наибольшее число поколений кровных родственников, включая корень
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1 || maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Число поколений должно быть от 1 до " + MAX_DEPTH);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    public double getFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Задаёт среднее число детей у кровного родственника
+     */
+    public void setFanOut(double fanOut) {
+        if (!(fanOut >= 0 && fanOut <= MAX_FAN_OUT)) {
+            throw new IllegalArgumentException("Среднее число детей должно быть от 0 до " + (int) MAX_FAN_OUT);
+        }
+        this.fanOut = fanOut;
+    }
+
+    public double getSpouseRate() {
+        return spouseRate;
+    }
+
+    /**
+     * Задаёт вероятность того, что кровный родственник состоит в браке
+     */
+    public void setSpouseRate(double spouseRate) {
+        this.spouseRate = checkRate(spouseRate, "Доля браков");
+    }
+
+    public double getMoveRate() {
+        return moveRate;
+    }
+
+    /**
+     * Задаёт вероятность того, что ребёнок живёт не по адресу родителей
+     */
+    public void setMoveRate(double moveRate) {
+        this.moveRate = checkRate(moveRate, "Доля переездов");
+    }
+
+    public double getSkew() {
+        return skew;
+    }
+
+    /**
+     * Задаёт показатель распределения Ципфа для имён, фамилий, улиц и населённых
+     * пунктов; 0 означает равномерное распределение
+     */
+    public void setSkew(double skew) {
+        if (!(skew >= 0 && skew <= 10)) {
+            throw new IllegalArgumentException("Показатель распределения должен быть от 0 до 10");
+        }
+        this.skew = skew;
+    }
+
+    /**
+     * Задаёт мужские имена в порядке убывания частоты
+     */
+    public void setMaleNames(String... names) {
+        FamilyMember probe = probe(FamilyMember.Gender.МУЖСКОЙ);
+        this.maleNames = check(names, probe::setFirstName);
+    }
+
+    /**
+     * Задаёт женские имена в порядке убывания частоты
+     */
+    public void setFemaleNames(String... names) {
+        FamilyMember probe = probe(FamilyMember.Gender.ЖЕНСКИЙ);
+        this.femaleNames = check(names, probe::setFirstName);
+    }
+
+    /**
+     * Задаёт фамилии в мужской форме в порядке убывания частоты.
+     * Женская форма образуется по правилам русского языка, например Петров - Петрова
+     */
+    public void setLastNames(String... names) {
+        FamilyMember man = probe(FamilyMember.Gender.МУЖСКОЙ);
+        FamilyMember woman = probe(FamilyMember.Gender.ЖЕНСКИЙ);
+        this.lastNames = check(names, name -> {
+            man.setLastName(name);
+            woman.setLastName(feminine(name.trim()));
+            woman.setMaidenName(feminine(name.trim()));
+        });
+    }
+
+    /**
+     * Задаёт названия улиц в порядке убывания частоты
+     */
+    public void setStreets(String... streets) {
+        Address probe = new Address("1", "Ленина", "Москва", "101000");
+        this.streets = check(streets, probe::setStreetName);
+    }
+
+    /**
+     * Задаёт населённые пункты в порядке убывания частоты
+     */
+    public void setSuburbs(String... suburbs) {
+        Address probe = new Address("1", "Ленина", "Москва", "101000");
+        this.suburbs = check(suburbs, probe::setSuburb);
+    }
+
+    /**
+     * Строит древо в памяти через FamilyMember.setSpouse и addChild, как при вводе вручную
+     */
+    public FamilyTree generate() {
+        FamilyTree tree = new FamilyTree();
+        try {
+            new Run(true).run(record -> add(tree, record));
+        }
+        catch (IOException ex) {
+            // в памяти ввод-вывод не выполняется
+            throw new IllegalStateException(ex);
+        }
+        return tree;
+    }
+
+    /**
+     * Вычисляет размер древа без построения записей
+     */
+    public int count() {
+        try {
+            return new Run(false).run(null);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Записывает древо в поток в формате FamilyTreeCodec, не строя его в памяти.
+     * Сначала вычисляется размер древа, затем записи генерируются повторно и
+     * сразу записываются
+     * @param out поток для записи, не закрывается
+     * @param progress получатель хода записи; при отмене бросается InterruptedIOException
+     * @return число записанных членов семьи
+     */
+    public int write(OutputStream out, TaskProgress progress) throws IOException {
+        int count = count();
+        FamilyTreeCodec.RecordWriter writer = FamilyTreeCodec.openWriter(out, count);
+        new Run(true).run(record -> {
+            if (record.getId() % PROGRESS_STEP == 0) {
+                FamilyTreeCodec.report(progress, record.getId(), count);
+            }
+            writer.write(record);
+        });
+        writer.finish(0);
+        return count;
+    }
+
+    /**
+     * Добавляет член семьи из записи в древо. Родственники с меньшими идентификаторами
+     * уже в древе, и новый член семьи получает в нём идентификатор своей записи
+     */
+    private static void add(FamilyTree tree, MemberRecord record) {
+        Address address = new Address(record.getStreetNumber(), record.getStreetName(), record.getSuburb(),
+                record.getPostCode());
+        FamilyMember member = new FamilyMember(record.getFirstName(), record.getLastName(), record.getGender(),
+                address, record.getLifeDescription());
+        if (!record.getMaidenName().isEmpty()) {
+            member.setMaidenName(record.getMaidenName());
+        }
+        if (record.getId() == 0) {
+            tree.setRoot(member);
+        }
+        else if (record.getSpouseId() != NONE && record.getSpouseId() < record.getId()) {
+            tree.getMember(record.getSpouseId()).setSpouse(member);
+        }
+        else {
+            int parent = record.getFatherId() != NONE ? record.getFatherId() : record.getMotherId();
+            tree.getMember(parent).addChild(member);
+        }
+    }
+
+    /**
+     * Получатель записей в порядке идентификаторов
+     */
+    private interface RecordSink {
+        void accept(MemberRecord record) throws IOException;
+    }
+
+    /**
+     * Один проход генерации. Решения о форме древа принимаются по одному
+     * генератору случайных чисел, а значения полей - по другому, поэтому проход
+     * без записей (для подсчёта размера) даёт ту же форму, что и полный
+     */
+    private final class Run {
+        private final boolean records;
+        private final SplittableRandom shape = new SplittableRandom(seed);
+        private final SplittableRandom values = shape.split();
+        private final double[] maleWeights = weights(maleNames.length);
+        private final double[] femaleWeights = weights(femaleNames.length);
+        private final double[] lastNameWeights = weights(lastNames.length);
+        private final double[] streetWeights = weights(streets.length);
+        private final double[] suburbWeights = weights(suburbs.length);
+        private final String[] feminineLastNames = new String[lastNames.length];
+        private final String[] streetNumbers = new String[MAX_STREET_NUMBER + 1];
+        private final String[] postCodes = new String[suburbs.length];
+        private final String[] bornMale = new String[suburbs.length];
+        private final String[] bornFemale = new String[suburbs.length];
+        private final double fanOutLimit = Math.exp(-fanOut);
+
+        // состояние членов семьи с идентификаторами от current до next - 1 в кольцевом буфере
+        private int[] state = new int[64 * STRIDE];
+        private int mask = 63;
+        private int current;
+        private int next;
+        private int pendingBlood;
+
+        // супруг и дети текущего кровного родственника
+        private int spouse;
+        private int firstChild;
+        private int childCount;
+
+        Run(boolean records) {
+            this.records = records;
+            for (int i = 0; i < lastNames.length; i++) {
+                feminineLastNames[i] = feminine(lastNames[i]);
+            }
+            for (int i = 1; i <= MAX_STREET_NUMBER; i++) {
+                streetNumbers[i] = Integer.toString(i);
+            }
+            for (int i = 0; i < suburbs.length; i++) {
+                postCodes[i] = Integer.toString(101000 + i * 1000);
+                bornMale[i] = "Родился в городе " + suburbs[i];
+                bornFemale[i] = "Родилась в городе " + suburbs[i];
+            }
+        }
+
+        /**
+         * @return число членов семьи
+         */
+        int run(RecordSink sink) throws IOException {
+            allocate(shape.nextBoolean(), 0, NONE, NONE, records ? pick(lastNameWeights) : 0,
+                    records ? newAddress() : 0);
+            for (int id = 0; id < next; id++) {
+                current = id;
+                if ((get(id, INFO) & BLOOD) != 0) {
+                    grow(id);
+                }
+                if (records) {
+                    sink.accept(record(id));
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Решает, вступает ли кровный родственник в брак и сколько у него детей,
+         * и выдаёт им идентификаторы
+         */
+        private void grow(int id) {
+            pendingBlood--;
+            int info = get(id, INFO);
+            boolean female = (info & FEMALE) != 0;
+            int depth = (info >>> DEPTH_SHIFT) & DEPTH_MASK;
+            int names = get(id, NAMES);
+            int surname = names & SURNAME_MASK;
+            int address = get(id, ADDRESS);
+            spouse = NONE;
+            if (next < size && shape.nextDouble() < spouseRate) {
+                int other = records ? pick(lastNameWeights) : 0;
+                int spouseNames = surname;
+                if (female) {
+                    // жена берёт фамилию мужа, а её фамилия становится девичьей
+                    set(id, NAMES, other | (surname + 1) << MAIDEN_SHIFT);
+                    surname = other;
+                    spouseNames = other;
+                }
+                else {
+                    spouseNames |= (other + 1) << MAIDEN_SHIFT;
+                }
+                spouse = allocate(!female, depth, id, NONE, 0, address);
+                set(spouse, INFO, get(spouse, INFO) & ~BLOOD);
+                set(spouse, NAMES, spouseNames);
+                pendingBlood--;
+            }
+
+            int children = 0;
+            if (depth + 1 < maxDepth) {
+                children = poisson();
+                if (children == 0 && pendingBlood == 0) {
+                    // последняя ветвь, которая ещё может продолжиться
+                    children = 1;
+                }
+            }
+            children = Math.min(children, size - next);
+            int father = female ? spouse : id;
+            int mother = female ? id : spouse;
+            firstChild = next;
+            childCount = children;
+            for (int i = 0; i < children; i++) {
+                boolean girl = shape.nextBoolean();
+                boolean moved = shape.nextDouble() < moveRate;
+                allocate(girl, depth + 1, father, mother, surname, !records ? 0 : moved ? newAddress() : address);
+            }
+            if (spouse != NONE) {
+                set(spouse, FIRST_CHILD, firstChild);
+                set(spouse, INFO, get(spouse, INFO) | children << CHILDREN_SHIFT);
+            }
+        }
+
+        /**
+         * Выдаёт идентификатор новому кровному родственнику
+         */
+        private int allocate(boolean female, int depth, int father, int mother, int surname, int address) {
+            int id = next++;
+            if (next - current > mask + 1) {
+                expand();
+            }
+            int base = (id & mask) * STRIDE;
+            state[base + FATHER] = father;
+            state[base + MOTHER] = mother;
+            state[base + INFO] = depth << DEPTH_SHIFT | BLOOD | (female ? FEMALE : 0);
+            state[base + NAMES] = surname;
+            state[base + ADDRESS] = address;
+            pendingBlood++;
+            return id;
+        }
+
+        /**
+         * Удваивает кольцевой буфер состояния, сохраняя члены семьи, ещё не записанные
+         */
+        private void expand() {
+            int[] old = state;
+            int oldMask = mask;
+            mask = mask * 2 + 1;
+            state = new int[(mask + 1) * STRIDE];
+            for (int id = current; id < next - 1; id++) {
+                System.arraycopy(old, (id & oldMask) * STRIDE, state, (id & mask) * STRIDE, STRIDE);
+            }
+        }
+
+        private int get(int id, int field) {
+            return state[(id & mask) * STRIDE + field];
+        }
+
+        private void set(int id, int field, int value) {
+            state[(id & mask) * STRIDE + field] = value;
+        }
+
+        private MemberRecord record(int id) {
+            int info = get(id, INFO);
+            boolean female = (info & FEMALE) != 0;
+            int father = NONE;
+            int mother = NONE;
+            if ((info & BLOOD) != 0) {
+                father = get(id, FATHER);
+                mother = get(id, MOTHER);
+            }
+            else {
+                spouse = get(id, SPOUSE);
+                firstChild = get(id, FIRST_CHILD);
+                childCount = info >>> CHILDREN_SHIFT;
+            }
+            String firstName = female ? femaleNames[pick(femaleWeights)] : maleNames[pick(maleWeights)];
+            int names = get(id, NAMES);
+            String lastName = (female ? feminineLastNames : lastNames)[names & SURNAME_MASK];
+            int maiden = (names >>> MAIDEN_SHIFT) - 1;
+            int address = get(id, ADDRESS);
+            int suburb = address % suburbs.length;
+            int street = address / suburbs.length % streets.length;
+            int number = address / suburbs.length / streets.length;
+            int[] children = new int[childCount];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = firstChild + i;
+            }
+            return new MemberRecord(id, firstName, lastName, maiden == NONE ? "" : feminineLastNames[maiden],
+                    female ? FamilyMember.Gender.ЖЕНСКИЙ : FamilyMember.Gender.МУЖСКОЙ,
+                    streetNumbers[number], streets[street], suburbs[suburb], postCodes[suburb],
+                    (female ? bornFemale : bornMale)[suburb],
+                    father, mother, spouse, children);
+        }
+
+        /**
+         * Выбирает новый адрес и кодирует его одним числом
+         */
+        private int newAddress() {
+            int number = 1 + values.nextInt(MAX_STREET_NUMBER);
+            return (number * streets.length + pick(streetWeights)) * suburbs.length + pick(suburbWeights);
+        }
+
+        /**
+         * Выбирает индекс по накопленным весам
+         */
+        private int pick(double[] cumulative) {
+            double target = values.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return Math.min(index < 0 ? -index - 1 : index + 1, cumulative.length - 1);
+        }
+
+        /**
+         * Число детей по распределению Пуассона со средним fanOut
+         */
+        private int poisson() {
+            int k = 0;
+            double p = shape.nextDouble();
+            while (p > fanOutLimit) {
+                k++;
+                p *= shape.nextDouble();
+            }
+            return k;
+        }
+
+        /**
+         * Накопленные веса распределения Ципфа для n значений
+         */
+        private double[] weights(int n) {
+            double[] cumulative = new double[n];
+            double total = 0;
+            for (int i = 0; i < n; i++) {
+                total += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = total;
+            }
+            return cumulative;
+        }
+    }
+
+    /**
+     * Женская форма фамилии: Петров - Петрова, Ильин - Ильина, Достоевский - Достоевская
+     */
+    static String feminine(String lastName) {
+        if (lastName.endsWith("ов") || lastName.endsWith("ев") || lastName.endsWith("ёв")
+                || lastName.endsWith("ин") || lastName.endsWith("ын")) {
+            return lastName + "а";
+        }
+        if (lastName.endsWith("ский") || lastName.endsWith("цкий")) {
+            return lastName.substring(0, lastName.length() - 2) + "ая";
+        }
+        return lastName;
+    }
+
+    private static double checkRate(double rate, String name) {
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException(name + " должна быть от 0 до 1");
+        }
+        return rate;
+    }
+
+    private static FamilyMember probe(FamilyMember.Gender gender) {
+        return new FamilyMember("Иван", "Иванов", gender, null, "");
+    }
+
+    /**
+     * Проверка одного значения сеттером FamilyMember или Address
+     */
+    private interface Check {
+        void accept(String value);
+    }
+
+    /**
+     * Проверяет список значений и возвращает его копию без лишних пробелов
+     */
+    private static String[] check(String[] values, Check check) {
+        if (values.length == 0 || values.length > MAX_VALUES) {
+            throw new IllegalArgumentException("Список должен содержать от 1 до " + MAX_VALUES + " значений");
+        }
+        String[] result = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            check.accept(values[i]);
+            result[i] = values[i].trim();
+        }
+        return result;
+    }
+}
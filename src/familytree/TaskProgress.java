@@ -0,0 +1,35 @@
+package familytree;
+
+/**
+ * Приёмник хода длительной операции (загрузки, сохранения, построения дерева)
+ * и источник запроса на её отмену. Реализации должны быть потокобезопасны,
+ * так как вызываются из фонового потока.
+ */
+public interface TaskProgress {
+
+    /**
+     * Пустая реализация для операций без индикации хода и отмены
+     */
+    TaskProgress NONE = new TaskProgress() {
+        @Override
+        public void progress(long done, long total) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Сообщает о ходе операции
+     * @param done сколько элементов обработано
+     * @param total сколько всего элементов
+     */
+    void progress(long done, long total);
+
+    /**
+     * вернуть true, если пользователь запросил отмену операции
+     */
+    boolean isCancelled();
+}
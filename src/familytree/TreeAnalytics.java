@@ -0,0 +1,301 @@
+package familytree;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный подсчёт статистики TreeStatistics по всему древу.
+ *
+ * Вместо обхода графа родственных связей, где общий ребёнок достижим через обоих
+ * родителей, работа делится по реестру древа: каждый член семьи имеет свой
+ * идентификатор и попадает ровно в один диапазон. Диапазоны обрабатываются
+ * задачами RecursiveTask в ForkJoinPool, частичные результаты объединяются.
+ * Номера поколений вычисляются заранее одним линейным проходом.
+ *
+ * Подсчёт идёт под блокировкой чтения древа, так что правка из других потоков
+ * ждёт его окончания.
+ *
+ * Для столбцового хранилища ColumnarMemberStore те же величины считаются линейными
+ * проходами по массивам: фамилии и населённые пункты подсчитываются по кодам
+ * словаря в массивах счётчиков, а строки подставляются только в итоговую статистику.
+ */
+public final class TreeAnalytics {
+
+    /**
+     * Размер диапазона, который задача обрабатывает сама, не разделяя дальше
+     */
+    static final int THRESHOLD = 8192;
+
+    private TreeAnalytics() {
+    }
+
+    /**
+     * Считает статистику древа в общем пуле ForkJoinPool
+     */
+    public static TreeStatistics compute(FamilyTree tree) {
+        return compute(tree, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Считает статистику древа в указанном пуле
+     */
+    public static TreeStatistics compute(FamilyTree tree, ForkJoinPool pool) {
+        return tree.read(() -> {
+            List<FamilyMember> members = tree.getMembers();
+            int[] generations = generations(tree);
+            return pool.invoke(new StatisticsTask(members, generations, 0, members.size()));
+        });
+    }
+
+    /**
+     * Считает статистику столбцового хранилища в общем пуле ForkJoinPool
+     */
+    public static TreeStatistics compute(ColumnarMemberStore store) {
+        return compute(store, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Считает статистику столбцового хранилища в указанном пуле
+     */
+    public static TreeStatistics compute(ColumnarMemberStore store, ForkJoinPool pool) {
+        int[] generations = generations(store);
+        int maxGeneration = 0;
+        for (int generation : generations) {
+            maxGeneration = Math.max(maxGeneration, generation);
+        }
+        ColumnCounts counts = pool.invoke(new ColumnTask(store, generations, maxGeneration, 0, store.getMemberCount()));
+        return counts.toStatistics(store);
+    }
+
+    /**
+     * Вычисляет номера поколений по столбцам хранилища тем же способом, что и для древа
+     */
+    static int[] generations(ColumnarMemberStore store) {
+        int count = store.getMemberCount();
+        int[] generation = new int[count];
+        int[] pending = new int[count];
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int id = 0; id < count; id++) {
+            pending[id] = (store.getFatherId(id) != MemberRecord.NONE ? 1 : 0)
+                    + (store.getMotherId(id) != MemberRecord.NONE ? 1 : 0);
+            if (pending[id] == 0) {
+                queue[tail++] = id;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int id = queue[head];
+            for (int i = 0; i < store.numChildren(id); i++) {
+                int c = store.getChildId(id, i);
+                if (store.getFatherId(c) != id && store.getMotherId(c) != id) {
+                    continue;
+                }
+                generation[c] = Math.max(generation[c], generation[id] + 1);
+                if (--pending[c] == 0) {
+                    queue[tail++] = c;
+                }
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Вычисляет номер поколения каждого члена семьи: 0 у тех, чьи родители неизвестны,
+     * иначе на единицу больше, чем у старшего из родителей. Члены семьи обрабатываются
+     * после своих родителей, поэтому глубина родословной не ограничена стеком
+     * @return номера поколений по идентификаторам
+     */
+    static int[] generations(FamilyTree tree) {
+        int count = tree.getMemberCount();
+        int[] generation = new int[count];
+        int[] pending = new int[count];
+        int[] queue = new int[count];
+        int tail = 0;
+        for (int id = 0; id < count; id++) {
+            FamilyMember member = tree.getMember(id);
+            pending[id] = (inTree(tree, member.getFather()) ? 1 : 0) + (inTree(tree, member.getMother()) ? 1 : 0);
+            if (pending[id] == 0) {
+                queue[tail++] = id;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int id = queue[head];
+            FamilyMember member = tree.getMember(id);
+            for (FamilyMember child : member.getChildren()) {
+                int c = child.getId();
+                if (child.getTree() != tree || (child.getFather() != member && child.getMother() != member)) {
+                    continue;
+                }
+                generation[c] = Math.max(generation[c], generation[id] + 1);
+                if (--pending[c] == 0) {
+                    queue[tail++] = c;
+                }
+            }
+        }
+        return generation;
+    }
+
+    private static boolean inTree(FamilyTree tree, FamilyMember member) {
+        return member != null && member.getTree() == tree;
+    }
+
+    private static final class StatisticsTask extends RecursiveTask<TreeStatistics> {
+        private static final long serialVersionUID = 1;
+
+        private final List<FamilyMember> members;
+        private final int[] generations;
+        private final int from;
+        private final int to;
+
+        StatisticsTask(List<FamilyMember> members, int[] generations, int from, int to) {
+            this.members = members;
+            this.generations = generations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TreeStatistics compute() {
+            if (to - from <= THRESHOLD) {
+                TreeStatistics statistics = new TreeStatistics();
+                for (int id = from; id < to; id++) {
+                    statistics.add(members.get(id), generations[id]);
+                }
+                return statistics;
+            }
+            int middle = (from + to) >>> 1;
+            StatisticsTask left = new StatisticsTask(members, generations, from, middle);
+            StatisticsTask right = new StatisticsTask(members, generations, middle, to);
+            left.fork();
+            TreeStatistics result = right.compute();
+            return result.merge(left.join());
+        }
+    }
+
+    /**
+     * Частичные счётчики по диапазону идентификаторов хранилища
+     */
+    private static final class ColumnCounts {
+        private long members;
+        private long males;
+        private long females;
+        private long orphans;
+        private long childless;
+        private long married;
+        private final int[] bySurname;
+        private final int[] bySuburb;
+        private final int[] byGeneration;
+
+        ColumnCounts(ColumnarMemberStore store, int maxGeneration) {
+            bySurname = new int[store.getNameCount()];
+            bySuburb = new int[store.getPlaceCount()];
+            byGeneration = new int[maxGeneration + 1];
+        }
+
+        ColumnCounts merge(ColumnCounts other) {
+            members += other.members;
+            males += other.males;
+            females += other.females;
+            orphans += other.orphans;
+            childless += other.childless;
+            married += other.married;
+            add(bySurname, other.bySurname);
+            add(bySuburb, other.bySuburb);
+            add(byGeneration, other.byGeneration);
+            return this;
+        }
+
+        private static void add(int[] target, int[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+
+        TreeStatistics toStatistics(ColumnarMemberStore store) {
+            TreeStatistics statistics = new TreeStatistics();
+            statistics.addCounts(members, males, females, orphans, childless, married);
+            for (int code = 0; code < bySurname.length; code++) {
+                if (bySurname[code] > 0) {
+                    statistics.addSurname(store.getName(code), bySurname[code]);
+                }
+            }
+            for (int code = 0; code < bySuburb.length; code++) {
+                if (bySuburb[code] > 0) {
+                    statistics.addSuburb(store.getPlace(code), bySuburb[code]);
+                }
+            }
+            for (int generation = 0; generation < byGeneration.length; generation++) {
+                if (byGeneration[generation] > 0) {
+                    statistics.addGeneration(generation, byGeneration[generation]);
+                }
+            }
+            return statistics;
+        }
+    }
+
+    private static final class ColumnTask extends RecursiveTask<ColumnCounts> {
+        private static final long serialVersionUID = 1;
+
+        /**
+         * Диапазон больше, чем у StatisticsTask: каждая задача заводит массивы
+         * счётчиков размером со словари хранилища
+         */
+        private static final int COLUMN_THRESHOLD = 1 << 16;
+
+        private final ColumnarMemberStore store;
+        private final int[] generations;
+        private final int maxGeneration;
+        private final int from;
+        private final int to;
+
+        ColumnTask(ColumnarMemberStore store, int[] generations, int maxGeneration, int from, int to) {
+            this.store = store;
+            this.generations = generations;
+            this.maxGeneration = maxGeneration;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ColumnCounts compute() {
+            if (to - from <= COLUMN_THRESHOLD) {
+                ColumnCounts counts = new ColumnCounts(store, maxGeneration);
+                for (int id = from; id < to; id++) {
+                    counts.members++;
+                    if (store.getGender(id) == FamilyMember.Gender.МУЖСКОЙ) {
+                        counts.males++;
+                    }
+                    else {
+                        counts.females++;
+                    }
+                    if (!store.has(id, FamilyMember.Attribute.РОДИТЕЛИ)) {
+                        counts.orphans++;
+                    }
+                    if (!store.has(id, FamilyMember.Attribute.ДЕТИ)) {
+                        counts.childless++;
+                    }
+                    if (store.has(id, FamilyMember.Attribute.СУПРУГ)) {
+                        counts.married++;
+                    }
+                    int surname = store.getLastNameCode(id);
+                    if (surname != MemberRecord.NONE) {
+                        counts.bySurname[surname]++;
+                    }
+                    int suburb = store.getSuburbCode(id);
+                    if (suburb != MemberRecord.NONE) {
+                        counts.bySuburb[suburb]++;
+                    }
+                    counts.byGeneration[generations[id]]++;
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            ColumnTask left = new ColumnTask(store, generations, maxGeneration, from, middle);
+            ColumnTask right = new ColumnTask(store, generations, maxGeneration, middle, to);
+            left.fork();
+            ColumnCounts result = right.compute();
+            return result.merge(left.join());
+        }
+    }
+}
@@ -0,0 +1,2354 @@
+package familytree;
+
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.*;
+import javax.swing.border.BevelBorder;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.tree.*;
+
+/**
+ * Класс графического интерфейса дерева для реализации объектов семейного древа и членов семьи.
+ * В основном отображает способ взаимодействия с объектами генеалогического древа
+ * Графический интерфейс разделен на 4 основных раздела.
+ * о Строка меню
+ * - содержит опции меню
+ * o Заголовочная панель
+ * - содержит кнопки загрузки, сохранения и создания нового дерева
+ * о Панель управления
+ * - содержит jTree-представление древовидного объекта и панели сведений
+ * который содержит информацию о текущем члене или добавляет и редактирует формы
+ * о Панель состояния
+ * - содержит сообщение о состоянии
+ * Предположения:
+ * Должны быть классы FamilyTree и FamilyMember
+ * Пользователь будет взаимодействовать с этой программой с помощью мыши и клавиатуры
+ * Английский является единственным поддерживаемым языком
+ */
+public class TreeGUI {
+
+    /**
+     * Создает и настраивает графический интерфейс, а также инициализирует все переменные.
+     */
+    public TreeGUI() {
+
+        currentFamilyTree = new FamilyTree();
+        journal = new ChangeJournal(currentFamilyTree);
+        textIndex = new FullTextIndex(currentFamilyTree);
+        kinship = new KinshipEngine(currentFamilyTree);
+        history = new TreeHistory(currentFamilyTree);
+        currentFile = null;
+        tree = new JTree();
+        createGUI();
+    }
+    private JFrame mainFrame;
+    private JPanel controlPanel;
+    private JPanel infoPanel;
+    /**
+     * Начиная с этого числа членов семьи файл предлагается открыть только для просмотра
+     */
+    private static final int LARGE_TREE = 500_000;
+    /**
+     * Наибольшее число нарушений полей файла в окне ошибки
+     */
+    private static final int MAX_PROBLEMS = 1000;
+    /**
+     * Журнал ошибок фоновых операций: в окне показывается только сообщение
+     */
+    private static final Logger LOG = Logger.getLogger(TreeGUI.class.getName());
+
+    private final JLabel statusLabel = new JLabel("Программа загружена");
+    private String lastStatus = statusLabel.getText();
+    private final JButton cancelButton = new JButton("Отмена");
+    private BackgroundTask<?> currentTask;
+    private File currentFile;
+    private JTree tree;
+    private FamilyTreeModel treeModel;
+
+    private FamilyTree currentFamilyTree;
+    /**
+     * Файл, открытый только для просмотра через отображение в память, или null.
+     * Пока он открыт, currentFamilyTree пусто, а jTree показывает записи файла
+     */
+    private MappedFamilyTreeFile viewedFile;
+    private File viewedPath;
+    private int expansionDepth = FamilyTreeModel.DEFAULT_EXPANSION_DEPTH;
+    private ChangeJournal journal;
+    private FullTextIndex textIndex;
+    private KinshipEngine kinship;
+    private TreeHistory history;
+
+    /**
+     * Вызывает функции инициализации для настройки всех различных панелей.
+     */
+    private void createGUI() {
+
+        mainFrame = new JFrame("Генеалогическое дерево");
+        mainFrame.setSize(600, 800);
+        mainFrame.setLayout(new BorderLayout());
+        mainFrame.getContentPane().setBackground(Color.WHITE);
+        mainFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+
+        initMenuBar();
+
+        initHeaderPanel();
+
+        initControlPanel();
+
+        initStatusBar();
+
+        displayTree(currentFamilyTree);
+
+        mainFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent windowEvent) {
+                if (checkUserContinue()) {
+                    System.exit(0);
+                }
+            }
+        });
+
+        mainFrame.setVisible(true);
+    }
+
+    private void initHeaderPanel() {
+
+        JLabel headerLabel = new JLabel("Добро пожаловать в приложение ГЕНЕАЛОГИЧЕСКОЕ ДЕРЕВО", JLabel.LEFT);
+        headerLabel.setFont(new Font("SansSerif", Font.PLAIN, 28));
+
+        JButton open = new JButton("Загрузить дерево");
+        open.addActionListener(new openAction());
+
+        JButton create = new JButton("Создать новое дерево");
+        create.addActionListener(new createTreeAction());
+
+        JButton saveTree = new JButton("Сохранить дерево");
+        saveTree.addActionListener(new saveAction());
+
+        JPanel headPanel = new JPanel();
+        headPanel.setLayout(new GridBagLayout());
+        headPanel.setOpaque(false);
+        headPanel.setBorder(new EmptyBorder(0,10,10,10));
+
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.fill = GridBagConstraints.BOTH;
+        gbc.weightx = 1.0;
+        gbc.weighty = 1.0;
+        headPanel.add(headerLabel, gbc);
+
+        JPanel container = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        container.setOpaque(false);
+        container.add(open);
+        container.add(saveTree);
+        container.add(create);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        headPanel.add(container, gbc);
+
+        mainFrame.add(headPanel, BorderLayout.NORTH);
+    }
+
+    /**
+     * Инициализирует панель управления, где отображается основная часть данных
+     */
+    private void initControlPanel() {
+        controlPanel = new JPanel();
+
+        controlPanel.setOpaque(false);
+        controlPanel.setLayout(new BoxLayout(controlPanel, BoxLayout.Y_AXIS));
+
+        mainFrame.add(controlPanel, BorderLayout.CENTER);
+    }
+
+    /**
+     * Инициализировать строку меню, содержащую такие действия меню, как сохранение, загрузка нового и выход.
+     */
+    private void initMenuBar() {
+        JMenuBar menuBar;
+        menuBar = new JMenuBar();
+        mainFrame.setJMenuBar(menuBar);
+
+        JMenu fileMenu = new JMenu("Файл");
+        menuBar.add(fileMenu);
+
+        JMenuItem newAction = new JMenuItem("Новый");
+        fileMenu.add(newAction);
+        newAction.addActionListener(new createTreeAction());
+
+        JMenuItem openAction = new JMenuItem("Открыть");
+        fileMenu.add(openAction);
+        openAction.addActionListener(new openAction());
+
+        JMenuItem viewAction = new JMenuItem("Открыть для просмотра...");
+        fileMenu.add(viewAction);
+        viewAction.addActionListener(new viewAction());
+
+        JMenuItem importAction = new JMenuItem("Импорт GEDCOM...");
+        fileMenu.add(importAction);
+        importAction.addActionListener(new importAction());
+
+        fileMenu.addSeparator();
+
+        JMenuItem saveAction = new JMenuItem("Сохранить");
+        fileMenu.add(saveAction);
+        saveAction.addActionListener(new saveAction());
+
+        JMenuItem saveAsAction = new JMenuItem("Сохранить как");
+        fileMenu.add(saveAsAction);
+        saveAsAction.addActionListener(new saveAsAction());
+
+        JMenuItem exportGedcomAction = new JMenuItem("Экспорт в GEDCOM...");
+        fileMenu.add(exportGedcomAction);
+        exportGedcomAction.addActionListener(new exportGedcomAction());
+
+        JMenuItem exportCsvAction = new JMenuItem("Экспорт в CSV...");
+        fileMenu.add(exportCsvAction);
+        exportCsvAction.addActionListener(new exportCsvAction());
+
+
+        JMenuItem exitAction = new JMenuItem("Выход");
+        fileMenu.addSeparator();
+        fileMenu.add(exitAction);
+        exitAction.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (checkUserContinue()) {
+                    System.exit(0);
+                }
+            }
+        });
+
+        JMenu editMenu = new JMenu("Правка");
+        menuBar.add(editMenu);
+
+        JMenuItem undoAction = new JMenuItem("Отменить");
+        undoAction.setAccelerator(KeyStroke.getKeyStroke('Z', Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        editMenu.add(undoAction);
+        undoAction.addActionListener(new undoAction(false));
+
+        JMenuItem redoAction = new JMenuItem("Повторить");
+        redoAction.setAccelerator(KeyStroke.getKeyStroke('Y', Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+        editMenu.add(redoAction);
+        redoAction.addActionListener(new undoAction(true));
+
+        editMenu.addSeparator();
+
+        JMenuItem changesAction = new JMenuItem("Изменения после сохранения...");
+        editMenu.add(changesAction);
+        changesAction.addActionListener(new changesAction());
+
+        editMenu.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                undoAction.setText(menuText("Отменить", history.canUndo() ? history.getUndoDescription() : null));
+                redoAction.setText(menuText("Повторить", history.canRedo() ? history.getRedoDescription() : null));
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+
+        JMenu viewMenu = new JMenu("Вид");
+        menuBar.add(viewMenu);
+
+        JMenuItem depthAction = new JMenuItem("Глубина раскрытия...");
+        viewMenu.add(depthAction);
+        depthAction.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String value = JOptionPane.showInputDialog(mainFrame, "Сколько уровней дерева раскрывать при показе?", expansionDepth);
+                if (value == null) {
+                    return;
+                }
+                try {
+                    int depth = Integer.parseInt(value.trim());
+                    if (depth < 0) {
+                        throw new NumberFormatException();
+                    }
+                    expansionDepth = depth;
+                    if (viewedFile != null) {
+                        displayView();
+                    }
+                    else {
+                        displayTree(currentFamilyTree);
+                    }
+                    editStatus("Глубина раскрытия: " + depth);
+                }
+                catch (NumberFormatException ex) {
+                    showErrorDialog(new IllegalArgumentException("Глубина должна быть неотрицательным целым числом"));
+                }
+            }
+        });
+
+        JMenuItem findAction = new JMenuItem("Найти по имени...");
+        viewMenu.add(findAction);
+        findAction.addActionListener(new findMemberAction());
+
+        JMenuItem searchAction = new JMenuItem("Найти в описаниях...");
+        viewMenu.add(searchAction);
+        searchAction.addActionListener(new searchTextAction());
+
+        JMenuItem findAddressAction = new JMenuItem("Найти по адресу...");
+        viewMenu.add(findAddressAction);
+        findAddressAction.addActionListener(new findByAddressAction());
+
+        viewMenu.addSeparator();
+
+        JMenuItem statisticsAction = new JMenuItem("Статистика...");
+        viewMenu.add(statisticsAction);
+        statisticsAction.addActionListener(new statisticsAction());
+    }
+
+    private static String menuText(String action, String description) {
+        return description == null ? action : action + ": " + description;
+    }
+
+    /**
+     * Действие отмены (или повтора) возвращает древо к предыдущей версии истории.
+     * Если версию нельзя применить к древу на месте, древо версии вместе с индексом
+     * и движком родства строится в фоновом потоке, а прежние индекс и движок
+     * отписываются от старого древа. Журнал в этом случае создаётся заново и требует
+     * полного сохранения, так как удаление членов семьи и связей в него не записывается
+     */
+    private class undoAction implements ActionListener {
+        private final boolean redo;
+
+        undoAction(boolean redo) {
+            this.redo = redo;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            if (redo ? !history.canRedo() : !history.canUndo()) {
+                editStatus(redo ? "Нечего повторять" : "Нечего отменять");
+                return;
+            }
+            String description = redo ? history.getRedoDescription() : history.getUndoDescription();
+            String status = menuText(redo ? "Повторено" : "Отменено", description);
+            TreeHistory.Version target = redo ? history.getRedoTarget() : history.getUndoTarget();
+            if (history.rebuilds(target)) {
+                TreeHistory currentHistory = history;
+                startBackgroundTask(new BackgroundTask<LoadedTree>(redo ? "Повтор" : "Отмена") {
+                    @Override
+                    LoadedTree compute() {
+                        FamilyTree rebuilt = target.toTree();
+                        return new LoadedTree(rebuilt, true, new FullTextIndex(rebuilt), currentHistory);
+                    }
+
+                    @Override
+                    void succeeded(LoadedTree loaded) {
+                        FamilyTree restored = redo ? currentHistory.redo(loaded.familyTree) : currentHistory.undo(loaded.familyTree);
+                        replaceTree(restored, loaded.textIndex, loaded.kinship, currentHistory);
+                        journal.requireSnapshot();
+                        displayTree(currentFamilyTree);
+                        editStatus(status);
+                    }
+                });
+                return;
+            }
+            FamilyTree restored = redo ? history.redo() : history.undo();
+            if (restored != currentFamilyTree) {
+                // значение не прошло проверку на месте, и история построила древо сама
+                replaceTree(restored, new FullTextIndex(restored), new KinshipEngine(restored), history);
+                journal.requireSnapshot();
+            }
+            displayTree(currentFamilyTree);
+            editStatus(status);
+        }
+    }
+
+    /**
+     * Показывает членов семьи, изменённых или добавленных после последнего сохранения.
+     * Сравниваются версии истории, поэтому время зависит только от числа изменений
+     */
+    private class changesAction implements ActionListener {
+        private static final int MAX_SHOWN = 50;
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            int[] changed = history.changedSinceSave();
+            if (changed.length == 0) {
+                JOptionPane.showMessageDialog(mainFrame, "Изменений после сохранения нет", "Изменения", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            TreeHistory.Version saved = history.getSaved();
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < Math.min(MAX_SHOWN, changed.length); i++) {
+                int id = changed[i];
+                if (id >= currentFamilyTree.getMemberCount()) {
+                    text.append("удалён: ").append(saved.getRecord(id));
+                }
+                else {
+                    text.append(id < saved.getMemberCount() ? "изменён: " : "добавлен: ")
+                            .append(currentFamilyTree.getMember(id));
+                }
+                text.append('\n');
+            }
+            if (changed.length > MAX_SHOWN) {
+                text.append("... всего: ").append(changed.length);
+            }
+            JOptionPane.showMessageDialog(mainFrame, text.toString(), "Изменения после сохранения", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    /**
+     * Действие статистики считает сводку по всему древу в фоновом потоке
+     * и показывает её в диалоговом окне
+     */
+    private class statisticsAction implements ActionListener {
+        private static final int TOP = 10;
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            FamilyTree familyTree = currentFamilyTree;
+            startBackgroundTask(new BackgroundTask<TreeStatistics>("Подсчёт статистики") {
+                @Override
+                TreeStatistics compute() {
+                    return TreeAnalytics.compute(familyTree);
+                }
+
+                @Override
+                void succeeded(TreeStatistics statistics) {
+                    String text = "<html>" + statistics.toString().replace(", ", "<br>")
+                            + "<br><br>Частые фамилии: " + top(statistics.getBySurname())
+                            + "<br>Частые населённые пункты: " + top(statistics.getBySuburb())
+                            + "<br>По поколениям: " + statistics.getByGeneration() + "</html>";
+                    JOptionPane.showMessageDialog(mainFrame, text, "Статистика", JOptionPane.PLAIN_MESSAGE);
+                    editStatus("Статистика посчитана");
+                }
+            });
+        }
+
+        private String top(java.util.Map<String, Long> counts) {
+            StringBuilder sb = new StringBuilder();
+            counts.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                    .limit(TOP)
+                    .forEach(entry -> sb.append(sb.length() == 0 ? "" : ", ")
+                            .append(entry.getKey()).append(" (").append(entry.getValue()).append(")"));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Действие поиска по тексту ищет членов семьи по описанию жизни и адресу
+     * через полнотекстовый индекс и показывает подробности о выбранном из найденных
+     */
+    private class searchTextAction implements ActionListener {
+        private static final int MAX_RESULTS = 50;
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            String query = JOptionPane.showInputDialog(mainFrame,
+                    "<html>Слова или \"фраза\"; OR — любое из слов, -слово — исключить</html>");
+            if (query == null || query.trim().isEmpty()) {
+                return;
+            }
+            List<FullTextIndex.Hit> hits = textIndex.search(query, MAX_RESULTS);
+            if (hits.isEmpty()) {
+                editStatus("Ничего не найдено: " + query.trim());
+                return;
+            }
+            FullTextIndex.Hit[] options = hits.toArray(new FullTextIndex.Hit[0]);
+            FullTextIndex.Hit hit = (FullTextIndex.Hit) JOptionPane.showInputDialog(mainFrame, "Найдено: " + options.length,
+                    "Поиск", JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+            if (hit != null) {
+                displayMemberInfo(hit.getMember());
+                editStatus("Показать подробности для: " + hit.getMember());
+            }
+        }
+    }
+
+    /**
+     * Действие поиска ищет членов семьи по началу имени или фамилии через индекс имён древа
+     * и показывает подробности о выбранном из найденных
+     */
+    private class findMemberAction implements ActionListener {
+        private static final int MAX_RESULTS = 50;
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            String prefix = JOptionPane.showInputDialog(mainFrame, "Начало имени или фамилии:");
+            if (prefix == null || prefix.trim().isEmpty()) {
+                return;
+            }
+            List<FamilyMember> found = currentFamilyTree.findByNamePrefix(prefix, MAX_RESULTS);
+            if (found.isEmpty()) {
+                editStatus("Никто не найден: " + prefix.trim());
+                return;
+            }
+            FamilyMember[] options = found.toArray(new FamilyMember[0]);
+            FamilyMember member = (FamilyMember) JOptionPane.showInputDialog(mainFrame, "Найдено: " + options.length,
+                    "Поиск", JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+            if (member != null) {
+                displayMemberInfo(member);
+                editStatus("Показать подробности для: " + member);
+            }
+        }
+    }
+
+    /**
+     * Действие поиска по адресу находит жителей населённого пункта или почтового
+     * индекса через индекс адресов древа и показывает подробности о выбранном
+     */
+    private class findByAddressAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            String query = JOptionPane.showInputDialog(mainFrame, "Населённый пункт или почтовый индекс:");
+            if (query == null || query.trim().isEmpty()) {
+                return;
+            }
+            AddressIndex index = currentFamilyTree.getAddressIndex();
+            List<Address> households = index.findAddressesBySuburb(query);
+            List<FamilyMember> found = index.findResidentsBySuburb(query);
+            if (found.isEmpty()) {
+                households = index.findAddressesByPostCode(query);
+                found = index.findResidentsByPostCode(query);
+            }
+            if (found.isEmpty()) {
+                editStatus("Никто не найден: " + query.trim());
+                return;
+            }
+            FamilyMember[] options = found.toArray(new FamilyMember[0]);
+            FamilyMember member = (FamilyMember) JOptionPane.showInputDialog(mainFrame,
+                    "Найдено: " + options.length + ", адресов: " + households.size(),
+                    "Поиск", JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+            if (member != null) {
+                displayMemberInfo(member);
+                editStatus("Показать подробности для: " + member);
+            }
+        }
+    }
+
+    /**
+     * Инициализирует строку состояния, в которой отображается такая информация, как сообщения.
+     * отображается пользователю в самом низу экрана
+     */
+    private void initStatusBar() {
+        JPanel statusPanel = new JPanel();
+        statusPanel.setBorder(new BevelBorder(BevelBorder.LOWERED));
+
+        mainFrame.add(statusPanel, BorderLayout.SOUTH);
+
+        statusPanel.setPreferredSize(new Dimension(mainFrame.getWidth(), 18));
+        statusPanel.setLayout(new BoxLayout(statusPanel, BoxLayout.X_AXIS));
+
+        statusLabel.setHorizontalAlignment(SwingConstants.LEFT);
+        statusPanel.add(statusLabel);
+        statusPanel.add(Box.createHorizontalGlue());
+
+        cancelButton.setVisible(false);
+        cancelButton.setMargin(new Insets(0, 6, 0, 6));
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (currentTask != null) {
+                    currentTask.cancel(true);
+                    editStatus("Отмена операции...");
+                }
+            }
+        });
+        statusPanel.add(cancelButton);
+    }
+
+    /**
+     * Удобный способ редактирования статуса. В основном задает текст
+     * метка внутри строки состояния
+     * параметр status сообщение для отображения
+     */
+    private void editStatus(String status) {
+        lastStatus = status;
+        statusLabel.setText(status);
+    }
+
+    /**
+     * Фоновая операция: загрузка, сохранение или построение дерева.
+     * Выполняется вне потока обработки событий Swing, сообщает о ходе в строке состояния
+     * и может быть отменена кнопкой «Отмена». Результат передаётся в succeeded
+     * уже в потоке обработки событий.
+     */
+    private abstract class BackgroundTask<T> extends SwingWorker<T, Void> implements TaskProgress {
+
+        private final String description;
+
+        BackgroundTask(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Выполняет операцию в фоновом потоке
+         */
+        abstract T compute() throws Exception;
+
+        /**
+         * Получает результат в потоке обработки событий
+         */
+        abstract void succeeded(T result);
+
+        @Override
+        public void progress(long done, long total) {
+            if (total > 0) {
+                setProgress((int) Math.min(100, done * 100 / total));
+            }
+        }
+
+        @Override
+        protected final T doInBackground() throws Exception {
+            try {
+                return compute();
+            }
+            finally {
+                // снимаем блокировку только когда фоновый поток действительно завершился
+                SwingUtilities.invokeLater(TreeGUI.this::finishBackgroundTask);
+            }
+        }
+
+        @Override
+        protected final void done() {
+            if (isCancelled()) {
+                editStatus(description + ": операция отменена");
+                return;
+            }
+            try {
+                succeeded(get());
+            }
+            catch (ExecutionException ex) {
+                Exception cause = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                LOG.log(Level.WARNING, description, ex.getCause());
+                showErrorDialog(cause);
+                editStatus("Ошибка: " + cause.getMessage());
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Запускает фоновую операцию. Пока она выполняется, остальные операции
+     * с деревом недоступны
+     */
+    private void startBackgroundTask(BackgroundTask<?> task) {
+        currentTask = task;
+        cancelButton.setVisible(true);
+        tree.setEnabled(false);
+        mainFrame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        statusLabel.setText(task.description + "...");
+        task.addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName()) && currentTask == task && !task.isCancelled()) {
+                statusLabel.setText(task.description + ": " + event.getNewValue() + "%");
+            }
+        });
+        task.execute();
+    }
+
+    private void finishBackgroundTask() {
+        currentTask = null;
+        cancelButton.setVisible(false);
+        tree.setEnabled(true);
+        mainFrame.setCursor(Cursor.getDefaultCursor());
+        statusLabel.setText(lastStatus);
+    }
+
+    /**
+     * Проверяет, что сейчас не выполняется фоновая операция
+     * вернуть true, если можно начинать новое действие
+     */
+    private boolean checkNotBusy() {
+        if (currentTask != null) {
+            JOptionPane.showMessageDialog(mainFrame, "Дождитесь завершения текущей операции или отмените её", "Операция выполняется", JOptionPane.INFORMATION_MESSAGE);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, что показано загруженное древо, а не файл, открытый только для просмотра
+     * вернуть true, если древо можно править, сохранять и обходить целиком
+     */
+    private boolean checkEditable() {
+        if (viewedFile != null) {
+            JOptionPane.showMessageDialog(mainFrame, "Файл открыт только для просмотра. Нажмите «Открыть для правки», чтобы загрузить его целиком", "Только просмотр", JOptionPane.INFORMATION_MESSAGE);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Класс действий, который реализует ActionListner
+     * Используется для отображения функции добавления относительного значения после нажатия кнопки для указанного
+     * член семьи
+     */
+    private class addRelativeAction implements ActionListener {
+
+        private FamilyMember member;
+        public addRelativeAction(FamilyMember member) {
+            this.member = member;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            displayAddRelativeInfo(member);
+        }
+    }
+
+    /**
+     * Изменить действие участника, которое реализует ActionListner для отображения
+     * форма редактирования члена при нажатии кнопки для указанного члена семьи
+     */
+    private class editMemberAction implements ActionListener {
+
+        private FamilyMember member;
+        public editMemberAction(FamilyMember member) {
+            this.member = member;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            displayEditMemberInfo(member);
+        }
+    }
+
+    /**
+     * действие создания дерева реализует список действий для отображения формы создания дерева
+     * для указанного члена семьи
+     */
+    private class createTreeAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+
+            if (checkNotBusy() && checkUserContinue()) {
+
+                FamilyTree created = new FamilyTree();
+                replaceTree(created, new FullTextIndex(created), new KinshipEngine(created), new TreeHistory(created));
+                currentFile = null;
+                displayTree(currentFamilyTree);
+                editStatus("Создано пустое дерево");
+            }
+
+        }
+    }
+
+    /**
+     * Действие Open реализует список действий, который вызывает jDialogBox таким образом, что
+     * пользователь может выбрать файл для открытия в приложении
+     */
+    private class openAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (checkNotBusy() && checkUserContinue()) {
+                JFileChooser jFileChooser = new JFileChooser();
+                jFileChooser.addChoosableFileFilter(new FileNameExtensionFilter("FamilyTree Files (*.ft)", "ft"));
+                jFileChooser.setAcceptAllFileFilterUsed(true);
+
+                int result = jFileChooser.showOpenDialog(mainFrame);
+                if (result == JFileChooser.APPROVE_OPTION) {
+                    File file = jFileChooser.getSelectedFile();
+                    if (!offerView(file)) {
+                        loadFile(file);
+                    }
+                }
+            }
+
+        }
+
+        /**
+         * Предлагает открыть большой файл только для просмотра, без загрузки всех членов семьи
+         * вернуть true, если файл открыт для просмотра или пользователь отказался от открытия
+         */
+        private boolean offerView(File file) {
+            if (ChangeJournal.journalFile(file).exists()) {
+                return false;
+            }
+            MappedFamilyTreeFile mapped;
+            try {
+                mapped = MappedFamilyTreeFile.open(file);
+            }
+            catch (IOException ex) {
+                // старый формат без индекса или повреждённый файл - читаем обычным путём
+                return false;
+            }
+            int answer = JOptionPane.NO_OPTION;
+            if (mapped.getMemberCount() >= LARGE_TREE) {
+                answer = JOptionPane.showConfirmDialog(mainFrame, "<html>В файле " + mapped.getMemberCount()
+                        + " членов семьи. Открыть его только для просмотра?<br>Просмотр открывается сразу, "
+                        + "а для правки файл загружается целиком.</html>", "Большой файл", JOptionPane.YES_NO_CANCEL_OPTION);
+            }
+            if (answer == JOptionPane.YES_OPTION) {
+                showView(file, mapped);
+                return true;
+            }
+            closeQuietly(mapped);
+            return answer != JOptionPane.NO_OPTION;
+        }
+    }
+
+    /**
+     * Открывает файл .ft только для просмотра: показывается сразу, а записи
+     * членов семьи читаются из файла только при раскрытии узлов и выборе
+     */
+    private class viewAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (checkNotBusy() && checkUserContinue()) {
+                JFileChooser jFileChooser = new JFileChooser();
+                jFileChooser.addChoosableFileFilter(new FileNameExtensionFilter("FamilyTree Files (*.ft)", "ft"));
+                jFileChooser.setAcceptAllFileFilterUsed(true);
+
+                if (jFileChooser.showOpenDialog(mainFrame) == JFileChooser.APPROVE_OPTION) {
+                    File file = jFileChooser.getSelectedFile();
+                    try {
+                        showView(file, MappedFamilyTreeFile.open(file));
+                    }
+                    catch (IOException ex) {
+                        showErrorDialog(ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Загружает файл целиком для правки в фоновом потоке
+     */
+    private void loadFile(File file) {
+        startBackgroundTask(new BackgroundTask<LoadedTree>("Загрузка файла") {
+            @Override
+            LoadedTree compute() throws IOException {
+                return openFile(file, this);
+            }
+
+            @Override
+            void succeeded(LoadedTree loaded) {
+                replaceTree(loaded.familyTree, loaded.textIndex, loaded.kinship, loaded.history);
+                if (loaded.outdated) {
+                    journal.requireSnapshot();
+                }
+                currentFile = file;
+                tree = new JTree();
+                displayTree(currentFamilyTree);
+                editStatus("Файл открыт из: " + (file.getAbsolutePath()));
+                if (loaded.journalRejected) {
+                    JOptionPane.showMessageDialog(mainFrame, "Журнал изменений файла повреждён, применена только его начальная часть.\n"
+                            + "При следующем сохранении файл будет записан целиком, а остальные записи журнала будут удалены.",
+                            "Журнал изменений", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Делает древо текущим вместе с его индексом, движком родства и историей.
+     * Прежние индекс и движок отписываются от своего древа, журнал создаётся заново
+     */
+    private void replaceTree(FamilyTree familyTree, FullTextIndex newTextIndex, KinshipEngine newKinship, TreeHistory newHistory) {
+        if (textIndex != null) {
+            textIndex.dispose();
+        }
+        if (kinship != null) {
+            kinship.dispose();
+        }
+        currentFamilyTree = familyTree;
+        journal = new ChangeJournal(familyTree);
+        textIndex = newTextIndex;
+        kinship = newKinship;
+        history = newHistory;
+    }
+
+    /**
+     * Показывает файл, открытый через отображение в память. Текущее древо
+     * заменяется пустым, чтобы правка не смешивалась с просматриваемым файлом
+     */
+    private void showView(File file, MappedFamilyTreeFile mapped) {
+        FamilyTree empty = new FamilyTree();
+        replaceTree(empty, new FullTextIndex(empty), new KinshipEngine(empty), new TreeHistory(empty));
+        currentFile = null;
+        closeView();
+        viewedFile = mapped;
+        viewedPath = file;
+        displayView();
+        editStatus("Открыт для просмотра: " + file.getAbsolutePath() + ", членов семьи: " + mapped.getMemberCount());
+    }
+
+    /**
+     * Закрывает файл, открытый для просмотра, если он есть
+     */
+    private void closeView() {
+        if (viewedFile != null) {
+            closeQuietly(viewedFile);
+            viewedFile = null;
+            viewedPath = null;
+        }
+    }
+
+    private static void closeQuietly(MappedFamilyTreeFile file) {
+        try {
+            file.close();
+        }
+        catch (IOException ex) {
+            // файл открыт только для чтения, терять нечего
+        }
+    }
+
+    /**
+     * Импортирует древо из файла GEDCOM в фоновом потоке. Импортированное древо
+     * ещё не связано с файлом .ft, поэтому сохраняется через «Сохранить как»
+     */
+    private class importAction implements ActionListener {
+
+        /**
+         * Сколько предупреждений импорта показывать пользователю
+         */
+        private static final int SHOWN_WARNINGS = 20;
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (checkNotBusy() && checkUserContinue()) {
+                JFileChooser jFileChooser = new JFileChooser();
+                jFileChooser.addChoosableFileFilter(new FileNameExtensionFilter("GEDCOM (*.ged)", "ged"));
+                jFileChooser.setAcceptAllFileFilterUsed(true);
+
+                int result = jFileChooser.showOpenDialog(mainFrame);
+                if (result == JFileChooser.APPROVE_OPTION) {
+                    File file = jFileChooser.getSelectedFile();
+                    startBackgroundTask(new BackgroundTask<LoadedTree>("Импорт GEDCOM") {
+                        private GedcomImporter.Result imported;
+
+                        @Override
+                        LoadedTree compute() throws IOException {
+                            imported = GedcomImporter.read(file, this);
+                            FamilyTree ft = imported.getTree();
+                            return new LoadedTree(ft, false, new FullTextIndex(ft));
+                        }
+
+                        @Override
+                        void succeeded(LoadedTree loaded) {
+                            replaceTree(loaded.familyTree, loaded.textIndex, loaded.kinship, loaded.history);
+                            currentFile = null;
+                            tree = new JTree();
+                            displayTree(currentFamilyTree);
+                            editStatus("Импортировано из: " + file.getAbsolutePath() + ", членов семьи: "
+                                    + currentFamilyTree.getMemberCount());
+                            showWarnings(imported);
+                        }
+                    });
+                }
+            }
+        }
+
+        private void showWarnings(GedcomImporter.Result imported) {
+            if (imported.getWarningCount() == 0) {
+                return;
+            }
+            StringBuilder text = new StringBuilder();
+            List<String> warnings = imported.getWarnings();
+            for (int i = 0; i < Math.min(SHOWN_WARNINGS, warnings.size()); i++) {
+                text.append(warnings.get(i)).append('\n');
+            }
+            if (imported.getWarningCount() > SHOWN_WARNINGS) {
+                text.append("... всего предупреждений: ").append(imported.getWarningCount());
+            }
+            JOptionPane.showMessageDialog(mainFrame, text.toString(), "Предупреждения импорта", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * Предлагает выбрать файл для экспорта и дописывает расширение, если его нет
+     * вернуть выбранный файл или null, если пользователь отказался
+     */
+    private File chooseExportFile(String description, String extension) {
+        JFileChooser jFileChooser = new JFileChooser();
+        jFileChooser.setSelectedFile(new File("Family Tree." + extension));
+        jFileChooser.setFileFilter(new FileNameExtensionFilter(description, extension));
+        if (jFileChooser.showSaveDialog(mainFrame) != JFileChooser.APPROVE_OPTION) {
+            return null;
+        }
+        String filename = jFileChooser.getSelectedFile().toString();
+        if (!filename.endsWith("." + extension)) {
+            filename += "." + extension;
+        }
+        return new File(filename);
+    }
+
+    /**
+     * Экспортирует древо в файл GEDCOM в фоновом потоке
+     */
+    private class exportGedcomAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            File file = chooseExportFile("GEDCOM (*.ged)", "ged");
+            if (file != null) {
+                FamilyTree exported = currentFamilyTree;
+                startBackgroundTask(new BackgroundTask<Void>("Экспорт в GEDCOM") {
+                    @Override
+                    Void compute() throws IOException {
+                        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                            GedcomExporter.write(exported, channel, this);
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    void succeeded(Void result) {
+                        editStatus("Древо экспортировано в: " + file.getAbsolutePath());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Экспортирует древо в CSV в фоновом потоке: члены семьи в выбранный файл,
+     * родственные связи в файл рядом с ним с окончанием -relations.csv
+     */
+    private class exportCsvAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            File file = chooseExportFile("CSV (*.csv)", "csv");
+            if (file != null) {
+                File relations = CsvExporter.relationsFile(file);
+                FamilyTree exported = currentFamilyTree;
+                startBackgroundTask(new BackgroundTask<Void>("Экспорт в CSV") {
+                    @Override
+                    Void compute() throws IOException {
+                        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                            CsvExporter.writeMembers(exported, channel, this);
+                        }
+                        try (FileChannel channel = FileChannel.open(relations.toPath(), StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                            CsvExporter.writeRelationships(exported, channel, this);
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    void succeeded(Void result) {
+                        editStatus("Древо экспортировано в: " + file.getAbsolutePath() + " и " + relations.getName());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Удобный метод проверки загруженности дерева. Используется для проверки того, что пользователь
+     * хочет продолжить, несмотря на загрузку дерева
+     * вернуть true, если у дерева нет корня или если пользователь хочет продолжить
+     */
+    private boolean checkUserContinue() {
+        if (currentFamilyTree.hasRoot()) {
+            int dialogResult = JOptionPane.showConfirmDialog(mainFrame, "Вы уверены, что хотите продолжить? Любые несохраненные изменения будут потеряны" , "Предупреждение", JOptionPane.YES_NO_CANCEL_OPTION);
+            return dialogResult == JOptionPane.YES_OPTION;
+        }
+        return true;
+    }
+
+    /**
+     * отображает объект генеалогического дерева через jTree.
+     * Модель дерева ленивая: узлы вычисляются только при раскрытии, поэтому показ
+     * не зависит от размера древа
+     * параметр familyTree генеалогическое древо для отображения
+     */
+    private void displayTree(FamilyTree familyTree) {
+        closeView();
+
+        FamilyTreeModel model = new FamilyTreeModel(familyTree);
+        TreePath lastSelectedNode = null;
+
+        if (familyTree.hasRoot()) {
+            lastSelectedNode = model.translatePath(tree.getSelectionPath());
+
+        }
+        if (treeModel != null) {
+            treeModel.dispose();
+        }
+        treeModel = model;
+        tree = new JTree(model);
+        tree.setRootVisible(false);
+        tree.setShowsRootHandles(true);
+        tree.setEnabled(true);
+        tree.expandPath(new TreePath(model.getRoot()));
+        tree.getSelectionModel().addTreeSelectionListener(new treeSelectorAction());
+        tree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        tree.setBorder(new EmptyBorder(0, 10, 0, 10));
+
+        model.expandToDepth(tree, expansionDepth);
+
+        tree.setCellRenderer(new memberCellRenderer());
+
+        JLabel promptInfo;
+        JButton addNewRoot = null;
+        if (!familyTree.hasRoot()) {
+            promptInfo = new JLabel("<html>Загрузить дерево или добавить нового пользователя</html>");
+            addNewRoot = new JButton("Добавить пользователя");
+            addNewRoot.addActionListener(new addRelativeAction(null));
+        } else {
+            promptInfo = new JLabel("<html>Выберите члена семьи для просмотра информации</html>");
+        }
+        showTree(promptInfo, addNewRoot);
+
+        tree.setSelectionPath(lastSelectedNode);
+    }
+
+    /**
+     * Показывает файл, открытый только для просмотра, через jTree поверх его записей
+     */
+    private void displayView() {
+        MappedTreeModel model = new MappedTreeModel(viewedFile);
+        if (treeModel != null) {
+            treeModel.dispose();
+            treeModel = null;
+        }
+        tree = new JTree(model);
+        tree.setRootVisible(false);
+        tree.setShowsRootHandles(true);
+        tree.setEnabled(true);
+        tree.expandPath(new TreePath(model.getRoot()));
+        tree.getSelectionModel().addTreeSelectionListener(new recordSelectorAction());
+        tree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        tree.setBorder(new EmptyBorder(0, 10, 0, 10));
+        model.expandToDepth(tree, expansionDepth);
+        tree.setCellRenderer(new memberCellRenderer());
+
+        JButton edit = new JButton("Открыть для правки");
+        File file = viewedPath;
+        edit.addActionListener(e -> {
+            if (checkNotBusy()) {
+                loadFile(file);
+            }
+        });
+        showTree(new JLabel("<html>Файл открыт только для просмотра. Выберите члена семьи для просмотра информации</html>"), edit);
+    }
+
+    /**
+     * Рисует члена семьи чёрным, а группы и надписи серым; подходит для обеих моделей дерева
+     */
+    private static class memberCellRenderer extends DefaultTreeCellRenderer {
+        private static final long serialVersionUID = 1;
+
+        @Override
+        public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean exp, boolean leaf, int row, boolean hasFocus) {
+
+            boolean member = value instanceof FamilyTreeModel.Node ? ((FamilyTreeModel.Node) value).isMember()
+                    : value instanceof MappedTreeModel.Node && ((MappedTreeModel.Node) value).isMember();
+            if (member) {
+                setTextNonSelectionColor(Color.BLACK);
+                setBackgroundSelectionColor(Color.LIGHT_GRAY);
+                setTextSelectionColor(Color.BLACK);
+                setBorderSelectionColor(Color.WHITE);
+            }
+            else {
+                setTextNonSelectionColor(Color.GRAY);
+                setBackgroundSelectionColor(Color.WHITE);
+                setTextSelectionColor(Color.GRAY);
+                setBorderSelectionColor(Color.WHITE);
+            }
+            setLeafIcon(null);
+            setClosedIcon(null);
+            setOpenIcon(null);
+            super.getTreeCellRendererComponent(tree, value, sel, exp, leaf, row, hasFocus);
+            return this;
+        }
+    }
+
+    /**
+     * Размещает jTree слева, а справа панель сведений с подсказкой и, если задана, кнопкой
+     */
+    private void showTree(JLabel promptInfo, JButton button) {
+        JScrollPane treeScrollPane = new JScrollPane(tree);
+        treeScrollPane.setPreferredSize(new Dimension(250, 0));
+
+        infoPanel = new JPanel();
+        infoPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+
+        if (button != null) {
+            infoPanel.add(button);
+        }
+
+        promptInfo.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        infoPanel.add(promptInfo, BorderLayout.NORTH);
+        infoPanel.setOpaque(false);
+
+        controlPanel.removeAll();
+
+        JPanel container = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controlPanel.add(container);
+
+        container.setLayout(new BorderLayout());
+        container.add(treeScrollPane, BorderLayout.WEST);
+        container.add(infoPanel, BorderLayout.CENTER);
+
+        controlPanel.add(container);
+        controlPanel.validate();
+        controlPanel.repaint();
+    }
+
+    /**
+     * отменяет редактирование, возвращаясь к форме информации о члене
+     */
+    private class cancelEditMemberAction implements ActionListener {
+
+        FamilyMember member;
+
+        public cancelEditMemberAction(FamilyMember member) {
+            this.member = member;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            displayMemberInfo(member);
+            editStatus("Действие отменено");
+        }
+    }
+
+    /**
+     * если файл существует, предложить перезаписать сохраненный файл. Если нет, инициируйте действие «Сохранить как».
+     */
+    private class saveAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            if (currentFile != null) {
+                int dialogResult = JOptionPane.showConfirmDialog(mainFrame, "Хотели бы вы перезаписать текущее дерево?" , "Предупреждение", JOptionPane.YES_NO_OPTION);
+                if (dialogResult == JOptionPane.YES_OPTION) {
+                    File file = currentFile;
+                    FamilyTree familyTree = currentFamilyTree;
+                    FullTextIndex index = textIndex;
+                    ChangeJournal changes = journal;
+                    startBackgroundTask(new BackgroundTask<Boolean>("Сохранение файла") {
+                        @Override
+                        Boolean compute() {
+                            return saveChanges(familyTree, index, changes, file, this);
+                        }
+
+                        @Override
+                        void succeeded(Boolean compacted) {
+                            if (compacted) {
+                                savedToFile(file);
+                            }
+                            history.markSaved();
+                            editStatus("Файл сохранен в: " + file.getPath());
+                        }
+                    });
+                }
+            } else {
+                editStatus("Файл не загружен");
+                ActionListener listner = new saveAsAction();
+                listner.actionPerformed(e);
+
+            }
+        }
+    }
+
+    /**
+     * сохранить текущее дерево как другой файл
+     */
+    private class saveAsAction implements ActionListener {
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (!checkNotBusy() || !checkEditable()) {
+                return;
+            }
+            JFileChooser jFileChooser = new JFileChooser() {
+                @Override
+                public void approveSelection() {
+                    File selectedFile = getSelectedFile();
+                    if (selectedFile.exists() && getDialogType() == SAVE_DIALOG) {
+                        int result = JOptionPane.showConfirmDialog(this, "Файл существует, перезаписать?" , "Существующий файл", JOptionPane.YES_NO_CANCEL_OPTION);
+                        switch (result) {
+                            case JOptionPane.YES_OPTION:
+                                super.approveSelection();
+                                return;
+                            case JOptionPane.NO_OPTION:
+                                return;
+                            case JOptionPane.CLOSED_OPTION:
+                                return;
+                            case JOptionPane.CANCEL_OPTION:
+                                cancelSelection();
+                                return;
+                        }
+                    }
+                    super.approveSelection();
+                }
+            };
+            jFileChooser.setSelectedFile(new File("Family Tree.ft"));
+            jFileChooser.setFileFilter(new FileNameExtensionFilter("Файлы FamilyTree (*.ft)", "ft"));
+            int result = jFileChooser.showSaveDialog(mainFrame);
+            if (result == JFileChooser.APPROVE_OPTION) {
+                String filename = jFileChooser.getSelectedFile().toString();
+                if (!filename.endsWith(".ft")) {
+                    filename += ".ft";
+                }
+                File file = new File(filename);
+                FamilyTree familyTree = currentFamilyTree;
+                FullTextIndex index = textIndex;
+
+                startBackgroundTask(new BackgroundTask<Void>("Сохранение файла") {
+                    @Override
+                    Void compute() {
+                        saveToFile(familyTree, index, file, this);
+                        return null;
+                    }
+
+                    @Override
+                    void succeeded(Void result) {
+                        savedToFile(file);
+                        history.markSaved();
+                        displayTree(currentFamilyTree);
+                        editStatus("Файл сохранен в: " + (file.getAbsolutePath()));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * действие вызывается, когда пользователь выбирает узел в дереве
+     */
+    private class treeSelectorAction implements TreeSelectionListener {
+
+        public void valueChanged(TreeSelectionEvent event) {
+            FamilyTreeModel.Node node = (FamilyTreeModel.Node) tree.getLastSelectedPathComponent();
+
+            if (node == null) {
+                return;
+            }
+
+            if (node.isMember()) {
+                displayMemberInfo(node.getMember());
+                editStatus("Показать подробности для: " + node.getMember());
+            }
+        }
+    }
+
+    /**
+     * действие вызывается, когда пользователь выбирает узел в дереве файла, открытого для просмотра
+     */
+    private class recordSelectorAction implements TreeSelectionListener {
+
+        public void valueChanged(TreeSelectionEvent event) {
+            MappedTreeModel.Node node = (MappedTreeModel.Node) tree.getLastSelectedPathComponent();
+
+            if (node == null || !node.isMember() || viewedFile == null) {
+                return;
+            }
+            try {
+                MemberRecord record = viewedFile.getMember(node.getId());
+                displayRecordInfo(record);
+                editStatus("Показать подробности для: " + record);
+            }
+            catch (IOException ex) {
+                showErrorDialog(ex);
+            }
+        }
+    }
+
+    /**
+     * Отображает сведения о записи файла, открытого только для просмотра.
+     * Родственники читаются из файла по их идентификаторам
+     * @param record запись члена семьи
+     */
+    private void displayRecordInfo(MemberRecord record) throws IOException {
+        infoPanel.removeAll();
+        infoPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        infoPanel.setLayout(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+
+        JPanel container = new JPanel();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 1.0;
+        gbc.weighty = 1.0;
+        gbc.fill = GridBagConstraints.BOTH;
+        infoPanel.add(container, gbc);
+
+        GroupLayout layout = new GroupLayout(container);
+        container.setLayout(layout);
+        layout.setAutoCreateGaps(true);
+
+        String maidenName = record.getMaidenName();
+        String children = "Нет детей в записи";
+        if (record.numChildren() > 0) {
+            children = "<html>";
+            for (int i = 0; i < record.numChildren(); i++) {
+                children += viewedFile.getMember(record.getChildId(i)) + "<br>";
+            }
+            children += "</html>";
+        }
+        String[][] rows = {
+                {"Информация о человеке: ", null},
+                {"Имя", record.getFirstName()},
+                {"Фамилия", record.getLastName()},
+                {"Девичья фамилия", maidenName == null || maidenName.isEmpty() ? "-" : maidenName},
+                {"Пол", String.valueOf(record.getGender())},
+                {"Описание", record.getLifeDescription()},
+                {"Информация об адресе: ", null},
+                {"Номер дома: ", record.hasAddress() ? record.getStreetNumber() : "-"},
+                {"Название улицы: ", record.hasAddress() ? record.getStreetName() : "-"},
+                {"Населённый пункт:", record.hasAddress() ? record.getSuburb() : "-"},
+                {"Почтовый индекс", record.hasAddress() ? record.getPostCode() : "-"},
+                {"Информация о родственнике: ", null},
+                {"Отец", relative(record.getFatherId(), "Нет отца в записи")},
+                {"Мать", relative(record.getMotherId(), "Нет матери в записи")},
+                {"Супруг", relative(record.getSpouseId(), "Нет супруга в записи")},
+                {"Дети", children},
+        };
+
+        GroupLayout.ParallelGroup labels = layout.createParallelGroup(GroupLayout.Alignment.LEADING);
+        GroupLayout.ParallelGroup values = layout.createParallelGroup(GroupLayout.Alignment.LEADING);
+        GroupLayout.SequentialGroup lines = layout.createSequentialGroup();
+        for (String[] row : rows) {
+            JLabel label = new JLabel(row[0]);
+            GroupLayout.ParallelGroup line = layout.createParallelGroup(GroupLayout.Alignment.BASELINE).addComponent(label);
+            labels.addComponent(label);
+            if (row[1] == null) {
+                label.setFont(new Font("SansSerif", Font.PLAIN, 20));
+            }
+            else {
+                JLabel value = new JLabel(row[1]);
+                values.addComponent(value);
+                line.addComponent(value);
+            }
+            lines.addGroup(line);
+        }
+        layout.setHorizontalGroup(layout.createSequentialGroup().addGroup(labels).addGroup(values));
+        layout.setVerticalGroup(lines);
+
+        JButton edit = new JButton("Открыть для правки");
+        File file = viewedPath;
+        edit.addActionListener(e -> {
+            if (checkNotBusy()) {
+                loadFile(file);
+            }
+        });
+        JPanel btncontainer = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        btncontainer.add(edit);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        infoPanel.add(btncontainer, gbc);
+        infoPanel.validate();
+        infoPanel.repaint();
+    }
+
+    /**
+     * вернуть подпись родственника из файла, открытого для просмотра, или none, если его нет
+     */
+    private String relative(int id, String none) throws IOException {
+        return id == MemberRecord.NONE ? none : viewedFile.getMember(id).toString();
+    }
+
+    /**
+     * Сохраняет древо в файл в двоичном формате FamilyTreeCodec целиком
+     * и удаляет ставший ненужным журнал изменений. Данные пишутся во временный файл,
+     * который затем заменяет основной, поэтому отмена не портит прежний файл.
+     * Вызывается из фонового потока; состояние окна и журнала меняет savedToFile
+     * параметр familyTree сохраняемое древо
+     * параметр index полнотекстовый индекс древа
+     * параметр file файл для сохранения
+     * параметр progress получатель хода сохранения
+     */
+    private static void saveToFile(FamilyTree familyTree, FullTextIndex index, File file, TaskProgress progress) {
+        try {
+            FamilyTreeCodec.save(familyTree, file, progress);
+            ChangeJournal.discard(file);
+        }
+        catch (Exception ex) {
+            throw new IllegalArgumentException("Не удалось сохранить файл", ex);
+        }
+        saveIndex(familyTree, index, file);
+    }
+
+    /**
+     * Делает сохранённый целиком файл текущим. Вызывается в потоке обработки событий
+     */
+    private void savedToFile(File file) {
+        journal.clear();
+        currentFile = file;
+    }
+
+    /**
+     * Сохраняет изменения в уже открытый файл: дописывает их в журнал изменений,
+     * а если журнал разросся - перезаписывает файл целиком.
+     * Вызывается из фонового потока, пока правка древа недоступна
+     * параметр familyTree сохраняемое древо
+     * параметр index полнотекстовый индекс древа
+     * параметр changes журнал изменений древа
+     * параметр file файл для сохранения
+     * параметр progress получатель хода сохранения
+     * вернуть true, если файл перезаписан целиком и нужно вызвать savedToFile
+     */
+    private static boolean saveChanges(FamilyTree familyTree, FullTextIndex index, ChangeJournal changes, File file,
+                                TaskProgress progress) {
+        boolean compact;
+        try {
+            compact = changes.needsCompaction(file);
+            if (!compact) {
+                changes.commit(file);
+            }
+        }
+        catch (Exception ex) {
+            throw new IllegalArgumentException("Не удалось сохранить файл", ex);
+        }
+        if (compact) {
+            saveToFile(familyTree, index, file, progress);
+        }
+        else {
+            saveIndex(familyTree, index, file);
+        }
+        return compact;
+    }
+
+    /**
+     * Сохраняет полнотекстовый индекс рядом с файлом древа. Индекс лишь ускоряет
+     * следующее открытие, поэтому ошибка записи не считается ошибкой сохранения.
+     * Индекс меняется вместе с древом под его блокировкой записи, поэтому
+     * из фонового потока он читается под блокировкой чтения
+     */
+    private static void saveIndex(FamilyTree familyTree, FullTextIndex index, File file) {
+        Lock lock = familyTree.readLock();
+        lock.lock();
+        try {
+            index.save(file);
+        }
+        catch (IOException ex) {
+            FullTextIndex.indexFile(file).delete();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Результат загрузки файла в фоновом потоке
+     */
+    private static class LoadedTree {
+        private final FamilyTree familyTree;
+        private final boolean outdated;
+        private final FullTextIndex textIndex;
+        private final KinshipEngine kinship;
+        private final TreeHistory history;
+        /**
+         * журнал изменений применён не полностью, см. ChangeJournal.replay
+         */
+        private boolean journalRejected;
+
+        LoadedTree(FamilyTree familyTree, boolean outdated, FullTextIndex textIndex) {
+            this(familyTree, outdated, textIndex, new TreeHistory(familyTree));
+        }
+
+        LoadedTree(FamilyTree familyTree, boolean outdated, FullTextIndex textIndex, TreeHistory history) {
+            this.familyTree = familyTree;
+            this.outdated = outdated;
+            this.textIndex = textIndex;
+            this.kinship = new KinshipEngine(familyTree);
+            this.history = history;
+        }
+    }
+
+    /**
+     * Открывает файл и применяет к нему журнал изменений.
+     * Файлы старого формата (сериализация Java) также поддерживаются.
+     * Вызывается из фонового потока
+     * параметр file файл для открытия
+     * параметр progress получатель хода загрузки
+     * вернуть загруженное дерево и признак устаревшего формата файла
+     * @throws FieldValidator.InvalidFieldsException со всеми недопустимыми полями файла
+     */
+    private static LoadedTree openFile(File file, TaskProgress progress) throws FieldValidator.InvalidFieldsException {
+        try {
+            FamilyTree ft;
+            int version;
+            try (FileInputStream fis = new FileInputStream(file)) {
+                version = FamilyTreeCodec.readVersion(fis);
+            }
+            try (FileInputStream fis = new FileInputStream(file)) {
+                ft = FamilyTreeCodec.read(fis, progress);
+            }
+            // после неполного воспроизведения журнал дописывать нельзя: файл сохраняется целиком,
+            // а сохранённый индекс относится к древу с полным журналом и строится заново
+            boolean replayed = ChangeJournal.replay(ft, file);
+            FullTextIndex index = replayed ? FullTextIndex.open(ft, file) : new FullTextIndex(ft);
+            LoadedTree loaded = new LoadedTree(ft, version != FamilyTreeCodec.VERSION || !replayed, index);
+            loaded.journalRejected = !replayed;
+            return loaded;
+        }
+        catch (FieldValidator.InvalidFieldsException ex) {
+            // нарушения показываются пользователю списком, см. showErrorDialog
+            throw ex;
+        }
+        catch (Exception ex) {
+            throw new IllegalArgumentException("Файл не может быть прочитан.", ex);
+        }
+
+    }
+
+    /**
+     * Отображает данные указанного члена
+     * @param member сведения об участнике для отображения
+     */
+    private void displayMemberInfo(FamilyMember member) {
+        tree.setEnabled(true);
+
+        infoPanel.removeAll();
+        infoPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        infoPanel.setLayout(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+
+        JPanel container = new JPanel();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.weightx = 1.0;
+        gbc.weighty = 1.0;
+        gbc.fill = GridBagConstraints.BOTH;
+
+        infoPanel.add(container, gbc);
+
+        GroupLayout layout = new GroupLayout(container);
+        container.setLayout(layout);
+        layout.setAutoCreateGaps(true);
+
+        JLabel memberInfoLabel = new JLabel("Информация о человеке: ");
+        memberInfoLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        JLabel nameLabel = new JLabel("Имя");
+        JLabel nameTextField = new JLabel(member.getFirstName(), 10);
+        JLabel lastnameLabel = new JLabel("Фамилия");
+        JLabel lastnameTextField = new JLabel(member.getLastName(), 10);
+        JLabel maidennameLabel = new JLabel("Девичья фамилия");
+        JLabel maidennameTextField = new JLabel();
+        if (member.has(FamilyMember.Attribute.ДЕВИЧЬЯ_ФАМИЛИЯ)) {
+            maidennameTextField.setText(member.getMaidenName());
+        }
+        else {
+            maidennameTextField.setText("-");
+        }
+
+        JLabel genderLabel = new JLabel("Пол");
+        JLabel genderComboBox = new JLabel(member.getGender().toString());
+
+        JLabel lifeDescriptionLabel = new JLabel("Описание");
+        JTextArea lifeDescriptionTextArea = new JTextArea(5, 20);
+        lifeDescriptionTextArea.setText(member.getLifeDescription());
+        lifeDescriptionTextArea.setWrapStyleWord(true);
+        lifeDescriptionTextArea.setLineWrap(true);
+        lifeDescriptionTextArea.setOpaque(false);
+        lifeDescriptionTextArea.setEditable(false);
+        lifeDescriptionTextArea.setFocusable(false);
+        lifeDescriptionTextArea.setBackground(UIManager.getColor("Label.background"));
+        lifeDescriptionTextArea.setFont(UIManager.getFont("Label.font"));
+        lifeDescriptionTextArea.setBorder(UIManager.getBorder("Label.border"));
+        JScrollPane lifeDescriptionScrollPane1 = new JScrollPane(lifeDescriptionTextArea);
+        lifeDescriptionScrollPane1.setBorder(UIManager.getBorder("Label.border"));
+
+
+        JLabel addressInfoLabel = new JLabel("Информация об адресе: ");
+        addressInfoLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        JLabel streetNoLabel = new JLabel("Номер дома: ");
+        Address address = member.getAddress();
+        JLabel streetNoTextField = new JLabel(address != null ? address.getStreetNumber() : "Адрес не указан", 10);
+        JLabel streetNameLabel = new JLabel("Название улицы: ");
+        JLabel streetNameTextField = new JLabel(address != null ? address.getStreetName() : "-", 10);
+        JLabel suburbLabel = new JLabel("Населённый пункт:");
+        JLabel suburbTextField = new JLabel(address != null ? address.getSuburb() : "-", 10);
+        JLabel postcodeLabel = new JLabel("Почтовый индекс");
+        JLabel postcodeTextField = new JLabel(address != null ? address.getPostCode() : "-", 10);
+
+        JLabel relativeInfoLabel = new JLabel("Информация о родственнике: ");
+        relativeInfoLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
+
+        JLabel fatherLabel = new JLabel("Отец");
+        JLabel fatherTextField = new JLabel();
+        if (member.has(FamilyMember.Attribute.ОТЕЦ)) {
+            fatherTextField.setText(member.getFather().toString());
+        }
+        else {
+            fatherTextField.setText("Нет отца в записи");
+        }
+        JLabel motherLabel = new JLabel("Мать");
+        JLabel motherTextField = new JLabel();
+        if (member.has(FamilyMember.Attribute.МАТЬ)) {
+            motherTextField.setText(member.getMother().toString());
+        }
+        else {
+            motherTextField.setText("Нет матери в записи");
+        }
+        JLabel spouseLabel = new JLabel("Супруг");
+        JLabel spouseTextField = new JLabel();
+        if (member.has(FamilyMember.Attribute.СУПРУГ)) {
+            spouseTextField.setText(member.getSpouse().toString());
+        }
+        else {
+            spouseTextField.setText("Нет супруга в записи");
+        }
+        JLabel childrenLabel = new JLabel("Дети");
+        String children = "<html>";
+        if (member.has(FamilyMember.Attribute.ДЕТИ)) {
+            for (FamilyMember child : member.getChildren()) {
+                children += child.toString() + "<br>";
+            }
+            children += "</html>";
+        }
+        else {
+            children = "Нет детей в записи";
+        }
+        JLabel childrenTextField = new JLabel(children);
+
+        JLabel grandChildrenLabel = new JLabel("Внуки");
+        String grandChildren = "<html>";
+        if (member.has(FamilyMember.Attribute.ДЕТИ)) {
+            for (FamilyMember child : member.getChildren()) {
+                if (child.has(FamilyMember.Attribute.ДЕТИ)) {
+                    for (FamilyMember grandChild : child.getChildren()) {
+                        grandChildren += grandChild.toString() + "<br>";
+                    }
+                }
+
+            }
+            grandChildren += "</html>";
+        }
+        else {
+            grandChildren = "Зарегистрировано отсутствие внуков";
+        }
+        JLabel grandChildrenTextField = new JLabel(grandChildren);
+
+        JLabel descendantsLabel = new JLabel("Потомки");
+        JLabel descendantsTextField = new JLabel();
+        if (member.getDescendantCount() > 0) {
+            descendantsTextField.setText(member.getDescendantCount()
+                    + " (муж.: " + member.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ)
+                    + ", жен.: " + member.getDescendantCount(FamilyMember.Gender.ЖЕНСКИЙ)
+                    + "), поколений: " + member.getGenerationsBelow());
+        }
+        else {
+            descendantsTextField.setText("Нет потомков в записи");
+        }
+
+        JLabel kinshipLabel = new JLabel("Кем приходится корню");
+        JLabel kinshipTextField = new JLabel();
+        if (currentFamilyTree.hasRoot() && member.getTree() == currentFamilyTree) {
+            kinshipTextField.setText(kinship.describe(currentFamilyTree.getRoot(), member));
+        }
+        else {
+            kinshipTextField.setText("-");
+        }
+
+        layout.setHorizontalGroup(layout.createSequentialGroup()
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                        .addComponent(memberInfoLabel)
+                        .addComponent(nameLabel)
+                        .addComponent(lastnameLabel)
+                        .addComponent(maidennameLabel)
+                        .addComponent(genderLabel)
+                        .addComponent(lifeDescriptionLabel)
+                        .addComponent(addressInfoLabel)
+                        .addComponent(streetNoLabel)
+                        .addComponent(streetNameLabel)
+                        .addComponent(suburbLabel)
+                        .addComponent(postcodeLabel)
+                        .addComponent(relativeInfoLabel)
+                        .addComponent(fatherLabel)
+                        .addComponent(motherLabel)
+                        .addComponent(spouseLabel)
+                        .addComponent(childrenLabel)
+                        .addComponent(grandChildrenLabel)
+                        .addComponent(descendantsLabel)
+                        .addComponent(kinshipLabel)
+                )
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                        .addComponent(nameTextField)
+                        .addComponent(lastnameTextField)
+                        .addComponent(maidennameTextField)
+                        .addComponent(lifeDescriptionScrollPane1)
+                        .addComponent(genderComboBox)
+                        .addComponent(addressInfoLabel)
+                        .addComponent(streetNoTextField)
+                        .addComponent(streetNameTextField)
+                        .addComponent(suburbTextField)
+                        .addComponent(postcodeTextField)
+                        .addComponent(fatherTextField)
+                        .addComponent(motherTextField)
+                        .addComponent(spouseTextField)
+                        .addComponent(childrenTextField)
+                        .addComponent(grandChildrenTextField)
+                        .addComponent(descendantsTextField)
+                        .addComponent(kinshipTextField)
+                )
+        );
+
+        layout.setVerticalGroup(layout.createSequentialGroup()
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(memberInfoLabel))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(nameLabel)
+                        .addComponent(nameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(lastnameLabel)
+                        .addComponent(lastnameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(maidennameLabel)
+                        .addComponent(maidennameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(genderLabel)
+                        .addComponent(genderComboBox))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(lifeDescriptionLabel)
+                        .addComponent(lifeDescriptionScrollPane1))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(addressInfoLabel))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(streetNoLabel)
+                        .addComponent(streetNoTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(streetNameLabel)
+                        .addComponent(streetNameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(suburbLabel)
+                        .addComponent(suburbTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(postcodeLabel)
+                        .addComponent(postcodeTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(relativeInfoLabel))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(fatherLabel)
+                        .addComponent(fatherTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(motherLabel)
+                        .addComponent(motherTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(spouseLabel)
+                        .addComponent(spouseTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(childrenLabel)
+                        .addComponent(childrenTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(grandChildrenLabel)
+                        .addComponent(grandChildrenTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(descendantsLabel)
+                        .addComponent(descendantsTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(kinshipLabel)
+                        .addComponent(kinshipTextField))
+        );
+
+        JButton editMember = new JButton("Редактировать детали");
+        editMember.addActionListener(new editMemberAction(member));
+        JButton addRelative = new JButton("Добавить общую информацию");
+        addRelative.addActionListener(new addRelativeAction(member));
+
+        JPanel btncontainer = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        btncontainer.add(editMember);
+        btncontainer.add(addRelative);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        infoPanel.add(btncontainer, gbc);
+        infoPanel.validate();
+        infoPanel.repaint();
+    }
+
+    /**
+     * Отображает форму редактирования участника
+     * @param member он член для редактирования
+     */
+    private void displayEditMemberInfo(FamilyMember member) {
+        tree.setEnabled(false);
+
+        infoPanel.removeAll();
+        infoPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        // Создаем макет
+        JPanel info = new JPanel();
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.fill = GridBagConstraints.BOTH;
+        gbc.weightx = 1.0;
+        gbc.weighty = 1.0;
+
+        infoPanel.add(info, gbc);
+        GroupLayout layout = new GroupLayout(info);
+        info.setLayout(layout);
+        layout.setAutoCreateGaps(true);
+
+        JLabel memberInfoLabel = new JLabel("Информация о человеке: ");
+        memberInfoLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        JLabel nameLabel = new JLabel("Имя");
+        JTextField nameTextField = new JTextField(member.getFirstName(), 10);
+        JLabel lastnameLabel = new JLabel("Фамилия");
+        JTextField lastnameTextField = new JTextField(member.getLastName(), 10);
+        JLabel maidennameLabel = new JLabel("Девичья фамилия");
+        JTextField maidennameTextField = new JTextField(member.getMaidenName(), 10);
+        if (member.getGender() != FamilyMember.Gender.ЖЕНСКИЙ) {
+            maidennameTextField.setEditable(false);
+        }
+        JLabel genderLabel = new JLabel("Пол");
+        DefaultComboBoxModel<FamilyMember.Gender> genderList = new DefaultComboBoxModel<>();
+        genderList.addElement(FamilyMember.Gender.ЖЕНСКИЙ);
+        genderList.addElement(FamilyMember.Gender.МУЖСКОЙ);
+        JComboBox<FamilyMember.Gender> genderComboBox = new JComboBox<>(genderList);
+        genderComboBox.setSelectedItem(member.getGender());
+        genderComboBox.setEnabled(false);
+
+        JLabel lifeDescriptionLabel = new JLabel("Описание ");
+        JTextArea lifeDescriptionTextArea = new JTextArea(member.getLifeDescription(), 10, 10);
+        lifeDescriptionTextArea.setLineWrap(true);
+        lifeDescriptionTextArea.setWrapStyleWord(true);
+        JScrollPane lifeDescriptionScrollPane1 = new JScrollPane(lifeDescriptionTextArea);
+
+        JLabel addressInfoLabel = new JLabel("Информация об адресе: ");
+        addressInfoLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        JLabel streetNoLabel = new JLabel("Номер дома:");
+        Address address = member.getAddress();
+        JTextField streetNoTextField = new JTextField(address != null ? address.getStreetNumber() : "", 10);
+        JLabel streetNameLabel = new JLabel("Название улицы:");
+        JTextField streetNameTextField = new JTextField(address != null ? address.getStreetName() : "", 10);
+        JLabel suburbLabel = new JLabel("Населённый пункт:");
+        JTextField suburbTextField = new JTextField(address != null ? address.getSuburb() : "", 10);
+        JLabel postcodeLabel = new JLabel("Почтовый индекс");
+        JTextField postcodeTextField = new JTextField(address != null ? address.getPostCode() : "", 10);
+
+        layout.setHorizontalGroup(layout.createSequentialGroup()
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                        .addComponent(memberInfoLabel)
+                        .addComponent(nameLabel)
+                        .addComponent(lastnameLabel)
+                        .addComponent(maidennameLabel)
+                        .addComponent(genderLabel)
+                        .addComponent(lifeDescriptionLabel)
+                        .addComponent(addressInfoLabel)
+                        .addComponent(streetNoLabel)
+                        .addComponent(streetNameLabel)
+                        .addComponent(suburbLabel)
+                        .addComponent(postcodeLabel)
+                )
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                        .addComponent(nameTextField)
+                        .addComponent(lastnameTextField)
+                        .addComponent(maidennameTextField)
+                        .addComponent(lifeDescriptionScrollPane1)
+                        .addComponent(genderComboBox)
+                        .addComponent(addressInfoLabel)
+                        .addComponent(streetNoTextField)
+                        .addComponent(streetNameTextField)
+                        .addComponent(suburbTextField)
+                        .addComponent(postcodeTextField)
+                )
+        );
+
+        layout.setVerticalGroup(layout.createSequentialGroup()
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(memberInfoLabel))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(nameLabel)
+                        .addComponent(nameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(lastnameLabel)
+                        .addComponent(lastnameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(maidennameLabel)
+                        .addComponent(maidennameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(genderLabel)
+                        .addComponent(genderComboBox))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(lifeDescriptionLabel)
+                        .addComponent(lifeDescriptionScrollPane1))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(addressInfoLabel))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(streetNoLabel)
+                        .addComponent(streetNoTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(streetNameLabel)
+                        .addComponent(streetNameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(suburbLabel)
+                        .addComponent(suburbTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(postcodeLabel)
+                        .addComponent(postcodeTextField))
+        );
+        JButton saveMember = new JButton("Сохранить детали");
+        saveMember.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!checkNotBusy()) {
+                    return;
+                }
+                try {
+                    //пытаемся сохранить детали
+                    member.setFirstName(nameTextField.getText().trim());
+                    member.setLastName(lastnameTextField.getText().trim());
+                    member.setMaidenName(maidennameTextField.getText().trim());
+                    member.setLifeDescription(lifeDescriptionTextArea.getText().trim());
+                    member.setGender((FamilyMember.Gender) genderComboBox.getSelectedItem());
+
+                    //адрес общий для всего домохозяйства, поэтому изменённый адрес
+                    //задаётся только этому члену семьи новым объектом;
+                    //неуказанный адрес остаётся неуказанным, если поля не заполнены
+                    String streetNo = streetNoTextField.getText().trim();
+                    String streetName = streetNameTextField.getText().trim();
+                    String suburb = suburbTextField.getText().trim();
+                    String postcode = postcodeTextField.getText().trim();
+                    if (address != null || !(streetNo + streetName + suburb + postcode).isEmpty()) {
+                        member.setAddress(new Address(streetNo, streetName, suburb, postcode));
+                    }
+                    //модель дерева уже обновила изменённые узлы
+                    displayMemberInfo(member);
+                    editStatus("Член "+member.toString()+" добавлен");
+                }
+                catch (Exception d) {
+                    showErrorDialog(d);
+                }
+                finally {
+                    //уже применённые поля отменяются одним шагом
+                    history.checkpoint("Изменение " + member);
+                }
+            }
+        });
+        JButton cancel = new JButton("Отмена");
+        cancel.addActionListener(new cancelEditMemberAction(member));
+
+        JPanel container = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        container.setOpaque(false);
+        container.add(saveMember);
+        container.add(cancel);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        infoPanel.add(container, gbc);
+
+        infoPanel.validate();
+        infoPanel.repaint();
+    }
+
+    /**
+     * отображать форму добавления относительного члена
+     * @param member член для добавления родственника
+     */
+    private void displayAddRelativeInfo(FamilyMember member) {
+        tree.setEnabled(false);
+
+        infoPanel.removeAll();
+        infoPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JPanel info = new JPanel();
+        JLabel memberInfoLabel = new JLabel("Добавить нового пользователя", SwingConstants.LEFT);
+        if (member != null) {
+            memberInfoLabel.setText("Добавить родственника для " + member.toString());
+        }
+
+        memberInfoLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
+
+        infoPanel.setLayout(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.weightx = 1.0;
+        gbc.weighty = 1.0;
+        infoPanel.add(memberInfoLabel, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.fill = GridBagConstraints.BOTH;
+        infoPanel.add(info, gbc);
+        // Создаем макет
+        GroupLayout layout = new GroupLayout(info);
+        info.setLayout(layout);
+        layout.setAutoCreateGaps(true);
+
+        JLabel relativeTypeLabel = new JLabel("Тип родственника");
+        DefaultComboBoxModel<FamilyMember.RelativeType> relativeTypeList = new DefaultComboBoxModel<>();
+
+        relativeTypeList.addElement(FamilyMember.RelativeType.МАТЬ);
+        relativeTypeList.addElement(FamilyMember.RelativeType.ОТЕЦ);
+        relativeTypeList.addElement(FamilyMember.RelativeType.СУПРУГ);
+        relativeTypeList.addElement(FamilyMember.RelativeType.РЕБЁНОК);
+        JComboBox<FamilyMember.RelativeType> relativeTypeComboBox = new JComboBox<>(relativeTypeList);
+
+        if (member == null) {
+
+            relativeTypeComboBox.removeAllItems();
+            relativeTypeComboBox.setEnabled(false);
+
+        }
+
+        JLabel nameLabel = new JLabel("Имя");
+        JTextField nameTextField = new JTextField("", 10);
+        JLabel lastnameLabel = new JLabel("Фамилия");
+        JTextField lastnameTextField = new JTextField("", 10);
+
+        JLabel maidennameLabel = new JLabel("Девичья фамилия");
+        JTextField maidennameTextField = new JTextField(10);
+
+        JLabel genderLabel = new JLabel("Пол");
+        DefaultComboBoxModel<FamilyMember.Gender> genderList = new DefaultComboBoxModel<>();
+        genderList.addElement(FamilyMember.Gender.ЖЕНСКИЙ);
+        genderList.addElement(FamilyMember.Gender.МУЖСКОЙ);
+        JComboBox<FamilyMember.Gender> genderComboBox = new JComboBox<>(genderList);
+
+        JLabel lifeDescriptionLabel = new JLabel("Описание");
+        JTextArea lifeDescriptionTextArea = new JTextArea(10, 10);
+        lifeDescriptionTextArea.setLineWrap(true);
+        lifeDescriptionTextArea.setWrapStyleWord(true);
+        JScrollPane lifeDescriptionScrollPane1 = new JScrollPane(lifeDescriptionTextArea);
+
+        JLabel addressInfoLabel = new JLabel("Информация об адресе:");
+        addressInfoLabel.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        JLabel streetNoLabel = new JLabel("Номер дома:");
+        JTextField streetNoTextField = new JTextField("", 10);
+        JLabel streetNameLabel = new JLabel("Название улицы:");
+        JTextField streetNameTextField = new JTextField("", 10);
+        JLabel suburbLabel = new JLabel("Населённый пункт");
+        JTextField suburbTextField = new JTextField("", 10);
+        JLabel postcodeLabel = new JLabel("Индекс");
+        JTextField postcodeTextField = new JTextField("", 10);
+
+        JButton saveMember = new JButton("Добавить участника");
+        saveMember.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+
+                if (!checkNotBusy()) {
+                    return;
+                }
+                try {
+                    Address newAddress = new Address(streetNoTextField.getText(),
+                            streetNameTextField.getText(),
+                            suburbTextField.getText(),
+                            postcodeTextField.getText());
+                    FamilyMember newMember = new FamilyMember(
+                            nameTextField.getText(),
+                            lastnameTextField.getText(),
+                            (FamilyMember.Gender) genderComboBox.getSelectedItem(),
+                            newAddress,
+                            lifeDescriptionTextArea.getText());
+                    newMember.setMaidenName(maidennameTextField.getText());
+                    if (member == null) {
+                        currentFamilyTree.setRoot(newMember);
+                        history.checkpoint("Добавление корня " + newMember);
+                        editStatus("Добавлен корневой элемент");
+                        displayTree(currentFamilyTree);
+                    }
+                    else {
+                        //add the relative
+                        member.addRelative((FamilyMember.RelativeType) relativeTypeComboBox.getSelectedItem(), newMember);
+                        history.checkpoint("Добавление " + newMember);
+                        editStatus("Добавлен новый участник");
+                        //модель дерева уже вставила новые узлы
+                        displayMemberInfo(member);
+                    }
+
+                }
+                catch (Exception d) {
+                    showErrorDialog(d);
+                }
+            }
+        });
+        JButton cancel = new JButton("Отмена");
+        cancel.addActionListener(new cancelEditMemberAction(member));
+
+        relativeTypeComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+
+                switch ((FamilyMember.RelativeType) relativeTypeComboBox.getSelectedItem()) {
+                    case ОТЕЦ:
+                        genderComboBox.setSelectedItem(FamilyMember.Gender.МУЖСКОЙ);
+                        maidennameTextField.setEditable(false);
+                        lastnameTextField.setText(member.getLastName());
+                        break;
+                    case МАТЬ:
+                        genderComboBox.setSelectedItem(FamilyMember.Gender.ЖЕНСКИЙ);
+                        maidennameTextField.setEditable(true);
+                        lastnameTextField.setText(member.getLastName());
+                        break;
+                    case СУПРУГ:
+                        lastnameTextField.setText(member.getLastName());
+                        maidennameTextField.setEditable(true);
+                        break;
+                    case РЕБЁНОК:
+                        lastnameTextField.setText(member.getLastName());
+                        maidennameTextField.setEditable(true);
+                        break;
+                }
+            }
+        });
+        layout.setHorizontalGroup(layout.createSequentialGroup()
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                        .addComponent(relativeTypeLabel)
+                        .addComponent(nameLabel)
+                        .addComponent(lastnameLabel)
+                        .addComponent(maidennameLabel)
+                        .addComponent(genderLabel)
+                        .addComponent(lifeDescriptionLabel)
+                        .addComponent(addressInfoLabel)
+                        .addComponent(streetNoLabel)
+                        .addComponent(streetNameLabel)
+                        .addComponent(suburbLabel)
+                        .addComponent(postcodeLabel)
+                )
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                        .addComponent(nameTextField)
+                        .addComponent(relativeTypeComboBox)
+                        .addComponent(lastnameTextField)
+                        .addComponent(maidennameTextField)
+                        .addComponent(lifeDescriptionScrollPane1)
+                        .addComponent(genderComboBox)
+                        .addComponent(addressInfoLabel)
+                        .addComponent(streetNoTextField)
+                        .addComponent(streetNameTextField)
+                        .addComponent(suburbTextField)
+                        .addComponent(postcodeTextField)
+                )
+        );
+
+        layout.setVerticalGroup(layout.createSequentialGroup()
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(relativeTypeLabel)
+                        .addComponent(relativeTypeComboBox))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(nameLabel)
+                        .addComponent(nameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(lastnameLabel)
+                        .addComponent(lastnameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(maidennameLabel)
+                        .addComponent(maidennameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(genderLabel)
+                        .addComponent(genderComboBox))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(lifeDescriptionLabel)
+                        .addComponent(lifeDescriptionScrollPane1))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(addressInfoLabel))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(streetNoLabel)
+                        .addComponent(streetNoTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(streetNameLabel)
+                        .addComponent(streetNameTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(suburbLabel)
+                        .addComponent(suburbTextField))
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                        .addComponent(postcodeLabel)
+                        .addComponent(postcodeTextField))
+        );
+
+        JPanel container = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        container.setOpaque(false);
+        container.add(saveMember);
+        container.add(cancel);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        infoPanel.add(container, gbc);
+        infoPanel.validate();
+        infoPanel.repaint();
+    }
+
+    /**
+     * показывает диалоговое окно ошибки, содержащее сообщение об ошибке из исключения
+     * @param e исключение для получения сообщения от
+     */
+    private void showErrorDialog(Exception e) {
+        if (e instanceof FieldValidator.InvalidFieldsException) {
+            showProblemsDialog(((FieldValidator.InvalidFieldsException) e).getProblems());
+            return;
+        }
+        String message = "Ошибка: " + e.getMessage();
+        Throwable cause = e.getCause();
+        if (cause != null && cause.getMessage() != null) {
+            message += "\nПричина: " + cause.getMessage();
+        }
+        JOptionPane.showMessageDialog(mainFrame, message, "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * показывает список недопустимых полей файла; показываются первые MAX_PROBLEMS нарушений
+     * @param problems нарушения, найденные FieldValidator
+     */
+    private void showProblemsDialog(List<FieldValidator.Problem> problems) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < Math.min(problems.size(), MAX_PROBLEMS); i++) {
+            text.append(problems.get(i)).append('\n');
+        }
+        if (problems.size() > MAX_PROBLEMS) {
+            text.append("... и ещё ").append(problems.size() - MAX_PROBLEMS);
+        }
+        JTextArea problemsArea = new JTextArea(text.toString(), Math.min(problems.size(), 15), 60);
+        problemsArea.setEditable(false);
+        problemsArea.setCaretPosition(0);
+        JOptionPane.showMessageDialog(mainFrame, new Object[] {
+                "Файл не может быть прочитан. Недопустимые значения полей: " + problems.size(),
+                new JScrollPane(problemsArea)}, "Ошибка", JOptionPane.ERROR_MESSAGE);
+    }
+}
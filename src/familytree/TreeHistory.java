@@ -0,0 +1,494 @@
+package familytree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * История версий генеалогического древа для отмены и повтора правки.
+ *
+ * Версия Version - неизменяемый список записей MemberRecord по идентификаторам
+ * членов семьи вместе с корнем. Список хранится в PersistentVector, поэтому
+ * каждое изменение древа заменяет только записи затронутых членов семьи и
+ * копирует O(log n) узлов, а всё остальное разделяется с предыдущей версией.
+ * История слушает изменения древа; после каждого действия пользователя
+ * вызывается checkpoint, и накопленные изменения становятся одним шагом отмены.
+ *
+ * Отмена, при которой менялись только поля членов семьи и адресов, применяется
+ * к тому же древу через обычные методы. Если же отменяются родственные связи
+ * или добавленные члены семьи, которые древо удалять не умеет, древо строится
+ * заново по записям версии в памяти, без чтения файла. Методы undo и redo
+ * возвращают древо, которое после них стало текущим. Построение занимает O(n),
+ * поэтому вызывающий код может заранее узнать через rebuilds, что оно нужно,
+ * построить древо версии в фоновом потоке и передать его в undo или redo.
+ *
+ * История используется из потока, который правит древо.
+ */
+public class TreeHistory implements FamilyTreeListener {
+
+    /**
+     * Наибольшее число шагов отмены
+     */
+    public static final int MAX_UNDO = 100;
+
+    private FamilyTree tree;
+    private PersistentVector<MemberRecord> records;
+    private int rootId;
+    /**
+     * Добавленные члены семьи, записи которых ещё нужно обновить: при добавлении
+     * ветки их родственники регистрируются позже них самих
+     */
+    private final ArrayList<FamilyMember> added = new ArrayList<>();
+    private final ArrayDeque<Version> undo = new ArrayDeque<>();
+    private final ArrayDeque<Version> redo = new ArrayDeque<>();
+    private Version last;
+    private Version saved;
+    private boolean restoring;
+
+    /**
+     * Создаёт историю и подписывает её на изменения древа. Текущее состояние
+     * древа считается сохранённым
+     */
+    public TreeHistory(FamilyTree tree) {
+        FamilyTree.Snapshot snapshot = tree.snapshot();
+        this.tree = tree;
+        this.records = PersistentVector.of(snapshot.getRecords());
+        this.rootId = snapshot.getRootId();
+        this.last = new Version(records, rootId, null);
+        this.saved = last;
+        tree.addFamilyTreeListener(this);
+    }
+
+    /**
+     * вернуть древо, изменения которого записывает история
+     */
+    public FamilyTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Завершает шаг правки: изменения после предыдущего вызова отменяются одним шагом
+     * @param description описание действия для меню, например «Изменение Иван Петров»
+     */
+    public void checkpoint(String description) {
+        flush();
+        if (records == last.records && rootId == last.rootId) {
+            return;
+        }
+        undo.push(last);
+        if (undo.size() > MAX_UNDO) {
+            undo.removeLast();
+        }
+        redo.clear();
+        last = new Version(records, rootId, description);
+    }
+
+    public boolean canUndo() {
+        flush();
+        return !undo.isEmpty() || records != last.records || rootId != last.rootId;
+    }
+
+    public boolean canRedo() {
+        flush();
+        return !redo.isEmpty() && records == last.records && rootId == last.rootId;
+    }
+
+    /**
+     * вернуть описание действия, которое отменит undo, или null
+     */
+    public String getUndoDescription() {
+        return last.description;
+    }
+
+    /**
+     * вернуть описание действия, которое повторит redo, или null
+     */
+    public String getRedoDescription() {
+        return redo.isEmpty() ? null : redo.peek().description;
+    }
+
+    /**
+     * вернуть версию, которую сделает текущей undo, или null.
+     * Незавершённые изменения завершаются шагом правки, как в undo
+     */
+    public Version getUndoTarget() {
+        checkpoint(null);
+        return undo.peek();
+    }
+
+    /**
+     * вернуть версию, которую сделает текущей redo, или null
+     */
+    public Version getRedoTarget() {
+        return canRedo() ? redo.peek() : null;
+    }
+
+    /**
+     * вернуть true, если версию target нельзя применить к текущему древу на месте
+     * и undo или redo построят древо заново
+     */
+    public boolean rebuilds(Version target) {
+        flush();
+        return !restoresInPlace(target, target.changedSince(last));
+    }
+
+    /**
+     * Отменяет последний шаг правки
+     * @return текущее древо: то же самое или построенное заново
+     */
+    public FamilyTree undo() {
+        return undo(null);
+    }
+
+    /**
+     * Отменяет последний шаг правки
+     * @param rebuilt древо, построенное через toTree() версии getUndoTarget(), или null,
+     *                если история строит его сама, когда это нужно
+     * @return текущее древо: то же самое или построенное заново
+     */
+    public FamilyTree undo(FamilyTree rebuilt) {
+        checkpoint(null);
+        if (undo.isEmpty()) {
+            throw new IllegalStateException("Нечего отменять");
+        }
+        Version target = undo.pop();
+        redo.push(last);
+        restore(target, rebuilt);
+        return tree;
+    }
+
+    /**
+     * Повторяет последний отменённый шаг правки
+     * @return текущее древо: то же самое или построенное заново
+     */
+    public FamilyTree redo() {
+        return redo(null);
+    }
+
+    /**
+     * Повторяет последний отменённый шаг правки
+     * @param rebuilt древо, построенное через toTree() версии getRedoTarget(), или null,
+     *                если история строит его сама, когда это нужно
+     * @return текущее древо: то же самое или построенное заново
+     */
+    public FamilyTree redo(FamilyTree rebuilt) {
+        if (!canRedo()) {
+            throw new IllegalStateException("Нечего повторять");
+        }
+        Version target = redo.pop();
+        undo.push(last);
+        restore(target, rebuilt);
+        return tree;
+    }
+
+    /**
+     * вернуть текущую версию древа
+     */
+    public Version current() {
+        flush();
+        return records == last.records && rootId == last.rootId ? last : new Version(records, rootId, null);
+    }
+
+    /**
+     * Запоминает текущую версию как сохранённую в файл
+     */
+    public void markSaved() {
+        saved = current();
+    }
+
+    /**
+     * вернуть версию, сохранённую в файл последней
+     */
+    public Version getSaved() {
+        return saved;
+    }
+
+    /**
+     * вернуть идентификаторы членов семьи, изменённых или добавленных после сохранения
+     */
+    public int[] changedSinceSave() {
+        return current().changedSince(saved);
+    }
+
+    /**
+     * Обновляет записи добавленных членов семьи
+     */
+    private void flush() {
+        for (FamilyMember member : added) {
+            if (member.getTree() == tree) {
+                update(member);
+            }
+        }
+        added.clear();
+    }
+
+    private void update(FamilyMember member) {
+        if (member != null && member.getTree() == tree) {
+            records = records.set(member.getId(), MemberRecord.of(member));
+        }
+    }
+
+    /**
+     * Делает версию target текущей
+     * @param rebuilt готовое древо версии target или null
+     */
+    private void restore(Version target, FamilyTree rebuilt) {
+        int[] changed = target.changedSince(last);
+        if (rebuilt == null && restoresInPlace(target, changed)) {
+            restoring = true;
+            try {
+                FamilyTree.write(tree, () -> {
+                    for (int id : changed) {
+                        restoreFields(tree.getMember(id), target.getRecord(id), target);
+                    }
+                    if (target.rootId != rootId) {
+                        tree.setRoot(target.rootId == MemberRecord.NONE ? null : tree.getMember(target.rootId));
+                    }
+                });
+            }
+            finally {
+                restoring = false;
+            }
+        }
+        else {
+            tree.removeFamilyTreeListener(this);
+            tree = rebuilt != null ? rebuilt : target.toTree();
+            tree.addFamilyTreeListener(this);
+        }
+        records = target.records;
+        rootId = target.rootId;
+        last = target;
+        added.clear();
+    }
+
+    /**
+     * вернуть true, если версию target можно применить к текущему древу на месте.
+     * Поля изменённых записей проверяются заранее: сеттер, отказавший на середине
+     * восстановления, оставил бы древо наполовину в старой версии
+     */
+    private boolean restoresInPlace(Version target, int[] changed) {
+        if (target.getMemberCount() != records.size() || !sameRelatives(target, changed)) {
+            return false;
+        }
+        List<MemberRecord> restored = new ArrayList<>(changed.length);
+        for (int id : changed) {
+            restored.add(target.getRecord(id));
+        }
+        // записи древ из файлов старого формата могут не пройти проверку
+        return FieldValidator.validate(restored).isEmpty();
+    }
+
+    private boolean sameRelatives(Version target, int[] changed) {
+        for (int id : changed) {
+            MemberRecord a = records.get(id);
+            MemberRecord b = target.getRecord(id);
+            if (a.getFatherId() != b.getFatherId() || a.getMotherId() != b.getMotherId()
+                    || a.getSpouseId() != b.getSpouseId() || a.numChildren() != b.numChildren()) {
+                return false;
+            }
+            for (int i = 0; i < a.numChildren(); i++) {
+                if (a.getChildId(i) != b.getChildId(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает полям члена семьи значения из записи. Девичья фамилия очищается
+     * до смены пола и задаётся после неё, так как она допустима только у женщин
+     */
+    private void restoreFields(FamilyMember member, MemberRecord record, Version target) {
+        if (!member.getFirstName().equals(record.getFirstName())) {
+            member.setFirstName(record.getFirstName());
+        }
+        if (!member.getLastName().equals(record.getLastName())) {
+            member.setLastName(record.getLastName());
+        }
+        boolean maidenChanged = !Objects.equals(member.getMaidenName(), record.getMaidenName());
+        if (maidenChanged) {
+            member.setMaidenName("");
+        }
+        if (member.getGender() != record.getGender()) {
+            member.setGender(record.getGender());
+        }
+        if (maidenChanged && record.getMaidenName() != null && !record.getMaidenName().isEmpty()) {
+            member.setMaidenName(record.getMaidenName());
+        }
+        if (!Objects.equals(member.getLifeDescription(), record.getLifeDescription())) {
+            member.setLifeDescription(record.getLifeDescription());
+        }
+        restoreAddress(member, record, target);
+    }
+
+    /**
+     * Возвращает адрес члена семьи. Общий адрес меняется на месте, только если
+     * у всех его жильцов в версии target одинаковый адрес; иначе член семьи
+     * получает собственный адрес
+     */
+    private void restoreAddress(FamilyMember member, MemberRecord record, Version target) {
+        Address address = member.getAddress();
+        if (address == null ? !record.hasAddress() : sameAddress(address, record)) {
+            return;
+        }
+        if (address == null || !record.hasAddress()) {
+            member.setAddress(record.hasAddress() ? newAddress(record) : null);
+            return;
+        }
+        for (FamilyMember resident : tree.getResidents(address)) {
+            MemberRecord other = target.getRecord(resident.getId());
+            if (!other.hasAddress() || !sameAddress(other, record)) {
+                member.setAddress(newAddress(record));
+                return;
+            }
+        }
+        address.setStreetNumber(record.getStreetNumber());
+        address.setStreetName(record.getStreetName());
+        address.setSuburb(record.getSuburb());
+        address.setPostCode(record.getPostCode());
+    }
+
+    private static boolean sameAddress(Address address, MemberRecord record) {
+        return record.hasAddress()
+                && Objects.equals(address.getStreetNumber(), record.getStreetNumber())
+                && Objects.equals(address.getStreetName(), record.getStreetName())
+                && Objects.equals(address.getSuburb(), record.getSuburb())
+                && Objects.equals(address.getPostCode(), record.getPostCode());
+    }
+
+    private static boolean sameAddress(MemberRecord a, MemberRecord b) {
+        return Objects.equals(a.getStreetNumber(), b.getStreetNumber())
+                && Objects.equals(a.getStreetName(), b.getStreetName())
+                && Objects.equals(a.getSuburb(), b.getSuburb())
+                && Objects.equals(a.getPostCode(), b.getPostCode());
+    }
+
+    private static Address newAddress(MemberRecord record) {
+        return new Address(record.getStreetNumber(), record.getStreetName(), record.getSuburb(), record.getPostCode());
+    }
+
+    @Override
+    public void memberAdded(FamilyMember member) {
+        if (restoring) {
+            return;
+        }
+        records = records.append(MemberRecord.of(member));
+        added.add(member);
+    }
+
+    @Override
+    public void memberChanged(FamilyMember member, FamilyMember.Field field, Object oldValue) {
+        if (!restoring) {
+            update(member);
+        }
+    }
+
+    @Override
+    public void relativeAdded(FamilyMember member, FamilyMember.RelativeType type, FamilyMember relative) {
+        if (restoring) {
+            return;
+        }
+        update(member);
+        update(relative);
+        switch (type) {
+            case РЕБЁНОК:
+                // ребёнок мог получить вторым родителем супруга
+                update(relative.getFather());
+                update(relative.getMother());
+                break;
+            case СУПРУГ:
+                // супруги становятся вторыми родителями детей друг друга
+                for (FamilyMember child : member.getChildren()) {
+                    update(child);
+                }
+                for (FamilyMember child : relative.getChildren()) {
+                    update(child);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void addressChanged(Address address, Address.Field field, String oldValue) {
+        if (restoring) {
+            return;
+        }
+        for (FamilyMember resident : tree.getResidents(address)) {
+            update(resident);
+        }
+    }
+
+    @Override
+    public void rootChanged(FamilyMember root) {
+        if (!restoring) {
+            rootId = root == null ? MemberRecord.NONE : root.getId();
+        }
+    }
+
+    /**
+     * Неизменяемая версия древа. Версии разделяют записи и узлы общих частей,
+     * поэтому их сравнение обходит только различающиеся части
+     */
+    public static final class Version {
+        private final PersistentVector<MemberRecord> records;
+        private final int rootId;
+        private final String description;
+
+        private Version(PersistentVector<MemberRecord> records, int rootId, String description) {
+            this.records = records;
+            this.rootId = rootId;
+            this.description = description;
+        }
+
+        public int getMemberCount() {
+            return records.size();
+        }
+
+        /**
+         * вернуть идентификатор корня или MemberRecord.NONE
+         */
+        public int getRootId() {
+            return rootId;
+        }
+
+        public MemberRecord getRecord(int id) {
+            return records.get(id);
+        }
+
+        /**
+         * вернуть описание действия, которое привело к этой версии, или null
+         */
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * вернуть идентификаторы членов семьи, записи которых отличаются от версии other,
+         * включая тех, кого в одной из версий нет
+         */
+        public int[] changedSince(Version other) {
+            List<Integer> changed = new ArrayList<>();
+            PersistentVector.diff(records, other.records, changed::add);
+            int[] ids = new int[changed.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = changed.get(i);
+            }
+            return ids;
+        }
+
+        /**
+         * Строит по версии новое древо с теми же идентификаторами
+         */
+        public FamilyTree toTree() {
+            MemberRecord[] array = new MemberRecord[records.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = records.get(i);
+            }
+            return FamilyTreeCodec.build(array, rootId);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package familytree;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Сводная статистика по членам семьи древа: численность по фамилиям,
+ * населённым пунктам и поколениям, соотношение полов, число членов семьи
+ * без известных родителей и без детей. Частичные результаты, посчитанные
+ * по разным частям древа, объединяются методом merge.
+ */
+public final class TreeStatistics {
+
+    private long memberCount;
+    private long maleCount;
+    private long femaleCount;
+    private long orphanCount;
+    private long childlessCount;
+    private long marriedCount;
+    private final HashMap<String, Long> bySurname = new HashMap<>();
+    private final HashMap<String, Long> bySuburb = new HashMap<>();
+    private final TreeMap<Integer, Long> byGeneration = new TreeMap<>();
+
+    TreeStatistics() {
+    }
+
+    /**
+     * Учитывает одного члена семьи
+     * @param generation номер поколения члена семьи (0 - старшее известное поколение)
+     */
+    void add(FamilyMember member, int generation) {
+        memberCount++;
+        if (member.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+            maleCount++;
+        }
+        else if (member.getGender() == FamilyMember.Gender.ЖЕНСКИЙ) {
+            femaleCount++;
+        }
+        if (!member.has(FamilyMember.Attribute.РОДИТЕЛИ)) {
+            orphanCount++;
+        }
+        if (!member.has(FamilyMember.Attribute.ДЕТИ)) {
+            childlessCount++;
+        }
+        if (member.has(FamilyMember.Attribute.СУПРУГ)) {
+            marriedCount++;
+        }
+        bySurname.merge(member.getLastName(), 1L, Long::sum);
+        if (member.getAddress() != null) {
+            bySuburb.merge(member.getAddress().getSuburb(), 1L, Long::sum);
+        }
+        byGeneration.merge(generation, 1L, Long::sum);
+    }
+
+    /**
+     * Учитывает сразу группу членов семьи, подсчитанную по столбцам ColumnarMemberStore
+     */
+    void addCounts(long members, long males, long females, long orphans, long childless, long married) {
+        memberCount += members;
+        maleCount += males;
+        femaleCount += females;
+        orphanCount += orphans;
+        childlessCount += childless;
+        marriedCount += married;
+    }
+
+    void addSurname(String surname, long count) {
+        bySurname.merge(surname, count, Long::sum);
+    }
+
+    void addSuburb(String suburb, long count) {
+        bySuburb.merge(suburb, count, Long::sum);
+    }
+
+    void addGeneration(int generation, long count) {
+        byGeneration.merge(generation, count, Long::sum);
+    }
+
+    /**
+     * Прибавляет к этой статистике другую, посчитанную по другим членам семьи
+     * @return эта статистика
+     */
+    TreeStatistics merge(TreeStatistics other) {
+        memberCount += other.memberCount;
+        maleCount += other.maleCount;
+        femaleCount += other.femaleCount;
+        orphanCount += other.orphanCount;
+        childlessCount += other.childlessCount;
+        marriedCount += other.marriedCount;
+        mergeCounts(bySurname, other.bySurname);
+        mergeCounts(bySuburb, other.bySuburb);
+        mergeCounts(byGeneration, other.byGeneration);
+        return this;
+    }
+
+    private static <K> void mergeCounts(Map<K, Long> target, Map<K, Long> source) {
+        for (Map.Entry<K, Long> entry : source.entrySet()) {
+            target.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    public long getMemberCount() {
+        return memberCount;
+    }
+
+    public long getMaleCount() {
+        return maleCount;
+    }
+
+    public long getFemaleCount() {
+        return femaleCount;
+    }
+
+    /**
+     * вернуть число членов семьи, у которых не указан ни один из родителей
+     */
+    public long getOrphanCount() {
+        return orphanCount;
+    }
+
+    public long getChildlessCount() {
+        return childlessCount;
+    }
+
+    public long getMarriedCount() {
+        return marriedCount;
+    }
+
+    /**
+     * вернуть число членов семьи по фамилиям (только для чтения)
+     */
+    public Map<String, Long> getBySurname() {
+        return Collections.unmodifiableMap(bySurname);
+    }
+
+    /**
+     * вернуть число членов семьи по населённым пунктам (только для чтения)
+     */
+    public Map<String, Long> getBySuburb() {
+        return Collections.unmodifiableMap(bySuburb);
+    }
+
+    /**
+     * вернуть число членов семьи по поколениям в порядке поколений (только для чтения)
+     */
+    public Map<Integer, Long> getByGeneration() {
+        return Collections.unmodifiableMap(byGeneration);
+    }
+
+    @Override
+    public String toString() {
+        return "Членов семьи: " + memberCount
+                + ", мужчин: " + maleCount
+                + ", женщин: " + femaleCount
+                + ", без родителей: " + orphanCount
+                + ", без детей: " + childlessCount
+                + ", в браке: " + marriedCount
+                + ", фамилий: " + bySurname.size()
+                + ", населённых пунктов: " + bySuburb.size()
+                + ", поколений: " + byGeneration.size();
+    }
+}
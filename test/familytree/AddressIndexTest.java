@@ -0,0 +1,114 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AddressIndexTest {
+
+    private FamilyTree tree;
+    private FamilyMember ivan;
+    private FamilyMember anna;
+    private FamilyMember pyotr;
+
+    @BeforeEach
+    public void buildTree() {
+        tree = new FamilyTree();
+        ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "");
+        tree.setRoot(ivan);
+        anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "");
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        pyotr = new FamilyMember("Пётр", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("3", "Садовая", "Москва", "101000"), "");
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, pyotr);
+    }
+
+    @Test
+    public void equalAddressesShareOneInstance() {
+        AddressIndex index = tree.getAddressIndex();
+        assertSame(ivan.getAddress(), anna.getAddress());
+        assertNotSame(ivan.getAddress(), pyotr.getAddress());
+        assertEquals(2, index.getAddressCount());
+        assertEquals(List.of(ivan, anna), index.getResidents(ivan.getAddress()));
+        assertTrue(index.getResidents(new Address("12", "Ленина", "Тверь", "170000")).isEmpty());
+
+        pyotr.setAddress(new Address("12", "Ленина", "Тверь", "170000"));
+        assertSame(ivan.getAddress(), pyotr.getAddress());
+        assertEquals(1, index.getAddressCount());
+        assertEquals(List.of(ivan, anna, pyotr), index.getResidents(ivan.getAddress()));
+        assertTrue(index.findAddressesBySuburb("Москва").isEmpty());
+    }
+
+    @Test
+    public void lookupsFollowEdits() {
+        assertEquals(List.of(ivan, anna), tree.findBySuburb("тверь"));
+        assertEquals(List.of(pyotr), tree.findByPostCode(" 101000 "));
+
+        // сеттер меняет адрес всего домохозяйства
+        ivan.getAddress().setSuburb("Клин");
+        assertEquals("Клин", anna.getAddress().getSuburb());
+        assertTrue(tree.findBySuburb("Тверь").isEmpty());
+        assertEquals(List.of(ivan, anna), tree.findBySuburb("КЛИН"));
+        ivan.getAddress().setPostCode("141600");
+        assertEquals(List.of(ivan, anna), tree.findByPostCode("141600"));
+        assertTrue(tree.findByPostCode("170000").isEmpty());
+
+        // новый адрес одного жильца не трогает остальных
+        anna.setAddress(new Address("3", "Садовая", "Москва", "101000"));
+        assertSame(pyotr.getAddress(), anna.getAddress());
+        assertEquals(List.of(ivan), tree.findBySuburb("Клин"));
+        assertEquals(List.of(pyotr, anna), tree.findBySuburb("Москва"));
+        ivan.setAddress(null);
+        assertTrue(tree.findBySuburb("Клин").isEmpty());
+        assertEquals(1, tree.getAddressIndex().getAddressCount());
+    }
+
+    @Test
+    public void editedAddressEqualToAnotherStaysSeparate() {
+        Address moscow = pyotr.getAddress();
+        ivan.getAddress().setStreetNumber("3");
+        ivan.getAddress().setStreetName("Садовая");
+        ivan.getAddress().setSuburb("Москва");
+        ivan.getAddress().setPostCode("101000");
+        assertEquals(2, tree.getAddressIndex().getAddressCount());
+        assertEquals(List.of(pyotr, ivan, anna), tree.findBySuburb("Москва"));
+
+        // следующий член семьи с таким адресом получает прежний канонический экземпляр
+        FamilyMember oleg = new FamilyMember("Олег", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("3", "Садовая", "Москва", "101000"), "");
+        pyotr.addRelative(FamilyMember.RelativeType.РЕБЁНОК, oleg);
+        assertSame(moscow, oleg.getAddress());
+    }
+
+    @Test
+    public void readTreeSharesAddresses() throws IOException {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(101);
+        generator.setSize(3000);
+        FamilyTree generated = generator.generate();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FamilyTreeCodec.write(generated, out);
+        FamilyTree read = FamilyTreeCodec.read(new ByteArrayInputStream(out.toByteArray()), TaskProgress.NONE);
+
+        IdentityHashMap<Address, Boolean> instances = new IdentityHashMap<>();
+        for (FamilyMember member : read.getMembers()) {
+            if (member.getAddress() != null) {
+                instances.put(member.getAddress(), Boolean.TRUE);
+                assertTrue(read.getAddressIndex().getResidents(member.getAddress()).contains(member));
+            }
+        }
+        assertEquals(instances.size(), read.getAddressIndex().getAddressCount());
+        assertEquals(generated.getAddressIndex().getAddressCount(), read.getAddressIndex().getAddressCount());
+        assertTrue(instances.size() < read.getMemberCount());
+    }
+}
@@ -0,0 +1,197 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ChangeJournalTest {
+
+    @TempDir
+    File dir;
+
+    private File base;
+    private FamilyTree tree;
+    private ChangeJournal journal;
+
+    @BeforeEach
+    public void saveTree() throws IOException {
+        FamilyMember ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "");
+        tree = new FamilyTree();
+        tree.setRoot(ivan);
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, new FamilyMember("Анна", "Петрова",
+                FamilyMember.Gender.ЖЕНСКИЙ, new Address("12", "Ленина", "Тверь", "170000"), ""));
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, new FamilyMember("Пётр", "Петров",
+                FamilyMember.Gender.МУЖСКОЙ, null, ""));
+        base = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, base, TaskProgress.NONE);
+        journal = new ChangeJournal(tree);
+    }
+
+    private FamilyTree reopen() throws IOException {
+        try (InputStream in = new FileInputStream(base)) {
+            return FamilyTreeCodec.read(in, TaskProgress.NONE);
+        }
+    }
+
+    private void firstEdit() {
+        FamilyMember ivan = tree.getRoot();
+        ivan.setLifeDescription("Инженер");
+        ivan.getSpouse().setMaidenName("Смирнова");
+        FamilyMember petr = ivan.getChildren().get(0);
+        petr.setFirstName("Павел");
+        petr.setAddress(new Address("3", "Мира", "Тула", "300000"));
+    }
+
+    private void secondEdit() {
+        FamilyMember ivan = tree.getRoot();
+        // адрес общий у мужа и жены, поэтому правка записывается для обоих
+        ivan.getAddress().setSuburb("Калуга");
+        FamilyMember olga = new FamilyMember("Ольга", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+        ivan.getSpouse().addRelative(FamilyMember.RelativeType.РЕБЁНОК, olga);
+        FamilyMember oleg = new FamilyMember("Олег", "Сидоров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        olga.addRelative(FamilyMember.RelativeType.СУПРУГ, oleg);
+        tree.setRoot(olga);
+    }
+
+    @Test
+    public void replayRestoresEdits() throws IOException {
+        firstEdit();
+        assertFalse(journal.needsCompaction(base));
+        journal.commit(base);
+        secondEdit();
+        journal.commit(base);
+        assertFalse(journal.hasPendingChanges());
+
+        FamilyTree reopened = reopen();
+        assertTrue(ChangeJournal.replay(reopened, base));
+        TreeAssert.assertSameRecords(tree.snapshot(), reopened.snapshot());
+        assertEquals(2, reopened.findBySuburb("Калуга").size());
+    }
+
+    @Test
+    public void damagedBatchIsDropped() throws IOException {
+        firstEdit();
+        journal.commit(base);
+        FamilyTree.Snapshot afterFirst = tree.snapshot();
+        secondEdit();
+        journal.commit(base);
+        File file = ChangeJournal.journalFile(base);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        FamilyTree reopened = reopen();
+        assertFalse(ChangeJournal.replay(reopened, base));
+        TreeAssert.assertSameRecords(afterFirst, reopened.snapshot());
+    }
+
+    /**
+     * Дописывает в журнал пакет из готовых записей с верной контрольной суммой
+     */
+    private void appendBatch(byte[] batch) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(batch);
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(ChangeJournal.journalFile(base), true))) {
+            out.writeInt(batch.length);
+            out.write(batch);
+            out.writeInt((int) crc.getValue());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void assertRejected(byte[] batch) throws IOException {
+        firstEdit();
+        journal.commit(base);
+        FamilyTree.Snapshot afterFirst = tree.snapshot();
+        appendBatch(batch);
+
+        FamilyTree reopened = reopen();
+        assertFalse(ChangeJournal.replay(reopened, base));
+        TreeAssert.assertSameRecords(afterFirst, reopened.snapshot());
+    }
+
+    @Test
+    public void unknownEntryStopsReplay() throws IOException {
+        assertRejected(new byte[] {99, 0, 0, 0, 0});
+    }
+
+    @Test
+    public void memberWithWrongIdIsNotAdded() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeInt(99);
+        writeString(out, "Ольга");
+        writeString(out, "Петрова");
+        writeString(out, "");
+        out.writeByte(FamilyMember.Gender.ЖЕНСКИЙ.ordinal());
+        out.writeBoolean(false);
+        writeString(out, "");
+        assertRejected(bytes.toByteArray());
+    }
+
+    @Test
+    public void truncatedEntryStopsReplay() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(2);
+        out.writeInt(0);
+        out.writeByte(0);
+        out.writeInt(1000);
+        assertRejected(bytes.toByteArray());
+    }
+
+    @Test
+    public void journalOfAnotherBaseIsIgnored() throws IOException {
+        FamilyTree original = reopen();
+        firstEdit();
+        journal.commit(base);
+        // основной файл перезаписан другой программой, журнал к нему уже не относится
+        FamilyTreeCodec.save(original, base, TaskProgress.NONE);
+        assertTrue(base.setLastModified(base.lastModified() - 60_000));
+        assertTrue(ChangeJournal.journalFile(base).exists());
+
+        FamilyTree reopened = reopen();
+        assertTrue(ChangeJournal.replay(reopened, base));
+        TreeAssert.assertSameRecords(original.snapshot(), reopened.snapshot());
+        ChangeJournal.discard(base);
+        assertFalse(ChangeJournal.journalFile(base).exists());
+    }
+
+    @Test
+    public void addedBranchRequiresSnapshot() throws IOException {
+        FamilyMember olga = new FamilyMember("Ольга", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+        olga.addRelative(FamilyMember.RelativeType.СУПРУГ,
+                new FamilyMember("Олег", "Сидоров", FamilyMember.Gender.МУЖСКОЙ, null, ""));
+        tree.getRoot().addRelative(FamilyMember.RelativeType.РЕБЁНОК, olga);
+        assertTrue(journal.needsCompaction(base));
+    }
+
+    @Test
+    public void noJournalMeansNothingToReplay() throws IOException {
+        FamilyTree reopened = reopen();
+        assertTrue(ChangeJournal.replay(reopened, base));
+        TreeAssert.assertSameRecords(tree.snapshot(), reopened.snapshot());
+    }
+}
@@ -0,0 +1,74 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class ChildListTest {
+
+    private static FamilyMember member(String firstName) {
+        return new FamilyMember(firstName, "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+    }
+
+    @Test
+    public void childrenKeepOrderAndAreNotRepeated() {
+        ChildList children = new ChildList();
+        FamilyMember oleg = member("Олег");
+        FamilyMember gleb = member("Глеб");
+        assertTrue(children.append(oleg));
+        assertTrue(children.append(gleb));
+        assertFalse(children.append(oleg));
+        assertEquals(List.of(oleg, gleb), children);
+        assertEquals(1, children.indexOf(gleb));
+        assertEquals(0, children.lastIndexOf(oleg));
+        assertEquals(-1, children.indexOf(member("Олег")));
+        assertFalse(children.contains("Олег"));
+    }
+
+    @Test
+    public void listIsReadOnly() {
+        ChildList children = new ChildList();
+        children.append(member("Олег"));
+        assertThrows(UnsupportedOperationException.class, () -> children.add(member("Глеб")));
+        assertThrows(UnsupportedOperationException.class, () -> children.remove(0));
+        assertThrows(UnsupportedOperationException.class, children::clear);
+    }
+
+    @Test
+    public void sameChildIsNotAddedTwiceThroughEitherParent() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember ivan = member("Иван");
+        tree.setRoot(ivan);
+        FamilyMember anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        FamilyMember son = member("Олег");
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, son);
+        // ребёнок супруга уже стал ребёнком матери
+        assertEquals(List.of(son), anna.getChildren());
+        anna.addRelative(FamilyMember.RelativeType.РЕБЁНОК, son);
+        assertEquals(List.of(son), anna.getChildren());
+        assertEquals(List.of(son), ivan.getChildren());
+    }
+
+    @Test
+    @Timeout(10)
+    public void manyChildrenAreLookedUpQuickly() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember ivan = member("Иван");
+        tree.setRoot(ivan);
+        for (int i = 0; i < 20_000; i++) {
+            ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, member("Олег"));
+        }
+        List<FamilyMember> children = ivan.getChildren();
+        assertEquals(20_000, children.size());
+        for (FamilyMember child : children) {
+            assertTrue(children.contains(child));
+        }
+        assertEquals(19_999, children.indexOf(children.get(19_999)));
+    }
+}
@@ -0,0 +1,110 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ColumnarMemberStoreTest {
+
+    @TempDir
+    File dir;
+
+    private static FamilyTree generate(long seed, int size) {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(seed);
+        generator.setSize(size);
+        return generator.generate();
+    }
+
+    private static void assertSameMembers(FamilyTree tree, ColumnarMemberStore store) {
+        FamilyTree.Snapshot snapshot = tree.snapshot();
+        assertEquals(snapshot.getMemberCount(), store.getMemberCount());
+        assertEquals(snapshot.getRootId(), store.getRootId());
+        List<MemberRecord> records = snapshot.getRecords();
+        for (int id = 0; id < store.getMemberCount(); id++) {
+            TreeAssert.assertSameRecord(records.get(id), store.getRecord(id));
+            FamilyMember member = tree.getMember(id);
+            for (FamilyMember.Attribute type : FamilyMember.Attribute.values()) {
+                assertEquals(member.has(type), store.has(id, type), id + " " + type);
+            }
+        }
+    }
+
+    private static void assertSameStatistics(TreeStatistics expected, TreeStatistics actual) {
+        assertEquals(expected.getMemberCount(), actual.getMemberCount());
+        assertEquals(expected.getMaleCount(), actual.getMaleCount());
+        assertEquals(expected.getFemaleCount(), actual.getFemaleCount());
+        assertEquals(expected.getOrphanCount(), actual.getOrphanCount());
+        assertEquals(expected.getChildlessCount(), actual.getChildlessCount());
+        assertEquals(expected.getMarriedCount(), actual.getMarriedCount());
+        assertEquals(expected.getBySurname(), actual.getBySurname());
+        assertEquals(expected.getBySuburb(), actual.getBySuburb());
+        assertEquals(expected.getByGeneration(), actual.getByGeneration());
+    }
+
+    @Test
+    public void storeOfTreeMatchesMembers() {
+        FamilyTree tree = generate(91, 3000);
+        assertSameMembers(tree, ColumnarMemberStore.of(tree));
+    }
+
+    @Test
+    public void storeReadFromFileMatchesTree() throws IOException {
+        FamilyTree tree = generate(92, 4000);
+        File file = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, file, TaskProgress.NONE);
+        ColumnarMemberStore store = ColumnarMemberStore.read(file, TaskProgress.NONE);
+        assertSameMembers(tree, store);
+        assertSameStatistics(TreeAnalytics.compute(tree), TreeAnalytics.compute(store));
+    }
+
+    @Test
+    public void missingFieldsAndChildrenBounds() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        tree.setRoot(ivan);
+        FamilyMember anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "Учительница");
+        anna.setMaidenName("Смирнова");
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК,
+                new FamilyMember("Пётр", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, ""));
+
+        ColumnarMemberStore store = ColumnarMemberStore.of(tree);
+        assertFalse(store.hasAddress(0));
+        assertNull(store.getSuburb(0));
+        assertTrue(store.hasAddress(1));
+        assertEquals("Тверь", store.getSuburb(1));
+        assertEquals("170000", store.getPostCode(1));
+        assertEquals("Смирнова", store.getMaidenName(1));
+        assertEquals(1, store.getSpouseId(0));
+        assertEquals(MemberRecord.NONE, store.getFatherId(0));
+        assertEquals(0, store.getFatherId(2));
+        assertEquals(1, store.getMotherId(2));
+        assertEquals(1, store.numChildren(0));
+        assertEquals(2, store.getChildId(0, 0));
+        assertEquals(0, store.numChildren(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getChildId(0, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getChildId(2, 0));
+    }
+
+    @Test
+    public void storeIsNotChangedByLaterEdits() {
+        FamilyTree tree = generate(93, 500);
+        ColumnarMemberStore store = ColumnarMemberStore.of(tree);
+        FamilyMember member = tree.getMember(0);
+        String firstName = member.getFirstName();
+        String suburb = member.getAddress().getSuburb();
+        member.setFirstName(firstName + "ий");
+        member.getAddress().setSuburb(suburb + "ово");
+        assertEquals(firstName, store.getFirstName(0));
+        assertEquals(suburb, store.getSuburb(0));
+    }
+}
@@ -0,0 +1,136 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FamilyTreeCliTest {
+
+    @TempDir
+    File dir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String... args) {
+        out.reset();
+        err.reset();
+        return FamilyTreeCli.run(args, new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    private String out() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String err() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    private String path(String name) {
+        return new File(dir, name).getPath();
+    }
+
+    private static FamilyTree read(String path) throws IOException {
+        try (FileInputStream in = new FileInputStream(path)) {
+            return FamilyTreeCodec.read(in, TaskProgress.NONE);
+        }
+    }
+
+    @Test
+    public void wrongArgumentsPrintUsage() {
+        assertEquals(FamilyTreeCli.USAGE, run());
+        assertTrue(err().startsWith("Использование"));
+        assertEquals(FamilyTreeCli.USAGE, run("нет-такой"));
+        assertTrue(err().contains("Неизвестная команда"));
+        assertEquals(FamilyTreeCli.USAGE, run("convert", path("a.ft")));
+        assertEquals(FamilyTreeCli.USAGE, run("generate", path("a.ft"), "много"));
+        assertEquals(FamilyTreeCli.USAGE, run("validate"));
+        assertEquals(FamilyTreeCli.OK, run("help"));
+        assertTrue(out().startsWith("Использование"));
+    }
+
+    @Test
+    public void generatedFileIsValidAndHasStatistics() throws IOException {
+        String tree = path("tree.ft");
+        assertEquals(FamilyTreeCli.OK, run("generate", tree, "2000", "81"));
+        assertEquals(2000, read(tree).getMemberCount());
+
+        assertEquals(FamilyTreeCli.OK, run("validate", tree));
+        assertTrue(out().contains("ошибок нет, членов семьи: 2000"), out());
+        assertEquals(FamilyTreeCli.OK, run("stats", tree));
+        assertTrue(out().contains("Членов семьи: 2000"), out());
+
+        assertEquals(FamilyTreeCli.OK, run("reindex", tree));
+        assertTrue(FullTextIndex.indexFile(new File(tree)).exists());
+        assertEquals(FamilyTreeCli.FAILED, run("generate", path("tree.ged"), "10"));
+    }
+
+    @Test
+    public void convertRoundTripsThroughGedcomAndCsv() throws IOException {
+        String tree = path("tree.ft");
+        run("generate", tree, "1500", "82");
+        assertEquals(FamilyTreeCli.OK, run("convert", tree, path("tree.ged")));
+        assertEquals(FamilyTreeCli.OK, run("convert", path("tree.ged"), path("back.ft")));
+        TreeAssert.assertSameStructure(read(tree), read(path("back.ft")), true);
+
+        assertEquals(FamilyTreeCli.OK, run("convert", tree, path("tree.csv")));
+        assertEquals(1501, Files.readAllLines(new File(dir, "tree.csv").toPath()).size());
+        assertTrue(CsvExporter.relationsFile(new File(dir, "tree.csv")).exists());
+        assertEquals(FamilyTreeCli.FAILED, run("convert", tree, path("tree.txt")));
+    }
+
+    @Test
+    public void mergeAppendsMembersOfLaterFiles() throws IOException {
+        run("generate", path("a.ft"), "300", "83");
+        run("generate", path("b.ft"), "200", "84");
+        assertEquals(FamilyTreeCli.OK, run("merge", path("all.ft"), path("a.ft"), path("b.ft")));
+        FamilyTree merged = read(path("all.ft"));
+        assertEquals(500, merged.getMemberCount());
+        assertEquals(0, merged.getRoot().getId());
+        assertTrue(FamilyTreeCli.validate(merged).isEmpty(), () -> String.valueOf(FamilyTreeCli.validate(merged)));
+    }
+
+    @Test
+    public void brokenFileDoesNotStopOtherFiles() throws IOException {
+        run("generate", path("good.ft"), "100", "85");
+        Files.write(new File(dir, "bad.ft").toPath(), new byte[] {1, 2, 3});
+        assertEquals(FamilyTreeCli.FAILED, run("validate", path("bad.ft"), path("good.ft")));
+        assertTrue(err().contains("bad.ft"), err());
+        assertTrue(out().contains("good.ft: ошибок нет"), out());
+        assertFalse(out().contains("bad.ft"), out());
+    }
+
+    @Test
+    public void upgradeFoldsJournalIntoFile() throws IOException {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(86);
+        generator.setSize(200);
+        FamilyTree tree = generator.generate();
+        File file = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, file, TaskProgress.NONE);
+        ChangeJournal journal = new ChangeJournal(tree);
+        tree.getRoot().setLifeDescription("Инженер");
+        tree.getMember(150).setFirstName("Павел");
+        journal.commit(file);
+        assertTrue(ChangeJournal.journalFile(file).exists());
+
+        // с журналом статистика считается по древу, а не по колонкам файла
+        assertEquals(FamilyTreeCli.OK, run("stats", file.getPath()));
+        assertTrue(out().contains("Членов семьи: 200"), out());
+
+        assertEquals(FamilyTreeCli.OK, run("upgrade", file.getPath()));
+        assertTrue(out().contains("-> " + FamilyTreeCodec.VERSION), out());
+        assertFalse(ChangeJournal.journalFile(file).exists());
+        TreeAssert.assertSameRecords(tree.snapshot(), read(file.getPath()).snapshot());
+    }
+}
@@ -0,0 +1,258 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FamilyTreeCodecTest {
+
+    private static final int[] NO_CHILDREN = new int[0];
+    private static final int NONE = MemberRecord.NONE;
+
+    @TempDir
+    File dir;
+
+    private static FamilyTree generate(long seed, int size) {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(seed);
+        generator.setSize(size);
+        return generator.generate();
+    }
+
+    private static byte[] write(FamilyTree tree) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FamilyTreeCodec.write(tree, out);
+        return out.toByteArray();
+    }
+
+    private static FamilyTree read(byte[] bytes) throws IOException {
+        return FamilyTreeCodec.read(new ByteArrayInputStream(bytes), TaskProgress.NONE);
+    }
+
+    private static int version(byte[] bytes) throws IOException {
+        return FamilyTreeCodec.readVersion(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * вернуть файл версии 1: те же записи без индекса смещений и завершающего блока
+     */
+    private static byte[] toVersion1(byte[] version2) {
+        long stringIndex = ByteBuffer.wrap(version2, version2.length - FamilyTreeCodec.TRAILER_SIZE, 8).getLong();
+        byte[] bytes = Arrays.copyOf(version2, (int) stringIndex);
+        bytes[4] = 1;
+        return bytes;
+    }
+
+    /**
+     * вернуть древо, сериализованное так, как его сохраняли прежние версии
+     * программы: классы записаны без пакета
+     */
+    private static byte[] toLegacy(FamilyTree tree) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(tree);
+        }
+        return withoutPackage(bytes.toByteArray());
+    }
+
+    /**
+     * Убирает пакет из имён классов ("familytree.X") и сигнатур полей ("Lfamilytree/X;").
+     * Обе строки записаны в потоке с двухбайтовой длиной перед ними
+     */
+    private static byte[] withoutPackage(byte[] stream) {
+        byte[] prefix = "familytree".getBytes(StandardCharsets.US_ASCII);
+        int cut = prefix.length + 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(stream.length);
+        int i = 0;
+        while (i < stream.length) {
+            int start = indexOf(stream, prefix, i);
+            if (start < 0) {
+                out.write(stream, i, stream.length - i);
+                break;
+            }
+            // сигнатура поля начинается с 'L' перед именем пакета
+            int string = stream[start - 1] == 'L' ? start - 1 : start;
+            int length = ((stream[string - 2] & 0xFF) << 8) | (stream[string - 1] & 0xFF);
+            out.write(stream, i, string - 2 - i);
+            out.write((length - cut) >>> 8);
+            out.write(length - cut);
+            out.write(stream, string, start - string);
+            out.write(stream, start + cut, string + length - start - cut);
+            i = string + length;
+        }
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static MemberRecord record(int id, String firstName, FamilyMember.Gender gender,
+                                       int fatherId, int motherId, int spouseId, int... childIds) {
+        return new MemberRecord(id, firstName, "Иванов", "", gender, "1", "Ленина", "Тверь", "170000",
+                "", fatherId, motherId, spouseId, childIds);
+    }
+
+    private static byte[] write(int root, MemberRecord... records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FamilyTreeCodec.RecordWriter writer = FamilyTreeCodec.openWriter(out, records.length);
+        for (MemberRecord record : records) {
+            writer.write(record);
+        }
+        writer.finish(root);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void version2RoundTrip() throws IOException {
+        FamilyTree tree = generate(11, 3000);
+        byte[] bytes = write(tree);
+        assertEquals(FamilyTreeCodec.VERSION, version(bytes));
+        TreeAssert.assertSameRecords(tree.snapshot(), read(bytes).snapshot());
+    }
+
+    @Test
+    public void savedFileOpensMapped() throws IOException {
+        FamilyTree tree = generate(12, 2000);
+        File file = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, file, TaskProgress.NONE);
+        FamilyTree.Snapshot snapshot = tree.snapshot();
+        try (MappedFamilyTreeFile mapped = MappedFamilyTreeFile.open(file)) {
+            assertEquals(snapshot.getMemberCount(), mapped.getMemberCount());
+            assertEquals(snapshot.getRootId(), mapped.getRootId());
+            for (int id = 0; id < snapshot.getMemberCount(); id++) {
+                TreeAssert.assertSameRecord(snapshot.getRecord(id), mapped.getMember(id));
+            }
+        }
+    }
+
+    @Test
+    public void version1IsStillRead() throws IOException {
+        FamilyTree tree = generate(13, 2000);
+        byte[] bytes = toVersion1(write(tree));
+        assertEquals(1, version(bytes));
+        TreeAssert.assertSameRecords(tree.snapshot(), read(bytes).snapshot());
+
+        File file = new File(dir, "old.ft");
+        Files.write(file.toPath(), bytes);
+        assertThrows(IOException.class, () -> MappedFamilyTreeFile.open(file).close());
+    }
+
+    @Test
+    public void unknownVersionIsRejected() throws IOException {
+        byte[] bytes = write(generate(14, 10));
+        bytes[4] = FamilyTreeCodec.VERSION + 1;
+        assertThrows(IOException.class, () -> read(bytes));
+    }
+
+    @Test
+    public void legacySerializationIsMigrated() throws IOException {
+        FamilyTree tree = generate(15, 2000);
+        byte[] legacy = toLegacy(tree);
+        assertEquals(-1, indexOf(legacy, "familytree".getBytes(StandardCharsets.US_ASCII), 0));
+        assertEquals(0, version(legacy));
+
+        FamilyTree migrated = read(legacy);
+        TreeAssert.assertSameStructure(tree, migrated, true);
+
+        // после миграции древо сохраняется в текущем формате без потерь
+        byte[] bytes = write(migrated);
+        assertEquals(FamilyTreeCodec.VERSION, version(bytes));
+        TreeAssert.assertSameRecords(migrated.snapshot(), read(bytes).snapshot());
+    }
+
+    @Test
+    public void emptyTreeRoundTrip() throws IOException {
+        FamilyTree tree = new FamilyTree();
+        FamilyTree read = read(write(tree));
+        assertFalse(read.hasRoot());
+        assertEquals(0, read.getMemberCount());
+    }
+
+    @Test
+    public void linkedRecordsAreRead() throws IOException {
+        FamilyTree tree = read(write(0,
+                record(0, "Иван", FamilyMember.Gender.МУЖСКОЙ, NONE, NONE, 1, 2),
+                record(1, "Анна", FamilyMember.Gender.ЖЕНСКИЙ, NONE, NONE, 0, 2),
+                record(2, "Пётр", FamilyMember.Gender.МУЖСКОЙ, 0, 1, NONE, NO_CHILDREN)));
+        FamilyMember root = tree.getRoot();
+        assertEquals("Анна", root.getSpouse().getFirstName());
+        assertEquals(root, root.getChildren().get(0).getFather());
+        assertEquals(root.getSpouse(), root.getChildren().get(0).getMother());
+    }
+
+    @Test
+    public void marriedSpouseIsNotLinkedOneWay() throws IOException {
+        FamilyMember ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        FamilyTree tree = new FamilyTree();
+        tree.setRoot(ivan);
+        FamilyMember anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        FamilyMember petr = new FamilyMember("Пётр", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, petr);
+        FamilyMember maria = new FamilyMember("Мария", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+        petr.addRelative(FamilyMember.RelativeType.СУПРУГ, maria);
+
+        assertThrows(IllegalArgumentException.class, () -> anna.setSpouse(petr));
+        assertThrows(IllegalArgumentException.class, () -> petr.setSpouse(anna));
+        assertEquals(ivan, anna.getSpouse());
+        assertEquals(maria, petr.getSpouse());
+
+        File file = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, file, TaskProgress.NONE);
+        FamilyTree reopened;
+        try (InputStream in = new FileInputStream(file)) {
+            reopened = FamilyTreeCodec.read(in, TaskProgress.NONE);
+        }
+        TreeAssert.assertSameRecords(tree.snapshot(), reopened.snapshot());
+    }
+
+    @Test
+    public void oneSidedLinkIsRejected() {
+        // ребёнок указывает отцом запись 0, но её нет в списке детей отца
+        IOException ex = assertThrows(IOException.class, () -> read(write(0,
+                record(0, "Иван", FamilyMember.Gender.МУЖСКОЙ, NONE, NONE, NONE, NO_CHILDREN),
+                record(1, "Пётр", FamilyMember.Gender.МУЖСКОЙ, 0, NONE, NONE, NO_CHILDREN))));
+        assertTrue(ex.getMessage().contains("повреждён"), ex.getMessage());
+    }
+
+    @Test
+    public void ancestorCycleIsRejected() {
+        IOException ex = assertThrows(IOException.class, () -> read(write(0,
+                record(0, "Иван", FamilyMember.Gender.МУЖСКОЙ, 1, NONE, NONE, 1),
+                record(1, "Пётр", FamilyMember.Gender.МУЖСКОЙ, 0, NONE, NONE, 0))));
+        assertTrue(ex.getMessage().contains("предком самого себя"), ex.getMessage());
+    }
+
+    @Test
+    public void invalidFieldsAreReportedTogether() {
+        MemberRecord first = new MemberRecord(0, "Иван1", "Иванов", "", FamilyMember.Gender.МУЖСКОЙ,
+                "дом", "Ленина", "Тверь", "170000", "", NONE, NONE, NONE, NO_CHILDREN);
+        FieldValidator.InvalidFieldsException ex = assertThrows(FieldValidator.InvalidFieldsException.class,
+                () -> read(write(0, first)));
+        assertEquals(2, ex.getProblems().size());
+    }
+}
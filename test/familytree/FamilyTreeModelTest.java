@@ -0,0 +1,181 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreePath;
+import org.junit.jupiter.api.Test;
+
+public class FamilyTreeModelTest {
+
+    private static FamilyMember member(String firstName, FamilyMember.Gender gender) {
+        return new FamilyMember(firstName, "Петров", gender, null, "");
+    }
+
+    /**
+     * Записывает события модели в виде «вид:последний узел пути:индексы»
+     */
+    private static final class Events implements TreeModelListener {
+        final List<String> events = new ArrayList<>();
+
+        private void add(String kind, TreeModelEvent event) {
+            StringBuilder text = new StringBuilder(kind).append(':').append(event.getTreePath().getLastPathComponent());
+            if (event.getChildIndices() != null) {
+                for (int index : event.getChildIndices()) {
+                    text.append(':').append(index);
+                }
+            }
+            events.add(text.toString());
+        }
+
+        @Override
+        public void treeNodesChanged(TreeModelEvent event) {
+            add("changed", event);
+        }
+
+        @Override
+        public void treeNodesInserted(TreeModelEvent event) {
+            add("inserted", event);
+        }
+
+        @Override
+        public void treeNodesRemoved(TreeModelEvent event) {
+            add("removed", event);
+        }
+
+        @Override
+        public void treeStructureChanged(TreeModelEvent event) {
+            add("structure", event);
+        }
+    }
+
+    private static FamilyTreeModel.Node child(FamilyTreeModel model, Object parent, int index) {
+        return (FamilyTreeModel.Node) model.getChild(parent, index);
+    }
+
+    @Test
+    public void rootShowsParentsSpouseAndChildren() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember ivan = member("Иван", FamilyMember.Gender.МУЖСКОЙ);
+        tree.setRoot(ivan);
+        FamilyMember father = member("Пётр", FamilyMember.Gender.МУЖСКОЙ);
+        ivan.addRelative(FamilyMember.RelativeType.ОТЕЦ, father);
+        FamilyMember anna = member("Анна", FamilyMember.Gender.ЖЕНСКИЙ);
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        FamilyMember son = member("Олег", FamilyMember.Gender.МУЖСКОЙ);
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, son);
+        son.addRelative(FamilyMember.RelativeType.РЕБЁНОК, member("Глеб", FamilyMember.Gender.МУЖСКОЙ));
+
+        FamilyTreeModel model = new FamilyTreeModel(tree);
+        FamilyTreeModel.Node root = child(model, model.getRoot(), 0);
+        assertSame(ivan, root.getMember());
+        assertEquals(3, model.getChildCount(root));
+        assertSame(father, child(model, child(model, root, 0), 0).getMember());
+        assertSame(anna, child(model, child(model, root, 1), 0).getMember());
+        // супруг показывается без раскрытия, чтобы не уходить в его семью
+        assertTrue(model.isLeaf(child(model, child(model, root, 1), 0)));
+        FamilyTreeModel.Node sonNode = child(model, child(model, root, 2), 0);
+        assertSame(son, sonNode.getMember());
+        // родители показываются только у корня
+        assertEquals(1, model.getChildCount(sonNode));
+        assertEquals(FamilyTreeModel.Kind.ДЕТИ, child(model, sonNode, 0).getKind());
+        model.dispose();
+    }
+
+    @Test
+    public void emptyTreeShowsNoData() {
+        FamilyTreeModel model = new FamilyTreeModel(new FamilyTree());
+        FamilyTreeModel.Node node = child(model, model.getRoot(), 0);
+        assertEquals(FamilyTreeModel.Kind.НЕТ_ДАННЫХ, node.getKind());
+        assertTrue(model.isLeaf(node));
+    }
+
+    @Test
+    public void pathIsTranslatedToNewModel() {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(41);
+        generator.setSize(300);
+        FamilyTree tree = generator.generate();
+        FamilyTreeModel first = new FamilyTreeModel(tree);
+        Object node = first.getChild(first.getRoot(), 0);
+        while (!first.isLeaf(node)) {
+            node = first.getChild(node, first.getChildCount(node) - 1);
+        }
+        TreePath path = first.pathTo((FamilyTreeModel.Node) node);
+        first.dispose();
+
+        FamilyTreeModel second = new FamilyTreeModel(tree);
+        TreePath translated = second.translatePath(path);
+        assertEquals(path.getPathCount(), translated.getPathCount());
+        FamilyTreeModel.Node last = (FamilyTreeModel.Node) translated.getLastPathComponent();
+        assertSame(((FamilyTreeModel.Node) node).getMember(), last.getMember());
+        assertNull(second.translatePath(new TreePath(new Object[] {second.getRoot(), "нет такого узла"})));
+        second.dispose();
+    }
+
+    @Test
+    public void deepLineageIsBuiltOnDemand() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember member = member("Иван", FamilyMember.Gender.МУЖСКОЙ);
+        tree.setRoot(member);
+        for (int i = 0; i < 2000; i++) {
+            FamilyMember son = member("Иван", FamilyMember.Gender.МУЖСКОЙ);
+            member.addRelative(FamilyMember.RelativeType.РЕБЁНОК, son);
+            member = son;
+        }
+        FamilyTreeModel model = new FamilyTreeModel(tree);
+        FamilyTreeModel.Node node = child(model, model.getRoot(), 0);
+        for (int i = 0; i < 2000; i++) {
+            node = child(model, child(model, node, 0), 0);
+        }
+        assertSame(member, node.getMember());
+        assertTrue(model.isLeaf(node));
+        model.dispose();
+    }
+
+    @Test
+    public void editsFireIncrementalEvents() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember ivan = member("Иван", FamilyMember.Gender.МУЖСКОЙ);
+        tree.setRoot(ivan);
+        FamilyMember son = member("Олег", FamilyMember.Gender.МУЖСКОЙ);
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, son);
+        FamilyTreeModel model = new FamilyTreeModel(tree);
+        Events events = new Events();
+        model.addTreeModelListener(events);
+        FamilyTreeModel.Node root = child(model, model.getRoot(), 0);
+        FamilyTreeModel.Node children = child(model, root, 0);
+        model.getChildCount(children);
+
+        // правка поля обновляет только узел члена семьи
+        son.setFirstName("Глеб");
+        assertEquals(List.of("changed:Дети:0"), events.events);
+        events.events.clear();
+
+        // новый ребёнок вставляется в уже построенную группу
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, member("Пётр", FamilyMember.Gender.МУЖСКОЙ));
+        assertEquals(List.of("inserted:Дети:1"), events.events);
+        assertEquals(2, model.getChildCount(children));
+        events.events.clear();
+
+        // группа «Супруг» появляется перед «Дети», не перестраивая их
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, member("Анна", FamilyMember.Gender.ЖЕНСКИЙ));
+        assertTrue(events.events.contains("inserted:" + root + ":0"), events.events::toString);
+        assertSame(children, child(model, root, 1));
+        events.events.clear();
+
+        // узлы, которые ещё не построены, событий не вызывают
+        son.addRelative(FamilyMember.RelativeType.РЕБЁНОК, member("Илья", FamilyMember.Gender.МУЖСКОЙ));
+        assertEquals(List.of(), events.events);
+
+        tree.setRoot(son);
+        assertEquals(List.of("structure:Главный"), events.events);
+        assertSame(son, child(model, model.getRoot(), 0).getMember());
+        model.dispose();
+    }
+}
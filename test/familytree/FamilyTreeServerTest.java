@@ -0,0 +1,140 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class FamilyTreeServerTest {
+
+    private FamilyTree tree;
+    private FamilyMember ivan;
+    private FamilyMember anna;
+    private FamilyMember pyotr;
+    private FamilyTreeServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        tree = new FamilyTree();
+        ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "Работал инженером \"на заводе\".");
+        tree.setRoot(ivan);
+        anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "Учительница.");
+        anna.setMaidenName("Смирнова");
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        pyotr = new FamilyMember("Пётр", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("3", "Садовая", "Москва", "101000"), "Моряк.");
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, pyotr);
+        server = new FamilyTreeServer(tree, new FullTextIndex(tree), 0);
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop();
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    private String get(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", path);
+        assertEquals(200, response.statusCode(), response.body());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        return response.body();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void membersAndRelativesAreServed() throws Exception {
+        assertTrue(server.getPort() > 0);
+        assertEquals("{\"memberCount\":3,\"rootId\":0}", get("/tree"));
+        assertEquals("{\"id\":0,\"firstName\":\"Иван\",\"lastName\":\"Петров\",\"maidenName\":\"\",\"gender\":\"МУЖСКОЙ\","
+                + "\"lifeDescription\":\"Работал инженером \\\"на заводе\\\".\",\"address\":{\"streetNumber\":\"12\","
+                + "\"streetName\":\"Ленина\",\"suburb\":\"Тверь\",\"postCode\":\"170000\"},\"fatherId\":null,"
+                + "\"motherId\":null,\"spouseId\":1,\"childIds\":[2]}", get("/members/0"));
+        assertEquals("[{\"id\":2,\"firstName\":\"Пётр\",\"lastName\":\"Петров\",\"maidenName\":\"\",\"gender\":\"МУЖСКОЙ\"}]",
+                get("/members/1/children"));
+        String ancestors = get("/members/2/ancestors");
+        assertTrue(ancestors.contains("{\"generation\":1,\"id\":0,"), ancestors);
+        assertTrue(ancestors.contains("{\"generation\":1,\"id\":1,"), ancestors);
+        assertEquals("[]", get("/members/2/ancestors?depth=0"));
+    }
+
+    @Test
+    public void searchUsesEveryIndex() throws Exception {
+        assertTrue(get("/search?q=" + encode("моряк")).matches("\\[\\{\"score\":[0-9.E-]+,\"id\":2,.*\\}\\]"));
+        assertTrue(get("/search?name=" + encode("смир")).startsWith("[{\"id\":1,"));
+        String suburb = get("/search?suburb=" + encode("Тверь"));
+        assertTrue(suburb.startsWith("[{\"id\":0,") && suburb.contains("{\"id\":1,"), suburb);
+        assertTrue(get("/search?postcode=101000").startsWith("[{\"id\":2,"));
+        assertTrue(get("/search?suburb=" + encode("Тверь") + "&limit=1").startsWith("[{\"id\":0,"));
+        assertEquals(1, get("/search?suburb=" + encode("Тверь") + "&limit=1").split("\"id\"").length - 1);
+    }
+
+    @Test
+    public void badRequestsGetErrors() throws Exception {
+        assertEquals(404, send("GET", "/members/3").statusCode());
+        assertEquals(404, send("GET", "/members/x").statusCode());
+        assertEquals(404, send("GET", "/members/0/spouse").statusCode());
+        assertEquals(404, send("GET", "/").statusCode());
+        assertEquals(400, send("GET", "/search").statusCode());
+        assertEquals(400, send("GET", "/search?q=a&limit=-1").statusCode());
+        assertEquals(400, send("GET", "/members/0/ancestors?depth=x").statusCode());
+        HttpResponse<String> post = send("POST", "/tree");
+        assertEquals(405, post.statusCode());
+        assertTrue(post.body().startsWith("{\"error\":"), post.body());
+    }
+
+    @Test
+    public void editsInvalidateCachedResponses() throws Exception {
+        assertTrue(get("/members/2").contains("\"firstName\":\"Пётр\""));
+        pyotr.setFirstName("Павел");
+        assertTrue(get("/members/2").contains("\"firstName\":\"Павел\""));
+
+        assertEquals("[]", get("/search?suburb=" + encode("Клин")));
+        ivan.getAddress().setSuburb("Клин");
+        assertTrue(get("/search?suburb=" + encode("Клин")).contains("{\"id\":0,"));
+
+        pyotr.addRelative(FamilyMember.RelativeType.РЕБЁНОК,
+                new FamilyMember("Олег", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, ""));
+        assertEquals("{\"memberCount\":4,\"rootId\":0}", get("/tree"));
+        tree.setRoot(pyotr);
+        assertEquals("{\"memberCount\":4,\"rootId\":2}", get("/tree"));
+    }
+
+    @Test
+    public void concurrentRequestsAreAnswered() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://127.0.0.1:" + server.getPort() + "/members/" + (i % 3))).build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+        }
+        for (int i = 0; i < responses.size(); i++) {
+            HttpResponse<String> response = responses.get(i).get();
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().startsWith("{\"id\":" + (i % 3) + ","), response.body());
+        }
+    }
+}
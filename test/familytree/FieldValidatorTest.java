@@ -0,0 +1,102 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Сравнивает FieldValidator с регулярными выражениями, которыми сеттеры
+ * проверяли значения раньше
+ */
+public class FieldValidatorTest {
+
+    private static final Pattern NAME = Pattern.compile("^[\\p{L} .'-]+$");
+    private static final Pattern ADDRESS_PART = Pattern.compile("^[a-zA-Zа-яА-ЯёЁ0-9'/№#-_ ]+$");
+    private static final Pattern DIGIT = Pattern.compile(".*\\d.*");
+
+    private static boolean oldName(String value) {
+        return NAME.matcher(value.trim()).matches();
+    }
+
+    private static boolean oldAddressPart(String value) {
+        return ADDRESS_PART.matcher(value.trim()).matches();
+    }
+
+    private static boolean oldStreetNumber(String value) {
+        return oldAddressPart(value) && DIGIT.matcher(value.trim()).matches();
+    }
+
+    private static void assertSameAsRegex(String value) {
+        assertEquals(oldName(value), FieldValidator.isName(value), () -> "имя " + describe(value));
+        assertEquals(oldAddressPart(value), FieldValidator.isAddressPart(value), () -> "часть адреса " + describe(value));
+        assertEquals(oldStreetNumber(value), FieldValidator.isStreetNumber(value), () -> "номер дома " + describe(value));
+    }
+
+    private static String describe(String value) {
+        return Arrays.toString(value.codePoints().mapToObj(Integer::toHexString).toArray());
+    }
+
+    @Test
+    public void everyCharacterMatchesOldRules() {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String s = String.valueOf((char) c);
+            assertSameAsRegex(s);
+            assertSameAsRegex("a" + s + "1");
+            assertSameAsRegex(" " + s + " ");
+        }
+    }
+
+    @Test
+    public void supplementaryCharactersMatchOldRules() {
+        int[] codePoints = {0x10400, 0x1D400, 0x20000, 0x1F600, 0x10FFFF};
+        for (int c : codePoints) {
+            String s = new String(Character.toChars(c));
+            assertSameAsRegex(s);
+            assertSameAsRegex("Ян" + s);
+            assertSameAsRegex(s.substring(0, 1));
+        }
+    }
+
+    @Test
+    public void randomValuesMatchOldRules() {
+        String alphabet = "aZяЁё09 .'-/#№_@`{~\t\n ĀΩé\u0000";
+        Random random = new Random(3);
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertSameAsRegex(sb.toString());
+        }
+    }
+
+    @Test
+    public void nullIsInvalid() {
+        assertFalse(FieldValidator.isName(null));
+        assertFalse(FieldValidator.isAddressPart(null));
+        assertFalse(FieldValidator.isStreetNumber(null));
+    }
+
+    @Test
+    public void validateReportsSetterMessages() {
+        List<MemberRecord> records = new ArrayList<>();
+        records.add(new MemberRecord(0, "Иван", "Петров", "", FamilyMember.Gender.МУЖСКОЙ,
+                "12", "Ленина", "Москва", "101000", "", MemberRecord.NONE, MemberRecord.NONE, MemberRecord.NONE, new int[0]));
+        records.add(new MemberRecord(1, "Иван1", "Петров", "Сидорова", FamilyMember.Gender.МУЖСКОЙ,
+                "дом", "Ленина", "Москва", "101000", "", MemberRecord.NONE, MemberRecord.NONE, MemberRecord.NONE, new int[0]));
+        List<FieldValidator.Problem> problems = FieldValidator.validate(records);
+        assertEquals(3, problems.size());
+        assertEquals(1, problems.get(0).getId());
+        assertEquals("Недопустимое имя", problems.get(0).getMessage());
+        assertEquals("Иван1", problems.get(0).getValue());
+        assertEquals("Девичьи фамилии только для женщин", problems.get(1).getMessage());
+        assertEquals("Недопустимый номер дома.", problems.get(2).getMessage());
+    }
+}
@@ -0,0 +1,127 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FullTextIndexTest {
+
+    @TempDir
+    File dir;
+
+    private FamilyTree tree;
+    private FamilyMember ivan;
+    private FamilyMember anna;
+    private FamilyMember pyotr;
+
+    @BeforeEach
+    public void buildTree() {
+        tree = new FamilyTree();
+        ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "Работал инженером на заводе.");
+        tree.setRoot(ivan);
+        anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "Учительница. Любила сад и завод не любила.");
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        pyotr = new FamilyMember("Пётр", "Петров", FamilyMember.Gender.МУЖСКОЙ,
+                new Address("3", "Садовая", "Москва", "101000"), "Инженер-строитель. Жил в Москве.");
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, pyotr);
+    }
+
+    private static List<FamilyMember> members(List<FullTextIndex.Hit> hits) {
+        List<FamilyMember> result = new ArrayList<>();
+        for (FullTextIndex.Hit hit : hits) {
+            result.add(hit.getMember());
+        }
+        return result;
+    }
+
+    @Test
+    public void tokensAreNormalized() {
+        assertEquals(List.of("елка", "n2", "дом"), FullTextIndex.tokenize("Ёлка, N2 - ДОМ!"));
+        assertTrue(FullTextIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void queriesCombineWordsPhrasesOrAndExclusions() {
+        FullTextIndex index = new FullTextIndex(tree);
+        assertEquals(List.of(ivan, anna), members(index.search("тверь", 10)));
+        assertEquals(List.of(anna), members(index.search("тверь сад", 10)));
+        assertEquals(List.of(ivan), members(index.search("\"на заводе\"", 10)));
+        assertEquals(List.of(ivan, pyotr), members(index.search("инженером OR инженер", 10)));
+        assertEquals(List.of(ivan), members(index.search("тверь -сад", 10)));
+        // фраза не склеивается из номера дома и улицы
+        assertTrue(index.search("\"170000 работал\"", 10).isEmpty());
+        assertTrue(index.search("", 10).isEmpty());
+        assertEquals(1, index.search("тверь", 1).size());
+    }
+
+    @Test
+    public void editsAreReindexed() {
+        FullTextIndex index = new FullTextIndex(tree);
+        pyotr.setLifeDescription("Моряк.");
+        assertTrue(index.search("инженер", 10).isEmpty());
+        assertEquals(List.of(pyotr), members(index.search("моряк", 10)));
+
+        // общий адрес супругов меняется для обоих
+        ivan.getAddress().setSuburb("Клин");
+        assertEquals(List.of(ivan, anna), members(index.search("клин", 10)));
+        assertTrue(index.search("тверь", 10).isEmpty());
+
+        FamilyMember oleg = new FamilyMember("Олег", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "Рыбак из Клина.");
+        pyotr.addRelative(FamilyMember.RelativeType.РЕБЁНОК, oleg);
+        assertEquals(List.of(oleg), members(index.search("рыбак", 10)));
+        index.dispose();
+    }
+
+    @Test
+    public void savedIndexIsReopened() throws IOException {
+        File base = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, base, TaskProgress.NONE);
+        FullTextIndex index = new FullTextIndex(tree);
+        index.save(base);
+        assertTrue(FullTextIndex.indexFile(base).exists());
+
+        FamilyTree reopened;
+        try (FileInputStream in = new FileInputStream(base)) {
+            reopened = FamilyTreeCodec.read(in, TaskProgress.NONE);
+        }
+        FullTextIndex loaded = FullTextIndex.open(reopened, base);
+        for (String query : new String[] {"тверь", "\"на заводе\"", "инженер OR сад", "ленина -сад"}) {
+            List<Integer> expected = new ArrayList<>();
+            for (FamilyMember member : members(index.search(query, 10))) {
+                expected.add(member.getId());
+            }
+            List<Integer> actual = new ArrayList<>();
+            for (FamilyMember member : members(loaded.search(query, 10))) {
+                actual.add(member.getId());
+            }
+            assertEquals(expected, actual, query);
+        }
+        // загруженный индекс тоже следит за правками
+        reopened.getMember(pyotr.getId()).setLifeDescription("Моряк.");
+        assertEquals(1, loaded.search("моряк", 10).size());
+    }
+
+    @Test
+    public void staleIndexIsRebuilt() throws IOException {
+        File base = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, base, TaskProgress.NONE);
+        new FullTextIndex(tree).save(base);
+
+        pyotr.setLifeDescription("Моряк.");
+        FamilyTreeCodec.save(tree, base, TaskProgress.NONE);
+        assertTrue(base.setLastModified(base.lastModified() + 2000));
+        FullTextIndex loaded = FullTextIndex.open(tree, base);
+        assertEquals(List.of(pyotr), members(loaded.search("моряк", 10)));
+        assertTrue(loaded.search("строитель", 10).isEmpty());
+    }
+}
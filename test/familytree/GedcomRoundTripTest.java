@@ -0,0 +1,86 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import org.junit.jupiter.api.Test;
+
+public class GedcomRoundTripTest {
+
+    private static byte[] export(FamilyTree tree) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GedcomExporter.write(tree, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private static GedcomImporter.Result importBytes(byte[] bytes) throws IOException {
+        return GedcomImporter.read(new ByteArrayInputStream(bytes), bytes.length, TaskProgress.NONE);
+    }
+
+    @Test
+    public void generatedTreeRoundTrip() throws IOException {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(21);
+        generator.setSize(3000);
+        FamilyTree tree = generator.generate();
+
+        GedcomImporter.Result result = importBytes(export(tree));
+        assertTrue(result.getWarnings().isEmpty(), () -> String.valueOf(result.getWarnings()));
+        TreeAssert.assertSameStructure(tree, result.getTree(), true);
+    }
+
+    @Test
+    public void maidenNameDescriptionAndMissingAddressSurvive() throws IOException {
+        FamilyMember ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, null,
+                "Родился в Твери.\nРаботал инженером.");
+        FamilyTree tree = new FamilyTree();
+        tree.setRoot(ivan);
+        FamilyMember anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "");
+        anna.setMaidenName("Смирнова");
+        ivan.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        // описание длиннее одной строки GEDCOM переносится через CONC
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longText.append("очень длинное описание ");
+        }
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, new FamilyMember("Пётр", "Петров",
+                FamilyMember.Gender.МУЖСКОЙ, null, longText.toString()));
+
+        GedcomImporter.Result result = importBytes(export(tree));
+        assertTrue(result.getWarnings().isEmpty(), () -> String.valueOf(result.getWarnings()));
+        FamilyTree imported = result.getTree();
+        TreeAssert.assertSameStructure(tree, imported, true);
+        assertNull(imported.getRoot().getAddress());
+        assertEquals("Смирнова", imported.getRoot().getSpouse().getMaidenName());
+    }
+
+    @Test
+    public void rootIsFirstImportedIndividualWhenFirstIsDropped() throws IOException {
+        String gedcom = String.join("\n",
+                "0 HEAD",
+                "1 CHAR UTF-8",
+                "0 @I1@ INDI",
+                "1 NAME Безымянный /Петров/",
+                "0 @I2@ INDI",
+                "1 NAME Иван /Петров/",
+                "1 SEX M",
+                "0 @I3@ INDI",
+                "1 NAME Анна /Петрова/",
+                "1 SEX F",
+                "0 TRLR",
+                "");
+        GedcomImporter.Result result = importBytes(gedcom.getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, result.getWarningCount(), () -> String.valueOf(result.getWarnings()));
+        FamilyTree tree = result.getTree();
+        assertEquals(2, tree.getMemberCount());
+        assertSame(tree.getMember(0), tree.getRoot());
+        assertEquals("Иван", tree.getRoot().getFirstName());
+    }
+}
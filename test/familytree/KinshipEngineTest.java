@@ -0,0 +1,184 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Названия родства на семье из четырёх поколений:
+ * прадед и прабабушка - их сыновья дед и двоюродный дед; у деда сыновья отец и дядя;
+ * у отца сын (тот, о ком спрашиваем), дочь и единокровный сын от другой женщины;
+ * у дяди сын двоюродный брат, у которого свой сын; у сестры дочь.
+ * Линия двоюродного деда - его сын, внук (троюродный брат) и правнук.
+ * Жена - дочь тестя и тёщи, у неё есть брат и сестра
+ */
+public class KinshipEngineTest {
+
+    private FamilyTree tree;
+    private KinshipEngine engine;
+
+    private FamilyMember greatGrandfather;
+    private FamilyMember greatUncle;
+    private FamilyMember greatUncleSon;
+    private FamilyMember secondCousin;
+    private FamilyMember secondCousinSon;
+    private FamilyMember grandfather;
+    private FamilyMember father;
+    private FamilyMember mother;
+    private FamilyMember uncle;
+    private FamilyMember person;
+    private FamilyMember sister;
+    private FamilyMember halfBrother;
+    private FamilyMember niece;
+    private FamilyMember cousin;
+    private FamilyMember cousinSon;
+    private FamilyMember wife;
+    private FamilyMember fatherInLaw;
+    private FamilyMember motherInLaw;
+    private FamilyMember wifeBrother;
+    private FamilyMember wifeSister;
+    private FamilyMember stranger;
+
+    private static FamilyMember male(String firstName) {
+        return new FamilyMember(firstName, "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+    }
+
+    private static FamilyMember female(String firstName) {
+        return new FamilyMember(firstName, "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+    }
+
+    private static FamilyMember married(FamilyMember member, FamilyMember spouse) {
+        member.addRelative(FamilyMember.RelativeType.СУПРУГ, spouse);
+        return spouse;
+    }
+
+    private static FamilyMember child(FamilyMember parent, FamilyMember child) {
+        parent.addRelative(FamilyMember.RelativeType.РЕБЁНОК, child);
+        return child;
+    }
+
+    @BeforeEach
+    public void buildFamily() {
+        greatGrandfather = male("Фома");
+        tree = new FamilyTree();
+        tree.setRoot(greatGrandfather);
+        married(greatGrandfather, female("Марфа"));
+        grandfather = child(greatGrandfather, male("Семён"));
+        greatUncle = child(greatGrandfather, male("Кузьма"));
+        married(grandfather, female("Дарья"));
+        father = child(grandfather, male("Иван"));
+        uncle = child(grandfather, male("Фёдор"));
+        mother = married(father, female("Анна"));
+        person = child(father, male("Пётр"));
+        sister = child(father, female("Мария"));
+        FamilyMember otherWoman = female("Зоя");
+        halfBrother = child(otherWoman, male("Глеб"));
+        halfBrother.addRelative(FamilyMember.RelativeType.ОТЕЦ, father);
+        married(sister, male("Олег"));
+        niece = child(sister, female("Вера"));
+        married(uncle, female("Нина"));
+        cousin = child(uncle, male("Павел"));
+        married(cousin, female("Ирина"));
+        cousinSon = child(cousin, male("Роман"));
+
+        wife = married(person, female("Елена"));
+        fatherInLaw = male("Борис");
+        wife.addRelative(FamilyMember.RelativeType.ОТЕЦ, fatherInLaw);
+        // жена тестя становится матерью его детей
+        motherInLaw = married(fatherInLaw, female("Галина"));
+        wifeBrother = child(fatherInLaw, male("Антон"));
+        wifeSister = child(fatherInLaw, female("Ольга"));
+        stranger = married(greatUncle, female("Лидия"));
+        greatUncleSon = child(greatUncle, male("Тимофей"));
+        secondCousin = child(greatUncleSon, male("Денис"));
+        secondCousinSon = child(secondCousin, male("Артём"));
+
+        engine = new KinshipEngine(tree);
+    }
+
+    private void assertKinship(String expected, FamilyMember of, FamilyMember relative) {
+        assertEquals(expected, engine.describe(of, relative), relative + " для " + of);
+    }
+
+    @Test
+    public void directLine() {
+        assertKinship("отец", person, father);
+        assertKinship("мать", person, mother);
+        assertKinship("дедушка", person, grandfather);
+        assertKinship("прадедушка", person, greatGrandfather);
+        assertKinship("сын", father, person);
+        assertKinship("дочь", mother, sister);
+        assertKinship("внук", grandfather, person);
+        assertKinship("внучка", grandfather, sister);
+        assertKinship("правнук", greatGrandfather, person);
+        assertKinship("праправнучка", greatGrandfather, niece);
+    }
+
+    @Test
+    public void collateralLine() {
+        assertKinship("сестра", person, sister);
+        assertKinship("брат", sister, person);
+        assertKinship("единокровный брат", person, halfBrother);
+        assertKinship("дядя", person, uncle);
+        assertKinship("племянник", uncle, person);
+        assertKinship("племянница", person, niece);
+        assertKinship("дядя", niece, person);
+        assertKinship("двоюродный брат", person, cousin);
+        assertKinship("двоюродная сестра", cousin, sister);
+        assertKinship("двоюродный племянник", person, cousinSon);
+        assertKinship("двоюродный дядя", cousinSon, person);
+        assertKinship("двоюродный дедушка", person, greatUncle);
+        assertKinship("внучатая племянница", uncle, niece);
+        assertKinship("двоюродный дядя", person, greatUncleSon);
+        assertKinship("троюродный брат", person, secondCousin);
+        assertKinship("четвероюродный брат", cousinSon, secondCousinSon);
+    }
+
+    @Test
+    public void inLaws() {
+        assertKinship("жена", person, wife);
+        assertKinship("муж", wife, person);
+        assertKinship("тесть", person, fatherInLaw);
+        assertKinship("тёща", person, motherInLaw);
+        assertKinship("свёкор", wife, father);
+        assertKinship("свекровь", wife, mother);
+        assertKinship("зять", fatherInLaw, person);
+        assertKinship("невестка", mother, wife);
+        assertKinship("шурин", person, wifeBrother);
+        assertKinship("свояченица", person, wifeSister);
+        assertKinship("деверь", wife, halfBrother);
+        assertKinship("золовка", wife, sister);
+        assertKinship("дядя мужа", wife, uncle);
+        assertKinship("жена родственника (дядя)", person, uncle.getSpouse());
+    }
+
+    @Test
+    public void ancestorBeyondSearchDepth() {
+        int generations = KinshipEngine.MAX_GENERATIONS + 8;
+        FamilyMember descendant = greatGrandfather;
+        for (int i = 0; i < generations; i++) {
+            descendant = child(descendant, male("Пётр"));
+        }
+        KinshipEngine deep = new KinshipEngine(tree);
+        assertEquals(greatGrandfather, deep.primaryCommonAncestor(descendant, greatGrandfather));
+        assertEquals("пра".repeat(generations - 2) + "дедушка", deep.describe(descendant, greatGrandfather));
+        assertEquals(generations, deep.relate(descendant, greatGrandfather).getGenerationsUp());
+    }
+
+    @Test
+    public void unrelated() {
+        assertKinship("это тот же человек", person, person);
+        assertKinship("не родственники", fatherInLaw, uncle);
+        assertKinship("не родственники", stranger, wifeSister);
+    }
+
+    @Test
+    public void memberAddedAfterEngineIsNamed() {
+        FamilyMember son = child(person, male("Николай"));
+        assertKinship("внук", father, son);
+        assertKinship("племянник", sister, son);
+        assertKinship("внучатый племянник", uncle, son);
+        assertKinship("двоюродный племянник", cousin, son);
+    }
+}
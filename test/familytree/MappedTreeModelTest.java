@@ -0,0 +1,105 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedTreeModelTest {
+
+    @TempDir
+    File dir;
+
+    private File save(FamilyTree tree) throws IOException {
+        File file = new File(dir, "tree.ft");
+        FamilyTreeCodec.save(tree, file, TaskProgress.NONE);
+        return file;
+    }
+
+    /**
+     * Сравнивает узлы двух моделей по виду и надписи на заданную глубину
+     */
+    private static void assertSameNodes(FamilyTreeModel expected, Object expectedNode,
+                                        MappedTreeModel actual, Object actualNode, int depth) {
+        assertEquals(((FamilyTreeModel.Node) expectedNode).getKind(), ((MappedTreeModel.Node) actualNode).getKind());
+        assertEquals(expectedNode.toString(), actualNode.toString());
+        if (depth == 0) {
+            return;
+        }
+        assertEquals(expected.getChildCount(expectedNode), actual.getChildCount(actualNode), actualNode.toString());
+        for (int i = 0; i < expected.getChildCount(expectedNode); i++) {
+            Object child = actual.getChild(actualNode, i);
+            assertEquals(i, actual.getIndexOfChild(actualNode, child));
+            assertSameNodes(expected, expected.getChild(expectedNode, i), actual, child, depth - 1);
+        }
+    }
+
+    @Test
+    public void mappedModelMatchesInMemoryModel() throws IOException {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(31);
+        generator.setSize(500);
+        FamilyTree tree = generator.generate();
+        try (MappedFamilyTreeFile file = MappedFamilyTreeFile.open(save(tree))) {
+            FamilyTreeModel expected = new FamilyTreeModel(tree);
+            MappedTreeModel actual = new MappedTreeModel(file);
+            assertSameNodes(expected, expected.getRoot(), actual, actual.getRoot(), 8);
+            expected.dispose();
+        }
+    }
+
+    @Test
+    public void rootParentsAreShownOnlyForRoot() throws IOException {
+        FamilyMember ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        FamilyTree tree = new FamilyTree();
+        tree.setRoot(ivan);
+        FamilyMember pyotr = new FamilyMember("Пётр", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        ivan.addRelative(FamilyMember.RelativeType.ОТЕЦ, pyotr);
+        FamilyMember son = new FamilyMember("Олег", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, son);
+        son.addRelative(FamilyMember.RelativeType.РЕБЁНОК,
+                new FamilyMember("Глеб", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, ""));
+
+        try (MappedFamilyTreeFile file = MappedFamilyTreeFile.open(save(tree))) {
+            MappedTreeModel model = new MappedTreeModel(file);
+            MappedTreeModel.Node root = (MappedTreeModel.Node) model.getChild(model.getRoot(), 0);
+            assertEquals(ivan.getId(), root.getId());
+            assertEquals(FamilyTreeModel.Kind.РОДИТЕЛИ, ((MappedTreeModel.Node) model.getChild(root, 0)).getKind());
+            MappedTreeModel.Node children = (MappedTreeModel.Node) model.getChild(root, 1);
+            assertEquals(FamilyTreeModel.Kind.ДЕТИ, children.getKind());
+            MappedTreeModel.Node child = (MappedTreeModel.Node) model.getChild(children, 0);
+            assertEquals(son.getId(), child.getId());
+            // у остальных членов семьи родители не показываются: к ним пришли сверху
+            assertEquals(1, model.getChildCount(child));
+            assertEquals(FamilyTreeModel.Kind.ДЕТИ, ((MappedTreeModel.Node) model.getChild(child, 0)).getKind());
+            assertEquals(4, model.pathTo(child).getPathCount());
+        }
+    }
+
+    @Test
+    public void emptyTreeShowsNoData() throws IOException {
+        try (MappedFamilyTreeFile file = MappedFamilyTreeFile.open(save(new FamilyTree()))) {
+            assertFalse(file.hasRoot());
+            MappedTreeModel model = new MappedTreeModel(file);
+            MappedTreeModel.Node node = (MappedTreeModel.Node) model.getChild(model.getRoot(), 0);
+            assertEquals(FamilyTreeModel.Kind.НЕТ_ДАННЫХ, node.getKind());
+            assertTrue(model.isLeaf(node));
+        }
+    }
+
+    @Test
+    public void closedFileIsReported() throws IOException {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(32);
+        generator.setSize(100);
+        MappedFamilyTreeFile file = MappedFamilyTreeFile.open(save(generator.generate()), 1);
+        MappedTreeModel model = new MappedTreeModel(file);
+        file.close();
+        assertThrows(UncheckedIOException.class, () -> model.getChildCount(model.getRoot()));
+        assertThrows(IllegalArgumentException.class, () -> file.getMember(file.getMemberCount()));
+    }
+}
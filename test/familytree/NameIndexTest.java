@@ -0,0 +1,99 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class NameIndexTest {
+
+    /**
+     * вернуть членов семьи, имя которых совпадает с name, найденных полным перебором
+     */
+    private static List<FamilyMember> scan(FamilyTree tree, FamilyMember.Field field, String name) {
+        String key = NameIndex.normalize(name);
+        List<FamilyMember> result = new ArrayList<>();
+        for (FamilyMember member : tree.getMembers()) {
+            String value = field == FamilyMember.Field.ИМЯ ? member.getFirstName()
+                    : field == FamilyMember.Field.ФАМИЛИЯ ? member.getLastName() : member.getMaidenName();
+            if (value != null && !value.isEmpty() && NameIndex.normalize(value).equals(key)) {
+                result.add(member);
+            }
+        }
+        return result;
+    }
+
+    private static void assertSameMembers(List<FamilyMember> expected, List<FamilyMember> actual) {
+        List<FamilyMember> a = new ArrayList<>(expected);
+        List<FamilyMember> b = new ArrayList<>(actual);
+        a.sort(Comparator.comparingInt(FamilyMember::getId));
+        b.sort(Comparator.comparingInt(FamilyMember::getId));
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void lookupsMatchFullScanAfterRenames() {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(51);
+        generator.setSize(3000);
+        FamilyTree tree = generator.generate();
+        List<FamilyMember> members = new ArrayList<>(tree.getMembers());
+        Random random = new Random(51);
+        for (int i = 0; i < 500; i++) {
+            FamilyMember member = members.get(random.nextInt(members.size()));
+            FamilyMember other = members.get(random.nextInt(members.size()));
+            member.setFirstName(other.getFirstName());
+            member.setLastName(other.getLastName());
+        }
+        for (int i = 0; i < 200; i++) {
+            FamilyMember member = members.get(random.nextInt(members.size()));
+            if (member.getGender() == FamilyMember.Gender.ЖЕНСКИЙ) {
+                member.setMaidenName(random.nextBoolean() ? "" : "Смирнова");
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            FamilyMember member = members.get(random.nextInt(members.size()));
+            assertSameMembers(scan(tree, FamilyMember.Field.ИМЯ, member.getFirstName()),
+                    tree.findByFirstName(member.getFirstName()));
+            assertSameMembers(scan(tree, FamilyMember.Field.ФАМИЛИЯ, member.getLastName()),
+                    tree.findByLastName(member.getLastName()));
+        }
+        assertSameMembers(scan(tree, FamilyMember.Field.ДЕВИЧЬЯ_ФАМИЛИЯ, "Смирнова"), tree.findByMaidenName("Смирнова"));
+    }
+
+    @Test
+    public void namesAreMatchedIgnoringCaseAndYo() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember pyotr = new FamilyMember("Пётр", "Фёдоров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        tree.setRoot(pyotr);
+        assertEquals(List.of(pyotr), tree.findByFirstName("петр"));
+        assertEquals(List.of(pyotr), tree.findByLastName("  ФЕДОРОВ "));
+        assertTrue(tree.findByFirstName("Павел").isEmpty());
+
+        pyotr.setFirstName("Павел");
+        assertTrue(tree.findByFirstName("Пётр").isEmpty());
+        assertEquals(List.of(pyotr), tree.findByFirstName("Павел"));
+    }
+
+    @Test
+    public void prefixSearchIsAlphabeticalAndLimited() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember root = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        tree.setRoot(root);
+        FamilyMember anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+        root.addRelative(FamilyMember.RelativeType.СУПРУГ, anna);
+        FamilyMember pavel = new FamilyMember("Павел", "Иванов", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        root.addRelative(FamilyMember.RelativeType.РЕБЁНОК, pavel);
+
+        // Павел, затем Петров (Иван) и Петрова (Анна); Иван не повторяется
+        assertEquals(List.of(pavel, root, anna), tree.findByNamePrefix("П", 10));
+        assertEquals(List.of(pavel, root), tree.findByNamePrefix("п", 2));
+        assertEquals(List.of(root, anna), tree.findByNamePrefix("Петров", 10));
+        assertEquals(List.of("павел", "петров", "петрова"), tree.getNameIndex().completions("П", 10));
+        assertEquals(Collections.emptyList(), tree.findByNamePrefix(" ", 10));
+    }
+}
@@ -0,0 +1,88 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class PersistentVectorTest {
+
+    private static List<Object> elements(int size) {
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Object());
+        }
+        return list;
+    }
+
+    /**
+     * вернуть индексы, по которым элементы различаются, найденные полным обходом
+     */
+    private static List<Integer> naiveDiff(PersistentVector<Object> a, PersistentVector<Object> b) {
+        List<Integer> result = new ArrayList<>();
+        int common = Math.min(a.size(), b.size());
+        for (int i = 0; i < Math.max(a.size(), b.size()); i++) {
+            if (i >= common || a.get(i) != b.get(i)) {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    private static List<Integer> diff(PersistentVector<Object> a, PersistentVector<Object> b) {
+        List<Integer> result = new ArrayList<>();
+        PersistentVector.diff(a, b, result::add);
+        return result;
+    }
+
+    @Test
+    public void sameVectorHasNoDifferences() {
+        PersistentVector<Object> vector = PersistentVector.of(elements(10_000));
+        assertTrue(diff(vector, vector).isEmpty());
+    }
+
+    @Test
+    public void diffReportsChangedIndices() {
+        Random random = new Random(1);
+        PersistentVector<Object> a = PersistentVector.of(elements(40_000));
+        PersistentVector<Object> b = a;
+        for (int i = 0; i < 100; i++) {
+            b = b.set(random.nextInt(b.size()), new Object());
+        }
+        assertEquals(naiveDiff(a, b), diff(a, b));
+        assertEquals(naiveDiff(b, a), diff(b, a));
+    }
+
+    @Test
+    public void diffReportsAppendedIndices() {
+        Random random = new Random(2);
+        // длины по разные стороны границ уровней дерева (32, 1024, 32768)
+        int[] sizes = {0, 1, 31, 32, 33, 1023, 1024, 1025, 32768, 32769};
+        for (int size : sizes) {
+            PersistentVector<Object> a = PersistentVector.of(elements(size));
+            PersistentVector<Object> b = a;
+            for (int i = 0; i < 1100; i++) {
+                b = b.append(new Object());
+            }
+            if (size > 0) {
+                b = b.set(random.nextInt(size), new Object());
+            }
+            assertEquals(naiveDiff(a, b), diff(a, b), "длина " + size);
+            assertEquals(naiveDiff(b, a), diff(b, a), "длина " + size);
+        }
+    }
+
+    @Test
+    public void appendedVectorMatchesBuiltVector() {
+        List<Object> list = elements(5000);
+        PersistentVector<Object> appended = PersistentVector.empty();
+        for (Object element : list) {
+            appended = appended.append(element);
+        }
+        assertEquals(list.size(), appended.size());
+        assertTrue(diff(appended, PersistentVector.of(list)).isEmpty());
+    }
+}
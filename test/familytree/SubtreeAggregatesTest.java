@@ -0,0 +1,147 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class SubtreeAggregatesTest {
+
+    private static FamilyMember member(String firstName, FamilyMember.Gender gender) {
+        return new FamilyMember(firstName, "Петров", gender, null, "");
+    }
+
+    /**
+     * Сравнивает сводные данные каждого члена семьи с подсчётом обходом потомков
+     */
+    private static void assertExact(List<FamilyMember> members) {
+        for (FamilyMember member : members) {
+            Set<FamilyMember> descendants = FamilyTraversal.collect(Collections.singleton(member), FamilyTraversal.DESCENDANTS);
+            int male = 0;
+            int female = 0;
+            for (FamilyMember descendant : descendants) {
+                if (descendant != member) {
+                    if (descendant.getGender() == FamilyMember.Gender.МУЖСКОЙ) {
+                        male++;
+                    }
+                    else {
+                        female++;
+                    }
+                }
+            }
+            assertEquals(descendants.size() - 1, member.getDescendantCount(), member.toString());
+            assertEquals(male, member.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ), member.toString());
+            assertEquals(female, member.getDescendantCount(FamilyMember.Gender.ЖЕНСКИЙ), member.toString());
+            assertEquals(generationsBelow(member), member.getGenerationsBelow(), member.toString());
+        }
+    }
+
+    private static int generationsBelow(FamilyMember member) {
+        int[] deepest = new int[1];
+        longest(member, 0, deepest);
+        return deepest[0];
+    }
+
+    private static void longest(FamilyMember member, int depth, int[] deepest) {
+        deepest[0] = Math.max(deepest[0], depth);
+        for (FamilyMember child : member.getChildren()) {
+            longest(child, depth + 1, deepest);
+        }
+    }
+
+    @Test
+    public void branchAlreadyBelowNewAncestorIsCountedOnce() {
+        // Пётр - внук Ивана; Павел ещё вне семьи, его сын Олег - от дочери Петра.
+        // Когда Павел становится сыном Ивана, Олег уже был потомком Ивана
+        FamilyMember ivan = member("Иван", FamilyMember.Gender.МУЖСКОЙ);
+        FamilyTree tree = new FamilyTree();
+        tree.setRoot(ivan);
+        FamilyMember semen = member("Семён", FamilyMember.Gender.МУЖСКОЙ);
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, semen);
+        FamilyMember petr = member("Пётр", FamilyMember.Gender.МУЖСКОЙ);
+        semen.addRelative(FamilyMember.RelativeType.РЕБЁНОК, petr);
+        FamilyMember vera = member("Вера", FamilyMember.Gender.ЖЕНСКИЙ);
+        petr.addRelative(FamilyMember.RelativeType.РЕБЁНОК, vera);
+        FamilyMember pavel = member("Павел", FamilyMember.Gender.МУЖСКОЙ);
+        vera.addRelative(FamilyMember.RelativeType.СУПРУГ, pavel);
+        FamilyMember oleg = member("Олег", FamilyMember.Gender.МУЖСКОЙ);
+        vera.addRelative(FamilyMember.RelativeType.РЕБЁНОК, oleg);
+        assertEquals(4, ivan.getDescendantCount());
+
+        pavel.addRelative(FamilyMember.RelativeType.ОТЕЦ, ivan);
+        assertEquals(5, ivan.getDescendantCount());
+        assertEquals(4, ivan.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ));
+        assertExact(tree.getMembers());
+    }
+
+    @Test
+    public void randomLinksKeepAggregatesExact() {
+        Random random = new Random(4);
+        for (int round = 0; round < 20; round++) {
+            List<FamilyMember> members = new ArrayList<>();
+            FamilyTree tree = new FamilyTree();
+            for (int i = 0; i < 60; i++) {
+                FamilyMember.Gender gender = random.nextBoolean() ? FamilyMember.Gender.МУЖСКОЙ : FamilyMember.Gender.ЖЕНСКИЙ;
+                FamilyMember member = member("Член" + (char) ('а' + i % 32), gender);
+                if (i == 0) {
+                    tree.setRoot(member);
+                }
+                members.add(member);
+            }
+            // связи в случайном порядке: ветки присоединяются к уже связанным предкам,
+            // в том числе к тем, кто связан с ними по другой линии
+            for (int i = 0; i < 200; i++) {
+                FamilyMember child = members.get(random.nextInt(members.size()));
+                FamilyMember parent = members.get(random.nextInt(members.size()));
+                FamilyMember.RelativeType type = parent.getGender() == FamilyMember.Gender.МУЖСКОЙ
+                        ? FamilyMember.RelativeType.ОТЕЦ : FamilyMember.RelativeType.МАТЬ;
+                try {
+                    child.addRelative(type, parent);
+                }
+                catch (IllegalArgumentException ex) {
+                    // родитель уже указан или получился бы цикл
+                }
+            }
+            assertExact(members);
+
+            SubtreeAggregates.recompute(members);
+            assertExact(members);
+        }
+    }
+
+    @Test
+    public void genderChangeMovesCounts() {
+        FamilyMember ivan = member("Иван", FamilyMember.Gender.МУЖСКОЙ);
+        FamilyTree tree = new FamilyTree();
+        tree.setRoot(ivan);
+        FamilyMember sasha = member("Саша", FamilyMember.Gender.МУЖСКОЙ);
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, sasha);
+        sasha.setGender(FamilyMember.Gender.ЖЕНСКИЙ);
+        assertEquals(0, ivan.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ));
+        assertEquals(1, ivan.getDescendantCount(FamilyMember.Gender.ЖЕНСКИЙ));
+        assertExact(tree.getMembers());
+    }
+
+    @Test
+    @Timeout(20)
+    public void deepLineageIsRecomputedInLinearTime() {
+        int depth = 200_000;
+        MemberRecord[] records = new MemberRecord[depth];
+        for (int id = 0; id < depth; id++) {
+            records[id] = new MemberRecord(id, "Иван", "Петров", "", FamilyMember.Gender.МУЖСКОЙ, null, null, null, null,
+                    "", id - 1, MemberRecord.NONE, MemberRecord.NONE, id + 1 < depth ? new int[] {id + 1} : new int[0]);
+        }
+        FamilyTree tree = FamilyTreeCodec.build(records, 0);
+        for (int id = 0; id < depth; id += 1000) {
+            FamilyMember member = tree.getMember(id);
+            assertEquals(depth - 1 - id, member.getDescendantCount());
+            assertEquals(depth - 1 - id, member.getDescendantCount(FamilyMember.Gender.МУЖСКОЙ));
+            assertEquals(depth - 1 - id, member.getGenerationsBelow());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class SyntheticTreeGeneratorTest {
+
+    private static SyntheticTreeGenerator generator(long seed, int size) {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(seed);
+        generator.setSize(size);
+        return generator;
+    }
+
+    private static List<String> names(FamilyTree tree) {
+        List<String> names = new ArrayList<>();
+        for (FamilyMember member : tree.getMembers()) {
+            names.add(member.getFirstName() + " " + member.getLastName());
+        }
+        return names;
+    }
+
+    @Test
+    public void sameSeedGivesSameTree() {
+        FamilyTree a = generator(71, 5000).generate();
+        FamilyTree b = generator(71, 5000).generate();
+        TreeAssert.assertSameRecords(a.snapshot(), b.snapshot());
+
+        FamilyTree other = generator(72, 5000).generate();
+        assertNotEquals(names(a), names(other));
+    }
+
+    @Test
+    public void writtenStreamMatchesGeneratedTree() throws IOException {
+        SyntheticTreeGenerator generator = generator(73, 7000);
+        FamilyTree tree = generator.generate();
+        assertEquals(7000, tree.getMemberCount());
+        assertEquals(7000, generator.count());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(7000, generator.write(out, TaskProgress.NONE));
+        FamilyTree read = FamilyTreeCodec.read(new ByteArrayInputStream(out.toByteArray()), TaskProgress.NONE);
+        TreeAssert.assertSameRecords(tree.snapshot(), read.snapshot());
+    }
+
+    @Test
+    public void generatedRecordsPassValidation() {
+        FamilyTree tree = generator(74, 3000).generate();
+        assertTrue(FieldValidator.validate(tree.snapshot().getRecords()).isEmpty());
+        for (FamilyMember member : tree.getMembers()) {
+            if (!member.getMaidenName().isEmpty()) {
+                assertEquals(FamilyMember.Gender.ЖЕНСКИЙ, member.getGender());
+            }
+        }
+    }
+
+    @Test
+    public void depthLimitStopsGrowth() {
+        SyntheticTreeGenerator generator = generator(75, 100_000);
+        generator.setMaxDepth(4);
+        generator.setFanOut(2);
+        FamilyTree tree = generator.generate();
+        assertTrue(tree.getMemberCount() < 100_000);
+        assertEquals(generator.count(), tree.getMemberCount());
+        assertTrue(tree.getRoot().getGenerationsBelow() <= 3, () -> "поколений " + tree.getRoot().getGenerationsBelow());
+    }
+
+    @Test
+    public void settingsAreChecked() {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(76);
+        assertThrows(IllegalArgumentException.class, () -> generator.setSize(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setMaxDepth(SyntheticTreeGenerator.MAX_DEPTH + 1));
+        assertThrows(IllegalArgumentException.class, () -> generator.setFanOut(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> generator.setSpouseRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> generator.setMaleNames("Иван2"));
+        assertThrows(IllegalArgumentException.class, () -> generator.setSuburbs("Москва!"));
+        generator.setLastNames("Достоевский", "Ильин");
+        generator.setSize(50);
+        for (FamilyMember member : generator.generate().getMembers()) {
+            assertTrue(member.getLastName().matches("Достоевск(ий|ая)|Ильина?"), member.getLastName());
+        }
+    }
+
+    @Test
+    public void feminineSurnames() {
+        assertEquals("Петрова", SyntheticTreeGenerator.feminine("Петров"));
+        assertEquals("Ильина", SyntheticTreeGenerator.feminine("Ильин"));
+        assertEquals("Достоевская", SyntheticTreeGenerator.feminine("Достоевский"));
+        assertEquals("Шевчук", SyntheticTreeGenerator.feminine("Шевчук"));
+    }
+}
@@ -0,0 +1,129 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+public class TreeAnalyticsTest {
+
+    /**
+     * вернуть номера поколений, найденные повторными проходами до неподвижной точки
+     */
+    private static int[] naiveGenerations(FamilyTree tree) {
+        int[] generation = new int[tree.getMemberCount()];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (FamilyMember member : tree.getMembers()) {
+                int value = 0;
+                if (member.getFather() != null) {
+                    value = generation[member.getFather().getId()] + 1;
+                }
+                if (member.getMother() != null) {
+                    value = Math.max(value, generation[member.getMother().getId()] + 1);
+                }
+                if (value != generation[member.getId()]) {
+                    generation[member.getId()] = value;
+                    changed = true;
+                }
+            }
+        }
+        return generation;
+    }
+
+    private static void assertMatchesScan(FamilyTree tree, TreeStatistics statistics) {
+        int[] generation = naiveGenerations(tree);
+        long males = 0;
+        long females = 0;
+        long orphans = 0;
+        long childless = 0;
+        long married = 0;
+        Map<String, Long> bySurname = new HashMap<>();
+        Map<String, Long> bySuburb = new HashMap<>();
+        Map<Integer, Long> byGeneration = new TreeMap<>();
+        List<FamilyMember> members = tree.getMembers();
+        for (FamilyMember member : members) {
+            males += member.getGender() == FamilyMember.Gender.МУЖСКОЙ ? 1 : 0;
+            females += member.getGender() == FamilyMember.Gender.ЖЕНСКИЙ ? 1 : 0;
+            orphans += member.getFather() == null && member.getMother() == null ? 1 : 0;
+            childless += member.getChildren().isEmpty() ? 1 : 0;
+            married += member.getSpouse() != null ? 1 : 0;
+            bySurname.merge(member.getLastName(), 1L, Long::sum);
+            if (member.getAddress() != null) {
+                bySuburb.merge(member.getAddress().getSuburb(), 1L, Long::sum);
+            }
+            byGeneration.merge(generation[member.getId()], 1L, Long::sum);
+        }
+        assertEquals(members.size(), statistics.getMemberCount());
+        assertEquals(males, statistics.getMaleCount());
+        assertEquals(females, statistics.getFemaleCount());
+        assertEquals(orphans, statistics.getOrphanCount());
+        assertEquals(childless, statistics.getChildlessCount());
+        assertEquals(married, statistics.getMarriedCount());
+        assertEquals(bySurname, statistics.getBySurname());
+        assertEquals(bySuburb, statistics.getBySuburb());
+        assertEquals(byGeneration, statistics.getByGeneration());
+    }
+
+    @Test
+    public void parallelStatisticsMatchFullScan() {
+        SyntheticTreeGenerator generator = new SyntheticTreeGenerator(61);
+        generator.setSize(5 * TreeAnalytics.THRESHOLD);
+        FamilyTree tree = generator.generate();
+        assertMatchesScan(tree, TreeAnalytics.compute(tree));
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            assertMatchesScan(tree, TreeAnalytics.compute(tree, single));
+        }
+        finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void generationFollowsOlderParent() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember grandfather = new FamilyMember("Пётр", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        tree.setRoot(grandfather);
+        FamilyMember father = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        grandfather.addRelative(FamilyMember.RelativeType.РЕБЁНОК, father);
+        // мать на поколение старше отца по известным данным: у неё нет родителей
+        FamilyMember mother = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ,
+                new Address("12", "Ленина", "Тверь", "170000"), "");
+        father.addRelative(FamilyMember.RelativeType.СУПРУГ, mother);
+        FamilyMember son = new FamilyMember("Олег", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        father.addRelative(FamilyMember.RelativeType.РЕБЁНОК, son);
+
+        TreeStatistics statistics = TreeAnalytics.compute(tree);
+        assertEquals(Map.of(0, 2L, 1, 1L, 2, 1L), statistics.getByGeneration());
+        assertEquals(Map.of("Тверь", 1L), statistics.getBySuburb());
+        assertEquals(2, statistics.getMarriedCount());
+        assertEquals(2, statistics.getOrphanCount());
+        assertEquals(1, statistics.getChildlessCount());
+        assertMatchesScan(tree, statistics);
+    }
+
+    @Test
+    public void deepLineageDoesNotOverflowStack() {
+        // цепочка строится по записям: добавление по одному обновляло бы счётчики всех предков
+        int depth = 200_000;
+        MemberRecord[] records = new MemberRecord[depth];
+        for (int id = 0; id < depth; id++) {
+            records[id] = new MemberRecord(id, "Иван", "Петров", "", FamilyMember.Gender.МУЖСКОЙ, null, null, null, null,
+                    "", id - 1, MemberRecord.NONE, MemberRecord.NONE, id + 1 < depth ? new int[] {id + 1} : new int[0]);
+        }
+        FamilyTree tree = FamilyTreeCodec.build(records, 0);
+        TreeStatistics statistics = TreeAnalytics.compute(tree);
+        assertEquals(depth, statistics.getByGeneration().size());
+        assertEquals(1, statistics.getOrphanCount());
+        assertEquals(1, statistics.getChildlessCount());
+        assertThrows(UnsupportedOperationException.class, () -> statistics.getBySurname().clear());
+    }
+}
@@ -0,0 +1,114 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Сравнение древ в тестах
+ */
+final class TreeAssert {
+
+    private TreeAssert() {
+    }
+
+    /**
+     * Проверяет, что снимки совпадают запись в запись, включая идентификаторы
+     */
+    static void assertSameRecords(FamilyTree.Snapshot expected, FamilyTree.Snapshot actual) {
+        assertEquals(expected.getMemberCount(), actual.getMemberCount(), "количество членов семьи");
+        assertEquals(expected.getRootId(), actual.getRootId(), "корень");
+        for (int id = 0; id < expected.getMemberCount(); id++) {
+            assertSameRecord(expected.getRecord(id), actual.getRecord(id));
+        }
+    }
+
+    static void assertSameRecord(MemberRecord expected, MemberRecord actual) {
+        String at = "#" + expected.getId();
+        assertEquals(expected.getId(), actual.getId(), at);
+        assertEquals(expected.getFirstName(), actual.getFirstName(), at);
+        assertEquals(expected.getLastName(), actual.getLastName(), at);
+        assertEquals(expected.getMaidenName(), actual.getMaidenName(), at);
+        assertEquals(expected.getGender(), actual.getGender(), at);
+        assertEquals(expected.getStreetNumber(), actual.getStreetNumber(), at);
+        assertEquals(expected.getStreetName(), actual.getStreetName(), at);
+        assertEquals(expected.getSuburb(), actual.getSuburb(), at);
+        assertEquals(expected.getPostCode(), actual.getPostCode(), at);
+        assertEquals(expected.getLifeDescription(), actual.getLifeDescription(), at);
+        assertEquals(expected.getFatherId(), actual.getFatherId(), at);
+        assertEquals(expected.getMotherId(), actual.getMotherId(), at);
+        assertEquals(expected.getSpouseId(), actual.getSpouseId(), at);
+        assertArrayEquals(expected.getChildIds(), actual.getChildIds(), at);
+    }
+
+    /**
+     * Проверяет, что древа совпадают с точностью до идентификаторов: члены семьи
+     * сопоставляются обходом от корня по одинаковым родственным связям
+     * @param description true, если сравнивать и описание жизни
+     */
+    static void assertSameStructure(FamilyTree expected, FamilyTree actual, boolean description) {
+        assertEquals(expected.getMemberCount(), actual.getMemberCount(), "количество членов семьи");
+        IdentityHashMap<FamilyMember, FamilyMember> matched = new IdentityHashMap<>();
+        ArrayDeque<FamilyMember> queue = new ArrayDeque<>();
+        match(expected.getRoot(), actual.getRoot(), matched, queue);
+        while (!queue.isEmpty()) {
+            FamilyMember e = queue.poll();
+            FamilyMember a = matched.get(e);
+            assertSameMember(e, a, description);
+            match(e.getFather(), a.getFather(), matched, queue);
+            match(e.getMother(), a.getMother(), matched, queue);
+            match(e.getSpouse(), a.getSpouse(), matched, queue);
+            List<FamilyMember> children = e.getChildren();
+            assertEquals(children.size(), a.numChildren(), e.toString());
+            for (int i = 0; i < children.size(); i++) {
+                match(children.get(i), a.getChildren().get(i), matched, queue);
+            }
+        }
+        assertEquals(expected.getMemberCount(), matched.size(), "члены семьи, достижимые от корня");
+    }
+
+    private static void match(FamilyMember expected, FamilyMember actual,
+                              IdentityHashMap<FamilyMember, FamilyMember> matched, ArrayDeque<FamilyMember> queue) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual, expected.toString());
+        FamilyMember previous = matched.putIfAbsent(expected, actual);
+        if (previous == null) {
+            queue.add(expected);
+        }
+        else {
+            assertSame(previous, actual, expected.toString());
+        }
+    }
+
+    private static void assertSameMember(FamilyMember expected, FamilyMember actual, boolean description) {
+        String at = expected.toString();
+        assertEquals(expected.getFirstName(), actual.getFirstName(), at);
+        assertEquals(expected.getLastName(), actual.getLastName(), at);
+        assertEquals(expected.getMaidenName(), actual.getMaidenName(), at);
+        assertEquals(expected.getGender(), actual.getGender(), at);
+        if (description) {
+            assertEquals(expected.getLifeDescription(), actual.getLifeDescription(), at);
+        }
+        Address e = expected.getAddress();
+        Address a = actual.getAddress();
+        if (e == null) {
+            assertNull(a, at);
+        }
+        else {
+            assertNotNull(a, at);
+            assertEquals(e.getStreetNumber(), a.getStreetNumber(), at);
+            assertEquals(e.getStreetName(), a.getStreetName(), at);
+            assertEquals(e.getSuburb(), a.getSuburb(), at);
+            assertEquals(e.getPostCode(), a.getPostCode(), at);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package familytree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TreeHistoryTest {
+
+    @Test
+    public void fieldChangesAreUndoneInPlace() {
+        FamilyTree tree = new FamilyTree();
+        FamilyMember ivan = new FamilyMember("Иван", "Петров", FamilyMember.Gender.МУЖСКОЙ, null, "");
+        tree.setRoot(ivan);
+        FamilyMember anna = new FamilyMember("Анна", "Петрова", FamilyMember.Gender.ЖЕНСКИЙ, null, "");
+        ivan.addRelative(FamilyMember.RelativeType.РЕБЁНОК, anna);
+        TreeHistory history = new TreeHistory(tree);
+
+        anna.setGender(FamilyMember.Gender.ЖЕНСКИЙ);
+        anna.setMaidenName("Смирнова");
+        anna.setAddress(new Address("12", "Ленина", "Тверь", "170000"));
+        history.checkpoint("Изменение Анна Петрова");
+
+        assertSame(tree, history.undo());
+        assertEquals("", anna.getMaidenName());
+        assertEquals(null, anna.getAddress());
+        assertSame(tree, history.redo());
+        assertEquals("Смирнова", anna.getMaidenName());
+        assertEquals("Тверь", anna.getAddress().getSuburb());
+    }
+
+    @Test
+    public void invalidTargetIsRebuiltWithoutTouchingTheTree() {
+        int none = MemberRecord.NONE;
+        // имя из файла старого формата, которое сеттер уже не примет
+        FamilyTree tree = FamilyTreeCodec.build(new MemberRecord[] {
+                new MemberRecord(0, "Иван", "Петров", "", FamilyMember.Gender.МУЖСКОЙ, null, null, null, null,
+                        "", none, none, none, new int[] {1}),
+                new MemberRecord(1, "Пётр2", "Петров", "", FamilyMember.Gender.МУЖСКОЙ, null, null, null, null,
+                        "", 0, none, none, new int[0])}, 0);
+        FamilyMember ivan = tree.getMember(0);
+        FamilyMember legacy = tree.getMember(1);
+        TreeHistory history = new TreeHistory(tree);
+
+        ivan.setLastName("Сидоров");
+        legacy.setFirstName("Пётр");
+        history.checkpoint("Изменение");
+        assertTrue(history.rebuilds(history.getUndoTarget()));
+
+        FamilyTree restored = history.undo();
+        assertNotSame(tree, restored);
+        assertEquals("Петров", restored.getMember(ivan.getId()).getLastName());
+        assertEquals("Пётр2", restored.getMember(legacy.getId()).getFirstName());
+        // прежнее древо не восстановлено наполовину
+        assertEquals("Сидоров", ivan.getLastName());
+        assertEquals("Пётр", legacy.getFirstName());
+    }
+}